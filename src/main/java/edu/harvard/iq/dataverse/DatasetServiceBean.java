@@ -26,6 +26,7 @@ import edu.harvard.iq.dataverse.util.SystemConfig;
 import edu.harvard.iq.dataverse.workflows.WorkflowComment;
 
 import java.io.*;
+import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.logging.FileHandler;
@@ -269,6 +270,16 @@ public class DatasetServiceBean implements java.io.Serializable {
      * @see DataverseServiceBean#findAllOrSubset(long, long, boolean)
      */
     public List<Long> findAllOrSubsetOrderByFilesOwned(boolean skipIndexed) {
+        return findAllOrSubsetOrderByFilesOwned(skipIndexed, null);
+    }
+
+    /**
+     * @param skipIndexed skip the datasets that have been indexed
+     * @param indexedSince if not null (and skipIndexed), only the datasets
+     * indexed at or after this time count as indexed; the ones indexed before
+     * are returned too
+     */
+    public List<Long> findAllOrSubsetOrderByFilesOwned(boolean skipIndexed, Timestamp indexedSince) {
         /*
         Disregards deleted or replaced files when determining 'size' of dataset.
         Could possibly make more efficient by getting file metadata counts
@@ -277,12 +288,18 @@ public class DatasetServiceBean implements java.io.Serializable {
         SEK - 11/09/2021
         */
 
-        String skipClause = skipIndexed ? "AND o.indexTime is null " : "";
+        String skipClause = "";
+        if (skipIndexed) {
+            skipClause = indexedSince == null ? "AND o.indexTime is null " : "AND (o.indexTime is null OR o.indexTime < ?1) ";
+        }
         Query query = em.createNativeQuery(" Select distinct(o.id), count(f.id) as numFiles FROM dvobject o " +
             "left join dvobject f on f.owner_id = o.id  where o.dtype = 'Dataset' "
                 + skipClause
                 + " group by o.id "
                 + "ORDER BY count(f.id) asc, o.id");
+        if (skipIndexed && indexedSince != null) {
+            query.setParameter(1, indexedSince);
+        }
 
         List<Object[]> queryResults;
         queryResults = query.getResultList();
@@ -17,12 +17,14 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import jakarta.annotation.Resource;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 import jakarta.inject.Named;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 //import jakarta.validation.constraints.NotNull;
 
 /**
@@ -38,6 +40,9 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
     @PersistenceContext(unitName = "VDCNet-ejbPU")
     private EntityManager em;
 
+    @Resource
+    TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
     @EJB
     RoleAssigneeServiceBean roleAssigneeService;
     @EJB
@@ -48,6 +53,7 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
     IndexAsync indexAsync;
 
     public DataverseRole save(DataverseRole aRole) {
+        PermissionCache.invalidateAll(transactionSynchronizationRegistry);
         if (aRole.getId() == null) {
             em.persist(aRole);
             /**
@@ -71,6 +77,7 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
     }
     
     public RoleAssignment save(RoleAssignment assignment, boolean createIndex) {
+        PermissionCache.invalidateAll(transactionSynchronizationRegistry);
         if (assignment.getId() == null) {
             em.persist(assignment);
         } else {
@@ -103,6 +110,7 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
     }
 
     public void delete(Long id) {
+        PermissionCache.invalidateAll(transactionSynchronizationRegistry);
         em.createNamedQuery("DataverseRole.deleteById", DataverseRole.class)
             .setParameter("id", id)
             .executeUpdate();
@@ -133,6 +141,7 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
     }
 
     public void revoke(Set<DataverseRole> roles, RoleAssignee assignee, DvObject defPoint) {
+        PermissionCache.invalidateAll(transactionSynchronizationRegistry);
         for (DataverseRole role : roles) {
             em.createNamedQuery("RoleAssignment.deleteByAssigneeIdentifier_RoleIdDefinition_PointId")
                 .setParameter("assigneeIdentifier", assignee.getIdentifier())
@@ -145,6 +154,7 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
     }
 
     public void revoke(RoleAssignment ra) {
+        PermissionCache.invalidateAll(transactionSynchronizationRegistry);
         if (!em.contains(ra)) {
             ra = em.merge(ra);
         }
@@ -160,6 +170,7 @@ public class DataverseRoleServiceBean implements java.io.Serializable {
     // on which the roles were assigned - need to be reindexed for permissions
     // once the role assignments are removed!
     public void revokeAll(RoleAssignee assignee) {
+        PermissionCache.invalidateAll(transactionSynchronizationRegistry);
         Set<DvObject> reindexSet = new HashSet<>();
 
         for (RoleAssignment ra : roleAssigneeService.getAssignmentsFor(assignee.getIdentifier())) {
@@ -172,6 +172,20 @@ public class DataverseServiceBean implements java.io.Serializable {
     }
     
     public List<Long> findDataverseIdsForIndexing(boolean skipIndexed) {
+        return findDataverseIdsForIndexing(skipIndexed, null);
+    }
+
+    /**
+     * @param skipIndexed skip the dataverses that have been indexed
+     * @param indexedSince if not null (and skipIndexed), only the dataverses
+     * indexed at or after this time count as indexed
+     */
+    public List<Long> findDataverseIdsForIndexing(boolean skipIndexed, Timestamp indexedSince) {
+        if (skipIndexed && indexedSince != null) {
+            return em.createQuery("SELECT o.id FROM Dataverse o WHERE o.indexTime IS null OR o.indexTime < :indexedSince ORDER BY o.id", Long.class)
+                    .setParameter("indexedSince", indexedSince)
+                    .getResultList();
+        }
         if (skipIndexed) {
             return em.createQuery("SELECT o.id FROM Dataverse o WHERE o.indexTime IS null ORDER BY o.id", Long.class).getResultList();
         }
@@ -10,6 +10,7 @@ import edu.harvard.iq.dataverse.authorization.groups.GroupServiceBean;
 import edu.harvard.iq.dataverse.authorization.groups.impl.explicit.ExplicitGroupServiceBean;
 import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
 import edu.harvard.iq.dataverse.confirmemail.ConfirmEmailServiceBean;
+import edu.harvard.iq.dataverse.metrics.MetricsServiceBean;
 import edu.harvard.iq.dataverse.datacapturemodule.DataCaptureModuleServiceBean;
 import edu.harvard.iq.dataverse.engine.command.Command;
 import edu.harvard.iq.dataverse.engine.command.CommandContext;
@@ -184,6 +185,9 @@ public class EjbDataverseEngine {
     @EJB
     ConfirmEmailServiceBean confirmEmailService;
     
+    @EJB
+    MetricsServiceBean metricsService;
+    
     @EJB
     EjbDataverseEngineInner innerEngine;
     
@@ -598,6 +602,11 @@ public class EjbDataverseEngine {
                     return confirmEmailService;
                 }
                 
+                @Override
+                public MetricsServiceBean metrics() {
+                    return metricsService;
+                }
+                
                 @Override
                 public ActionLogServiceBean actionLog() {
                     return logSvc;
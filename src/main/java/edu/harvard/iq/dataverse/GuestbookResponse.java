@@ -33,7 +33,8 @@ import jakarta.validation.constraints.Size;
 @Table(indexes = {
         @Index(columnList = "guestbook_id"),
         @Index(columnList = "datafile_id"),
-        @Index(columnList = "dataset_id")
+        @Index(columnList = "dataset_id"),
+        @Index(columnList = "responsetime")
 })
 
 @NamedQueries(
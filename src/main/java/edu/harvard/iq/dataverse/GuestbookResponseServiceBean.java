@@ -9,8 +9,12 @@ import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
 import edu.harvard.iq.dataverse.authorization.users.User;
 import edu.harvard.iq.dataverse.externaltools.ExternalTool;
 import edu.harvard.iq.dataverse.util.StringUtil;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -33,6 +37,10 @@ import jakarta.persistence.Query;
 import jakarta.persistence.StoredProcedureQuery;
 import jakarta.persistence.TypedQuery;
 import org.apache.commons.text.StringEscapeUtils;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
+import org.eclipse.persistence.config.ResultSetType;
+import org.eclipse.persistence.queries.ScrollableCursor;
 /**
  *
  * @author skraffmiller
@@ -132,27 +140,68 @@ public class GuestbookResponseServiceBean {
      */
     private static final String SEPARATOR = ",";
     private static final String NEWLINE = "\n";
+    private static final String CSV_HEADER = "Guestbook, Dataset, Dataset PID, Date, Type, File Name, File Id, File PID, User Name, Email, Institution, Position, Custom Questions\n";
+    
+    /**
+     * The streaming download reads the responses and the custom question 
+     * answers through database cursors, this many rows at a time.
+     */
+    private static final int CSV_DOWNLOAD_FETCH_SIZE = 1000;
+    
     public void streamResponsesByDataverseIdAndGuestbookId(OutputStream out, Long dataverseId, Long guestbookId) throws IOException {
         
-        // Before we do anything else, create a map of all the custom question responses
-        // available for this dataverse (or, this individual guestbook within the
-        // dataverse; see the comment below, how it's saving us a metric f-ton
-        // of queries now) -- L.A. 
+        // Collections with millions of responses (and of custom question 
+        // answers) can't be held in memory. So both are read through cursors, 
+        // in the same (descending) order of the response ids, and the answers 
+        // are merged into each response as it is written. The dataset titles 
+        // are still mapped up front; there is one per dataset, not per response.
         
-        Map<Integer, Object> customQandAs = mapCustomQuestionAnswersAsStrings(dataverseId, guestbookId);
         Map<Integer, String> datasetTitles = mapDatasetTitles(dataverseId);
+        
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        
+        ScrollableCursor responses = openCursor(getGuestbookResultsQueryString(dataverseId, guestbookId));
+        ScrollableCursor answers = null;
+        try {
+            answers = openCursor(getCustomQuestionAnswersQueryString(dataverseId, guestbookId, null, null));
+            Object[] answer = nextRow(answers);
+            StringBuilder sb = new StringBuilder();
+            StringBuilder customQandAs = new StringBuilder();
+            
+            Object[] result;
+            while ((result = nextRow(responses)) != null) {
+                long guestbookResponseId = ((Number) result[0]).longValue();
                 
-        List<Object[]> guestbookResults = getGuestbookResults( dataverseId,  guestbookId );
-        // the CSV header:
-        out.write("Guestbook, Dataset, Dataset PID, Date, Type, File Name, File Id, File PID, User Name, Email, Institution, Position, Custom Questions\n".getBytes());
-        for (Object[] result : guestbookResults) {
-            StringBuilder sb = convertGuestbookResponsesToCSV(customQandAs, datasetTitles, result);
-            out.write(sb.toString().getBytes());
-            out.flush();
+                // skip the answers of the responses that are not in the download
+                // (e.g., if the file they were about has been deleted)
+                while (answer != null && ((Number) answer[2]).longValue() > guestbookResponseId) {
+                    answer = nextRow(answers);
+                }
+                customQandAs.setLength(0);
+                while (answer != null && ((Number) answer[2]).longValue() == guestbookResponseId) {
+                    appendCustomQuestionAnswerAsCSV(customQandAs, answer);
+                    answer = nextRow(answers);
+                }
+                
+                sb.setLength(0);
+                appendGuestbookResponseAsCSV(sb, datasetTitles, result, customQandAs);
+                writer.append(sb);
+            }
+        } finally {
+            responses.close();
+            if (answers != null) {
+                answers.close();
+            }
         }
+        writer.flush();
     }
     
     public List<Object[]> getGuestbookResults(Long dataverseId, Long guestbookId ){
+        return em.createNativeQuery(getGuestbookResultsQueryString(dataverseId, guestbookId)).getResultList();
+    }
+    
+    private String getGuestbookResultsQueryString(Long dataverseId, Long guestbookId) {
         
         String queryString = BASE_QUERY_STRING_FOR_DOWNLOAD_AS_CSV
                 + " and  o.owner_id = " 
@@ -165,16 +214,38 @@ public class GuestbookResponseServiceBean {
         queryString += " ORDER by r.id DESC;";
         logger.fine("stream responses query: " + queryString);
         
-        return  em.createNativeQuery(queryString).getResultList();
-        
+        return queryString;
+    }
+    
+    /**
+     * Opens a forward-only cursor over the rows of a native query. With the
+     * fetch size set, the PostgreSQL driver only holds that many rows in 
+     * memory at a time.
+     */
+    private ScrollableCursor openCursor(String queryString) {
+        return (ScrollableCursor) em.createNativeQuery(queryString)
+                .setHint(QueryHints.SCROLLABLE_CURSOR, HintValues.TRUE)
+                .setHint(QueryHints.SCROLLABLE_CURSOR_RESULT_TYPE, ResultSetType.ForwardOnly)
+                .setHint(QueryHints.JDBC_FETCH_SIZE, CSV_DOWNLOAD_FETCH_SIZE)
+                .getSingleResult();
+    }
+    
+    private Object[] nextRow(ScrollableCursor cursor) {
+        if (!cursor.hasNext()) {
+            return null;
+        }
+        Object row = cursor.next();
+        return (row instanceof Object[]) ? (Object[]) row : ((Map<?, ?>) row).values().toArray();
     }
     
     public StringBuilder convertGuestbookResponsesToCSV ( Map<Integer, Object> customQandAs, Map<Integer, String> datasetTitles, Object[] result) throws IOException {
-
-            Integer guestbookResponseId = (Integer)result[0];
-            
-            StringBuilder sb = new StringBuilder();
-            
+        StringBuilder sb = new StringBuilder();
+        Object customQandA = customQandAs.get((Integer) result[0]);
+        appendGuestbookResponseAsCSV(sb, datasetTitles, result, customQandA == null ? null : customQandA.toString());
+        return sb;
+    }
+    
+    private void appendGuestbookResponseAsCSV(StringBuilder sb, Map<Integer, String> datasetTitles, Object[] result, CharSequence customQandAs) {
             // Since we are formatting the output as comma-separated values, 
             // we should go to the trouble of removing any commas from the 
             // string fields, or the structure of the file will be broken. -- L.A.
@@ -234,15 +305,11 @@ public class GuestbookResponseServiceBean {
             sb.append(result[10] == null ? "" : StringEscapeUtils.escapeCsv((String)result[10]));
             
             // Finally, custom questions and answers, if present:
-            
-            
-            if (customQandAs.containsKey(guestbookResponseId)) {
-                sb.append(customQandAs.get(guestbookResponseId)); 
-            } 
+            if (customQandAs != null) {
+                sb.append(customQandAs);
+            }
 
             sb.append(NEWLINE);
-        return sb;
-        
     }
     
     
@@ -366,26 +433,7 @@ public class GuestbookResponseServiceBean {
 
         int count = 0;
 
-        String cqString = BASE_QUERY_CUSTOM_QUESTION_ANSWERS
-                + "and o.owner_id = " + dataverseId;
-                
-        if (guestbookId != null) {
-            cqString += ( " and g.guestbook_id = " + guestbookId);
-        }
-        
-        if (firstResponse != null) {
-            cqString += (" and r.guestbookResponse_id >= " + firstResponse);
-        }
-        
-        if (lastResponse != null) {
-            cqString += (" and r.guestbookResponse_id <= " + lastResponse);
-        }
-        
-        // Preserve the order of the question/answer pairs.
-        cqString += " order by g.id, q.id";
-
-        cqString += ";";
-        logger.fine("custom questions query: " + cqString);
+        String cqString = getCustomQuestionAnswersQueryString(dataverseId, guestbookId, firstResponse, lastResponse);
 
         List<Object[]> customResponses = em.createNativeQuery(cqString).getResultList();
 
@@ -396,11 +444,12 @@ public class GuestbookResponseServiceBean {
                 if (asString) {
                     // as combined strings of comma-separated question and answer values
                     //assuming the strings are only being created for writing out to csv which seems to be the case
-                    String qa = SEPARATOR + StringEscapeUtils.escapeCsv((String)response[0]) + SEPARATOR + (response[1] == null ? "" : StringEscapeUtils.escapeCsv((String)response[1]));                   
+                    StringBuilder qa = new StringBuilder();
+                    appendCustomQuestionAnswerAsCSV(qa, response);
                     if (ret.containsKey(responseId)) {
-                        ret.put(responseId, ret.get(responseId) + qa);
+                        ret.put(responseId, ret.get(responseId) + qa.toString());
                     } else {
-                        ret.put(responseId, qa);
+                        ret.put(responseId, qa.toString());
                     }
                 } else {
                     // as a list of Object[]s - this is for display on the custom-responses page
@@ -423,6 +472,37 @@ public class GuestbookResponseServiceBean {
         return ret;
     }
     
+    private String getCustomQuestionAnswersQueryString(Long dataverseId, Long guestbookId, Integer firstResponse, Integer lastResponse) {
+        String cqString = BASE_QUERY_CUSTOM_QUESTION_ANSWERS
+                + "and o.owner_id = " + dataverseId;
+                
+        if (guestbookId != null) {
+            cqString += ( " and g.guestbook_id = " + guestbookId);
+        }
+        
+        if (firstResponse != null) {
+            cqString += (" and r.guestbookResponse_id >= " + firstResponse);
+        }
+        
+        if (lastResponse != null) {
+            cqString += (" and r.guestbookResponse_id <= " + lastResponse);
+        }
+        
+        // Preserve the order of the question/answer pairs. The responses are 
+        // in the same (descending) order as in the CSV download, so that the 
+        // two can be merged as they are streamed.
+        cqString += " order by g.id desc, q.id";
+
+        cqString += ";";
+        logger.fine("custom questions query: " + cqString);
+        return cqString;
+    }
+    
+    private void appendCustomQuestionAnswerAsCSV(StringBuilder sb, Object[] response) {
+        sb.append(SEPARATOR).append(StringEscapeUtils.escapeCsv((String) response[0]))
+                .append(SEPARATOR).append(response[1] == null ? "" : StringEscapeUtils.escapeCsv((String) response[1]));
+    }
+    
     public Long findCountByGuestbookId(Long guestbookId, Long dataverseId) {
 
         if (guestbookId == null) {
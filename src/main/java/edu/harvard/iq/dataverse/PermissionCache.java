@@ -0,0 +1,255 @@
+package edu.harvard.iq.dataverse;
+
+import edu.harvard.iq.dataverse.authorization.Permission;
+import edu.harvard.iq.dataverse.authorization.RoleAssignee;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import edu.harvard.iq.dataverse.util.TransactionUtil;
+import jakarta.json.Json;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Caches what {@link PermissionServiceBean} resolves over and over when the
+ * permissions on many objects are checked for the same request (e.g. on all
+ * the files of a dataset page):
+ * <ul>
+ * <li>the role assignees (user and groups) of the request in the context of
+ * an object,</li>
+ * <li>the permissions the role assignments of a set of assignees give over an
+ * object,</li>
+ * <li>the ids of the files in the released version of a dataset.</li>
+ * </ul>
+ * An instance lives as long as the request it belongs to (see
+ * {@link edu.harvard.iq.dataverse.engine.command.DataverseRequest#getPermissionCache()}).
+ * The permissions given by the role assignments can also be shared across
+ * requests, for {@code dataverse.permissions.cache-ttl} seconds. Any change to
+ * roles, role assignments or groups invalidates all the caches, once more
+ * after its transaction has completed (see
+ * {@link #invalidateAll(TransactionSynchronizationRegistry)}).
+ */
+public class PermissionCache {
+
+    /**
+     * The shared cache is cleared when it grows past this many entries.
+     */
+    private static final int MAX_SHARED_ENTRIES = 100000;
+
+    /**
+     * A request cache is cleared when it grows past this many entries (for
+     * the long running requests, such as harvests and batch jobs).
+     */
+    private static final int MAX_REQUEST_ENTRIES = 10000;
+
+    /**
+     * A request cache drops the file ids of the released versions when it
+     * has them for more versions than this.
+     */
+    private static final int MAX_REQUEST_RELEASED_VERSIONS = 100;
+
+    private static final AtomicLong generation = new AtomicLong();
+    private static final Map<String, SharedEntry> shared = new ConcurrentHashMap<>();
+
+    private static final AtomicLong requestHits = new AtomicLong();
+    private static final AtomicLong sharedHits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong releasedFileLookups = new AtomicLong();
+    private static final AtomicLong releasedFileSetsBuilt = new AtomicLong();
+
+    private static class SharedEntry {
+
+        final long generation;
+        final long expires;
+        final Set<Permission> permissions;
+
+        SharedEntry(long generation, long expires, Set<Permission> permissions) {
+            this.generation = generation;
+            this.expires = expires;
+            this.permissions = permissions;
+        }
+    }
+
+    private long cacheGeneration = generation.get();
+    private final Map<Long, Set<RoleAssignee>> assignees = new ConcurrentHashMap<>();
+    private final Map<String, Set<Permission>> permissions = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> releasedFileIds = new ConcurrentHashMap<>();
+
+    /**
+     * Invalidates all the cached permissions, of all the requests. To be
+     * called whenever roles, role assignments or group memberships change,
+     * and when objects move, or stop or start inheriting permissions (since
+     * the permissions are cached with the ones inherited from the owners).
+     */
+    public static void invalidateAll() {
+        generation.incrementAndGet();
+        shared.clear();
+    }
+
+    /**
+     * Invalidates all the cached permissions right away, for the rest of
+     * the current transaction, and again once the transaction has completed:
+     * until it is committed, other requests still read (and cache) the
+     * previous roles and groups.
+     *
+     * @param registry the transaction registry of the calling bean
+     */
+    public static void invalidateAll(TransactionSynchronizationRegistry registry) {
+        invalidateAll();
+        TransactionUtil.afterCompletion(registry, PermissionCache::invalidateAll);
+    }
+
+    /**
+     * @return the number of invalidations so far; caches of data derived from
+     * roles and groups can be versioned by it
+     */
+    public static long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * @param contextId the id of the object defining the context of the group
+     * memberships
+     * @param loader finds the assignees, if they are not cached yet
+     * @return the role assignees of the request in that context
+     */
+    public Set<RoleAssignee> getAssignees(Long contextId, Supplier<Set<RoleAssignee>> loader) {
+        checkGeneration();
+        if (contextId == null) {
+            return loader.get();
+        }
+        if (assignees.size() >= MAX_REQUEST_ENTRIES) {
+            assignees.clear();
+        }
+        return assignees.computeIfAbsent(contextId, id -> loader.get());
+    }
+
+    /**
+     * @param ras the role assignees
+     * @param dvo the object the roles would be assigned on, or above
+     * @param loader finds the permissions, if they are not cached yet
+     * @return the permissions the roles assigned to {@code ras} give over
+     * {@code dvo}; the set must not be modified
+     */
+    public Set<Permission> getAssignedPermissions(Set<RoleAssignee> ras, DvObject dvo, Supplier<Set<Permission>> loader) {
+        checkGeneration();
+        if (dvo.getId() == null) {
+            misses.incrementAndGet();
+            return loader.get();
+        }
+        String key = key(ras, dvo);
+        Set<Permission> cached = permissions.get(key);
+        if (cached != null) {
+            requestHits.incrementAndGet();
+            return cached;
+        }
+        cached = getShared(key, loader);
+        if (permissions.size() >= MAX_REQUEST_ENTRIES) {
+            permissions.clear();
+        }
+        permissions.put(key, cached);
+        return cached;
+    }
+
+    /**
+     * Same as {@link #getAssignedPermissions(Set, DvObject, Supplier)}, for
+     * the callers with no request to cache the permissions in: only the
+     * shared cache, if enabled, is used.
+     */
+    public static Set<Permission> getSharedAssignedPermissions(Set<RoleAssignee> ras, DvObject dvo, Supplier<Set<Permission>> loader) {
+        if (dvo.getId() == null) {
+            misses.incrementAndGet();
+            return loader.get();
+        }
+        return getShared(key(ras, dvo), loader);
+    }
+
+    /**
+     * @return whether {@code dataFile} is in {@code releasedVersion}, looked up
+     * in the set of the ids of its files, built once per request
+     */
+    public boolean isInReleasedVersion(DataFile dataFile, DatasetVersion releasedVersion) {
+        checkGeneration();
+        releasedFileLookups.incrementAndGet();
+        if (releasedVersion.getId() == null || dataFile.getId() == null) {
+            return releasedVersion.getFileMetadatas().stream().anyMatch(fm -> dataFile.equals(fm.getDataFile()));
+        }
+        if (releasedFileIds.size() >= MAX_REQUEST_RELEASED_VERSIONS) {
+            releasedFileIds.clear();
+        }
+        Set<Long> fileIds = releasedFileIds.computeIfAbsent(releasedVersion.getId(), id -> {
+            releasedFileSetsBuilt.incrementAndGet();
+            Set<Long> ids = new HashSet<>();
+            for (FileMetadata fm : releasedVersion.getFileMetadatas()) {
+                ids.add(fm.getDataFile().getId());
+            }
+            return ids;
+        });
+        return fileIds.contains(dataFile.getId());
+    }
+
+    public static JsonObjectBuilder getStats() {
+        long hits = requestHits.get() + sharedHits.get();
+        long lookups = hits + misses.get();
+        long fileLookups = releasedFileLookups.get();
+        return Json.createObjectBuilder()
+                .add("ttlSeconds", getTtlSeconds())
+                .add("requestHits", requestHits.get())
+                .add("sharedHits", sharedHits.get())
+                .add("misses", misses.get())
+                .add("hitRate", lookups == 0 ? 0.0 : Math.round(hits * 1000.0 / lookups) / 1000.0)
+                .add("sharedEntries", shared.size())
+                .add("releasedFileLookups", fileLookups)
+                .add("releasedFileSetsBuilt", releasedFileSetsBuilt.get());
+    }
+
+    private static Set<Permission> getShared(String key, Supplier<Set<Permission>> loader) {
+        long ttl = getTtlSeconds();
+        long now = System.currentTimeMillis();
+        long currentGeneration = generation.get();
+        if (ttl > 0) {
+            SharedEntry entry = shared.get(key);
+            if (entry != null && entry.generation == currentGeneration && entry.expires > now) {
+                sharedHits.incrementAndGet();
+                return entry.permissions;
+            }
+        }
+        misses.incrementAndGet();
+        Set<Permission> loaded = EnumSet.noneOf(Permission.class);
+        loaded.addAll(loader.get());
+        loaded = Collections.unmodifiableSet(loaded);
+        if (ttl > 0) {
+            if (shared.size() >= MAX_SHARED_ENTRIES) {
+                shared.clear();
+            }
+            shared.put(key, new SharedEntry(currentGeneration, now + ttl * 1000L, loaded));
+        }
+        return loaded;
+    }
+
+    private static long getTtlSeconds() {
+        return JvmSettings.PERMISSIONS_CACHE_TTL.lookupOptional(Long.class).orElse(0L);
+    }
+
+    private static String key(Set<RoleAssignee> ras, DvObject dvo) {
+        return ras.stream().map(RoleAssignee::getIdentifier).sorted().collect(Collectors.joining(","))
+                + "@" + dvo.getId();
+    }
+
+    private synchronized void checkGeneration() {
+        long currentGeneration = generation.get();
+        if (cacheGeneration != currentGeneration) {
+            assignees.clear();
+            permissions.clear();
+            releasedFileIds.clear();
+            cacheGeneration = currentGeneration;
+        }
+    }
+}
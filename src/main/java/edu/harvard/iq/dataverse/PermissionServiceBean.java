@@ -16,6 +16,7 @@ import java.util.EnumSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
+import jakarta.annotation.Resource;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 import jakarta.inject.Inject;
@@ -37,10 +38,12 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 import static java.util.stream.Collectors.toList;
 import jakarta.persistence.Query;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 
 /**
  * Your one-stop-shop for deciding which user can do what action on which
@@ -94,6 +97,18 @@ public class PermissionServiceBean {
     @Inject
     DataverseRequestServiceBean dvRequestService;
 
+    @Resource
+    TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    /**
+     * Invalidates the cached permissions, now and once the current transaction
+     * completes; for the commands that change which permissions objects
+     * inherit (see {@link PermissionCache#invalidateAll()}).
+     */
+    public void invalidatePermissionCache() {
+        PermissionCache.invalidateAll(transactionSynchronizationRegistry);
+    }
+
     /**
      * A request-level permission query (e.g includes IP ras).
      */
@@ -323,9 +338,8 @@ public class PermissionServiceBean {
             }
         }
         
-        Set<RoleAssignee> ras = new HashSet<>(groupService.groupsFor(req, dvo));
-        ras.add(user);
-        return hasGroupPermissionsFor(ras, dvo, required);
+        Set<RoleAssignee> ras = assigneesFor(req, dvo);
+        return assignedPermissionsFor(ras, dvo, req.getPermissionCache()).containsAll(required);
     }
 
     public boolean hasPermissionsFor(RoleAssignee ra, DvObject dvo, Set<Permission> required) {
@@ -341,21 +355,14 @@ public class PermissionServiceBean {
                 }
             }
         }
-        required.removeAll(getInferredPermissions(dvo));
+        required.removeAll(getInferredPermissions(dvo, null));
         if (required.isEmpty()) {
             return true;
         }
         
         Set<RoleAssignee> ras = new HashSet<>(groupService.groupsFor(ra, dvo));
         ras.add(ra);
-        return hasGroupPermissionsFor(ras, dvo, required);
-    }
-    
-    private boolean hasGroupPermissionsFor(Set<RoleAssignee> ras, DvObject dvo, Set<Permission> required) {
-        for (RoleAssignment asmnt : assignmentsFor(ras, dvo)) {
-            required.removeAll(asmnt.getRole().permissions());
-        }
-        return required.isEmpty();
+        return assignedPermissionsFor(ras, dvo, null).containsAll(required);
     }
 
     /**
@@ -371,12 +378,11 @@ public class PermissionServiceBean {
             return EnumSet.allOf(Permission.class);
         }
 
-        Set<Permission> permissions = getInferredPermissions(dvo);
+        Set<Permission> permissions = getInferredPermissions(dvo, req.getPermissionCache());
 
         // Add permissions gained from ras
-        Set<RoleAssignee> ras = new HashSet<>(groupService.groupsFor(req, dvo));
-        ras.add(req.getUser());
-        addGroupPermissionsFor(ras, dvo, permissions);
+        Set<RoleAssignee> ras = assigneesFor(req, dvo);
+        permissions.addAll(assignedPermissionsFor(ras, dvo, req.getPermissionCache()));
 
         if (!req.getUser().isAuthenticated()) {
             permissions.removeAll(PERMISSIONS_FOR_AUTHENTICATED_USERS_ONLY);
@@ -398,22 +404,49 @@ public class PermissionServiceBean {
             return EnumSet.allOf(Permission.class);
         }
 
-        Set<Permission> permissions = getInferredPermissions(dvo);
+        Set<Permission> permissions = getInferredPermissions(dvo, null);
 
         Set<RoleAssignee> ras = new HashSet<>(groupService.groupsFor(ra, dvo));
         ras.add(ra);
-        addGroupPermissionsFor(ras, dvo, permissions);
+        permissions.addAll(assignedPermissionsFor(ras, dvo, null));
 
         if ((ra instanceof User) && (!((User) ra).isAuthenticated())) {
             permissions.removeAll(PERMISSIONS_FOR_AUTHENTICATED_USERS_ONLY);
         }
         return permissions;
     }
-    
-    private void addGroupPermissionsFor(Set<RoleAssignee> ras, DvObject dvo, Set<Permission> permissions) {
-        for (RoleAssignment asmnt : assignmentsFor(ras, dvo)) {
-            permissions.addAll(asmnt.getRole().permissions());
-        }
+
+    /**
+     * The user of {@code req} and the groups it belongs to in the context of
+     * {@code dvo}, cached for the request. Groups are not defined on files, so
+     * all the files of a dataset share the assignees of the dataset.
+     */
+    private Set<RoleAssignee> assigneesFor(DataverseRequest req, DvObject dvo) {
+        DvObject context = (dvo instanceof DataFile && dvo.getOwner() != null) ? dvo.getOwner() : dvo;
+        return req.getPermissionCache().getAssignees(context.getId(), () -> {
+            Set<RoleAssignee> ras = new HashSet<>(groupService.groupsFor(req, context));
+            ras.add(req.getUser());
+            return ras;
+        });
+    }
+
+    /**
+     * @param cache the cache of the request, or {@code null} if there is no
+     * request
+     * @return the permissions the roles assigned to {@code ras} on
+     * {@code dvo}, or on its permission ancestors, give; the set must not be
+     * modified
+     */
+    private Set<Permission> assignedPermissionsFor(Set<RoleAssignee> ras, DvObject dvo, PermissionCache cache) {
+        Supplier<Set<Permission>> loader = () -> {
+            Set<Permission> permissions = EnumSet.noneOf(Permission.class);
+            for (RoleAssignment asmnt : assignmentsFor(ras, dvo)) {
+                permissions.addAll(asmnt.getRole().permissions());
+            }
+            return permissions;
+        };
+        return (cache != null) ? cache.getAssignedPermissions(ras, dvo, loader)
+                : PermissionCache.getSharedAssignedPermissions(ras, dvo, loader);
     }
 
 
@@ -421,13 +454,14 @@ public class PermissionServiceBean {
      * Calculates permissions based on object state and other context
      *
      * @param dvo
+     * @param cache the cache of the request, if any
      * @return
      */
-    private Set<Permission> getInferredPermissions(DvObject dvo) {
+    private Set<Permission> getInferredPermissions(DvObject dvo, PermissionCache cache) {
 
         Set<Permission> permissions = EnumSet.noneOf(Permission.class);
 
-        if (isPublicallyDownloadable(dvo)) {
+        if (isPublicallyDownloadable(dvo, cache)) {
             permissions.add(Permission.DownloadFile);
         }
 
@@ -438,7 +472,7 @@ public class PermissionServiceBean {
      * unrestricted files that are part of a release dataset automatically get
      * download permission for everybody:
      */
-    private boolean isPublicallyDownloadable(DvObject dvo) {
+    private boolean isPublicallyDownloadable(DvObject dvo, PermissionCache cache) {
         if (dvo instanceof DataFile) {
             // unrestricted files that are part of a release dataset 
             // automatically get download permission for everybody:
@@ -447,9 +481,16 @@ public class PermissionServiceBean {
             DataFile df = (DataFile) dvo;
 
             if (!df.isRestricted()) {
-                if (df.getOwner().getReleasedVersion() != null) {
-                    if (df.getOwner().getReleasedVersion().getFileMetadatas() != null) {
-                        for (FileMetadata fm : df.getOwner().getReleasedVersion().getFileMetadatas()) {
+                DatasetVersion releasedVersion = df.getOwner().getReleasedVersion();
+                if (releasedVersion != null) {
+                    if (releasedVersion.getFileMetadatas() != null) {
+                        if (cache != null) {
+                            // (a lookup in the set of the released file ids,
+                            // rather than a scan of the file metadatas for
+                            // each of the files of the dataset)
+                            return cache.isInReleasedVersion(df, releasedVersion);
+                        }
+                        for (FileMetadata fm : releasedVersion.getFileMetadatas()) {
                             if (df.equals(fm.getDataFile())) {
                                 return true;
                             }
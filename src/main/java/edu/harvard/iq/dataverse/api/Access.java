@@ -49,6 +49,7 @@ import edu.harvard.iq.dataverse.dataaccess.StorageIO;
 import edu.harvard.iq.dataverse.dataaccess.DataFileZipper;
 import edu.harvard.iq.dataverse.dataaccess.OptionalAccessService;
 import edu.harvard.iq.dataverse.dataaccess.ImageThumbConverter;
+import edu.harvard.iq.dataverse.dataaccess.TabularRowFilter;
 import edu.harvard.iq.dataverse.datavariable.DataVariable;
 import edu.harvard.iq.dataverse.datavariable.VariableServiceBean;
 import edu.harvard.iq.dataverse.engine.command.Command;
@@ -402,6 +403,18 @@ public class Access extends AbstractApiBean {
                                 }
                             }
                         }
+
+                        // Optional row selection - a range of rows and/or 
+                        // a predicate on the value of a variable:
+                        String rowsParam = uriInfo.getQueryParameters().getFirst("rows");
+                        String whereParam = uriInfo.getQueryParameters().getFirst("where");
+                        if (rowsParam != null || whereParam != null) {
+                            try {
+                                downloadInstance.setRowFilter(TabularRowFilter.parse(rowsParam, whereParam, df.getDataTable().getDataVariables()));
+                            } catch (IllegalArgumentException iae) {
+                                throw new BadRequestException(iae.getMessage());
+                            }
+                        }
                     }
 
                     logger.fine("downloadInstance: " + downloadInstance.getConversionParam() + "," + downloadInstance.getConversionParamValue());
@@ -841,6 +854,9 @@ public class Access extends AbstractApiBean {
                 DataFileZipper zipper = null; 
                 String fileManifest = "";
                 long sizeTotal = 0L;
+                // The files are zipped once they are all checked, so that 
+                // the zipper can fetch them from storage concurrently:
+                List<DataFile> filesToZip = new ArrayList<>();
                 
                 if (fileIdParams != null && fileIdParams.length > 0) {
                     logger.fine(fileIdParams.length + " tokens;");
@@ -911,7 +927,8 @@ public class Access extends AbstractApiBean {
                                         size = file.getFilesize();
                                     }
                                     if (sizeTotal + size < zipDownloadSizeLimit) {
-                                        sizeTotal += zipper.addFileToZipStream(file, getOriginal);
+                                        filesToZip.add(file);
+                                        sizeTotal += size;
                                     } else {
                                         String fileName = file.getFileMetadata().getLabel();
                                         String mimeType = file.getContentType();
@@ -957,6 +974,8 @@ public class Access extends AbstractApiBean {
                     throw new ForbiddenException();
                 }
 
+                zipper.addFilesToZipStream(filesToZip, getOriginal);
+
                 // This will add the generated File Manifest to the zipped output, 
                 // then flush and close the stream:
                 zipper.finalizeZipStream();
@@ -14,6 +14,8 @@ import edu.harvard.iq.dataverse.DataverseRequestServiceBean;
 import edu.harvard.iq.dataverse.DataverseServiceBean;
 import edu.harvard.iq.dataverse.DataverseSession;
 import edu.harvard.iq.dataverse.DvObject;
+import edu.harvard.iq.dataverse.PermissionCache;
+import edu.harvard.iq.dataverse.search.PermissionFilterCache;
 import edu.harvard.iq.dataverse.api.auth.AuthRequired;
 import edu.harvard.iq.dataverse.settings.JvmSettings;
 import edu.harvard.iq.dataverse.validation.EMailValidator;
@@ -46,6 +48,8 @@ import edu.harvard.iq.dataverse.dataaccess.DataAccessOption;
 import edu.harvard.iq.dataverse.dataaccess.StorageIO;
 import edu.harvard.iq.dataverse.engine.command.impl.AbstractSubmitToArchiveCommand;
 import edu.harvard.iq.dataverse.engine.command.impl.PublishDataverseCommand;
+import edu.harvard.iq.dataverse.export.ExportCache;
+import edu.harvard.iq.dataverse.export.ExportService;
 import edu.harvard.iq.dataverse.settings.Setting;
 import jakarta.json.Json;
 import jakarta.json.JsonArrayBuilder;
@@ -1348,6 +1352,18 @@ public class Admin extends AbstractApiBean {
 		}
 	}
 
+	@Path("permissionCache")
+	@GET
+	public Response getPermissionCacheStats() {
+		return ok(PermissionCache.getStats());
+	}
+
+	@Path("searchPermissionFilter")
+	@GET
+	public Response getSearchPermissionFilterStats() {
+		return ok(PermissionFilterCache.getStats());
+	}
+
 	@Path("assignee/{idtf}")
 	@GET
 	public Response findRoleAssignee(@PathParam("idtf") String idtf) {
@@ -2096,6 +2112,33 @@ public class Admin extends AbstractApiBean {
         return ok("metric cache " + name + " cleared.");
     }
 
+    @POST
+    @Path("/rebuildMetricsRollups")
+    public Response rebuildMetricsRollups() {
+        int rows = metricsSvc.refreshDownloadsRollup(true);
+        return ok("metrics rollups rebuilt (" + rows + " rows).");
+    }
+
+    @GET
+    @Path("/exportCache")
+    public Response getExportCacheStatistics() {
+        ExportCache exportCache = ExportService.getInstance().getExportCache();
+        return ok(Json.createObjectBuilder()
+                .add("enabled", exportCache.isEnabled())
+                .add("entries", exportCache.getEntryCount())
+                .add("size", exportCache.getSize())
+                .add("hits", exportCache.getHits())
+                .add("misses", exportCache.getMisses())
+                .add("evictions", exportCache.getEvictions()));
+    }
+
+    @DELETE
+    @Path("/exportCache")
+    public Response clearExportCache() {
+        ExportService.getInstance().getExportCache().clear();
+        return ok("export cache cleared.");
+    }
+
     @GET
 	@AuthRequired
     @Path("/dataverse/{alias}/addRoleAssignmentsToChildren")
@@ -122,7 +122,6 @@ import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
-import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import jakarta.servlet.http.HttpServletResponse;
@@ -1196,15 +1195,7 @@ public class Dataverses extends AbstractApiBean {
             public void write(OutputStream os) throws IOException,
                     WebApplicationException {
 
-                Map<Integer, Object> customQandAs = guestbookResponseService.mapCustomQuestionAnswersAsStrings(dv.getId(), gbId);
-                Map<Integer, String> datasetTitles = guestbookResponseService.mapDatasetTitles(dv.getId());
-
-                List<Object[]> guestbookResults = guestbookResponseService.getGuestbookResults(dv.getId(), gbId);
-                os.write("Guestbook, Dataset, Dataset PID, Date, Type, File Name, File Id, File PID, User Name, Email, Institution, Position, Custom Questions\n".getBytes());
-                for (Object[] result : guestbookResults) {
-                    StringBuilder sb = guestbookResponseService.convertGuestbookResponsesToCSV(customQandAs, datasetTitles, result);
-                    os.write(sb.toString().getBytes());
-                }
+                guestbookResponseService.streamResponsesByDataverseIdAndGuestbookId(os, dv.getId(), gbId);
             }
         };
         return Response.ok(stream).build();
@@ -14,6 +14,7 @@ import java.util.List;
 import java.util.logging.Logger;
 
 import edu.harvard.iq.dataverse.dataaccess.OptionalAccessService;
+import edu.harvard.iq.dataverse.dataaccess.TabularRowFilter;
 import jakarta.faces.context.FacesContext;
 import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.UriInfo;
@@ -47,6 +48,18 @@ public class DownloadInstance {
     }
      
 
+    // Optional row selection (row range and/or a predicate), for tabular 
+    // subsetting requests:
+    private TabularRowFilter rowFilter = null;
+    
+    public TabularRowFilter getRowFilter() {
+        return rowFilter;
+    }
+    
+    public void setRowFilter(TabularRowFilter rowFilter) {
+        this.rowFilter = rowFilter;
+    }
+
     private DownloadInfo downloadInfo = null;
     private String conversionParam = null;
     private String conversionParamValue = null;
@@ -320,6 +320,7 @@ public class DownloadInstanceWriter implements MessageBodyWriter<DownloadInstanc
                             if (di.getExtraArguments() != null && di.getExtraArguments().size() > 0) {
                                 logger.fine("processing extra arguments list of length " + di.getExtraArguments().size());
                                 List<Integer> variablePositionIndex = new ArrayList<>();
+                                List<DataVariable> subsetVariables = new ArrayList<>();
                                 String subsetVariableHeader = null;
                                 for (int i = 0; i < di.getExtraArguments().size(); i++) {
                                     DataVariable variable = (DataVariable) di.getExtraArguments().get(i);
@@ -327,6 +328,7 @@ public class DownloadInstanceWriter implements MessageBodyWriter<DownloadInstanc
                                         if (variable.getDataTable().getDataFile().getId().equals(dataFile.getId())) {
                                             logger.fine("adding variable id " + variable.getId() + " to the list.");
                                             variablePositionIndex.add(variable.getFileOrder());
+                                            subsetVariables.add(variable);
                                             if (subsetVariableHeader == null) {
                                                 subsetVariableHeader = variable.getName();
                                             } else {
@@ -343,8 +345,21 @@ public class DownloadInstanceWriter implements MessageBodyWriter<DownloadInstanc
 
                                     try {
                                         File tempSubsetFile = File.createTempFile("tempSubsetFile", ".tmp");
-                                        TabularSubsetGenerator tabularSubsetGenerator = new TabularSubsetGenerator();
-                                        tabularSubsetGenerator.subsetFile(storageIO.getInputStream(), tempSubsetFile.getAbsolutePath(), variablePositionIndex, dataFile.getDataTable().getCaseQuantity(), "\t");
+                                        if (di.getRowFilter() != null) {
+                                            // Read only the selected range of rows, 
+                                            // and/or only the rows that match the predicate:
+                                            di.getRowFilter().subsetFile(dataFile, subsetVariables, tempSubsetFile);
+                                        } else {
+                                            try {
+                                                // Read only the requested columns from 
+                                                // the columnar ("rotated") image of the file:
+                                                TabularSubsetGenerator.subsetFile(dataFile, subsetVariables, tempSubsetFile);
+                                            } catch (IOException ioex) {
+                                                logger.warning("Failed to subset the columnar image of datafile " + dataFile.getId() + " (" + ioex.getMessage() + "); parsing the full tab file instead.");
+                                                TabularSubsetGenerator tabularSubsetGenerator = new TabularSubsetGenerator();
+                                                tabularSubsetGenerator.subsetFile(storageIO.getInputStream(), tempSubsetFile.getAbsolutePath(), variablePositionIndex, dataFile.getDataTable().getCaseQuantity(), "\t");
+                                            }
+                                        }
 
                                         if (tempSubsetFile.exists()) {
                                             FileInputStream subsetStream = new FileInputStream(tempSubsetFile);
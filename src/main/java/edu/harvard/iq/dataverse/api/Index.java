@@ -36,6 +36,7 @@ import edu.harvard.iq.dataverse.search.SearchFields;
 import edu.harvard.iq.dataverse.search.SearchFilesServiceBean;
 import edu.harvard.iq.dataverse.search.SearchUtil;
 import edu.harvard.iq.dataverse.search.SolrIndexServiceBean;
+import edu.harvard.iq.dataverse.search.SolrClientService;
 import edu.harvard.iq.dataverse.search.SortBy;
 import edu.harvard.iq.dataverse.util.ConstraintViolationUtil;
 import edu.harvard.iq.dataverse.util.json.NullSafeJsonBuilder;
@@ -96,6 +97,8 @@ public class Index extends AbstractApiBean {
     DatasetFieldServiceBean datasetFieldService;
     @EJB
     SearchFilesServiceBean searchFilesService;
+    @EJB
+    SolrClientService solrClientService;
 
     public static String contentChanged = "contentChanged";
     public static String contentIndexed = "contentIndexed";
@@ -368,7 +371,8 @@ public class Index extends AbstractApiBean {
      * the database, and reports back the status by content type
      * @param sync - optional parameter, if set, then run the command 
      * synchronously. Else, return immediately, and report the status in server.log
-     * @return status report
+     * @return status report, along with the progress of the running (or last)
+     * "index all"
      */
     @GET
     @Path("status")
@@ -377,12 +381,17 @@ public class Index extends AbstractApiBean {
         if (sync != null) {
             try {
                 JsonObjectBuilder status = result.get();
+                status.add("reindexProgress", indexBatchService.getReindexProgress());
+                status.add("solrCommits", solrClientService.getCommitStats());
                 return ok(status);
             } catch (InterruptedException | ExecutionException e) {
                 return AbstractApiBean.error(Status.INTERNAL_SERVER_ERROR, "indexStatus method interrupted: " + e.getLocalizedMessage());
             }
         } else {
-            return ok("Index Status Batch Job initiated, check log for job status.");
+            return ok(Json.createObjectBuilder()
+                    .add("message", "Index Status Batch Job initiated, check log for job status.")
+                    .add("reindexProgress", indexBatchService.getReindexProgress())
+                    .add("solrCommits", solrClientService.getCommitStats()));
         }
     }
      /**
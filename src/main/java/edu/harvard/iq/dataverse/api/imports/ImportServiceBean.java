@@ -199,6 +199,24 @@ public class ImportServiceBean {
 
     @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
     public Dataset doImportHarvestedDataset(DataverseRequest dataverseRequest, HarvestingClient harvestingClient, String harvestIdentifier, String metadataFormat, File metadataFile, Date oaiDateStamp, PrintWriter cleanupLog) throws ImportException, IOException {
+        String metadata = new String(Files.readAllBytes(metadataFile.toPath()));
+        return importHarvestedDataset(dataverseRequest, harvestingClient, harvestIdentifier, metadataFormat, metadata, metadataFile, oaiDateStamp, cleanupLog);
+    }
+
+    /**
+     * Same as above, for a metadata record already in memory (e.g. one of the
+     * records of a harvested ListRecords response) rather than saved in a file.
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public Dataset doImportHarvestedDataset(DataverseRequest dataverseRequest, HarvestingClient harvestingClient, String harvestIdentifier, String metadataFormat, String metadata, Date oaiDateStamp, PrintWriter cleanupLog) throws ImportException, IOException {
+        return importHarvestedDataset(dataverseRequest, harvestingClient, harvestIdentifier, metadataFormat, metadata, null, oaiDateStamp, cleanupLog);
+    }
+
+    /**
+     * @param metadataFile the file the metadata was read from, if any; the 
+     * JSON produced from the metadata is saved next to it if the import fails
+     */
+    private Dataset importHarvestedDataset(DataverseRequest dataverseRequest, HarvestingClient harvestingClient, String harvestIdentifier, String metadataFormat, String metadata, File metadataFile, Date oaiDateStamp, PrintWriter cleanupLog) throws ImportException, IOException {
         if (harvestingClient == null || harvestingClient.getDataverse() == null) {
             throw new ImportException("importHarvestedDataset called wiht a null harvestingClient, or an invalid harvestingClient.");
         }
@@ -207,6 +225,8 @@ public class ImportServiceBean {
 
         DatasetDTO dsDTO = null;
         String json = null;
+        String metadataSource = metadataFile != null ? metadataFile.getAbsolutePath() : "the record " + harvestIdentifier;
+        String metadataName = metadataFile != null ? metadataFile.getName() : harvestIdentifier;
         
         // TODO: 
         // At the moment (4.5; the first official "export/harvest release"), there
@@ -221,29 +241,27 @@ public class ImportServiceBean {
         if ("ddi".equalsIgnoreCase(metadataFormat) || "oai_ddi".equals(metadataFormat) 
                 || metadataFormat.toLowerCase().matches("^oai_ddi.*")) {
             try {
-                String xmlToParse = new String(Files.readAllBytes(metadataFile.toPath()));
                 // TODO: 
                 // import type should be configurable - it should be possible to 
                 // select whether you want to harvest with or without files, 
                 // ImportType.HARVEST vs. ImportType.HARVEST_WITH_FILES
-                logger.fine("importing DDI "+metadataFile.getAbsolutePath());
-                dsDTO = importDDIService.doImport(ImportType.HARVEST, xmlToParse);
-            } catch (IOException | XMLStreamException | ImportException e) {
+                logger.fine("importing DDI "+metadataSource);
+                dsDTO = importDDIService.doImport(ImportType.HARVEST, metadata);
+            } catch (XMLStreamException | ImportException e) {
                 throw new ImportException("Failed to process DDI XML record: "+ e.getClass() + " (" + e.getMessage() + ")");
             }
         } else if ("dc".equalsIgnoreCase(metadataFormat) || "oai_dc".equals(metadataFormat)) {
-            logger.fine("importing DC "+metadataFile.getAbsolutePath());
+            logger.fine("importing DC "+metadataSource);
             try {
-                String xmlToParse = new String(Files.readAllBytes(metadataFile.toPath()));
-                dsDTO = importGenericService.processOAIDCxml(xmlToParse);
-            } catch (IOException | XMLStreamException e) {
+                dsDTO = importGenericService.processOAIDCxml(metadata);
+            } catch (XMLStreamException e) {
                 throw new ImportException("Failed to process Dublin Core XML record: "+ e.getClass() + " (" + e.getMessage() + ")");
             }
         } else if ("dataverse_json".equals(metadataFormat)) {
             // This is Dataverse metadata already formatted in JSON. 
             // Simply read it into a string, and pass to the final import further down:
-            logger.fine("Attempting to import custom dataverse metadata from file "+metadataFile.getAbsolutePath());
-            json = new String(Files.readAllBytes(metadataFile.toPath())); 
+            logger.fine("Attempting to import custom dataverse metadata from "+metadataSource);
+            json = metadata; 
         } else {
             throw new ImportException("Unsupported import metadata format: " + metadataFormat);
         }
@@ -302,7 +320,7 @@ public class ImportServiceBean {
                     boolean converted = false;
                     // TODO: Is this scrubbing something we want to continue doing? 
                     if (settingsService.isTrueForKey(SettingsServiceBean.Key.ScrubMigrationData, false)) {
-                        fixed = processMigrationValidationError(f, cleanupLog, metadataFile.getName());
+                        fixed = processMigrationValidationError(f, cleanupLog, metadataName);
                         converted = true;
                         if (fixed) {
                             Set<ConstraintViolation<DatasetFieldValue>> scrubbedViolations = validator.validate(f);
@@ -312,7 +330,7 @@ public class ImportServiceBean {
                         }
                     }
                     if (!fixed) {
-                        String msg = "Data modified - File: " + metadataFile.getName() + "; Field: " + f.getDatasetField().getDatasetFieldType().getDisplayName() + "; "
+                        String msg = "Data modified - File: " + metadataName + "; Field: " + f.getDatasetField().getDatasetFieldType().getDisplayName() + "; "
                                 + "Invalid value:  '" + f.getValue() + "'" + " Converted Value:'" + DatasetField.NA_VALUE + "'";
                         cleanupLog.println(msg);
                         f.setValue(DatasetField.NA_VALUE);
@@ -373,17 +391,24 @@ public class ImportServiceBean {
 
         } catch (JsonParseException | ImportException | CommandException ex) {
             logger.fine("Failed to import harvested dataset: " + ex.getClass() + ": " + ex.getMessage());
-            FileOutputStream savedJsonFileStream = new FileOutputStream(new File(metadataFile.getAbsolutePath() + ".json"));
-            byte[] jsonBytes = json.getBytes();
-            int i = 0;
-            while (i < jsonBytes.length) {
-                int chunkSize = i + 8192 <= jsonBytes.length ? 8192 : jsonBytes.length - i;
-                savedJsonFileStream.write(jsonBytes, i, chunkSize);
-                i += chunkSize;
-                savedJsonFileStream.flush();
+            if (metadataFile != null) {
+                File savedJsonFile = new File(metadataFile.getAbsolutePath() + ".json");
+                try (FileOutputStream savedJsonFileStream = new FileOutputStream(savedJsonFile)) {
+                    byte[] jsonBytes = json.getBytes();
+                    int i = 0;
+                    while (i < jsonBytes.length) {
+                        int chunkSize = i + 8192 <= jsonBytes.length ? 8192 : jsonBytes.length - i;
+                        savedJsonFileStream.write(jsonBytes, i, chunkSize);
+                        i += chunkSize;
+                        savedJsonFileStream.flush();
+                    }
+                }
+                logger.info("JSON produced saved in " + savedJsonFile.getAbsolutePath());
+            } else {
+                // (a record harvested with ListRecords has no file to save 
+                // the JSON next to; and a temp file would never be cleaned up)
+                logger.fine("JSON produced from " + metadataSource + ": " + json);
             }
-            savedJsonFileStream.close();
-            logger.info("JSON produced saved in " + metadataFile.getAbsolutePath() + ".json");
             throw new ImportException("Failed to import harvested dataset: " + ex.getClass() + " (" + ex.getMessage() + ")", ex);
         }
         return importedDataset;
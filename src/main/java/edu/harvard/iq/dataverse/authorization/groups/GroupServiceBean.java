@@ -228,23 +228,10 @@ public class GroupServiceBean {
      * @return {@code groups} and their ancestors.
      */
     public Set<Group> collectAncestors( Collection<Group> groups ) {
-        // Ancestors will be collected here.
-        Set<Group> retVal = new HashSet<>(); 
-        
-         // Groups whose ancestors were not collected yet.
-        Set<Group> perimeter = new HashSet<>(groups);
-        
-        while ( ! perimeter.isEmpty() ) {
-            Group next = perimeter.iterator().next();
-            retVal.add(next);
-            perimeter.remove(next);
-            explicitGroupService.findDirectlyContainingGroups(next).forEach( g -> {
-                if ( ! retVal.contains(g) ) {
-                    perimeter.add( g );
-                }
-            });
-        }
-        
+        Set<Group> retVal = new HashSet<>(groups);
+        // Only explicit groups can contain other groups, and all their
+        // memberships are looked up in a single pass.
+        retVal.addAll( explicitGroupService.findGroups(groups) );
         return retVal;
     }
     
@@ -66,7 +66,9 @@ import org.hibernate.validator.constraints.NotBlank;
                      + "WHERE cra=:roleAssigneeIdentifier"),
     @NamedQuery( name="ExplicitGroup.findByContainedExplicitGroupId",
                  query="SELECT eg FROM ExplicitGroup eg join eg.containedExplicitGroups ceg "
-                      +"WHERE ceg.id=:containedExplicitGroupId")
+                      +"WHERE ceg.id=:containedExplicitGroupId"),
+    @NamedQuery( name="ExplicitGroup.findByIds",
+                 query="SELECT eg FROM ExplicitGroup eg WHERE eg.id IN :ids")
 })
 @Entity
 @Table(indexes = {@Index(columnList="owner_id"),
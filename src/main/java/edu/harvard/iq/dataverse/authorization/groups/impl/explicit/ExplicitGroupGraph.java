@@ -0,0 +1,126 @@
+package edu.harvard.iq.dataverse.authorization.groups.impl.explicit;
+
+import edu.harvard.iq.dataverse.authorization.RoleAssignee;
+import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-memory snapshot of the explicit group memberships: which groups
+ * directly contain each group, authenticated user and other role assignee.
+ * Answers "which groups contain this assignee, directly or through other
+ * groups" without querying the database.
+ *
+ * Holds ids only, so that callers can load the groups into their own
+ * persistence context. The closure of each group is computed on first use and
+ * kept for the lifetime of the snapshot.
+ */
+class ExplicitGroupGraph {
+
+    private final Map<Long, Set<Long>> parentsByGroupId;
+    private final Map<Long, Set<Long>> groupIdsByUserId;
+    private final Map<String, Set<Long>> groupIdsByAssigneeIdentifier;
+    private final Map<Long, Set<Long>> closures = new ConcurrentHashMap<>();
+
+    private final long createTime = System.currentTimeMillis();
+
+    /**
+     * @param parentsByGroupId the ids of the groups directly containing each group
+     * @param groupIdsByUserId the ids of the groups directly containing each authenticated user
+     * @param groupIdsByAssigneeIdentifier the ids of the groups directly
+     * containing each of the other role assignees, by their identifier
+     */
+    ExplicitGroupGraph(Map<Long, Set<Long>> parentsByGroupId,
+            Map<Long, Set<Long>> groupIdsByUserId,
+            Map<String, Set<Long>> groupIdsByAssigneeIdentifier) {
+        this.parentsByGroupId = parentsByGroupId;
+        this.groupIdsByUserId = groupIdsByUserId;
+        this.groupIdsByAssigneeIdentifier = groupIdsByAssigneeIdentifier;
+    }
+
+    long getCreateTime() {
+        return createTime;
+    }
+
+    int size() {
+        return parentsByGroupId.size() + groupIdsByUserId.size() + groupIdsByAssigneeIdentifier.size();
+    }
+
+    /**
+     * @param ra a role assignee
+     * @return the ids of the groups {@code ra} is a direct member of
+     */
+    Set<Long> findDirectGroupIds(RoleAssignee ra) {
+        Set<Long> ids;
+        if (ra instanceof AuthenticatedUser) {
+            ids = groupIdsByUserId.get(((AuthenticatedUser) ra).getId());
+        } else if (ra instanceof ExplicitGroup) {
+            ids = parentsByGroupId.get(((ExplicitGroup) ra).getId());
+        } else {
+            ids = groupIdsByAssigneeIdentifier.get(ra.getIdentifier());
+        }
+        return (ids == null) ? Collections.emptySet() : Collections.unmodifiableSet(ids);
+    }
+
+    /**
+     * @param ras some role assignees
+     * @return the ids of the groups the assignees are members of, directly or
+     * through other groups
+     */
+    Set<Long> findGroupIds(Collection<? extends RoleAssignee> ras) {
+        Set<Long> seed = new HashSet<>();
+        for (RoleAssignee ra : ras) {
+            seed.addAll(findDirectGroupIds(ra));
+        }
+        return findClosure(seed);
+    }
+
+    /**
+     * @param seed ids of groups
+     * @return the ids in {@code seed}, of the groups containing them, of the
+     * groups containing those, and so on
+     */
+    Set<Long> findClosure(Collection<Long> seed) {
+        if (seed.isEmpty()) {
+            return Collections.emptySet();
+        }
+        if (seed.size() == 1) {
+            return closureOf(seed.iterator().next());
+        }
+        Set<Long> closure = new HashSet<>();
+        for (Long id : seed) {
+            closure.addAll(closureOf(id));
+        }
+        return closure;
+    }
+
+    private Set<Long> closureOf(Long groupId) {
+        Set<Long> closure = closures.get(groupId);
+        if (closure == null) {
+            Set<Long> ancestors = new HashSet<>();
+            Deque<Long> perimeter = new ArrayDeque<>();
+            perimeter.add(groupId);
+            // the visited check also protects against containment cycles
+            while (!perimeter.isEmpty()) {
+                Long next = perimeter.poll();
+                if (ancestors.add(next)) {
+                    Set<Long> closed = closures.get(next);
+                    if (closed != null) {
+                        ancestors.addAll(closed);
+                    } else {
+                        perimeter.addAll(parentsByGroupId.getOrDefault(next, Collections.emptySet()));
+                    }
+                }
+            }
+            closure = Collections.unmodifiableSet(ancestors);
+            closures.put(groupId, closure);
+        }
+        return closure;
+    }
+}
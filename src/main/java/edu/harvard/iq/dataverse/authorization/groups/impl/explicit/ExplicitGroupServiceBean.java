@@ -1,25 +1,31 @@
 package edu.harvard.iq.dataverse.authorization.groups.impl.explicit;
 
 import edu.harvard.iq.dataverse.DvObject;
+import edu.harvard.iq.dataverse.PermissionCache;
 import edu.harvard.iq.dataverse.RoleAssigneeServiceBean;
 import edu.harvard.iq.dataverse.authorization.RoleAssignee;
 import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
+import edu.harvard.iq.dataverse.util.TransactionUtil;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import static java.util.stream.Collectors.joining;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 import jakarta.inject.Named;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 
 /**
  * A bean providing the {@link ExplicitGroupProvider}s with container services,
@@ -37,33 +43,32 @@ public class ExplicitGroupServiceBean {
     
     @PersistenceContext(unitName = "VDCNet-ejbPU")
     protected EntityManager em;
+    
+    @Resource
+    TransactionSynchronizationRegistry transactionSynchronizationRegistry;
 	
     ExplicitGroupProvider provider;
     
     /**
-     * A PostgreSQL-specific query that returns a group and all the groups
-     * that contain it, and their parents too (-> recourse up teh containment
-     * hierarchy of the explicit groups). Takes the group id as a parameter.
+     * The containment graph is rebuilt after this long even if nothing was
+     * changed through this bean, in case the memberships were changed
+     * elsewhere (e.g. on another server).
+     */
+    private static final long GRAPH_MAX_AGE_MS = 60 * 1000L;
+    
+    /**
+     * The memberships of all the explicit groups, shared by all the instances
+     * of the bean. Dropped whenever a membership may have changed (and again
+     * once the transaction changing it has completed), and rebuilt on the
+     * next lookup.
      */
-    private static final String FIND_ALL_PARENTS_QUERY_TEMPLATE = "WITH RECURSIVE\n" +
-        "explicit_group_graph AS (\n" +
-        "  SELECT\n" +
-        "     eg.id as id,\n" +
-        "     ee.explicitgroup_id as parent_group_id\n" +
-        "  FROM explicitgroup eg \n" +
-        "    LEFT JOIN explicitgroup_explicitgroup ee \n" +
-        "      ON eg.id=ee.containedexplicitgroups_id\n" +
-        "),\n" +
-        "parents AS (\n" +
-        "  SELECT * FROM explicit_group_graph\n" +
-        "  WHERE \n" +
-        "    id IN (@IDS)\n" +
-        "  UNION ALL\n" +
-        "  SELECT egg.*\n" +
-        "  FROM explicit_group_graph egg, parents\n" +
-        "  WHERE parents.parent_group_id = egg.id\n" +
-        ") SELECT * from explicitgroup \n" +
-        "WHERE id IN (SELECT distinct id FROM parents);";
+    private static volatile ExplicitGroupGraph graph = null;
+    
+    /**
+     * Counts the invalidations of {@link #graph}, so that a graph loaded from
+     * what was read before one is not kept.
+     */
+    private static long graphGeneration = 0;
     
     @PostConstruct
     void setup() {
@@ -74,7 +79,21 @@ public class ExplicitGroupServiceBean {
         return provider;
     }
     
+    /**
+     * Drops the cached group memberships, right away for the rest of the
+     * current transaction, and again once it has completed: until then,
+     * other threads still read (and could cache) the previous memberships.
+     * To be called by code that changes the memberships without going
+     * through this bean.
+     */
+    public void invalidateMemberships() {
+        dropGraph();
+        PermissionCache.invalidateAll(transactionSynchronizationRegistry);
+        TransactionUtil.afterCompletion(transactionSynchronizationRegistry, ExplicitGroupServiceBean::dropGraph);
+    }
+    
     public ExplicitGroup persist( ExplicitGroup g ) {
+        invalidateMemberships();
         if ( g.getId() == null ) {
             em.persist( g );
             return g;
@@ -125,6 +144,7 @@ public class ExplicitGroupServiceBean {
     }
 
     public void removeGroup(ExplicitGroup explicitGroup) {
+        invalidateMemberships();
         em.remove( explicitGroup );
     }
     
@@ -151,28 +171,7 @@ public class ExplicitGroupServiceBean {
      * @see #findGroups(edu.harvard.iq.dataverse.authorization.RoleAssignee)
      */
     public Set<ExplicitGroup> findDirectlyContainingGroups( RoleAssignee ra ) {
-        if ( ra instanceof AuthenticatedUser ) {
-            return provider.updateProvider(
-                    new HashSet<>(
-                            em.createNamedQuery("ExplicitGroup.findByAuthenticatedUserIdentifier", ExplicitGroup.class)
-                              .setParameter("authenticatedUserIdentifier", ra.getIdentifier().substring(1))
-                              .getResultList()
-                  ));
-        } else if ( ra instanceof ExplicitGroup ) {
-            return provider.updateProvider(
-                    new HashSet<>(
-                            em.createNamedQuery("ExplicitGroup.findByContainedExplicitGroupId", ExplicitGroup.class)
-                              .setParameter("containedExplicitGroupId", ((ExplicitGroup) ra).getId())
-                              .getResultList()
-                  ));
-        } else {
-            return provider.updateProvider(
-                    new HashSet<>(
-                            em.createNamedQuery("ExplicitGroup.findByRoleAssigneeIdentifier", ExplicitGroup.class)
-                              .setParameter("roleAssigneeIdentifier", ra.getIdentifier())
-                              .getResultList()
-                  ));
-        }
+        return loadGroups(getGraph().findDirectGroupIds(ra));
     }
 
     
@@ -182,7 +181,17 @@ public class ExplicitGroupServiceBean {
      * @return set of the explicit groups that contain {@code ra}.
      */
     public Set<ExplicitGroup> findGroups( RoleAssignee ra ) {
-        return findClosure(findDirectlyContainingGroups(ra));
+        return loadGroups(getGraph().findGroupIds(Collections.singleton(ra)));
+    }
+    
+    /**
+     * Finds all the explicit groups any of {@code ras} is a member of, directly
+     * or through other groups.
+     * @param ras the role assignees whose memberships we seek
+     * @return set of the explicit groups that contain any of {@code ras}.
+     */
+    public Set<ExplicitGroup> findGroups( Collection<? extends RoleAssignee> ras ) {
+        return loadGroups(getGraph().findGroupIds(ras));
     }
     
     /**
@@ -255,14 +264,75 @@ public class ExplicitGroupServiceBean {
         
         if ( seed.isEmpty() ) return Collections.emptySet();
         
-        String ids = seed.stream().map(eg->Long.toString(eg.getId())).collect( joining(",") );
+        Set<Long> ids = seed.stream().map(ExplicitGroup::getId).collect( Collectors.toSet() );
+        return loadGroups(getGraph().findClosure(ids));
+    }
+    
+    private Set<ExplicitGroup> loadGroups( Set<Long> ids ) {
+        if ( ids.isEmpty() ) {
+            return Collections.emptySet();
+        }
+        return provider.updateProvider(
+                new HashSet<>(
+                        em.createNamedQuery("ExplicitGroup.findByIds", ExplicitGroup.class)
+                          .setParameter("ids", ids)
+                          .getResultList()
+              ));
+    }
+    
+    private ExplicitGroupGraph getGraph() {
+        ExplicitGroupGraph current = graph;
+        if ( current == null || System.currentTimeMillis() - current.getCreateTime() > GRAPH_MAX_AGE_MS ) {
+            long generation = getGraphGeneration();
+            current = loadGraph();
+            logger.fine("Loaded " + current.size() + " explicit group memberships");
+            setGraph(current, generation);
+        }
+        return current;
+    }
+    
+    private static synchronized long getGraphGeneration() {
+        return graphGeneration;
+    }
+    
+    private static synchronized void setGraph( ExplicitGroupGraph loaded, long generation ) {
+        if ( generation == graphGeneration ) {
+            graph = loaded;
+        }
+    }
+    
+    private static synchronized void dropGraph() {
+        graphGeneration++;
+        graph = null;
+    }
+    
+    private ExplicitGroupGraph loadGraph() {
+        Map<Long, Set<Long>> parentsByGroupId = new HashMap<>();
+        for ( Object[] row : nativeRows("SELECT explicitgroup_id, containedexplicitgroups_id FROM explicitgroup_explicitgroup") ) {
+            parentsByGroupId.computeIfAbsent(((Number) row[1]).longValue(), id -> new HashSet<>())
+                    .add(((Number) row[0]).longValue());
+        }
+        
+        Map<Long, Set<Long>> groupIdsByUserId = new HashMap<>();
+        for ( Object[] row : nativeRows("SELECT explicitgroup_id, containedauthenticatedusers_id FROM explicitgroup_authenticateduser") ) {
+            groupIdsByUserId.computeIfAbsent(((Number) row[1]).longValue(), id -> new HashSet<>())
+                    .add(((Number) row[0]).longValue());
+        }
         
-        // PSQL driver has issues with arrays and collections as parameters, so we're using 
-        // string manipulation to create the query here. Not ideal, but seems to be
-        // the only solution at the Java Persistence level (i.e. without downcasting to org.postgresql.*)
-        String sqlCode = FIND_ALL_PARENTS_QUERY_TEMPLATE.replace("@IDS", ids);
-        return new HashSet<>(em.createNativeQuery(sqlCode, ExplicitGroup.class)
-            .getResultList());
+        Map<String, Set<Long>> groupIdsByAssigneeIdentifier = new HashMap<>();
+        for ( Object[] row : nativeRows("SELECT explicitgroup_id, containedroleassignees FROM explicitgroup_containedroleassignees") ) {
+            if ( row[0] != null && row[1] != null ) {
+                groupIdsByAssigneeIdentifier.computeIfAbsent((String) row[1], id -> new HashSet<>())
+                        .add(((Number) row[0]).longValue());
+            }
+        }
+        
+        return new ExplicitGroupGraph(parentsByGroupId, groupIdsByUserId, groupIdsByAssigneeIdentifier);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private List<Object[]> nativeRows( String sql ) {
+        return em.createNativeQuery(sql).getResultList();
     }
     
     /**
@@ -272,6 +342,7 @@ public class ExplicitGroupServiceBean {
      * @param assignee User or Group 
      */
     public void revokeAllGroupsForAssignee(RoleAssignee assignee) {
+        invalidateMemberships();
         if (assignee instanceof AuthenticatedUser) {
             em.createNativeQuery("DELETE FROM explicitgroup_authenticateduser WHERE containedauthenticatedusers_id=" + ((AuthenticatedUser) assignee).getId()).executeUpdate();
         } else if (assignee instanceof ExplicitGroup) {
@@ -1,21 +1,24 @@
 package edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress;
 
+import edu.harvard.iq.dataverse.PermissionCache;
 import edu.harvard.iq.dataverse.RoleAssigneeServiceBean;
 import edu.harvard.iq.dataverse.actionlogging.ActionLogRecord;
 import edu.harvard.iq.dataverse.actionlogging.ActionLogServiceBean;
-import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IPv4Address;
-import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IPv6Address;
 import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IpAddress;
+import edu.harvard.iq.dataverse.util.TransactionUtil;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.logging.Logger;
+import jakarta.annotation.Resource;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 import jakarta.inject.Named;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 
 /**
  * Provides CRUD tools to efficiently manage IP groups in a Java EE container.
@@ -37,12 +40,35 @@ public class IpGroupsServiceBean {
     @EJB
     RoleAssigneeServiceBean roleAssigneeSvc;
     
+    @Resource
+    TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+    
+    /**
+     * How long the range index is used before being rebuilt anyway, in case
+     * the groups were changed elsewhere (e.g. on another server).
+     */
+    private static final long RANGE_INDEX_MAX_AGE_MS = 60 * 1000L;
+    
+    /**
+     * The ranges of all the IP groups, shared by all the instances of the
+     * bean. Dropped whenever a group is stored or deleted (and again once the
+     * transaction doing so has completed), and rebuilt on the next lookup.
+     */
+    private static volatile IpRangeIndex rangeIndex = null;
+    
+    /**
+     * Counts the invalidations of {@link #rangeIndex}, so that an index built
+     * from what was read before one is not kept.
+     */
+    private static long rangeIndexGeneration = 0;
+    
     /**
      * Stores (inserts/updates) the passed IP group.
      * @param grp The group to store.
      * @return Managed version of the group. The provider might be un-set.
      */
     public IpGroup store( IpGroup grp ) {
+        invalidateRangeIndex();
         ActionLogRecord alr = new ActionLogRecord(ActionLogRecord.ActionType.GlobalGroups, "ipCreate");
         if ( grp.getGroupProvider() != null ) {
             alr.setInfo( grp.getIdentifier());
@@ -97,27 +123,62 @@ public class IpGroupsServiceBean {
         return em.createNamedQuery("IpGroup.findAll", IpGroup.class).getResultList();
     }
     
+    /**
+     * Finds the groups containing the address, in the in-memory index of the
+     * ranges of all the groups (see {@link IpRangeIndex}) rather than in the
+     * database.
+     * @param ipa the address
+     * @return the groups with a range containing {@code ipa}
+     */
     public Set<IpGroup> findAllIncludingIp( IpAddress ipa ) {
-        if ( ipa instanceof IPv4Address ) {
-            IPv4Address ip4 = (IPv4Address) ipa;
-            List<IpGroup> groupList = em.createNamedQuery("IPv4Range.findGroupsContainingAddressAsLong", IpGroup.class)
-                    .setParameter("addressAsLong", ip4.toBigInteger()).getResultList();
-            return new HashSet<>(groupList);
-
-        } else if ( ipa instanceof IPv6Address ) {
-            IPv6Address ip6 = (IPv6Address) ipa;
-            long[] ip6arr = ip6.toLongArray();
-            List<IpGroup> groupList = em.createNamedQuery("IPv6Range.findGroupsContainingABCD", IpGroup.class)
-                    .setParameter("a", ip6arr[0])
-                    .setParameter("b", ip6arr[1])
-                    .setParameter("c", ip6arr[2])
-                    .setParameter("d", ip6arr[3])
-                    .getResultList();
-            return new HashSet<>(groupList);
-
-        } else {
-            throw new IllegalArgumentException( "Unknown IpAddress type: " + ipa.getClass() + " (for IpAddress:" + ipa + ")" );
+        Set<Long> groupIds = getRangeIndex().findGroupIdsContaining(ipa);
+        if ( groupIds.isEmpty() ) {
+            return Collections.emptySet();
         }
+        Set<IpGroup> groups = new HashSet<>();
+        for ( Long groupId : groupIds ) {
+            IpGroup group = em.find(IpGroup.class, groupId);
+            if ( group != null ) {
+                groups.add(group);
+            }
+        }
+        return groups;
+    }
+    
+    private IpRangeIndex getRangeIndex() {
+        IpRangeIndex index = rangeIndex;
+        if ( index == null || System.currentTimeMillis() - index.getCreateTime() > RANGE_INDEX_MAX_AGE_MS ) {
+            long generation = getRangeIndexGeneration();
+            index = new IpRangeIndex(findAll());
+            logger.fine("Indexed " + index.size() + " IP group ranges");
+            setRangeIndex(index, generation);
+        }
+        return index;
+    }
+    
+    private static synchronized long getRangeIndexGeneration() {
+        return rangeIndexGeneration;
+    }
+    
+    private static synchronized void setRangeIndex( IpRangeIndex index, long generation ) {
+        if ( generation == rangeIndexGeneration ) {
+            rangeIndex = index;
+        }
+    }
+    
+    private static synchronized void dropRangeIndex() {
+        rangeIndexGeneration++;
+        rangeIndex = null;
+    }
+    
+    /**
+     * Drops the range index and the cached permissions right away, for the
+     * rest of the current transaction, and again once it has completed.
+     */
+    private void invalidateRangeIndex() {
+        dropRangeIndex();
+        PermissionCache.invalidateAll(transactionSynchronizationRegistry);
+        TransactionUtil.afterCompletion(transactionSynchronizationRegistry, IpGroupsServiceBean::dropRangeIndex);
     }
     
     /**
@@ -131,6 +192,7 @@ public class IpGroupsServiceBean {
         alr.setInfo( grp.getIdentifier() );
         if ( roleAssigneeSvc.getAssignmentsFor(grp.getIdentifier()).isEmpty() ) {
             em.remove( grp );
+            invalidateRangeIndex();
             actionLogSvc.log(alr);
             
         } else {
@@ -0,0 +1,223 @@
+package edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress;
+
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IPv4Address;
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IPv4Range;
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IPv6Address;
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IPv6Range;
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IpAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An immutable, in-memory index of the address ranges of a set of IP groups,
+ * for finding the groups containing an address without querying the database.
+ * Only the ids of the groups are kept, not the (detached) groups themselves.
+ *
+ * The ranges are sorted by their bottom address, next to the highest top
+ * address of the ranges up to each position. A lookup is then a binary search
+ * for the last range starting at or below the address, followed by a backwards
+ * scan that stops as soon as no earlier range can reach the address. Nothing
+ * is allocated unless some group contains the address.
+ *
+ * IPv4 addresses are compared as longs, IPv6 addresses as pairs of unsigned
+ * longs (the high and low 64 bits).
+ */
+class IpRangeIndex {
+
+    private final long[] v4Bottoms;
+    private final long[] v4Tops;
+    private final long[] v4MaxTops;
+    private final long[] v4GroupIds;
+
+    private final long[] v6BottomsHi;
+    private final long[] v6BottomsLo;
+    private final long[] v6TopsHi;
+    private final long[] v6TopsLo;
+    private final long[] v6MaxTopsHi;
+    private final long[] v6MaxTopsLo;
+    private final long[] v6GroupIds;
+
+    private final long createTime = System.currentTimeMillis();
+
+    private static class Entry {
+
+        final long bottomHi;
+        final long bottomLo;
+        final long topHi;
+        final long topLo;
+        final long groupId;
+
+        Entry(long bottomHi, long bottomLo, long topHi, long topLo, long groupId) {
+            this.bottomHi = bottomHi;
+            this.bottomLo = bottomLo;
+            this.topHi = topHi;
+            this.topLo = topLo;
+            this.groupId = groupId;
+        }
+    }
+
+    /**
+     * @param groups persisted groups; the ones without an id are left out
+     */
+    IpRangeIndex(Collection<IpGroup> groups) {
+        List<Entry> v4 = new ArrayList<>();
+        List<Entry> v6 = new ArrayList<>();
+        for (IpGroup group : groups) {
+            if (group.getId() == null) {
+                continue;
+            }
+            long groupId = group.getId();
+            if (group.getIpv4Ranges() != null) {
+                for (IPv4Range range : group.getIpv4Ranges()) {
+                    v4.add(new Entry(0L, v4(range.getBottom()), 0L, v4(range.getTop()), groupId));
+                }
+            }
+            if (group.getIpv6Ranges() != null) {
+                for (IPv6Range range : group.getIpv6Ranges()) {
+                    IPv6Address bottom = range.getBottom();
+                    IPv6Address top = range.getTop();
+                    v6.add(new Entry(hi(bottom), lo(bottom), hi(top), lo(top), groupId));
+                }
+            }
+        }
+        Comparator<Entry> byBottom = (e1, e2) -> compare(e1.bottomHi, e1.bottomLo, e2.bottomHi, e2.bottomLo);
+        v4.sort(byBottom);
+        v6.sort(byBottom);
+
+        v4Bottoms = new long[v4.size()];
+        v4Tops = new long[v4.size()];
+        v4MaxTops = new long[v4.size()];
+        v4GroupIds = new long[v4.size()];
+        long maxTop = Long.MIN_VALUE;
+        for (int i = 0; i < v4.size(); i++) {
+            Entry e = v4.get(i);
+            v4Bottoms[i] = e.bottomLo;
+            v4Tops[i] = e.topLo;
+            maxTop = Math.max(maxTop, e.topLo);
+            v4MaxTops[i] = maxTop;
+            v4GroupIds[i] = e.groupId;
+        }
+
+        v6BottomsHi = new long[v6.size()];
+        v6BottomsLo = new long[v6.size()];
+        v6TopsHi = new long[v6.size()];
+        v6TopsLo = new long[v6.size()];
+        v6MaxTopsHi = new long[v6.size()];
+        v6MaxTopsLo = new long[v6.size()];
+        v6GroupIds = new long[v6.size()];
+        long maxTopHi = 0L;
+        long maxTopLo = 0L;
+        for (int i = 0; i < v6.size(); i++) {
+            Entry e = v6.get(i);
+            v6BottomsHi[i] = e.bottomHi;
+            v6BottomsLo[i] = e.bottomLo;
+            v6TopsHi[i] = e.topHi;
+            v6TopsLo[i] = e.topLo;
+            if (i == 0 || compare(e.topHi, e.topLo, maxTopHi, maxTopLo) > 0) {
+                maxTopHi = e.topHi;
+                maxTopLo = e.topLo;
+            }
+            v6MaxTopsHi[i] = maxTopHi;
+            v6MaxTopsLo[i] = maxTopLo;
+            v6GroupIds[i] = e.groupId;
+        }
+    }
+
+    long getCreateTime() {
+        return createTime;
+    }
+
+    int size() {
+        return v4GroupIds.length + v6GroupIds.length;
+    }
+
+    /**
+     * @param ipa the address
+     * @return the ids of the groups with a range containing {@code ipa}
+     */
+    Set<Long> findGroupIdsContaining(IpAddress ipa) {
+        if (ipa instanceof IPv4Address) {
+            return findGroupIdsContainingV4(v4((IPv4Address) ipa));
+        } else if (ipa instanceof IPv6Address) {
+            IPv6Address ip6 = (IPv6Address) ipa;
+            return findGroupIdsContainingV6(hi(ip6), lo(ip6));
+        } else {
+            throw new IllegalArgumentException( "Unknown IpAddress type: " + ipa.getClass() + " (for IpAddress:" + ipa + ")" );
+        }
+    }
+
+    private Set<Long> findGroupIdsContainingV4(long address) {
+        // the last range with bottom <= address
+        int low = 0;
+        int high = v4Bottoms.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (v4Bottoms[mid] <= address) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        Set<Long> groupIds = null;
+        for (int i = high; i >= 0 && v4MaxTops[i] >= address; i--) {
+            if (v4Tops[i] >= address) {
+                if (groupIds == null) {
+                    groupIds = new HashSet<>();
+                }
+                groupIds.add(v4GroupIds[i]);
+            }
+        }
+        return (groupIds == null) ? Collections.emptySet() : groupIds;
+    }
+
+    private Set<Long> findGroupIdsContainingV6(long addressHi, long addressLo) {
+        int low = 0;
+        int high = v6BottomsHi.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (compare(v6BottomsHi[mid], v6BottomsLo[mid], addressHi, addressLo) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        Set<Long> groupIds = null;
+        for (int i = high; i >= 0 && compare(v6MaxTopsHi[i], v6MaxTopsLo[i], addressHi, addressLo) >= 0; i--) {
+            if (compare(v6TopsHi[i], v6TopsLo[i], addressHi, addressLo) >= 0) {
+                if (groupIds == null) {
+                    groupIds = new HashSet<>();
+                }
+                groupIds.add(v6GroupIds[i]);
+            }
+        }
+        return (groupIds == null) ? Collections.emptySet() : groupIds;
+    }
+
+    private static long v4(IPv4Address ip4) {
+        return ((long) ip4.get(0) << 24) | (ip4.get(1) << 16) | (ip4.get(2) << 8) | ip4.get(3);
+    }
+
+    /**
+     * @return the first four 16-bit words of the address
+     */
+    private static long hi(IPv6Address ip6) {
+        return ((long) ip6.get(0) << 48) | ((long) ip6.get(1) << 32) | ((long) ip6.get(2) << 16) | ip6.get(3);
+    }
+
+    /**
+     * @return the last four 16-bit words of the address
+     */
+    private static long lo(IPv6Address ip6) {
+        return ((long) ip6.get(4) << 48) | ((long) ip6.get(5) << 32) | ((long) ip6.get(6) << 16) | ip6.get(7);
+    }
+
+    private static int compare(long hi1, long lo1, long hi2, long lo2) {
+        int cmp = Long.compareUnsigned(hi1, hi2);
+        return (cmp != 0) ? cmp : Long.compareUnsigned(lo1, lo2);
+    }
+}
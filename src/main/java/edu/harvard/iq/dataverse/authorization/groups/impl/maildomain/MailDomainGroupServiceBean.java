@@ -1,5 +1,6 @@
 package edu.harvard.iq.dataverse.authorization.groups.impl.maildomain;
 
+import edu.harvard.iq.dataverse.PermissionCache;
 import edu.harvard.iq.dataverse.actionlogging.ActionLogRecord;
 import edu.harvard.iq.dataverse.actionlogging.ActionLogServiceBean;
 import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
@@ -10,12 +11,14 @@ import java.util.logging.Logger;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
 import jakarta.ejb.*;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 import jakarta.ws.rs.NotFoundException;
 
 /**
@@ -32,6 +35,9 @@ public class MailDomainGroupServiceBean {
     
     @PersistenceContext(unitName = "VDCNet-ejbPU")
     protected EntityManager em;
+
+    @Resource
+    TransactionSynchronizationRegistry transactionSynchronizationRegistry;
     
     @Inject
     ConfirmEmailServiceBean confirmEmailSvc;
@@ -141,6 +147,7 @@ public class MailDomainGroupServiceBean {
      */
     @Lock(LockType.WRITE)
     public MailDomainGroup saveOrUpdate(Optional<String> groupAlias, MailDomainGroup grp ) {
+        PermissionCache.invalidateAll(transactionSynchronizationRegistry);
         ActionLogRecord alr = new ActionLogRecord(ActionLogRecord.ActionType.GlobalGroups, "mailDomainCreate");
         alr.setInfo(grp.getIdentifier());
         
@@ -184,6 +191,7 @@ public class MailDomainGroupServiceBean {
     
         Optional<MailDomainGroup> tbd = findByAlias(groupAlias);
         em.remove(tbd.orElseThrow(() -> new NotFoundException("Cannot find a group with alias "+groupAlias)));
+        PermissionCache.invalidateAll(transactionSynchronizationRegistry);
         actionLogSvc.log( alr );
     }
     
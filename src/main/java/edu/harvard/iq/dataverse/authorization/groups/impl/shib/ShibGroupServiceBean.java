@@ -1,5 +1,6 @@
 package edu.harvard.iq.dataverse.authorization.groups.impl.shib;
 
+import edu.harvard.iq.dataverse.PermissionCache;
 import edu.harvard.iq.dataverse.RoleAssigneeServiceBean;
 import edu.harvard.iq.dataverse.RoleAssignment;
 import edu.harvard.iq.dataverse.actionlogging.ActionLogRecord;
@@ -11,6 +12,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.logging.Logger;
+import jakarta.annotation.Resource;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 import jakarta.inject.Named;
@@ -19,6 +21,7 @@ import jakarta.persistence.NoResultException;
 import jakarta.persistence.NonUniqueResultException;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 
 /**
  * @todo Consider merging this bean into the newer and more generic
@@ -33,6 +36,9 @@ public class ShibGroupServiceBean {
     @PersistenceContext(unitName = "VDCNet-ejbPU")
     private EntityManager em;
 
+    @Resource
+    TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
     @EJB
     RoleAssigneeServiceBean roleAssigneeSvc;
     @EJB
@@ -65,6 +71,7 @@ public class ShibGroupServiceBean {
 
         ShibGroup institutionalGroup = new ShibGroup(name, shibIdpAttribute, shibIdp, groupService.getShibGroupProvider());
         em.persist(institutionalGroup);
+        PermissionCache.invalidateAll(transactionSynchronizationRegistry);
         em.flush();
         ShibGroup merged = em.merge(institutionalGroup);
 
@@ -102,6 +109,7 @@ public class ShibGroupServiceBean {
         List<RoleAssignment> assignments = roleAssigneeSvc.getAssignmentsFor(doomed.getIdentifier());
         if (assignments.isEmpty()) {
             em.remove(doomed);
+            PermissionCache.invalidateAll(transactionSynchronizationRegistry);
             actionLogSvc.log(alr);
             return true;
         } else {
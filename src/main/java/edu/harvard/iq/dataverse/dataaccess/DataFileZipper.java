@@ -19,16 +19,26 @@
 */
 package edu.harvard.iq.dataverse.dataaccess;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.IOException;
 
 
 import edu.harvard.iq.dataverse.DataFile;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -43,6 +53,14 @@ public class DataFileZipper {
     private static final Logger logger = Logger.getLogger(DataFileZipper.class.getCanonicalName());
     private static final String MANIFEST_FILE_NAME = "MANIFEST.TXT";
     
+    // Defaults for fetching the files of multi-file downloads concurrently:
+    public static final int DEFAULT_PARALLELISM = 4;
+    public static final long DEFAULT_BUFFER_SIZE = 64L * 1024 * 1024;
+    
+    // Shared by all the zip downloads:
+    private static ExecutorService prefetchExecutor;
+    private static Semaphore prefetchBudget;
+    
     private OutputStream outputStream = null; 
     private ZipOutputStream zipOutputStream = null;
     
@@ -98,8 +116,133 @@ public class DataFileZipper {
             openZipStream();
         }
 
-        boolean createManifest = fileManifest != null;
+        StorageIO<DataFile> accessObject = openAccessObject(dataFile, getOriginal);
+
+        if (accessObject != null) {
+            return addToZipStream(dataFile, accessObject, accessObject.getInputStream());
+        }
+        return 0L;
+    }
+    
+    /**
+     * Adds the files to the zip stream, in the order listed, while fetching 
+     * the next files from storage concurrently, on a thread pool shared by 
+     * all the zip downloads. The prefetched files are buffered in memory, 
+     * within a byte budget that is also shared by all the downloads; when 
+     * the next file does not fit in what is left of it, it is not prefetched, 
+     * but streamed straight into the zip, once all the files before it are 
+     * written.
+     * 
+     * @return the total number of bytes added
+     */
+    public long addFilesToZipStream(List<DataFile> dataFiles, boolean getOriginal) throws IOException {
+        if (zipOutputStream == null) {
+            openZipStream();
+        }
+        
+        long byteSize = 0L;
+        
+        int parallelism = getPrefetchParallelism();
+        if (parallelism < 2) {
+            for (DataFile dataFile : dataFiles) {
+                byteSize += addFileToZipStream(dataFile, getOriginal);
+            }
+            return byteSize;
+        }
         
+        ExecutorService executor = getPrefetchExecutor();
+        Semaphore budget = getPrefetchBudget();
+        Deque<PrefetchedFile> prefetchQueue = new ArrayDeque<>();
+        int next = 0; 
+        
+        try {
+            while (next < dataFiles.size() || !prefetchQueue.isEmpty()) {
+                // Start fetching as many of the next files as the limits allow:
+                while (next < dataFiles.size() && prefetchQueue.size() < parallelism) {
+                    DataFile dataFile = dataFiles.get(next);
+                    long expectedSize = getExpectedSize(dataFile, getOriginal);
+                    if (expectedSize > Integer.MAX_VALUE || !budget.tryAcquire((int) expectedSize)) {
+                        break;
+                    }
+                    // The DataFile is only used here, in the request thread; 
+                    // the fetching thread only reads the opened StorageIO:
+                    StorageIO<DataFile> accessObject;
+                    try {
+                        accessObject = openAccessObject(dataFile, getOriginal);
+                    } catch (IOException | RuntimeException ex) {
+                        budget.release((int) expectedSize);
+                        throw ex;
+                    }
+                    Future<byte[]> content = accessObject == null ? null : executor.submit(() -> fetchFile(accessObject));
+                    prefetchQueue.add(new PrefetchedFile(dataFile, accessObject, (int) expectedSize, content));
+                    next++;
+                }
+                
+                if (prefetchQueue.isEmpty()) {
+                    // The next file does not fit in the buffer budget:
+                    byteSize += addFileToZipStream(dataFiles.get(next++), getOriginal);
+                    continue;
+                }
+                
+                PrefetchedFile prefetchedFile = prefetchQueue.poll();
+                try {
+                    if (prefetchedFile.accessObject != null) {
+                        byte[] content = prefetchedFile.get();
+                        byteSize += addToZipStream(prefetchedFile.dataFile, prefetchedFile.accessObject, 
+                                content == null ? null : new ByteArrayInputStream(content));
+                    }
+                } finally {
+                    budget.release(prefetchedFile.reservedSize);
+                }
+            }
+        } finally {
+            for (PrefetchedFile prefetchedFile : prefetchQueue) {
+                if (prefetchedFile.content != null) {
+                    prefetchedFile.content.cancel(true);
+                }
+                budget.release(prefetchedFile.reservedSize);
+            }
+        }
+        return byteSize;
+    }
+    
+    private static int getPrefetchParallelism() {
+        return JvmSettings.FILES_ZIP_DOWNLOAD_THREADS.lookupOptional(Integer.class).orElse(DEFAULT_PARALLELISM);
+    }
+    
+    private static synchronized ExecutorService getPrefetchExecutor() {
+        if (prefetchExecutor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            prefetchExecutor = Executors.newFixedThreadPool(Math.max(1, getPrefetchParallelism()), runnable -> {
+                Thread thread = new Thread(runnable, "zip-download-prefetch-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return prefetchExecutor;
+    }
+    
+    /**
+     * Stops the prefetching threads; called by DataFileZipperHelper when the 
+     * application is undeployed, since the threads would otherwise keep its 
+     * classloader alive. 
+     */
+    static synchronized void shutdownPrefetchExecutor() {
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdownNow();
+            prefetchExecutor = null;
+        }
+    }
+    
+    private static synchronized Semaphore getPrefetchBudget() {
+        if (prefetchBudget == null) {
+            long bufferSize = JvmSettings.FILES_ZIP_DOWNLOAD_BUFFER_SIZE.lookupOptional(Long.class).orElse(DEFAULT_BUFFER_SIZE);
+            prefetchBudget = new Semaphore((int) Math.min(Math.max(0, bufferSize), Integer.MAX_VALUE));
+        }
+        return prefetchBudget;
+    }
+    
+    private StorageIO<DataFile> openAccessObject(DataFile dataFile, boolean getOriginal) throws IOException {
         DataAccessRequest daReq = new DataAccessRequest();
         StorageIO<DataFile> accessObject = DataAccess.getStorageIO(dataFile, daReq);
 
@@ -116,93 +259,115 @@ public class DataFileZipper {
             if(!gotOriginal) { //if we didn't get this from sof.retreive we have to open it
                 accessObject.open();
             }
+        }
+        return accessObject;
+    }
+    
+    /*
+     * Runs in the prefetching threads: reads the opened file into memory 
+     * (the content is left null if the file could not be read). 
+     */
+    private static byte[] fetchFile(StorageIO<DataFile> accessObject) throws IOException {
+        try (InputStream instream = accessObject.getInputStream()) {
+            return instream == null ? null : instream.readAllBytes();
+        }
+    }
+    
+    private static long getExpectedSize(DataFile dataFile, boolean getOriginal) {
+        if (getOriginal && dataFile.isTabularData()) {
+            Long originalFileSize = dataFile.getDataTable().getOriginalFileSize();
+            // (the size of the original is not known for some legacy files)
+            return originalFileSize != null ? originalFileSize : Long.MAX_VALUE;
+        }
+        return dataFile.getFilesize();
+    }
+    
+    private long addToZipStream(DataFile dataFile, StorageIO<DataFile> accessObject, InputStream instream) throws IOException {
+        boolean createManifest = fileManifest != null;
 
-            long byteSize = 0;
+        long byteSize = 0;
 
-            String fileName = accessObject.getFileName();
-            String mimeType = accessObject.getMimeType();
-            if (mimeType == null || mimeType.equals("")) {
-                mimeType = "application/octet-stream";
-            }
+        String fileName = accessObject.getFileName();
+        String mimeType = accessObject.getMimeType();
+        if (mimeType == null || mimeType.equals("")) {
+            mimeType = "application/octet-stream";
+        }
 
-            //if (sizeTotal + fileSize < sizeLimit) {
-            Boolean Success = true;
+        //if (sizeTotal + fileSize < sizeLimit) {
+        Boolean Success = true;
 
-            InputStream instream = accessObject.getInputStream();
-            if (instream == null) {
-                if (createManifest) {
-                    addToManifest(fileName
-                            + " (" + mimeType
-                            + ") COULD NOT be downloaded because an I/O error has occured. \r\n");
-                }
+        if (instream == null) {
+            if (createManifest) {
+                addToManifest(fileName
+                        + " (" + mimeType
+                        + ") COULD NOT be downloaded because an I/O error has occured. \r\n");
+            }
 
-                Success = false;
-            } else {
-                // If any of the files have non-empty DirectoryLabels we'll 
-                // use them to re-create the folders in the Zipped bundle:
-                String folderName = dataFile.getFileMetadata().getDirectoryLabel(); 
-                if (folderName != null) {
-                    // If any of the saved folder names start with with slashes,
-                    // we want to remove them: 
-                    // (i.e., ///foo/bar will become foo/bar)
-                    while (folderName.startsWith("/")) {
-                        folderName = folderName.substring(1);
-                    }
-                    if (!"".equals(folderName)) {
-                        if (!zippedFolders.contains(folderName)) {
-                            ZipEntry d = new ZipEntry(folderName + "/");
-                            zipOutputStream.putNextEntry(d);
-                            zipOutputStream.closeEntry();
-                            zippedFolders.add(folderName);
-                        }
-                        fileName = folderName + "/" + fileName;
-                    }
+            Success = false;
+        } else {
+            // If any of the files have non-empty DirectoryLabels we'll 
+            // use them to re-create the folders in the Zipped bundle:
+            String folderName = dataFile.getFileMetadata().getDirectoryLabel(); 
+            if (folderName != null) {
+                // If any of the saved folder names start with with slashes,
+                // we want to remove them: 
+                // (i.e., ///foo/bar will become foo/bar)
+                while (folderName.startsWith("/")) {
+                    folderName = folderName.substring(1);
                 }
-                
-                String zipEntryName = checkZipEntryName(fileName);
-                
-                ZipEntry e = new ZipEntry(zipEntryName);
-                logger.fine("created new zip entry for " + zipEntryName);
-
-                zipOutputStream.putNextEntry(e);
-
-                // before writing out any bytes from the input stream, flush
-                // any extra content, such as the variable header for the 
-                // subsettable files:
-                String varHeaderLine = accessObject.getVarHeader();
-                if (varHeaderLine != null) {
-                    zipOutputStream.write(varHeaderLine.getBytes());
-                    byteSize += (varHeaderLine.getBytes().length);
+                if (!"".equals(folderName)) {
+                    if (!zippedFolders.contains(folderName)) {
+                        ZipEntry d = new ZipEntry(folderName + "/");
+                        zipOutputStream.putNextEntry(d);
+                        zipOutputStream.closeEntry();
+                        zippedFolders.add(folderName);
+                    }
+                    fileName = folderName + "/" + fileName;
                 }
+            }
 
-                byte[] data = new byte[8192];
+            String zipEntryName = checkZipEntryName(fileName);
 
-                int i = 0;
-                while ((i = instream.read(data)) > 0) {
-                    zipOutputStream.write(data, 0, i);
-                    logger.fine("wrote " + i + " bytes;");
+            ZipEntry e = new ZipEntry(zipEntryName);
+            logger.fine("created new zip entry for " + zipEntryName);
 
-                    byteSize += i;
-                    zipOutputStream.flush();
-                }
-                instream.close();
-                zipOutputStream.closeEntry();
-                logger.fine("closed zip entry for " + zipEntryName);
+            zipOutputStream.putNextEntry(e);
 
-                if (createManifest) {
-                    addToManifest(zipEntryName + " (" + mimeType + ") " + byteSize + " bytes.\r\n");
-                }
+            // before writing out any bytes from the input stream, flush
+            // any extra content, such as the variable header for the 
+            // subsettable files:
+            String varHeaderLine = accessObject.getVarHeader();
+            if (varHeaderLine != null) {
+                zipOutputStream.write(varHeaderLine.getBytes());
+                byteSize += (varHeaderLine.getBytes().length);
+            }
 
-                if (byteSize > 0) {
-                    zippedFilesList.add(dataFile.getId());
-                }
+            byte[] data = new byte[8192];
+
+            int i = 0;
+            while ((i = instream.read(data)) > 0) {
+                zipOutputStream.write(data, 0, i);
+                logger.fine("wrote " + i + " bytes;");
+
+                byteSize += i;
+                zipOutputStream.flush();
+            }
+            instream.close();
+            zipOutputStream.closeEntry();
+            logger.fine("closed zip entry for " + zipEntryName);
+
+            if (createManifest) {
+                addToManifest(zipEntryName + " (" + mimeType + ") " + byteSize + " bytes.\r\n");
+            }
+
+            if (byteSize > 0) {
+                zippedFilesList.add(dataFile.getId());
             }
-            //} else if (createManifest) {
-            //    addToManifest(fileName + " (" + mimeType + ") " + " skipped because the total size of the download bundle exceeded the limit of " + sizeLimit + " bytes.\r\n");
-            //}
-            return byteSize;
         }
-        return 0L;
+        //} else if (createManifest) {
+        //    addToManifest(fileName + " (" + mimeType + ") " + " skipped because the total size of the download bundle exceeded the limit of " + sizeLimit + " bytes.\r\n");
+        //}
+        return byteSize;
     }
     
     public void finalizeZipStream() throws IOException {
@@ -249,4 +414,32 @@ public class DataFileZipper {
         fileNameList.add(name);
         return name;
     }
+    
+    private static class PrefetchedFile {
+        private final DataFile dataFile;
+        private final StorageIO<DataFile> accessObject;
+        private final int reservedSize;
+        private final Future<byte[]> content;
+
+        PrefetchedFile(DataFile dataFile, StorageIO<DataFile> accessObject, int reservedSize, Future<byte[]> content) {
+            this.dataFile = dataFile;
+            this.accessObject = accessObject;
+            this.reservedSize = reservedSize;
+            this.content = content;
+        }
+
+        byte[] get() throws IOException {
+            try {
+                return content.get();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while fetching file " + dataFile.getId(), ie);
+            } catch (ExecutionException ee) {
+                if (ee.getCause() instanceof IOException) {
+                    throw (IOException) ee.getCause();
+                }
+                throw new IOException("Failed to fetch file " + dataFile.getId(), ee.getCause());
+            }
+        }
+    }
 }
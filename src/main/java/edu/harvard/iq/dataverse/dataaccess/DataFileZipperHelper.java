@@ -0,0 +1,21 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+
+/**
+ * This is a small helper bean
+ * As it is a singleton, built at application start and destroyed when the
+ * application is undeployed, it shuts down the threads DataFileZipper
+ * prefetches files with, so that they do not outlive the deployment.
+ */
+@Singleton
+@Startup
+public class DataFileZipperHelper {
+
+    @PreDestroy
+    public void shutdownPrefetchExecutor() {
+        DataFileZipper.shutdownPrefetchExecutor();
+    }
+}
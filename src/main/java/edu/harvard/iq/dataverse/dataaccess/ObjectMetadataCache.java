@@ -0,0 +1,166 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Caches what the remote stores (S3, Swift) report about their objects -
+ * whether they exist and their size - and the listings of auxiliary objects,
+ * so that rendering a page doesn't cost a HEAD or a list request per file.
+ *
+ * There is one cache per store, shared by all its StorageIO instances. The
+ * entries expire after {@code dataverse.files.<id>.metadata-cache-ttl}
+ * seconds (0, the default, disables the cache) and are invalidated by the
+ * writes and deletes made through the store. Writes made by other servers, or
+ * directly to the bucket, are only seen once the entries expire.
+ */
+class ObjectMetadataCache {
+
+    private static final Logger logger = Logger.getLogger(ObjectMetadataCache.class.getCanonicalName());
+
+    /**
+     * The cache is cleared when it grows past this many entries.
+     */
+    static final int MAX_ENTRIES = 10000;
+
+    private static final Map<String, ObjectMetadataCache> driverCaches = new ConcurrentHashMap<>();
+
+    private final long ttlMillis;
+    private final Map<String, Entry<ObjectInfo>> objects = new ConcurrentHashMap<>();
+    private final Map<String, Entry<List<String>>> listings = new ConcurrentHashMap<>();
+    /**
+     * Incremented on every invalidation, so that a value loaded before a
+     * write is not cached after it.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Loads a value from the store, on a cache miss.
+     */
+    interface Loader<V> {
+
+        V load() throws IOException;
+    }
+
+    static class ObjectInfo {
+
+        private static final ObjectInfo MISSING = new ObjectInfo(false, -1);
+
+        private final boolean exists;
+        private final long size;
+
+        private ObjectInfo(boolean exists, long size) {
+            this.exists = exists;
+            this.size = size;
+        }
+
+        static ObjectInfo of(long size) {
+            return new ObjectInfo(true, size);
+        }
+
+        static ObjectInfo missing() {
+            return MISSING;
+        }
+
+        boolean exists() {
+            return exists;
+        }
+
+        /**
+         * @return the size of the object, or -1 if it does not exist
+         */
+        long getSize() {
+            return size;
+        }
+    }
+
+    private static class Entry<V> {
+
+        final V value;
+        final long expires;
+
+        Entry(V value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+    ObjectMetadataCache(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    static ObjectMetadataCache forDriver(String driverId) {
+        return driverCaches.computeIfAbsent(driverId, id -> new ObjectMetadataCache(getTtlSeconds(id) * 1000L));
+    }
+
+    boolean isEnabled() {
+        return ttlMillis > 0;
+    }
+
+    ObjectInfo getObjectInfo(String key, Loader<ObjectInfo> loader) throws IOException {
+        return get(objects, key, loader);
+    }
+
+    /**
+     * @return a copy of the cached listing of the objects under {@code prefix}
+     */
+    List<String> getListing(String prefix, Loader<List<String>> loader) throws IOException {
+        return new ArrayList<>(get(listings, prefix, loader));
+    }
+
+    /**
+     * Drops the object, and the listings it would be part of.
+     */
+    void invalidate(String key) {
+        generation.incrementAndGet();
+        objects.remove(key);
+        listings.keySet().removeIf(key::startsWith);
+    }
+
+    /**
+     * Drops all the objects under {@code prefix}, and the listings they would
+     * be part of.
+     */
+    void invalidatePrefix(String prefix) {
+        generation.incrementAndGet();
+        objects.keySet().removeIf(key -> key.startsWith(prefix));
+        listings.keySet().removeIf(key -> key.startsWith(prefix) || prefix.startsWith(key));
+    }
+
+    private <V> V get(Map<String, Entry<V>> entries, String key, Loader<V> loader) throws IOException {
+        if (!isEnabled()) {
+            return loader.load();
+        }
+        long now = System.currentTimeMillis();
+        Entry<V> entry = entries.get(key);
+        if (entry != null && entry.expires > now) {
+            return entry.value;
+        }
+        long loadedGeneration = generation.get();
+        V value = loader.load();
+        if (generation.get() == loadedGeneration) {
+            if (entries.size() >= MAX_ENTRIES) {
+                entries.clear();
+            }
+            entries.put(key, new Entry<>(value, now + ttlMillis));
+        }
+        return value;
+    }
+
+    private static long getTtlSeconds(String driverId) {
+        String ttl = System.getProperty("dataverse.files." + driverId + ".metadata-cache-ttl");
+        if (ttl != null) {
+            try {
+                return Math.max(0, Long.parseLong(ttl));
+            } catch (NumberFormatException nfe) {
+                logger.warning("Unable to parse dataverse.files." + driverId + ".metadata-cache-ttl as long: " + ttl);
+            }
+        }
+        return 0;
+    }
+}
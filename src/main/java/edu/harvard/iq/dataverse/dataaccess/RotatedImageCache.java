@@ -0,0 +1,136 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import edu.harvard.iq.dataverse.util.FileUtil;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Keeps local copies of the rotated images of tabular files on remote
+ * stores, so that only the first subset request for a file has to download
+ * its image. The copies are kept in the "rotated-images" subdirectory of the
+ * files temp directory, up to {@code dataverse.ingest.columnar-image-cache-size}
+ * megabytes; the least recently used ones are removed beyond that. A size of
+ * 0 disables the cache, and each request downloads the image into a temp
+ * file of its own.
+ */
+class RotatedImageCache {
+
+    private static final Logger logger = Logger.getLogger(RotatedImageCache.class.getCanonicalName());
+
+    private static final long DEFAULT_SIZE_MB = 1024;
+    /**
+     * Images used this recently are not removed, since the request that used
+     * them may not have opened them yet.
+     */
+    static final long IN_USE_MS = 60 * 1000;
+
+    private static RotatedImageCache instance;
+
+    private final Path directory;
+    private final long maxBytes;
+
+    RotatedImageCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    static synchronized RotatedImageCache getInstance() {
+        if (instance == null) {
+            long sizeMb = JvmSettings.INGEST_COLUMNAR_IMAGE_CACHE_SIZE.lookupOptional(Long.class).orElse(DEFAULT_SIZE_MB);
+            instance = new RotatedImageCache(Paths.get(FileUtil.getFilesTempDirectory(), "rotated-images"), Math.max(0, sizeMb) * 1024 * 1024);
+        }
+        return instance;
+    }
+
+    boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * @return whether the file is one of the cached images (as opposed to a
+     * temp file)
+     */
+    boolean contains(File image) {
+        return directory.equals(image.toPath().getParent());
+    }
+
+    /**
+     * @return the cached image, or null if there is none
+     */
+    File get(String key) {
+        Path image = directory.resolve(key);
+        if (!Files.isRegularFile(image)) {
+            return null;
+        }
+        try {
+            Files.setLastModifiedTime(image, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ioex) {
+            // the image was just removed; download it again
+            return null;
+        }
+        return image.toFile();
+    }
+
+    /**
+     * Moves the image into the cache.
+     *
+     * @return the cached image
+     */
+    File put(String key, File image) throws IOException {
+        Files.createDirectories(directory);
+        Path cachedImage = directory.resolve(key);
+        // moved under a temporary name first, so that a concurrent get never
+        // sees a partially copied image
+        Path tempImage = Files.createTempFile(directory, key, ".tmp");
+        Files.move(image.toPath(), tempImage, StandardCopyOption.REPLACE_EXISTING);
+        try {
+            Files.move(tempImage, cachedImage, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException amnse) {
+            Files.move(tempImage, cachedImage, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.setLastModifiedTime(cachedImage, FileTime.fromMillis(System.currentTimeMillis()));
+        evict();
+        return cachedImage.toFile();
+    }
+
+    /**
+     * Removes the least recently used images, until the cache fits in its
+     * size again.
+     */
+    synchronized void evict() {
+        List<File> images = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(directory)) {
+            paths.map(Path::toFile).filter(File::isFile).forEach(images::add);
+        } catch (IOException ioex) {
+            logger.warning("Failed to list the rotated image cache in " + directory + ": " + ioex.getMessage());
+            return;
+        }
+        long totalBytes = images.stream().mapToLong(File::length).sum();
+        if (totalBytes <= maxBytes) {
+            return;
+        }
+        images.sort(Comparator.comparingLong(File::lastModified));
+        long inUseSince = System.currentTimeMillis() - IN_USE_MS;
+        for (File image : images) {
+            if (totalBytes <= maxBytes || image.lastModified() > inUseSince) {
+                break;
+            }
+            long length = image.length();
+            if (image.delete()) {
+                totalBytes -= length;
+            }
+        }
+    }
+}
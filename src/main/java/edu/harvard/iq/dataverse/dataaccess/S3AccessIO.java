@@ -13,6 +13,7 @@ import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PartETag;
 import com.amazonaws.services.s3.model.PutObjectRequest;
@@ -208,13 +209,11 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
             
             if (isReadAccess) {
                 key = getMainFileKey();
-                ObjectMetadata objectMetadata = null; 
-                try {
-                    objectMetadata = s3.getObjectMetadata(bucketName, key);
-                } catch (SdkClientException sce) {
-                    throw new IOException("Cannot get S3 object " + key + " ("+sce.getMessage()+")");
+                ObjectMetadataCache.ObjectInfo objectInfo = getObjectInfo(key);
+                if (!objectInfo.exists()) {
+                    throw new IOException("Cannot get S3 object " + key + " (not found)");
                 }
-                this.setSize(objectMetadata.getContentLength());
+                this.setSize(objectInfo.getSize());
 
                 if (dataFile.getContentType() != null
                         && dataFile.getContentType().equals("text/tab-separated-values")
@@ -288,7 +287,11 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
     public InputStream getInputStream() throws IOException {
         if(super.getInputStream()==null) {
             try {
-                setInputStream(s3.getObject(new GetObjectRequest(bucketName, key)).getObjectContent());
+                if (isReadAccess && S3RangedInputStream.isEnabled(driverId, getSize())) {
+                    setInputStream(S3RangedInputStream.forDriver(s3, bucketName, key, getSize(), driverId));
+                } else {
+                    setInputStream(s3.getObject(new GetObjectRequest(bucketName, key)).getObjectContent());
+                }
             } catch (SdkClientException sce) {
                 throw new IOException("Cannot get S3 object " + key + " ("+sce.getMessage()+")");
             }
@@ -346,6 +349,7 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
         }
 
 
+        invalidateMetadata(key);
         // if it has uploaded successfully, we can reset the size
         // of the object:
         setSize(newFileSize);
@@ -366,6 +370,10 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
      * similarly to how we handle attempts to open OutputStreams, in this and the 
      * Swift driver. 
      * 
+     * Stores with {@code dataverse.files.<id>.stream-upload} enabled avoid the
+     * temp file, by uploading the stream in parts as it is read (see 
+     * {@link S3StreamingUploader}).
+     * 
      * @param inputStream InputStream we want to save
      * @param filesize Long representing the filesize
      * @throws IOException if anything goes wrong.
@@ -390,6 +398,8 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
                 }
 
                 throw new IOException(failureMsg);
+            } finally {
+                invalidateMetadata(key);
             }
             setSize(filesize);  
         }
@@ -400,6 +410,15 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
         if (!this.canWrite()) {
             open(DataAccessOption.WRITE_ACCESS);
         }
+        if (S3StreamingUploader.isEnabled(driverId)) {
+            try {
+                setSize(S3StreamingUploader.forDriver(s3, bucketName, driverId).upload(key, inputStream));
+            } finally {
+                IOUtils.closeQuietly(inputStream);
+                invalidateMetadata(key);
+            }
+            return;
+        }
         String directoryString = FileUtil.getFilesTempDirectory();
 
         Random rand = new Random();
@@ -415,6 +434,8 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
             }
             tempFile.delete();
             throw new IOException(failureMsg);
+        } finally {
+            invalidateMetadata(key);
         }
         tempFile.delete();
         ObjectMetadata objectMetadata = s3.getObjectMetadata(bucketName, key);
@@ -439,6 +460,8 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
         } catch (AmazonClientException ase) {
             logger.warning("Caught an AmazonClientException in S3AccessIO.delete(): " + ase.getMessage());
             throw new IOException("Failed to delete storage location " + getStorageLocation());
+        } finally {
+            invalidateMetadata(key);
         }
         
         // Delete all the cached aux files as well:
@@ -468,9 +491,9 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
         logger.fine("Inside isAuxObjectCached");
         String destinationKey = getDestinationKey(auxItemTag);
         try {
-            return s3.doesObjectExist(bucketName, destinationKey);
-        } catch (AmazonClientException ase) {
-            logger.warning("Caught an AmazonClientException in S3AccessIO.isAuxObjectCached:    " + ase.getMessage());
+            return getObjectInfo(destinationKey).exists();
+        } catch (IOException ioex) {
+            logger.warning("Caught an exception in S3AccessIO.isAuxObjectCached:    " + ioex.getMessage());
             throw new IOException("S3AccessIO: Failed to cache auxilary object : " + auxItemTag);
         }
     }
@@ -480,9 +503,9 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
         open();
         String destinationKey = getDestinationKey(auxItemTag);
         try {
-            return s3.getObjectMetadata(bucketName, destinationKey).getContentLength();
-        } catch (AmazonClientException ase) {
-            logger.warning("Caught an AmazonClientException in S3AccessIO.getAuxObjectSize:    " + ase.getMessage());
+            return getObjectInfo(destinationKey).getSize();
+        } catch (IOException ioex) {
+            logger.warning("Caught an exception in S3AccessIO.getAuxObjectSize:    " + ioex.getMessage());
         }
         return -1;
     }
@@ -500,6 +523,8 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
         } catch (AmazonClientException ase) {
             logger.warning("Caught an AmazonClientException in S3AccessIO.backupAsAux:    " + ase.getMessage());
             throw new IOException("S3AccessIO: Unable to backup original auxiliary object");
+        } finally {
+            invalidateMetadata(destinationKey);
         }
     }
     
@@ -509,6 +534,7 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
         String destinationKey = getDestinationKey(auxItemTag);
         try {
             s3.copyObject(new CopyObjectRequest(bucketName, destinationKey,  bucketName, key));
+            invalidateMetadata(key);
             deleteAuxObject(auxItemTag);
         } catch (AmazonClientException ase) {
             logger.warning("Caught an AmazonServiceException in S3AccessIO.backupAsAux:    " + ase.getMessage());
@@ -529,6 +555,8 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
         } catch (AmazonClientException ase) {
             logger.warning("Caught an AmazonClientException in S3AccessIO.savePathAsAux():    " + ase.getMessage());
             throw new IOException("S3AccessIO: Failed to save path as an auxiliary object.");
+        } finally {
+            invalidateMetadata(destinationKey);
         }
     }
 
@@ -552,6 +580,8 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
                     failureMsg = "S3AccessIO: SdkClientException occured while saving a local InputStream as S3Object";
                 }
                 throw new IOException(failureMsg);
+            } finally {
+                invalidateMetadata(destinationKey);
             }
         }
     }
@@ -571,6 +601,10 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
      * similarly to how we handle attempts to open OutputStreams, in this and the 
      * Swift driver. 
      * 
+     * Stores with {@code dataverse.files.<id>.stream-upload} enabled avoid the
+     * temp file, by uploading the stream in parts as it is read (see 
+     * {@link S3StreamingUploader}).
+     * 
      * @param inputStream InputStream we want to save
      * @param auxItemTag String representing this Auxiliary type ("extension")
      * @throws IOException if anything goes wrong.
@@ -581,6 +615,17 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
             open(DataAccessOption.WRITE_ACCESS);
         }
 
+        if (S3StreamingUploader.isEnabled(driverId)) {
+            String destinationKey = getDestinationKey(auxItemTag);
+            try {
+                S3StreamingUploader.forDriver(s3, bucketName, driverId).upload(destinationKey, inputStream);
+            } finally {
+                IOUtils.closeQuietly(inputStream);
+                invalidateMetadata(destinationKey);
+            }
+            return;
+        }
+
         String directoryString = FileUtil.getFilesTempDirectory();
 
         Random rand = new Random();
@@ -600,6 +645,8 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
             }
             tempFile.delete();
             throw new IOException(failureMsg);
+        } finally {
+            invalidateMetadata(destinationKey);
         }
         tempFile.delete();
     }
@@ -629,7 +676,10 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
             open();
         }
         String prefix = getDestinationKey("");
+        return getMetadataCache().getListing(getCacheKey(prefix), () -> listAuxObjects(prefix));
+    }
 
+    private List<String> listAuxObjects(String prefix) throws IOException {
         List<String> ret = new ArrayList<>();
         ListObjectsRequest req = new ListObjectsRequest().withBucketName(bucketName).withPrefix(prefix);
         ObjectListing storedAuxFilesList = null; 
@@ -675,6 +725,8 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
             s3.deleteObject(dor);
         } catch (AmazonClientException ase) {
             logger.warning("S3AccessIO: Unable to delete object    " + ase.getMessage());
+        } finally {
+            invalidateMetadata(destinationKey);
         }
     }
 
@@ -724,6 +776,8 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
             s3.deleteObjects(multiObjectDeleteRequest);
         } catch (SdkClientException e) {
             throw new IOException("S3AccessIO: Failed to delete one or more auxiliary objects.");
+        } finally {
+            getMetadataCache().invalidatePrefix(getCacheKey(prefix));
         }
     }
 
@@ -756,9 +810,9 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
             logger.warning("Trying to check if a path exists is only supported for a data file.");
         }
         try {
-            return s3.doesObjectExist(bucketName, destinationKey);
-        } catch (AmazonClientException ase) {
-            logger.warning("Caught an AmazonClientException in S3AccessIO.exists():    " + ase.getMessage());
+            return getObjectInfo(destinationKey).exists();
+        } catch (IOException ioex) {
+            logger.warning("Caught an exception in S3AccessIO.exists():    " + ioex.getMessage());
             return false;
         }
     }
@@ -788,6 +842,37 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
         }
     }
 
+    private ObjectMetadataCache getMetadataCache() {
+        return ObjectMetadataCache.forDriver(driverId);
+    }
+
+    private String getCacheKey(String objectKey) {
+        return bucketName + "/" + objectKey;
+    }
+
+    /**
+     * Looks up whether the object exists, and its size, through the metadata
+     * cache of the store (see {@link ObjectMetadataCache}).
+     */
+    private ObjectMetadataCache.ObjectInfo getObjectInfo(String objectKey) throws IOException {
+        return getMetadataCache().getObjectInfo(getCacheKey(objectKey), () -> {
+            try {
+                return ObjectMetadataCache.ObjectInfo.of(s3.getObjectMetadata(bucketName, objectKey).getContentLength());
+            } catch (AmazonS3Exception ase) {
+                if (ase.getStatusCode() == 404) {
+                    return ObjectMetadataCache.ObjectInfo.missing();
+                }
+                throw new IOException("Cannot get S3 object " + objectKey + " (" + ase.getMessage() + ")");
+            } catch (SdkClientException sce) {
+                throw new IOException("Cannot get S3 object " + objectKey + " (" + sce.getMessage() + ")");
+            }
+        });
+    }
+
+    private void invalidateMetadata(String objectKey) {
+        getMetadataCache().invalidate(getCacheKey(objectKey));
+    }
+
     // Rename this getAuxiliaryKey(), maybe? 
     String getDestinationKey(String auxItemTag) throws IOException {
         if (isDirectAccess() || dvObject instanceof DataFile) {
@@ -1273,6 +1358,7 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
         String key = getMainFileKey(baseKey, storageIdentifier, driverId);
         CompleteMultipartUploadRequest req = new CompleteMultipartUploadRequest(bucketName, key, uploadId, etags);
         s3Client.completeMultipartUpload(req);
+        ObjectMetadataCache.forDriver(driverId).invalidate(bucketName + "/" + key);
     }
 
     public boolean isMainDriver() {
@@ -1371,6 +1457,8 @@ public class S3AccessIO<T extends DvObject> extends StorageIO<T> {
             s3.deleteObject(dor);
         } catch (AmazonClientException ase) {
             logger.warning("S3AccessIO: Unable to delete object    " + ase.getMessage());
+        } finally {
+            invalidateMetadata(prefix + fileName);
         }
     }
 
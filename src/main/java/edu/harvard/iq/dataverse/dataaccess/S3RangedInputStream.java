@@ -0,0 +1,340 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Reads an S3 object of known size as a sequence of ranged GETs, several of
+ * which are fetched concurrently ahead of the reader, instead of through a
+ * single GET (i.e. a single connection).
+ *
+ * The ranges in flight are kept in order in a bounded queue: a range is only
+ * requested when the reader has consumed one. The streams of a store also
+ * share a {@link RangePool}: a fixed number of threads running the GETs, and
+ * a fixed number of part buffers, each range in flight or being read holding
+ * one. A stream only waits for a buffer when it has none left to read, so
+ * the memory used by all the streams of a store is bounded by the number of
+ * buffers times the part size.
+ *
+ * Enabled per store with {@code dataverse.files.<id>.ranged-get}, for objects
+ * of at least {@code dataverse.files.<id>.ranged-get-threshold} bytes; the
+ * range size, the number of ranges in flight per stream, and the threads and
+ * buffers of the store are set with
+ * {@code dataverse.files.<id>.ranged-get-part-size},
+ * {@code dataverse.files.<id>.ranged-get-parts},
+ * {@code dataverse.files.<id>.ranged-get-threads} and
+ * {@code dataverse.files.<id>.ranged-get-buffers}.
+ */
+class S3RangedInputStream extends InputStream {
+
+    private static final Logger logger = Logger.getLogger(S3RangedInputStream.class.getCanonicalName());
+
+    static final long DEFAULT_THRESHOLD = 64 * 1024 * 1024;
+    static final int DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+    static final int DEFAULT_PARTS = 4;
+    static final int DEFAULT_THREADS = 8;
+    static final int DEFAULT_BUFFERS = 32;
+
+    /**
+     * How many times a range is requested before the read fails. The SDK
+     * retries failed requests, but not a connection lost while the content is
+     * being read.
+     */
+    private static final int ATTEMPTS = 3;
+
+    private static final Map<String, RangePool> driverPools = new ConcurrentHashMap<>();
+
+    private final AmazonS3 s3;
+    private final String bucketName;
+    private final String key;
+    private final long size;
+    private final int partSize;
+    private final int parts;
+    private final RangePool pool;
+
+    /**
+     * Each range in flight holds a buffer of the pool.
+     */
+    private final Deque<Future<byte[]>> inFlight = new ArrayDeque<>();
+    /**
+     * Offset of the next range to request.
+     */
+    private long nextRangeStart;
+    /**
+     * Offset of the next byte to read.
+     */
+    private long position;
+    /**
+     * The range being read, which holds a buffer of the pool until it has
+     * been read.
+     */
+    private byte[] current;
+    private int currentPos;
+    private boolean closed;
+
+    S3RangedInputStream(AmazonS3 s3, String bucketName, String key, long size, int partSize, int parts, RangePool pool) {
+        this.s3 = s3;
+        this.bucketName = bucketName;
+        this.key = key;
+        this.size = size;
+        this.partSize = partSize;
+        this.parts = parts;
+        this.pool = pool;
+        fillWindow();
+    }
+
+    static boolean isEnabled(String driverId, long size) {
+        return Boolean.parseBoolean(System.getProperty("dataverse.files." + driverId + ".ranged-get", "false"))
+                && size >= getLongOption(driverId, "ranged-get-threshold", DEFAULT_THRESHOLD, 1);
+    }
+
+    static S3RangedInputStream forDriver(AmazonS3 s3, String bucketName, String key, long size, String driverId) {
+        int partSize = (int) getLongOption(driverId, "ranged-get-part-size", DEFAULT_PART_SIZE, 1024 * 1024);
+        int parts = (int) getLongOption(driverId, "ranged-get-parts", DEFAULT_PARTS, 1);
+        RangePool pool = driverPools.computeIfAbsent(driverId, id -> new RangePool("s3-ranged-get-" + id,
+                (int) getLongOption(id, "ranged-get-threads", DEFAULT_THREADS, 1),
+                (int) getLongOption(id, "ranged-get-buffers", DEFAULT_BUFFERS, 1)));
+        return new S3RangedInputStream(s3, bucketName, key, size, partSize, parts, pool);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureCurrent()) {
+            return -1;
+        }
+        position++;
+        return current[currentPos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureCurrent()) {
+            return -1;
+        }
+        int count = Math.min(len, current.length - currentPos);
+        System.arraycopy(current, currentPos, bytes, off, count);
+        currentPos += count;
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current == null ? 0 : current.length - currentPos;
+    }
+
+    /**
+     * Skips within the current range, or drops the ranges in flight and
+     * continues from the new offset, so that skipped ranges are not fetched.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        if (closed || n <= 0) {
+            return 0;
+        }
+        long skipped = Math.min(n, size - position);
+        if (current != null && skipped <= current.length - currentPos) {
+            currentPos += (int) skipped;
+        } else {
+            cancelInFlight();
+            releaseCurrent();
+            nextRangeStart = position + skipped;
+            fillWindow();
+        }
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            releaseCurrent();
+            cancelInFlight();
+        }
+    }
+
+    private boolean ensureCurrent() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (current == null || currentPos == current.length) {
+            releaseCurrent();
+            if (inFlight.isEmpty()) {
+                if (nextRangeStart >= size) {
+                    return false;
+                }
+                // all the buffers are taken by other streams; this one holds
+                // none, so it can wait for one without blocking them
+                try {
+                    pool.acquire();
+                } catch (InterruptedIOException iioe) {
+                    close();
+                    throw iioe;
+                }
+                submitRange();
+            }
+            Future<byte[]> next = inFlight.poll();
+            try {
+                current = next.get();
+                currentPos = 0;
+            } catch (InterruptedException ie) {
+                pool.release();
+                Thread.currentThread().interrupt();
+                close();
+                throw new InterruptedIOException("Interrupted while reading S3 object " + key);
+            } catch (ExecutionException ee) {
+                pool.release();
+                close();
+                Throwable cause = ee.getCause();
+                throw new IOException("Cannot get S3 object " + key + " (" + cause.getMessage() + ")", cause);
+            }
+            fillWindow();
+        }
+        return true;
+    }
+
+    /**
+     * Requests more ranges, as long as buffers are available without
+     * waiting.
+     */
+    private void fillWindow() {
+        while (inFlight.size() < parts && nextRangeStart < size && pool.tryAcquire()) {
+            submitRange();
+        }
+    }
+
+    /**
+     * Requests the next range, for which a buffer has been acquired.
+     */
+    private void submitRange() {
+        long start = nextRangeStart;
+        long end = Math.min(start + partSize, size) - 1;
+        inFlight.add(pool.submit(() -> fetch(start, end)));
+        nextRangeStart = end + 1;
+    }
+
+    private void releaseCurrent() {
+        if (current != null) {
+            current = null;
+            currentPos = 0;
+            pool.release();
+        }
+    }
+
+    private byte[] fetch(long start, long end) throws IOException {
+        byte[] range = new byte[(int) (end - start + 1)];
+        for (int attempt = 1;; attempt++) {
+            try (S3Object object = s3.getObject(new GetObjectRequest(bucketName, key).withRange(start, end));
+                    InputStream in = object.getObjectContent()) {
+                int read = in.readNBytes(range, 0, range.length);
+                if (read != range.length) {
+                    throw new IOException("Expected " + range.length + " bytes at offset " + start + ", got " + read);
+                }
+                return range;
+            } catch (IOException | SdkClientException ex) {
+                if (attempt == ATTEMPTS) {
+                    throw (ex instanceof IOException) ? (IOException) ex : new IOException(ex.getMessage(), ex);
+                }
+                logger.fine("Retrying range " + start + "-" + end + " of " + key + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    private static long getLongOption(String driverId, String option, long defaultValue, long minValue) {
+        String value = System.getProperty("dataverse.files." + driverId + "." + option);
+        if (value != null) {
+            try {
+                long val = Long.parseLong(value);
+                if (val >= minValue && val <= Integer.MAX_VALUE) {
+                    return val;
+                }
+                logger.warning("dataverse.files." + driverId + "." + option + " must be between " + minValue + " and " + Integer.MAX_VALUE);
+            } catch (NumberFormatException nfe) {
+                logger.warning("Unable to parse dataverse.files." + driverId + "." + option + " as long: " + value);
+            }
+        }
+        return defaultValue;
+    }
+
+    private void cancelInFlight() {
+        // The ranges being fetched are left to complete (and be discarded)
+        // rather than interrupted, which would leave their connections in an
+        // unknown state. Their buffers are released right away, so the pool
+        // may briefly be exceeded by up to one part per thread.
+        Future<byte[]> range;
+        while ((range = inFlight.poll()) != null) {
+            range.cancel(false);
+            pool.release();
+        }
+    }
+
+    /**
+     * The threads running the ranged GETs of a store, and the part buffers
+     * its streams share.
+     */
+    static class RangePool {
+
+        private final ExecutorService executor;
+        private final Semaphore buffers;
+
+        RangePool(String threadName, int threads, int buffers) {
+            AtomicInteger count = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, threadName + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.buffers = new Semaphore(buffers, true);
+        }
+
+        int getAvailable() {
+            return buffers.availablePermits();
+        }
+
+        /**
+         * @return whether a buffer was acquired; never when a stream is
+         * waiting for one, which goes first
+         */
+        boolean tryAcquire() {
+            return !buffers.hasQueuedThreads() && buffers.tryAcquire();
+        }
+
+        void acquire() throws InterruptedIOException {
+            try {
+                buffers.acquire();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a ranged GET buffer");
+            }
+        }
+
+        void release() {
+            buffers.release();
+        }
+
+        Future<byte[]> submit(Callable<byte[]> range) {
+            return executor.submit(range);
+        }
+    }
+}
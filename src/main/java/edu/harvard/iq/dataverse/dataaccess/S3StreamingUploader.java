@@ -0,0 +1,367 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Uploads streams of unknown length to S3 without spooling them to a temp
+ * file first. The stream is read into fixed-size parts, which are uploaded
+ * concurrently as the parts of a multipart upload while the next parts are
+ * being read. Streams that fit in a single part are uploaded with a plain PUT.
+ *
+ * The parts are read into direct buffers taken from a bounded pool, shared by
+ * all the uploads to the same store. When all the buffers are in use, reading
+ * waits until a part upload completes, so memory use is bounded by the pool.
+ *
+ * Enabled per store with {@code dataverse.files.<id>.stream-upload}; the part
+ * size and the number of buffers are set with
+ * {@code dataverse.files.<id>.stream-part-size} and
+ * {@code dataverse.files.<id>.stream-buffers}.
+ */
+class S3StreamingUploader {
+
+    private static final Logger logger = Logger.getLogger(S3StreamingUploader.class.getCanonicalName());
+
+    /**
+     * The smallest part S3 accepts (but for the last part of an upload).
+     */
+    static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+    static final int DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+    static final int DEFAULT_BUFFERS = 8;
+
+    /**
+     * The largest number of parts S3 accepts in a multipart upload.
+     */
+    static final int MAX_PARTS = 10000;
+
+    private static final Map<String, BufferPool> driverPools = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the part uploads. The number of part uploads in progress is bounded
+     * by the buffer pools, since each holds a buffer.
+     */
+    private static final ExecutorService partUploadExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "s3-part-upload");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AmazonS3 s3;
+    private final String bucketName;
+    private final BufferPool pool;
+
+    S3StreamingUploader(AmazonS3 s3, String bucketName, BufferPool pool) {
+        this.s3 = s3;
+        this.bucketName = bucketName;
+        this.pool = pool;
+    }
+
+    static boolean isEnabled(String driverId) {
+        return Boolean.parseBoolean(System.getProperty("dataverse.files." + driverId + ".stream-upload", "false"));
+    }
+
+    static S3StreamingUploader forDriver(AmazonS3 s3, String bucketName, String driverId) {
+        BufferPool pool = driverPools.computeIfAbsent(driverId,
+                id -> new BufferPool(getPartSize(id), getBuffers(id)));
+        return new S3StreamingUploader(s3, bucketName, pool);
+    }
+
+    /**
+     * Uploads the stream to {@code key}, reading it to the end. The stream is
+     * not closed.
+     *
+     * @return the size of the uploaded object
+     * @throws IOException if reading or uploading fails; an incomplete
+     * multipart upload is aborted
+     */
+    long upload(String key, InputStream inputStream) throws IOException {
+        ReadableByteChannel in = Channels.newChannel(inputStream);
+        ByteBuffer buffer = pool.acquire();
+        try {
+            fill(in, buffer);
+        } catch (IOException ioex) {
+            pool.release(buffer);
+            throw ioex;
+        }
+        if (buffer.hasRemaining()) {
+            // the whole stream fits in a single part
+            try {
+                buffer.flip();
+                long size = buffer.remaining();
+                ObjectMetadata metadata = new ObjectMetadata();
+                metadata.setContentLength(size);
+                s3.putObject(bucketName, key, new ByteBufferInputStream(buffer), metadata);
+                return size;
+            } catch (SdkClientException sce) {
+                throw new IOException("S3AccessIO: Failed to upload " + key + ": " + sce.getMessage(), sce);
+            } finally {
+                pool.release(buffer);
+            }
+        }
+        return uploadParts(key, in, buffer);
+    }
+
+    private long uploadParts(String key, ReadableByteChannel in, ByteBuffer firstPart) throws IOException {
+        String uploadId;
+        try {
+            uploadId = s3.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucketName, key)).getUploadId();
+        } catch (SdkClientException sce) {
+            pool.release(firstPart);
+            throw new IOException("S3AccessIO: Failed to start a multipart upload of " + key + ": " + sce.getMessage(), sce);
+        }
+
+        AtomicBoolean aborted = new AtomicBoolean(false);
+        List<Future<PartETag>> parts = new ArrayList<>();
+        ByteBuffer buffer = firstPart;
+        long size = 0;
+        try {
+            while (buffer != null) {
+                buffer.flip();
+                int partSize = buffer.remaining();
+                if (partSize == 0) {
+                    pool.release(buffer);
+                    buffer = null;
+                    break;
+                }
+                if (parts.size() == MAX_PARTS) {
+                    throw new IOException("The stream needs more than " + MAX_PARTS + " parts; increase the stream-part-size of the store");
+                }
+                size += partSize;
+                parts.add(partUploadExecutor.submit(partUpload(key, uploadId, parts.size() + 1, buffer, aborted)));
+                buffer = null;
+                if (partSize < pool.getPartSize()) {
+                    // end of the stream
+                    break;
+                }
+                buffer = pool.acquire();
+                fill(in, buffer);
+            }
+
+            List<PartETag> etags = new ArrayList<>(parts.size());
+            for (Future<PartETag> part : parts) {
+                etags.add(part.get());
+            }
+            s3.completeMultipartUpload(new CompleteMultipartUploadRequest(bucketName, key, uploadId, etags));
+            logger.fine("Uploaded " + size + " bytes to " + key + " in " + parts.size() + " parts");
+            return size;
+
+        } catch (IOException | SdkClientException | InterruptedException | ExecutionException ex) {
+            if (buffer != null) {
+                pool.release(buffer);
+            }
+            abort(key, uploadId, parts, aborted);
+            if (ex instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = (ex instanceof ExecutionException) ? ex.getCause() : ex;
+            throw new IOException("S3AccessIO: Failed to upload " + key + ": " + cause.getMessage(), cause);
+        }
+    }
+
+    private Callable<PartETag> partUpload(String key, String uploadId, int partNumber, ByteBuffer buffer, AtomicBoolean aborted) {
+        return () -> {
+            try {
+                if (aborted.get()) {
+                    return null;
+                }
+                UploadPartRequest request = new UploadPartRequest()
+                        .withBucketName(bucketName)
+                        .withKey(key)
+                        .withUploadId(uploadId)
+                        .withPartNumber(partNumber)
+                        .withPartSize(buffer.remaining())
+                        .withInputStream(new ByteBufferInputStream(buffer));
+                return s3.uploadPart(request).getPartETag();
+            } finally {
+                pool.release(buffer);
+            }
+        };
+    }
+
+    private void abort(String key, String uploadId, List<Future<PartETag>> parts, AtomicBoolean aborted) {
+        // The parts not started yet are skipped. The ones in progress are
+        // waited for, so that they don't complete after the abort (and so that
+        // their buffers are back in the pool).
+        aborted.set(true);
+        for (Future<PartETag> part : parts) {
+            try {
+                part.get();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException ee) {
+                // already failed
+            }
+        }
+        try {
+            s3.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, key, uploadId));
+        } catch (SdkClientException sce) {
+            logger.warning("Failed to abort the multipart upload " + uploadId + " of " + key + ": " + sce.getMessage());
+        }
+    }
+
+    /**
+     * Reads from {@code in} until {@code buffer} is full or the stream ends.
+     */
+    private static void fill(ReadableByteChannel in, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                break;
+            }
+        }
+    }
+
+    private static int getPartSize(String driverId) {
+        String partSize = System.getProperty("dataverse.files." + driverId + ".stream-part-size");
+        if (partSize != null) {
+            try {
+                long val = Long.parseLong(partSize);
+                if (val >= MIN_PART_SIZE && val <= Integer.MAX_VALUE) {
+                    return (int) val;
+                }
+                logger.warning("dataverse.files." + driverId + ".stream-part-size must be between " + MIN_PART_SIZE + " and " + Integer.MAX_VALUE);
+            } catch (NumberFormatException nfe) {
+                logger.warning("Unable to parse dataverse.files." + driverId + ".stream-part-size as long: " + partSize);
+            }
+        }
+        return DEFAULT_PART_SIZE;
+    }
+
+    private static int getBuffers(String driverId) {
+        String buffers = System.getProperty("dataverse.files." + driverId + ".stream-buffers");
+        if (buffers != null) {
+            try {
+                int val = Integer.parseInt(buffers);
+                if (val > 0) {
+                    return val;
+                }
+                logger.warning("dataverse.files." + driverId + ".stream-buffers must be at least 1");
+            } catch (NumberFormatException nfe) {
+                logger.warning("Unable to parse dataverse.files." + driverId + ".stream-buffers as int: " + buffers);
+            }
+        }
+        return DEFAULT_BUFFERS;
+    }
+
+    /**
+     * A bounded pool of reusable direct buffers of the part size. The buffers
+     * are allocated on first use.
+     */
+    static class BufferPool {
+
+        private final int partSize;
+        private final Semaphore permits;
+        private final Queue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+
+        BufferPool(int partSize, int buffers) {
+            this.partSize = partSize;
+            this.permits = new Semaphore(buffers, true);
+        }
+
+        int getPartSize() {
+            return partSize;
+        }
+
+        int getAvailable() {
+            return permits.availablePermits();
+        }
+
+        ByteBuffer acquire() throws IOException {
+            try {
+                permits.acquire();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for an upload buffer");
+            }
+            ByteBuffer buffer = free.poll();
+            if (buffer == null) {
+                buffer = ByteBuffer.allocateDirect(partSize);
+            }
+            buffer.clear();
+            return buffer;
+        }
+
+        void release(ByteBuffer buffer) {
+            free.offer(buffer);
+            permits.release();
+        }
+    }
+
+    /**
+     * Reads a buffer, from its position to its limit, and supports mark and
+     * reset so that the SDK can retry a request.
+     */
+    static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer.duplicate();
+            this.buffer.mark();
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? (buffer.get() & 0xff) : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(bytes, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+            buffer.mark();
+        }
+
+        @Override
+        public synchronized void reset() {
+            buffer.reset();
+        }
+    }
+}
@@ -279,25 +279,44 @@ public class SwiftAccessIO<T extends DvObject> extends StorageIO<T> {
 
     @Override
     public boolean isAuxObjectCached(String auxItemTag) {
-        StoredObject swiftAuxObject;
         try {
-            swiftAuxObject = openSwiftAuxFile(auxItemTag);
+            return getAuxObjectInfo(auxItemTag).exists();
         } catch (IOException ioex) {
-            swiftAuxObject = null;
+            return false;
         }
-
-        return swiftAuxObject != null;
     }
 
     @Override
     public long getAuxObjectSize(String auxItemTag) throws IOException {
-        StoredObject swiftAuxObject = openSwiftAuxFile(auxItemTag);
+        ObjectMetadataCache.ObjectInfo auxObjectInfo = getAuxObjectInfo(auxItemTag);
 
-        if (swiftAuxObject == null) {
-            return -1L;
+        if (!auxObjectInfo.exists()) {
+            throw new FileNotFoundException("No such Aux object: " + auxItemTag);
         }
 
-        return swiftAuxObject.getContentLength();
+        return auxObjectInfo.getSize();
+    }
+
+    /**
+     * Looks up whether the aux object exists, and its size, through the
+     * metadata cache of the store (see {@link ObjectMetadataCache}).
+     */
+    private ObjectMetadataCache.ObjectInfo getAuxObjectInfo(String auxItemTag) throws IOException {
+        return ObjectMetadataCache.forDriver(driverId).getObjectInfo(getAuxCacheKey(auxItemTag), () -> {
+            try {
+                return ObjectMetadataCache.ObjectInfo.of(openSwiftAuxFile(auxItemTag).getContentLength());
+            } catch (FileNotFoundException fnfe) {
+                return ObjectMetadataCache.ObjectInfo.missing();
+            }
+        });
+    }
+
+    private String getAuxCacheKey(String auxItemTag) {
+        return (isDirectAccess() ? swiftLocation : dvObject.getStorageIdentifier()) + "." + auxItemTag;
+    }
+
+    private void invalidateAuxMetadata(String auxItemTag) {
+        ObjectMetadataCache.forDriver(driverId).invalidate(getAuxCacheKey(auxItemTag));
     }
 
     @Override
@@ -325,6 +344,8 @@ public class SwiftAccessIO<T extends DvObject> extends StorageIO<T> {
             }
 
             throw new IOException(failureMsg);
+        } finally {
+            invalidateAuxMetadata(auxItemTag);
         }
     }
     
@@ -376,6 +397,8 @@ public class SwiftAccessIO<T extends DvObject> extends StorageIO<T> {
             }
 
             throw new IOException(failureMsg);
+        } finally {
+            invalidateAuxMetadata(auxItemTag);
         }
 
     }
@@ -404,6 +427,8 @@ public class SwiftAccessIO<T extends DvObject> extends StorageIO<T> {
             }
 
             throw new IOException(failureMsg);
+        } finally {
+            invalidateAuxMetadata(auxItemTag);
         }
     }
 
@@ -437,7 +462,11 @@ public class SwiftAccessIO<T extends DvObject> extends StorageIO<T> {
             throw new FileNotFoundException("No such Aux object: " + auxItemTag);
         }
 
-        swiftAuxObject.delete();
+        try {
+            swiftAuxObject.delete();
+        } finally {
+            invalidateAuxMetadata(auxItemTag);
+        }
     }
 
     @Override
@@ -449,13 +478,17 @@ public class SwiftAccessIO<T extends DvObject> extends StorageIO<T> {
         Collection<StoredObject> victims; 
         String lastVictim = null; 
           
-        while ((victims = this.swiftContainer.list(this.swiftFileObject.getName()+".", lastVictim, LIST_PAGE_LIMIT))!= null && victims.size() > 0) {
-            for (StoredObject victim : victims) {
-                lastVictim = victim.getName();
-                logger.info("trying to delete " + lastVictim);
+        try {
+            while ((victims = this.swiftContainer.list(this.swiftFileObject.getName()+".", lastVictim, LIST_PAGE_LIMIT))!= null && victims.size() > 0) {
+                for (StoredObject victim : victims) {
+                    lastVictim = victim.getName();
+                    logger.info("trying to delete " + lastVictim);
 
-                victim.delete();
+                    victim.delete();
+                }
             }
+        } finally {
+            ObjectMetadataCache.forDriver(driverId).invalidatePrefix(getAuxCacheKey(""));
         }
     }
 
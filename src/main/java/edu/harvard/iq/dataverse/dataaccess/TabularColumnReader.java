@@ -0,0 +1,505 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Columnar reader for the tab-delimited files produced by ingest.
+ *
+ * The file is memory-mapped and the start offsets of all the rows are indexed
+ * in a single pass when the reader is opened. Individual columns are then
+ * extracted as primitive vectors, with the missing values recorded in a
+ * separate bitmap, without splitting the lines into Strings.
+ *
+ * The reader keeps a per-row cursor pointing at the last column extracted;
+ * so reading the columns in increasing order (as ingest does when calculating
+ * summary statistics and UNFs) costs one pass over the file in total, rather
+ * than one pass per column as with the Scanner-based methods in
+ * TabularSubsetGenerator.
+ *
+ * The values are interpreted exactly the same way as in
+ * TabularSubsetGenerator.subset*Vector() - i.e., empty and unparseable
+ * tokens are missing values, [+-]inf is infinity and character values are
+ * unquoted and unescaped.
+ */
+public class TabularColumnReader implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(TabularColumnReader.class.getCanonicalName());
+
+    // Individual mapped regions are limited to 2GB; we map the file in 1GB
+    // segments, so that the segment and the position within it can be
+    // computed with a shift and a mask:
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    // The longest numeric token we can parse directly from the bytes, without
+    // going through Double.parseDouble() (etc.), while guaranteeing exactly
+    // the same result:
+    private static final int MAX_EXACT_DOUBLE_DIGITS = 15;
+    private static final int MAX_EXACT_FLOAT_DIGITS = 7;
+    private static final int MAX_EXACT_LONG_DIGITS = 18;
+
+    private final FileChannel fileChannel;
+    private final MappedByteBuffer[] segments;
+    private final long size;
+
+    private final int varcount;
+    private final int casecount;
+
+    // Start offsets of the rows; rowOffsets[casecount] is the end of the last row + 1.
+    private final long[] rowOffsets;
+    // Offsets of the current cursor column, relative to the start of each row:
+    private final int[] cursorOffsets;
+    private int cursorColumn = 0;
+
+    private byte[] tokenBuffer = new byte[256];
+
+    public TabularColumnReader(File tabfile, int varcount, int casecount) throws IOException {
+        if (varcount < 1 || casecount < 0) {
+            throw new IOException("Invalid number of variables (" + varcount + ") or cases (" + casecount + ").");
+        }
+        this.varcount = varcount;
+        this.casecount = casecount;
+
+        fileChannel = FileChannel.open(tabfile.toPath());
+        try {
+            size = fileChannel.size();
+            int segmentCount = (int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+            segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long segmentStart = (long) i << SEGMENT_SHIFT;
+                segments[i] = fileChannel.map(FileChannel.MapMode.READ_ONLY, segmentStart, Math.min(SEGMENT_SIZE, size - segmentStart));
+            }
+
+            rowOffsets = new long[casecount + 1];
+            cursorOffsets = new int[casecount];
+            indexRows();
+        } catch (IOException ioex) {
+            close();
+            throw ioex;
+        }
+        logger.fine("indexed " + casecount + " rows in tab file " + tabfile.getName() + " (" + size + " bytes)");
+    }
+
+    public int getVarCount() {
+        return varcount;
+    }
+
+    public int getCaseCount() {
+        return casecount;
+    }
+
+    private byte byteAt(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & SEGMENT_MASK));
+    }
+
+    /*
+     * The single pass over the file: records the start offset of every row,
+     * and makes sure there are no extra non-empty rows past the stored
+     * number of cases.
+     */
+    private void indexRows() throws IOException {
+        int row = 0;
+        long segmentStart = 0;
+
+        for (int i = 0; i < segments.length && row < casecount; i++) {
+            MappedByteBuffer segment = segments[i];
+            int limit = segment.limit();
+            for (int j = 0; j < limit; j++) {
+                if (segment.get(j) == '\n') {
+                    rowOffsets[++row] = segmentStart + j + 1;
+                    if (row == casecount) {
+                        break;
+                    }
+                }
+            }
+            segmentStart += limit;
+        }
+
+        if (row < casecount) {
+            if (row == casecount - 1 && rowOffsets[row] < size) {
+                // the last line is not terminated by a new line:
+                rowOffsets[casecount] = size + 1;
+            } else {
+                throw new IOException("Tab file has fewer rows than the stored number of cases!");
+            }
+        }
+
+        for (long position = rowOffsets[casecount]; position < size; position++) {
+            if (byteAt(position) != '\n') {
+                throw new IOException("Tab file has more nonempty rows than the stored number of cases (" + casecount + ")!");
+            }
+        }
+    }
+
+    private long rowEnd(int row) {
+        return rowOffsets[row + 1] - 1;
+    }
+
+    /*
+     * Advances the per-row cursors to the beginning of the specified column.
+     * Going back to an earlier column means rewinding to the beginning of
+     * the rows.
+     */
+    private void seekColumn(int column) throws IOException {
+        if (column < 0 || column >= varcount) {
+            throw new IOException("Column " + column + " is out of bounds.");
+        }
+        if (column < cursorColumn) {
+            Arrays.fill(cursorOffsets, 0);
+            cursorColumn = 0;
+        }
+        int skip = column - cursorColumn;
+        if (skip == 0) {
+            return;
+        }
+
+        for (int row = 0; row < casecount; row++) {
+            long position = rowOffsets[row] + cursorOffsets[row];
+            long end = rowEnd(row);
+            int tabs = 0;
+            while (tabs < skip) {
+                if (position >= end) {
+                    Arrays.fill(cursorOffsets, 0);
+                    cursorColumn = 0;
+                    throw new IOException("Row " + row + " of the tab file has fewer than " + (column + 1) + " columns.");
+                }
+                if (byteAt(position++) == '\t') {
+                    tabs++;
+                }
+            }
+            long offset = position - rowOffsets[row];
+            if (offset > Integer.MAX_VALUE) {
+                Arrays.fill(cursorOffsets, 0);
+                cursorColumn = 0;
+                throw new IOException("Row " + row + " of the tab file is too long.");
+            }
+            cursorOffsets[row] = (int) offset;
+        }
+        cursorColumn = column;
+    }
+
+    private long tokenStart(int row) {
+        return rowOffsets[row] + cursorOffsets[row];
+    }
+
+    private long tokenEnd(int row, long start) {
+        long end = rowEnd(row);
+        long position = start;
+        while (position < end && byteAt(position) != '\t') {
+            position++;
+        }
+        return position;
+    }
+
+    private String tokenString(long start, long end) {
+        int length = (int) (end - start);
+        if (tokenBuffer.length < length) {
+            tokenBuffer = new byte[Math.max(length, tokenBuffer.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            tokenBuffer[i] = byteAt(start + i);
+        }
+        return new String(tokenBuffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /*
+     * Parses a token consisting of an optional sign followed by at most
+     * maxDigits decimal digits; returns false if the token is anything else,
+     * i.e. needs to be handed over to the standard Java parsers.
+     */
+    private boolean parseSimpleInteger(long start, long end, int maxDigits, long[] result) {
+        long position = start;
+        boolean negative = false;
+        byte b = byteAt(position);
+        if (b == '-' || b == '+') {
+            negative = (b == '-');
+            position++;
+        }
+        int digits = (int) (end - position);
+        if (digits < 1 || digits > maxDigits) {
+            return false;
+        }
+        long value = 0;
+        for (; position < end; position++) {
+            b = byteAt(position);
+            if (b < '0' || b > '9') {
+                return false;
+            }
+            value = value * 10 + (b - '0');
+        }
+        if (negative && value == 0) {
+            // "-0" is a (signed) floating point zero; let the standard
+            // parsers deal with it.
+            return false;
+        }
+        result[0] = negative ? -value : value;
+        return true;
+    }
+
+    public DoubleVector readDoubleVector(int column) throws IOException {
+        seekColumn(column);
+        double[] values = new double[casecount];
+        BitSet missing = new BitSet(casecount);
+        long[] parsed = new long[1];
+
+        for (int row = 0; row < casecount; row++) {
+            long start = tokenStart(row);
+            long end = tokenEnd(row, start);
+            if (start == end) {
+                missing.set(row);
+            } else if (parseSimpleInteger(start, end, MAX_EXACT_DOUBLE_DIGITS, parsed)) {
+                values[row] = parsed[0];
+            } else {
+                String token = tokenString(start, end);
+                if ("inf".equalsIgnoreCase(token) || "+inf".equalsIgnoreCase(token)) {
+                    values[row] = Double.POSITIVE_INFINITY;
+                } else if ("-inf".equalsIgnoreCase(token)) {
+                    values[row] = Double.NEGATIVE_INFINITY;
+                } else {
+                    try {
+                        values[row] = Double.parseDouble(token);
+                    } catch (NumberFormatException ex) {
+                        missing.set(row);
+                    }
+                }
+            }
+        }
+        return new DoubleVector(values, missing);
+    }
+
+    // Float vectors are only used for the same 4.0 vs 3.* UNF compatibility
+    // purposes as the Float methods in TabularSubsetGenerator.
+    public FloatVector readFloatVector(int column) throws IOException {
+        seekColumn(column);
+        float[] values = new float[casecount];
+        BitSet missing = new BitSet(casecount);
+        long[] parsed = new long[1];
+
+        for (int row = 0; row < casecount; row++) {
+            long start = tokenStart(row);
+            long end = tokenEnd(row, start);
+            if (start == end) {
+                missing.set(row);
+            } else if (parseSimpleInteger(start, end, MAX_EXACT_FLOAT_DIGITS, parsed)) {
+                values[row] = parsed[0];
+            } else {
+                String token = tokenString(start, end);
+                if ("inf".equalsIgnoreCase(token) || "+inf".equalsIgnoreCase(token)) {
+                    values[row] = Float.POSITIVE_INFINITY;
+                } else if ("-inf".equalsIgnoreCase(token)) {
+                    values[row] = Float.NEGATIVE_INFINITY;
+                } else {
+                    try {
+                        values[row] = Float.parseFloat(token);
+                    } catch (NumberFormatException ex) {
+                        missing.set(row);
+                    }
+                }
+            }
+        }
+        return new FloatVector(values, missing);
+    }
+
+    public LongVector readLongVector(int column) throws IOException {
+        seekColumn(column);
+        long[] values = new long[casecount];
+        BitSet missing = new BitSet(casecount);
+        long[] parsed = new long[1];
+
+        for (int row = 0; row < casecount; row++) {
+            long start = tokenStart(row);
+            long end = tokenEnd(row, start);
+            if (start == end) {
+                missing.set(row);
+            } else if (parseSimpleInteger(start, end, MAX_EXACT_LONG_DIGITS, parsed)) {
+                values[row] = parsed[0];
+            } else {
+                try {
+                    values[row] = Long.parseLong(tokenString(start, end));
+                } catch (NumberFormatException ex) {
+                    missing.set(row); // assume missing value
+                }
+            }
+        }
+        return new LongVector(values, missing);
+    }
+
+    /*
+     * Character vectors are returned as Strings, with nulls for the missing
+     * values (an empty token is a missing value; an empty string in quotes
+     * is an empty string).
+     */
+    public String[] readStringVector(int column) throws IOException {
+        seekColumn(column);
+        String[] values = new String[casecount];
+
+        for (int row = 0; row < casecount; row++) {
+            long start = tokenStart(row);
+            long end = tokenEnd(row, start);
+            if (start != end) {
+                values[row] = unescapeStringToken(tokenString(start, end));
+            }
+        }
+        return values;
+    }
+
+    /*
+     * Strips the outer quotes and restores the special characters that are
+     * stored in tab files escaped - quotes, new lines and tabs - the same way
+     * TabularSubsetGenerator.subsetStringVector() does.
+     */
+    static String unescapeStringToken(String token) {
+        token = token.replaceFirst("^\\\"", "");
+        token = token.replaceFirst("\\\"$", "");
+
+        if (token.indexOf('\\') < 0) {
+            return token;
+        }
+
+        String[] splitTokens = token.split(Matcher.quoteReplacement("\\\\"), -2);
+
+        for (int i = 0; i < splitTokens.length; i++) {
+            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\\""), "\"");
+            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\t"), "\t");
+            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\n"), "\n");
+            splitTokens[i] = splitTokens[i].replaceAll(Matcher.quoteReplacement("\\r"), "\r");
+        }
+
+        return StringUtils.join(splitTokens, '\\');
+    }
+
+    @Override
+    public void close() {
+        // (the mapped segments will be released when they are garbage-collected)
+        try {
+            fileChannel.close();
+        } catch (IOException ioe) {
+            // don't care.
+        }
+    }
+
+    /**
+     * A vector of primitive doubles, with the missing values flagged in a
+     * separate bitmap.
+     */
+    public static class DoubleVector {
+
+        private final double[] values;
+        private final BitSet missing;
+
+        public DoubleVector(double[] values, BitSet missing) {
+            this.values = values;
+            this.missing = missing;
+        }
+
+        public double[] getValues() {
+            return values;
+        }
+
+        public BitSet getMissing() {
+            return missing;
+        }
+
+        public boolean isMissing(int index) {
+            return missing.get(index);
+        }
+
+        // The UNF calculator and SumStatCalculator still expect boxed
+        // vectors, with nulls for the missing values:
+        public Double[] toBoxedArray() {
+            Double[] boxed = new Double[values.length];
+            for (int i = 0; i < values.length; i++) {
+                if (!missing.get(i)) {
+                    boxed[i] = values[i];
+                }
+            }
+            return boxed;
+        }
+    }
+
+    /**
+     * A vector of primitive floats, with the missing values flagged in a
+     * separate bitmap.
+     */
+    public static class FloatVector {
+
+        private final float[] values;
+        private final BitSet missing;
+
+        public FloatVector(float[] values, BitSet missing) {
+            this.values = values;
+            this.missing = missing;
+        }
+
+        public float[] getValues() {
+            return values;
+        }
+
+        public BitSet getMissing() {
+            return missing;
+        }
+
+        public boolean isMissing(int index) {
+            return missing.get(index);
+        }
+
+        public Float[] toBoxedArray() {
+            Float[] boxed = new Float[values.length];
+            for (int i = 0; i < values.length; i++) {
+                if (!missing.get(i)) {
+                    boxed[i] = values[i];
+                }
+            }
+            return boxed;
+        }
+    }
+
+    /**
+     * A vector of primitive longs, with the missing values flagged in a
+     * separate bitmap.
+     */
+    public static class LongVector {
+
+        private final long[] values;
+        private final BitSet missing;
+
+        public LongVector(long[] values, BitSet missing) {
+            this.values = values;
+            this.missing = missing;
+        }
+
+        public long[] getValues() {
+            return values;
+        }
+
+        public BitSet getMissing() {
+            return missing;
+        }
+
+        public boolean isMissing(int index) {
+            return missing.get(index);
+        }
+
+        public Long[] toBoxedArray() {
+            Long[] boxed = new Long[values.length];
+            for (int i = 0; i < values.length; i++) {
+                if (!missing.get(i)) {
+                    boxed[i] = values[i];
+                }
+            }
+            return boxed;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import edu.harvard.iq.dataverse.DataFile;
+import edu.harvard.iq.dataverse.datavariable.DataVariable;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Row selection for tabular subsetting: an (optional) range of rows, and an
+ * (optional) simple predicate on the value of one variable, such as
+ * "year:eq:2020". Only the rows that pass both are written into the subset.
+ *
+ * When a row range is requested the tab file is not parsed from the
+ * beginning; reading starts at the nearest indexed row before the range
+ * (see TabularRowIndex), and stops at the end of the range.
+ */
+public class TabularRowFilter {
+
+    private static final Logger logger = Logger.getLogger(TabularRowFilter.class.getCanonicalName());
+
+    public enum Operator {
+        EQ, NE, LT, LE, GT, GE
+    }
+
+    // 1-based and inclusive:
+    private int firstRow = 1;
+    private int lastRow = Integer.MAX_VALUE;
+
+    private DataVariable whereVariable = null;
+    private Operator whereOperator = null;
+    private String whereValue = null;
+    private double whereNumericValue;
+
+    private TabularRowFilter() {
+    }
+
+    /**
+     * @param rowsParam a row range, "N-M", "N-" or "N", with 1-based row
+     * numbers; or null
+     * @param whereParam a predicate, "variable:operator:value", where the
+     * variable is referenced by its name, or by its id ("v123"), and the
+     * operator is one of eq, ne, lt, le, gt, ge; or null
+     * @param variables the variables of the data file
+     * @throws IllegalArgumentException if either parameter is not valid
+     */
+    public static TabularRowFilter parse(String rowsParam, String whereParam, List<DataVariable> variables) {
+        TabularRowFilter filter = new TabularRowFilter();
+
+        if (rowsParam != null && !rowsParam.isEmpty()) {
+            String[] bounds = rowsParam.trim().split("-", -1);
+            try {
+                if (bounds.length == 1) {
+                    filter.firstRow = Integer.parseInt(bounds[0]);
+                    filter.lastRow = filter.firstRow;
+                } else if (bounds.length == 2) {
+                    filter.firstRow = Integer.parseInt(bounds[0]);
+                    if (!bounds[1].isEmpty()) {
+                        filter.lastRow = Integer.parseInt(bounds[1]);
+                    }
+                } else {
+                    throw new IllegalArgumentException("Invalid row range: " + rowsParam);
+                }
+            } catch (NumberFormatException nfe) {
+                throw new IllegalArgumentException("Invalid row range: " + rowsParam);
+            }
+            if (filter.firstRow < 1 || filter.lastRow < filter.firstRow) {
+                throw new IllegalArgumentException("Invalid row range: " + rowsParam);
+            }
+        }
+
+        if (whereParam != null && !whereParam.isEmpty()) {
+            String[] tokens = whereParam.split(":", 3);
+            if (tokens.length != 3) {
+                throw new IllegalArgumentException("Invalid row filter (expected variable:operator:value): " + whereParam);
+            }
+            for (DataVariable variable : variables) {
+                if (tokens[0].equals(variable.getName()) || tokens[0].equals("v" + variable.getId())) {
+                    filter.whereVariable = variable;
+                    break;
+                }
+            }
+            if (filter.whereVariable == null) {
+                throw new IllegalArgumentException("Unknown variable in row filter: " + tokens[0]);
+            }
+            try {
+                filter.whereOperator = Operator.valueOf(tokens[1].toUpperCase());
+            } catch (IllegalArgumentException iae) {
+                throw new IllegalArgumentException("Unknown operator in row filter: " + tokens[1]);
+            }
+            filter.whereValue = tokens[2];
+            if (filter.whereVariable.isTypeNumeric()) {
+                Double numericValue = parseNumericToken(filter.whereValue);
+                if (numericValue == null) {
+                    throw new IllegalArgumentException("Non-numeric value in row filter on numeric variable " + tokens[0] + ": " + tokens[2]);
+                }
+                filter.whereNumericValue = numericValue;
+            }
+        }
+
+        return filter;
+    }
+
+    public int getFirstRow() {
+        return firstRow;
+    }
+
+    public int getLastRow() {
+        return lastRow;
+    }
+
+    /**
+     * @param fields the tab-separated fields of a row of the tab file
+     * @return true if the row passes the predicate (if any); rows with a
+     * missing value in the filtered variable never do
+     */
+    public boolean matches(String[] fields) {
+        if (whereVariable == null) {
+            return true;
+        }
+        int column = whereVariable.getFileOrder();
+        if (column >= fields.length || fields[column].isEmpty()) {
+            return false;
+        }
+
+        int comparison;
+        if (whereVariable.isTypeNumeric()) {
+            Double value = parseNumericToken(fields[column]);
+            if (value == null) {
+                return false;
+            }
+            comparison = Double.compare(value, whereNumericValue);
+        } else {
+            comparison = TabularColumnReader.unescapeStringToken(fields[column]).compareTo(whereValue);
+        }
+
+        switch (whereOperator) {
+            case EQ:
+                return comparison == 0;
+            case NE:
+                return comparison != 0;
+            case LT:
+                return comparison < 0;
+            case LE:
+                return comparison <= 0;
+            case GT:
+                return comparison > 0;
+            default:
+                return comparison >= 0;
+        }
+    }
+
+    /**
+     * Writes the requested columns of the selected rows of the tab file into
+     * the output file.
+     */
+    public void subsetFile(DataFile dataFile, List<DataVariable> variables, File outfile) throws IOException {
+        int casecount = dataFile.getDataTable().getCaseQuantity().intValue();
+        int[] columns = new int[variables.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = variables.get(i).getFileOrder();
+        }
+
+        // 0-based, inclusive:
+        int first = firstRow - 1;
+        int last = Math.min(lastRow, casecount) - 1;
+
+        try (BufferedWriter out = Files.newBufferedWriter(outfile.toPath(), StandardCharsets.UTF_8)) {
+            if (first > last) {
+                return;
+            }
+
+            int row = 0;
+            long offset = 0;
+            if (first > 0) {
+                TabularRowIndex index = TabularRowIndex.getRowIndex(dataFile);
+                row = index.getIndexedRow(first);
+                offset = index.getOffset(first);
+            }
+            logger.fine("Subsetting rows " + firstRow + " through " + (last + 1) + " of datafile " + dataFile.getId() + ", starting at byte " + offset);
+
+            StorageIO<DataFile> storageIO = dataFile.getStorageIO();
+            storageIO.open(DataAccessOption.READ_ACCESS);
+            try (InputStream tabStream = storageIO.getInputStream()) {
+                skipTo(tabStream, offset);
+                BufferedReader in = new BufferedReader(new InputStreamReader(tabStream, StandardCharsets.UTF_8));
+
+                for (; row <= last; row++) {
+                    String line = in.readLine();
+                    if (line == null) {
+                        throw new IOException("Tab file has fewer rows than the stored number of cases!");
+                    }
+                    if (row < first) {
+                        continue;
+                    }
+                    String[] fields = line.split("\t", -1);
+                    if (!matches(fields)) {
+                        continue;
+                    }
+                    for (int i = 0; i < columns.length; i++) {
+                        if (i > 0) {
+                            out.write('\t');
+                        }
+                        if (columns[i] < fields.length) {
+                            out.write(fields[columns[i]]);
+                        }
+                    }
+                    out.write('\n');
+                }
+            }
+        }
+    }
+
+    /**
+     * Skips to the offset with InputStream.skip(), so that the skipped bytes
+     * are not read at all where the stream supports it (a FileInputStream
+     * seeks, an S3RangedInputStream does not download the skipped ranges).
+     */
+    static void skipTo(InputStream in, long offset) throws IOException {
+        long remaining = offset;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                // skip() may return 0 before the end of the stream; a read
+                // tells the two apart
+                if (in.read() == -1) {
+                    throw new EOFException("Tab file ends before the indexed offset " + offset);
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static Double parseNumericToken(String token) {
+        if ("inf".equalsIgnoreCase(token) || "+inf".equalsIgnoreCase(token)) {
+            return Double.POSITIVE_INFINITY;
+        } else if ("-inf".equalsIgnoreCase(token)) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        try {
+            return Double.valueOf(token);
+        } catch (NumberFormatException nfe) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import edu.harvard.iq.dataverse.DataFile;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.logging.Logger;
+
+/**
+ * Sparse index of the rows of a tab-delimited data file: the byte offset of
+ * every n-th row, so that a range of rows can be read by skipping straight
+ * to the nearest indexed row before it, instead of parsing the file from the
+ * beginning. The index is stored as an auxiliary object of the tab file.
+ */
+public class TabularRowIndex {
+
+    private static final Logger logger = Logger.getLogger(TabularRowIndex.class.getCanonicalName());
+
+    public static final String ROW_INDEX_AUX_TAG = "rowidx";
+    public static final int DEFAULT_INTERVAL = 1000;
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private final int interval;
+    private final long[] offsets;
+
+    TabularRowIndex(int interval, long[] offsets) {
+        this.interval = interval;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Indexes a tab file, in one pass over the stream.
+     *
+     * @param tabStream the tab file; left open
+     * @param casecount number of rows in the file
+     * @param interval every how many rows to record an offset
+     */
+    public static TabularRowIndex build(InputStream tabStream, int casecount, int interval) throws IOException {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Row index interval must be positive");
+        }
+        long[] offsets = new long[(casecount + interval - 1) / interval];
+        int indexed = offsets.length > 0 ? 1 : 0;
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long position = 0;
+        int row = 0;
+        int n;
+        while (indexed < offsets.length && (n = tabStream.read(buffer)) > -1) {
+            for (int i = 0; i < n && indexed < offsets.length; i++) {
+                if (buffer[i] == '\n' && ++row % interval == 0) {
+                    offsets[indexed++] = position + i + 1;
+                }
+            }
+            position += n;
+        }
+
+        if (indexed < offsets.length) {
+            throw new IOException("Tab file has fewer rows than the stored number of cases!");
+        }
+        return new TabularRowIndex(interval, offsets);
+    }
+
+    /**
+     * Looks up the row index of a tabular data file in its aux objects, or
+     * builds it, by reading the tab file once, and caches it for future use.
+     */
+    public static TabularRowIndex getRowIndex(DataFile dataFile) throws IOException {
+        if (dataFile == null || !dataFile.isTabularData()) {
+            throw new IOException("Row index requested on a non-tabular data file");
+        }
+        int casecount = dataFile.getDataTable().getCaseQuantity().intValue();
+        StorageIO<DataFile> storageIO = dataFile.getStorageIO();
+
+        if (storageIO.isAuxObjectCached(ROW_INDEX_AUX_TAG)) {
+            try (InputStream indexStream = storageIO.getAuxFileAsInputStream(ROW_INDEX_AUX_TAG)) {
+                TabularRowIndex index = read(indexStream);
+                if (index.isValidFor(casecount)) {
+                    return index;
+                }
+                logger.warning("Cached row index of datafile " + dataFile.getId() + " does not match its number of cases; re-indexing.");
+            } catch (IOException ioex) {
+                logger.warning("Failed to read the cached row index of datafile " + dataFile.getId() + ": " + ioex.getMessage());
+            }
+        }
+
+        TabularRowIndex index;
+        storageIO.open(DataAccessOption.READ_ACCESS);
+        try (InputStream tabStream = storageIO.getInputStream()) {
+            index = build(tabStream, casecount, DEFAULT_INTERVAL);
+        }
+
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        index.write(indexBytes);
+        try {
+            storageIO.saveInputStreamAsAux(new ByteArrayInputStream(indexBytes.toByteArray()), ROW_INDEX_AUX_TAG, (long) indexBytes.size());
+        } catch (IOException ioex) {
+            // Not fatal; the file will be re-indexed on the next request.
+            logger.warning("Failed to save the row index of datafile " + dataFile.getId() + ": " + ioex.getMessage());
+        }
+        return index;
+    }
+
+    public static TabularRowIndex read(InputStream in) throws IOException {
+        DataInputStream dataIn = new DataInputStream(in);
+        int interval = dataIn.readInt();
+        int length = dataIn.readInt();
+        if (interval < 1 || length < 0) {
+            throw new IOException("Invalid row index header");
+        }
+        long[] offsets = new long[length];
+        for (int i = 0; i < length; i++) {
+            offsets[i] = dataIn.readLong();
+        }
+        return new TabularRowIndex(interval, offsets);
+    }
+
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeInt(interval);
+        dataOut.writeInt(offsets.length);
+        for (long offset : offsets) {
+            dataOut.writeLong(offset);
+        }
+        dataOut.flush();
+    }
+
+    /**
+     * @param row 0-based row number
+     * @return the 0-based number of the last indexed row at or before it
+     */
+    public int getIndexedRow(int row) {
+        return (row / interval) * interval;
+    }
+
+    /**
+     * @param row 0-based row number
+     * @return the byte offset of the last indexed row at or before it
+     */
+    public long getOffset(int row) {
+        if (row < 0 || row / interval >= offsets.length) {
+            throw new IndexOutOfBoundsException("Row " + row + " is outside of the indexed rows");
+        }
+        return offsets[row / interval];
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    private boolean isValidFor(int casecount) {
+        return offsets.length == (casecount + interval - 1) / interval;
+    }
+}
@@ -42,7 +42,12 @@ import java.math.MathContext;
 import java.math.RoundingMode;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -69,7 +74,17 @@ public class TabularSubsetGenerator implements SubsetGenerator {
     
     private static int MAX_COLUMN_BUFFER = 8192;
     
+    /*
+     * The "rotated" image of a tab file is a columnar copy of it: a header of
+     * the byte offsets of the ends of the individual columns, followed by 
+     * the column vectors themselves. It is stored as an auxiliary object 
+     * with this tag; (on local storage this is the same as the ".90d" file
+     * created next to the tab file).
+     */
+    public static final String ROTATED_IMAGE_AUX_TAG = "90d";
+    
     private FileChannel fileChannel = null; 
+    private File temporaryImageFile = null;
     
     private int varcount; 
     private int casecount; 
@@ -101,14 +116,11 @@ public class TabularSubsetGenerator implements SubsetGenerator {
            
         
         StorageIO<DataFile> dataAccess = datafile.getStorageIO();
-        if (!dataAccess.isLocalFile()) {
-            throw new IOException("Subsetting is supported on local files only!");
-        }
-        
-        //File tabfile = datafile.getFileSystemLocation().toFile();
-        File tabfile = dataAccess.getFileSystemPath().toFile();
         
-        File rotatedImageFile = getRotatedImage(tabfile, getVarCount(), getCaseCount());
+        File rotatedImageFile = getRotatedImage(dataAccess, getVarCount(), getCaseCount());
+        if (isTemporaryImage(dataAccess, rotatedImageFile)) {
+            temporaryImageFile = rotatedImageFile;
+        }
         long[] columnEndOffsets = extractColumnOffsets(rotatedImageFile, getVarCount(), getCaseCount()); 
         
         fileChannel = (FileChannel.open(Paths.get(rotatedImageFile.getAbsolutePath()), StandardOpenOption.READ));
@@ -357,6 +369,26 @@ public class TabularSubsetGenerator implements SubsetGenerator {
                 // don't care.
             }
         }
+        if (temporaryImageFile != null) {
+            temporaryImageFile.delete();
+        }
+    }
+    
+    /**
+     * Subsets the requested columns of an ingested tabular file into outfile, 
+     * reading only the requested column vectors from the rotated image of 
+     * the file (the image is generated and cached as an auxiliary object on 
+     * the first request).
+     */
+    public static void subsetFile(DataFile datafile, List<DataVariable> variables, File outfile) throws IOException {
+        try (TabularSubsetInputStream subsetStream = new TabularSubsetInputStream(datafile, variables);
+                BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(outfile))) {
+            byte[] buffer = new byte[MAX_COLUMN_BUFFER];
+            int bytesread;
+            while ((bytesread = subsetStream.read(buffer)) != -1) {
+                out.write(buffer, 0, bytesread);
+            }
+        }
     }
     
     public void subsetFile(String infile, String outfile, List<Integer> columns, Long numCases) {
@@ -717,13 +749,18 @@ public class TabularSubsetGenerator implements SubsetGenerator {
         }
         
         StorageIO<DataFile> dataAccess = dataFile.getStorageIO();
-        if (!dataAccess.isLocalFile()) {
-            throw new IOException("Subsetting is supported on local files only!");
-        }
+        File rotatedImageFile = getRotatedImage(dataAccess, varcount, casecount);
         
-        //File tabfile = datafile.getFileSystemLocation().toFile();
-        File tabfile = dataAccess.getFileSystemPath().toFile();
-
+        try {
+            return subsetObjectVector(dataFile, rotatedImageFile, column, varcount, casecount, columntype);
+        } finally {
+            if (isTemporaryImage(dataAccess, rotatedImageFile)) {
+                rotatedImageFile.delete();
+            }
+        }
+    }
+    
+    private Object[] subsetObjectVector(DataFile dataFile, File rotatedImageFile, int column, int varcount, int casecount, int columntype) throws IOException {
         if (columntype == COLUMN_TYPE_STRING) {
             String filename = dataFile.getFileMetadata().getLabel();
             if (filename != null) {
@@ -768,14 +805,14 @@ public class TabularSubsetGenerator implements SubsetGenerator {
                                 // || fnumvalue.intValue() == 69626 [nope!]
                                 )) {
                             dbgLog.info("\"Old\" file name detected; using \"compatibility mode\" for a character vector subset;");
-                            return subsetObjectVector(tabfile, column, varcount, casecount, columntype, true);
+                            return subsetObjectVectorFromImage(rotatedImageFile, column, varcount, casecount, columntype, true);
                         }
                     }
                 }
             }
         }
 
-        return subsetObjectVector(tabfile, column, varcount, casecount, columntype);
+        return subsetObjectVectorFromImage(rotatedImageFile, column, varcount, casecount, columntype, false);
     }
     
     public Object[] subsetObjectVector(File tabfile, int column, int varcount, int casecount, int columntype) throws IOException {
@@ -785,6 +822,11 @@ public class TabularSubsetGenerator implements SubsetGenerator {
     
     
     public Object[] subsetObjectVector(File tabfile, int column, int varcount, int casecount, int columntype, boolean compatmode) throws IOException {
+        File rotatedImageFile = getRotatedImage(tabfile, varcount, casecount);
+        return subsetObjectVectorFromImage(rotatedImageFile, column, varcount, casecount, columntype, compatmode);
+    }
+    
+    private Object[] subsetObjectVectorFromImage(File rotatedImageFile, int column, int varcount, int casecount, int columntype, boolean compatmode) throws IOException {
         
         Object[] retVector = null; 
         
@@ -811,7 +853,6 @@ public class TabularSubsetGenerator implements SubsetGenerator {
             throw new IOException("Unsupported column type: "+columntype);
         }
         
-        File rotatedImageFile = getRotatedImage(tabfile, varcount, casecount);
         long[] columnEndOffsets = extractColumnOffsets(rotatedImageFile, varcount, casecount); 
         long columnOffset = 0; 
         long columnLength = 0; 
@@ -1092,9 +1133,102 @@ public class TabularSubsetGenerator implements SubsetGenerator {
         return byteOffsets;
     }
     
+    /*
+     * Locates the rotated image of the tabular file. On local storage it is
+     * kept next to the tab file, and is generated on the first request. 
+     * Remote storage (S3, Swift...) does not support random access reads; 
+     * so the image is downloaded into the local RotatedImageCache, or, if 
+     * that is disabled, into a temp file - which is the responsibility of 
+     * the caller to delete (see isTemporaryImage()); the image is generated 
+     * and saved as an auxiliary object on the first request, the same way 
+     * DataConverter caches format conversions.
+     */
+    private File getRotatedImage(StorageIO<DataFile> dataAccess, int varcount, int casecount) throws IOException {
+        if (dataAccess.isLocalFile()) {
+            //File tabfile = datafile.getFileSystemLocation().toFile();
+            File tabfile = dataAccess.getFileSystemPath().toFile();
+            return getRotatedImage(tabfile, varcount, casecount);
+        }
+        
+        RotatedImageCache imageCache = RotatedImageCache.getInstance();
+        
+        if (dataAccess.isAuxObjectCached(ROTATED_IMAGE_AUX_TAG)) {
+            long imageSize = dataAccess.getAuxObjectSize(ROTATED_IMAGE_AUX_TAG);
+            String cacheKey = getImageCacheKey(dataAccess, imageSize);
+            if (imageCache.isEnabled()) {
+                File cachedImageFile = imageCache.get(cacheKey);
+                if (cachedImageFile != null) {
+                    return cachedImageFile;
+                }
+            }
+            File rotatedImageFile = File.createTempFile("tempRotatedImage", "." + ROTATED_IMAGE_AUX_TAG);
+            try (ReadableByteChannel imageChannel = (ReadableByteChannel) dataAccess.openAuxChannel(ROTATED_IMAGE_AUX_TAG);
+                    FileChannel tempImageChannel = new FileOutputStream(rotatedImageFile).getChannel()) {
+                tempImageChannel.transferFrom(imageChannel, 0, imageSize);
+            } catch (IOException ioex) {
+                rotatedImageFile.delete();
+                throw ioex;
+            }
+            return cacheRotatedImage(imageCache, cacheKey, rotatedImageFile);
+        }
+        
+        File tabfile = DataConverter.downloadFromStorageIO(dataAccess);
+        if (tabfile == null) {
+            throw new IOException("Failed to download the tabular file for subsetting.");
+        }
+        
+        File rotatedImageFile;
+        try {
+            rotatedImageFile = generateRotatedImage(tabfile, varcount, casecount);
+        } finally {
+            tabfile.delete();
+        }
+        
+        try {
+            dataAccess.savePathAsAux(rotatedImageFile.toPath(), ROTATED_IMAGE_AUX_TAG);
+        } catch (IOException ioex) {
+            // non-fatal; we'll just have to generate it again next time.
+            dbgLog.warning("Failed to cache the rotated image of the tabular file as an auxiliary object: " + ioex.getMessage());
+            return rotatedImageFile;
+        }
+        return cacheRotatedImage(imageCache, getImageCacheKey(dataAccess, rotatedImageFile.length()), rotatedImageFile);
+    }
+    
+    private File cacheRotatedImage(RotatedImageCache imageCache, String cacheKey, File rotatedImageFile) {
+        if (!imageCache.isEnabled()) {
+            return rotatedImageFile;
+        }
+        try {
+            return imageCache.put(cacheKey, rotatedImageFile);
+        } catch (IOException ioex) {
+            // non-fatal; the temp file is used for this request only.
+            dbgLog.warning("Failed to cache the rotated image of the tabular file locally: " + ioex.getMessage());
+            return rotatedImageFile;
+        }
+    }
+    
+    /*
+     * The local copies of the images are keyed by the file and the size of
+     * the image, so that the copy of a replaced image (e.g. after the file
+     * is reingested) is not used.
+     */
+    private static String getImageCacheKey(StorageIO<DataFile> dataAccess, long imageSize) {
+        DataFile dataFile = dataAccess.getDataFile();
+        String storageIdentifier = dataFile.getStorageIdentifier() == null ? "" : dataFile.getStorageIdentifier();
+        return dataFile.getId() + "-" + storageIdentifier.replaceAll("[^A-Za-z0-9._-]", "_") + "-" + imageSize + "." + ROTATED_IMAGE_AUX_TAG;
+    }
+    
+    /*
+     * Whether the image returned by getRotatedImage() is a temp file, to be 
+     * deleted once the request is done with it.
+     */
+    private static boolean isTemporaryImage(StorageIO<DataFile> dataAccess, File rotatedImageFile) {
+        return !dataAccess.isLocalFile() && !RotatedImageCache.getInstance().contains(rotatedImageFile);
+    }
+    
     private File getRotatedImage(File tabfile, int varcount, int casecount)  throws IOException {
         String fileName = tabfile.getAbsolutePath();
-        String rotatedImageFileName = fileName + ".90d";
+        String rotatedImageFileName = fileName + "." + ROTATED_IMAGE_AUX_TAG;
         File rotatedImageFile = new File(rotatedImageFileName); 
         if (rotatedImageFile.exists()) {
             //System.out.println("Image already exists!");
@@ -1105,11 +1239,17 @@ public class TabularSubsetGenerator implements SubsetGenerator {
         
     }
     
-    private File generateRotatedImage (File tabfile, int varcount, int casecount) throws IOException {
+    /**
+     * Generates the rotated image of a tab file; the image is saved in the 
+     * same directory as the tab file, with the ".90d" extension added. 
+     * It is written under a temporary name and then moved into place, so 
+     * that a concurrent request never reads a partially written image. 
+     */
+    public File generateRotatedImage (File tabfile, int varcount, int casecount) throws IOException {
         // TODO: throw exceptions if bad file, zero varcount, etc. ...
         
         String fileName = tabfile.getAbsolutePath();
-        String rotatedImageFileName = fileName + ".90d";
+        String rotatedImageFileName = fileName + "." + ROTATED_IMAGE_AUX_TAG;
         
         int MAX_OUTPUT_STREAMS = 32;
         int MAX_BUFFERED_BYTES = 10 * 1024 * 1024; // 10 MB - for now?
@@ -1219,8 +1359,11 @@ public class TabularSubsetGenerator implements SubsetGenerator {
         // We now need to go through all these buffers and create the final 
         // rotated image file. 
         
+        Path rotatedImagePath = Paths.get(rotatedImageFileName);
+        Path tempImagePath = Files.createTempFile(rotatedImagePath.getParent(), rotatedImagePath.getFileName().toString(), ".tmp");
+        
         try (BufferedOutputStream finalOut = new BufferedOutputStream(
-                new FileOutputStream(new File(rotatedImageFileName)))) {
+                new FileOutputStream(tempImagePath.toFile()))) {
 
             // but first we should create the offset header and write it out into
             // the final file; because it should be at the head, doh!
@@ -1272,9 +1415,19 @@ public class TabularSubsetGenerator implements SubsetGenerator {
                 }
 
             }
+            finalOut.close();
+            
+            try {
+                Files.move(tempImagePath, rotatedImagePath, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException amnse) {
+                Files.move(tempImagePath, rotatedImagePath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            // (only left behind if the rotation failed)
+            Files.deleteIfExists(tempImagePath);
         }
         
-        return new File(rotatedImageFileName);
+        return rotatedImagePath.toFile();
 
     }
   
@@ -1,5 +1,6 @@
 package edu.harvard.iq.dataverse.engine.command;
 
+import edu.harvard.iq.dataverse.PermissionCache;
 import edu.harvard.iq.dataverse.api.AbstractApiBean;
 import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IpAddress;
 import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
@@ -25,6 +26,7 @@ public class DataverseRequest {
     private final IpAddress sourceAddress;
     private final String invocationId;
     private final HttpServletRequest httpServletRequest;
+    private final PermissionCache permissionCache = new PermissionCache();
     
     private final static String undefined = "0.0.0.0";
     
@@ -195,6 +197,13 @@ public class DataverseRequest {
     public HttpServletRequest getHttpServletRequest() {
         return httpServletRequest;
     }
+
+    /**
+     * @return The permissions resolved so far for this request.
+     */
+    public PermissionCache getPermissionCache() {
+        return permissionCache;
+    }
     
     public String getSystemMetadataBlockKeyFor(String blockName) {
         String key = null;
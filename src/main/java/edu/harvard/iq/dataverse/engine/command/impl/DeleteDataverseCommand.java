@@ -93,7 +93,7 @@ public class DeleteDataverseCommand extends AbstractVoidCommand {
         definitionPoints.forEach(dvObjectSolrDoc -> {
             boolean add = solrIdsToDelete.add(dvObjectSolrDoc.getSolrId() + IndexServiceBean.discoverabilityPermissionSuffix);
         });
-        var deleteMultipleSolrIds = ctxt.solrIndex().deleteMultipleSolrIds(solrIdsToDelete);
+        var deleteMultipleSolrIds = ctxt.solrIndex().deleteMultipleSolrIds(solrIdsToDelete, true);
         /**
         * @todo: this method currently always returns true because the 
         * underlying methods (already existing) handle exceptions and don't 
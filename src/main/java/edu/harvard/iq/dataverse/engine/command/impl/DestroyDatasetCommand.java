@@ -114,6 +114,9 @@ public class DestroyDatasetCommand extends AbstractVoidCommand {
         
         toReIndex = managedDoomed.getOwner();
 
+        // rolled up downloads, so that the metrics stop counting them now
+        ctxt.metrics().deleteRollupsOf(doomed.getId());
+
         // dataset
         ctxt.em().remove(managedDoomed);
 
@@ -135,7 +138,7 @@ public class DestroyDatasetCommand extends AbstractVoidCommand {
         
        // all the real Solr work is done here
        // delete orphaned Solr ids
-        IndexResponse resultOfSolrDeletionAttempt = ctxt.solrIndex().deleteMultipleSolrIds(datasetAndFileSolrIdsToDelete);
+        IndexResponse resultOfSolrDeletionAttempt = ctxt.solrIndex().deleteMultipleSolrIds(datasetAndFileSolrIdsToDelete, true);
         logger.log(Level.FINE, "Result of attempt to delete dataset and file IDs from the search index: {0}", resultOfSolrDeletionAttempt.getMessage());
 
         // reindex
@@ -291,6 +291,7 @@ public class MoveDataverseCommand extends AbstractVoidCommand {
         // OK, move
         moved.setOwner(destination);
         ctxt.dataverses().save(moved);
+        ctxt.permissions().invalidatePermissionCache();
         
         long moveDvEnd = System.currentTimeMillis();
         logger.info("Dataverse move took " + (moveDvEnd - moveDvStart) + " milliseconds");
@@ -33,6 +33,7 @@ public class UpdatePermissionRootCommand extends AbstractCommand<Dataverse> {
 
         } else {
 			dvoc.setPermissionRoot(newValue);
+            ctxt.permissions().invalidatePermissionCache();
             return ctxt.dataverses().save(dvoc);
 		}
 	}
@@ -0,0 +1,179 @@
+package edu.harvard.iq.dataverse.export;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cache of the bytes of cached metadata exports, in front of the
+ * copies saved in the dataset storage.
+ *
+ * The entries are keyed by the dataset id, the format name and a "version"
+ * string, which should change whenever the saved export does (e.g. the time
+ * of the last export of the dataset), so that an outdated entry is never
+ * returned. The cache is bounded by the total size of the entries, with the
+ * least recently used ones evicted first, and the entries expire after a
+ * fixed time.
+ */
+public class ExportCache {
+
+    private final long maxSize;
+    private final long timeToLiveMillis;
+
+    // access-ordered, i.e. the least recently used entries come first:
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0L;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxSize the maximum total size of the cached exports, in bytes;
+     * 0 disables the cache
+     * @param timeToLiveSeconds how long the entries are kept
+     */
+    public ExportCache(long maxSize, long timeToLiveSeconds) {
+        this.maxSize = maxSize;
+        this.timeToLiveMillis = timeToLiveSeconds * 1000L;
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * @return the largest export that will be cached, in bytes (a quarter
+     * of the cache, so that a single large export cannot flush it)
+     */
+    public long getMaxEntrySize() {
+        return maxSize / 4;
+    }
+
+    public synchronized byte[] get(Long datasetId, String formatName, String version) {
+        Key key = new Key(datasetId, formatName, version);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expires < System.currentTimeMillis()) {
+            remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.bytes;
+    }
+
+    public synchronized void put(Long datasetId, String formatName, String version, byte[] bytes) {
+        if (!isEnabled() || bytes.length > getMaxEntrySize()) {
+            return;
+        }
+        Key key = new Key(datasetId, formatName, version);
+        remove(key);
+        entries.put(key, new Entry(bytes, System.currentTimeMillis() + timeToLiveMillis));
+        size += bytes.length;
+
+        Iterator<Map.Entry<Key, Entry>> leastRecentlyUsed = entries.entrySet().iterator();
+        while (size > maxSize && leastRecentlyUsed.hasNext()) {
+            size -= leastRecentlyUsed.next().getValue().bytes.length;
+            leastRecentlyUsed.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes all the cached exports of the dataset, in any format.
+     */
+    public synchronized void invalidate(Long datasetId) {
+        invalidate(datasetId, null);
+    }
+
+    /**
+     * Removes the cached exports of the dataset in the format (or in any
+     * format, if null).
+     */
+    public synchronized void invalidate(Long datasetId, String formatName) {
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Entry> cached = iterator.next();
+            if (Objects.equals(cached.getKey().datasetId, datasetId)
+                    && (formatName == null || formatName.equals(cached.getKey().formatName))) {
+                size -= cached.getValue().bytes.length;
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0L;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private void remove(Key key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            size -= removed.bytes.length;
+        }
+    }
+
+    private static final class Key {
+        private final Long datasetId;
+        private final String formatName;
+        private final String version;
+
+        Key(Long datasetId, String formatName, String version) {
+            this.datasetId = datasetId;
+            this.formatName = formatName;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return Objects.equals(datasetId, other.datasetId)
+                    && Objects.equals(formatName, other.formatName)
+                    && Objects.equals(version, other.version);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(datasetId, formatName, version);
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] bytes;
+        private final long expires;
+
+        Entry(byte[] bytes, long expires) {
+            this.bytes = bytes;
+            this.expires = expires;
+        }
+    }
+}
@@ -16,12 +16,14 @@ import edu.harvard.iq.dataverse.settings.JvmSettings;
 import edu.harvard.iq.dataverse.util.BundleUtil;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.channels.Channel;
@@ -49,6 +51,7 @@ import java.util.logging.Logger;
 import jakarta.ws.rs.core.MediaType;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 
 /**
  *
@@ -59,10 +62,19 @@ public class ExportService {
     private static ExportService service;
     private ServiceLoader<Exporter> loader;
     private Map<String, Exporter> exporterMap = new HashMap<>();
+    private final ExportCache exportCache;
 
     private static final Logger logger = Logger.getLogger(ExportService.class.getCanonicalName());
 
+    // In-memory cache of the exports, in bytes; and the lifetime of its entries, in seconds:
+    private static final long DEFAULT_EXPORT_CACHE_SIZE = 32L * 1024 * 1024;
+    private static final long DEFAULT_EXPORT_CACHE_TTL = 3600L;
+
     private ExportService() {
+        exportCache = new ExportCache(
+                JvmSettings.EXPORT_CACHE_SIZE.lookupOptional(Long.class).orElse(DEFAULT_EXPORT_CACHE_SIZE),
+                JvmSettings.EXPORT_CACHE_TTL.lookupOptional(Long.class).orElse(DEFAULT_EXPORT_CACHE_TTL));
+
         /*
          * Step 1 - find the EXPORTERS dir and add all jar files there to a class loader
          */
@@ -128,7 +140,16 @@ public class ExportService {
     }
 
     public InputStream getExport(Dataset dataset, String formatName) throws ExportException, IOException {
-        // first we will try to locate an already existing, cached export
+        // Check the in-memory cache first:
+        String cacheVersion = getExportCacheVersion(dataset, formatName);
+        if (cacheVersion != null) {
+            byte[] cachedExport = exportCache.get(dataset.getId(), formatName, cacheVersion);
+            if (cachedExport != null) {
+                return new ByteArrayInputStream(cachedExport);
+            }
+        }
+
+        // then we will try to locate an already existing, cached export
         // for this format:
 
         InputStream exportInputStream = getCachedExportFormat(dataset, formatName);
@@ -188,7 +209,7 @@ public class ExportService {
         }
 
         if (exportInputStream != null) {
-            return exportInputStream;
+            return cacheExportInMemory(dataset, formatName, cacheVersion, exportInputStream);
         }
 
         // if it doesn't exist, we'll try to run the export:
@@ -198,7 +219,7 @@ public class ExportService {
         exportInputStream = getCachedExportFormat(dataset, formatName);
 
         if (exportInputStream != null) {
-            return exportInputStream;
+            return cacheExportInMemory(dataset, formatName, getExportCacheVersion(dataset, formatName), exportInputStream);
         }
 
         // if there is no cached export still - we have to give up and throw
@@ -284,6 +305,7 @@ public class ExportService {
     }
 
     public void clearAllCachedFormats(Dataset dataset) throws IOException {
+        exportCache.invalidate(dataset.getId());
         try {
 
             for (Exporter e : exporterMap.values()) {
@@ -418,6 +440,7 @@ public class ExportService {
     }
 
     private void clearCachedExport(Dataset dataset, String format) throws IOException {
+        exportCache.invalidate(dataset.getId(), format);
         try {
             StorageIO<Dataset> storageIO = getStorageIO(dataset);
             storageIO.deleteAuxObject("export_" + format + ".cached");
@@ -452,6 +475,48 @@ public class ExportService {
 
     }
 
+    /*
+     * The version of the export under which it is kept in the in-memory cache:
+     * the time of the last export of the dataset, so that the cached copy is 
+     * not used once the dataset is re-exported (on this, or any other server).
+     * The DDI export also depends on the current date (see the embargo check
+     * in getExport()), so it is kept for the current day only.
+     * Returns null if the export should not be cached.
+     */
+    private String getExportCacheVersion(Dataset dataset, String formatName) {
+        if (!exportCache.isEnabled() || dataset.getId() == null || dataset.getLastExportTime() == null) {
+            return null;
+        }
+        String version = Long.toString(dataset.getLastExportTime().getTime());
+        if (formatName.equals(DDIExporter.PROVIDER_NAME)) {
+            version = version + "/" + LocalDate.now();
+        }
+        return version;
+    }
+
+    /*
+     * Reads the export into the in-memory cache, unless it's too large for it,
+     * and returns a stream of it, in place of the original one.
+     */
+    private InputStream cacheExportInMemory(Dataset dataset, String formatName, String cacheVersion, InputStream exportInputStream) throws IOException {
+        if (cacheVersion == null) {
+            return exportInputStream;
+        }
+        long maxEntrySize = exportCache.getMaxEntrySize();
+        byte[] bytes = IOUtils.toByteArray(new BoundedInputStream(exportInputStream, maxEntrySize + 1));
+        if (bytes.length > maxEntrySize) {
+            // Too large to be cached; pass on what we've read, and the rest of the stream:
+            return new SequenceInputStream(new ByteArrayInputStream(bytes), exportInputStream);
+        }
+        exportInputStream.close();
+        exportCache.put(dataset.getId(), formatName, cacheVersion, bytes);
+        return new ByteArrayInputStream(bytes);
+    }
+
+    public ExportCache getExportCache() {
+        return exportCache;
+    }
+
     /*
      * The below method, getCachedExportSize(), is not currently used. An exercise
      * for the reader could be to refactor it if it's needed to be compatible with
@@ -0,0 +1,484 @@
+package edu.harvard.iq.dataverse.harvest.client;
+
+import edu.harvard.iq.dataverse.harvest.client.oai.OaiHandler;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import static java.net.HttpURLConnection.HTTP_OK;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipInputStream;
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Client-side implementation of the OAI-PMH ListRecords verb, as an
+ * alternative to running ListIdentifiers and then GetRecord on every
+ * identifier listed: each response brings a whole page of records (typically
+ * 100 or so), saving that many round trips to the remote server.
+ *
+ * The responses are split into records with an event-driven (StAX) parser;
+ * for each record, the header information is read, and the "payload" - the
+ * metadata record enclosed in the <metadata>...</metadata> tags - is copied
+ * as is into a String, to be parsed and validated when it is imported. No
+ * temp files are involved. A page of records is read in full before any of
+ * them is returned, so that the connection is not kept waiting on the
+ * imports.
+ */
+public class FastListRecords {
+
+    private static final String XSI_PREFIX = "xsi";
+    private static final String OAI_ERROR_NO_RECORDS_MATCH = "noRecordsMatch";
+
+    private final String baseURL;
+    private final String metadataPrefix;
+    private final String setName;
+    private final Date fromDate;
+    private final Map<String,String> customHeaders;
+    private final HttpClient httpClient;
+
+    private final XMLInputFactory xmlInputFactory;
+    private final XMLOutputFactory xmlOutputFactory;
+
+    private String resumptionToken = null;
+    private boolean started = false;
+    private int requestCount = 0;
+
+    public FastListRecords(OaiHandler oaiHandler, HttpClient httpClient) throws IOException {
+        this(oaiHandler.getBaseOaiUrl(), oaiHandler.getMetadataPrefix(), oaiHandler.getSetName(), 
+                oaiHandler.getFromDate(), oaiHandler.getCustomHeaders(), httpClient);
+        if (httpClient == null) {
+            throw new IOException("Null Http Client, cannot make ListRecords calls to obtain the metadata.");
+        }
+    }
+
+    FastListRecords(String baseURL, String metadataPrefix, String setName, Date fromDate, Map<String,String> customHeaders, HttpClient httpClient) {
+        this.baseURL = baseURL;
+        this.metadataPrefix = metadataPrefix;
+        this.setName = setName;
+        this.fromDate = fromDate;
+        this.customHeaders = customHeaders;
+        this.httpClient = httpClient;
+
+        xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        xmlOutputFactory = XMLOutputFactory.newInstance();
+    }
+
+    /**
+     * @return true if there are (or may be) more records to retrieve, i.e.
+     * if the first page has not been requested yet, or if the last response
+     * came with a resumption token
+     */
+    public boolean hasMoreRecords() {
+        return !started || resumptionToken != null;
+    }
+
+    /**
+     * @return the number of ListRecords requests made so far
+     */
+    public int getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Retrieves the next page of records.
+     *
+     * @return the records, deleted ones included, in the order they were
+     * listed; an empty list if there are no (more) records
+     * @throws IOException if the request fails, or the response is not a
+     * valid ListRecords response
+     */
+    public List<HarvestedRecord> nextPage() throws IOException {
+        if (!hasMoreRecords()) {
+            return new ArrayList<>();
+        }
+        String requestURL = getRequestURL();
+        started = true;
+        requestCount++;
+
+        try (InputStream in = sendRequest(requestURL)) {
+            return readPage(in, requestURL);
+        }
+    }
+
+    /**
+     * Reads the records out of a ListRecords response, and the resumption
+     * token to request the next page with.
+     */
+    List<HarvestedRecord> readPage(InputStream in, String requestURL) throws IOException {
+        started = true;
+        try {
+            XMLStreamReader xmlr = xmlInputFactory.createXMLStreamReader(in);
+            try {
+                return processOAIPMH(xmlr);
+            } finally {
+                xmlr.close();
+            }
+        } catch (XMLStreamException xse) {
+            resumptionToken = null;
+            throw new IOException("Malformed ListRecords response; " + requestURL + ": " + xse.getMessage(), xse);
+        }
+    }
+
+    String getRequestURL() {
+        StringBuilder requestURL = new StringBuilder(baseURL);
+        requestURL.append("?verb=ListRecords");
+        if (resumptionToken != null) {
+            // the resumption token is an "exclusive" argument:
+            requestURL.append("&resumptionToken=").append(encode(resumptionToken));
+            return requestURL.toString();
+        }
+        requestURL.append("&metadataPrefix=").append(encode(metadataPrefix));
+        if (setName != null && !setName.isEmpty()) {
+            requestURL.append("&set=").append(encode(setName));
+        }
+        if (fromDate != null) {
+            // Day granularity is supported by all OAI servers; records
+            // modified earlier that same day will simply be harvested again.
+            SimpleDateFormat dayFormat = new SimpleDateFormat("yyyy-MM-dd");
+            dayFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+            requestURL.append("&from=").append(dayFormat.format(fromDate));
+        }
+        return requestURL.toString();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private InputStream sendRequest(String requestURL) throws IOException {
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
+                .uri(URI.create(requestURL))
+                .GET()
+                .header("User-Agent", "XOAI Service Provider v5 (Dataverse)")
+                .header("Accept-Encoding", "compress, gzip");
+
+        if (customHeaders != null) {
+            for (String headerName : customHeaders.keySet()) {
+                requestBuilder.header(headerName, customHeaders.get(headerName));
+            }
+        }
+
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Failed to connect to the remote server to obtain ListRecords metadata");
+        }
+
+        if (response.statusCode() != HTTP_OK) {
+            response.body().close();
+            resumptionToken = null;
+            throw new IOException("ListRecords request failed. HTTP error code " + response.statusCode());
+        }
+
+        InputStream inputStream = response.body();
+        Optional<String> contentEncoding = response.headers().firstValue("Content-Encoding");
+        if (contentEncoding.isPresent()) {
+            if (contentEncoding.get().equals("compress")) {
+                ZipInputStream zis = new ZipInputStream(inputStream);
+                zis.getNextEntry();
+                return zis;
+            } else if (contentEncoding.get().equals("gzip")) {
+                return new GZIPInputStream(inputStream);
+            } else if (contentEncoding.get().equals("deflate")) {
+                return new InflaterInputStream(inputStream);
+            }
+        }
+        return inputStream;
+    }
+
+    private List<HarvestedRecord> processOAIPMH(XMLStreamReader xmlr) throws XMLStreamException {
+        List<HarvestedRecord> records = new ArrayList<>();
+        boolean listRecordsFound = false;
+
+        xmlr.nextTag();
+        xmlr.require(XMLStreamConstants.START_ELEMENT, null, "OAI-PMH");
+        // Namespaces declared on the enclosing elements may be used in the
+        // metadata records; they are re-declared on the records copied.
+        Map<String,String> namespaces = new HashMap<>();
+        addNamespaces(xmlr, namespaces);
+
+        // (the resumption token of the previous response is used up)
+        resumptionToken = null;
+
+        for (int event = xmlr.next(); event != XMLStreamConstants.END_DOCUMENT; event = xmlr.next()) {
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (xmlr.getLocalName().equals("error")) {
+                    String errorCode = xmlr.getAttributeValue(null, "code");
+                    String errorMessageText = xmlr.getElementText();
+                    if (OAI_ERROR_NO_RECORDS_MATCH.equals(errorCode)) {
+                        // not an error, as far as we are concerned: there
+                        // is simply nothing new to harvest
+                        return records;
+                    }
+                    throw new XMLStreamException("ListRecords error code: " + errorCode + "; ListRecords error message: " + errorMessageText);
+                } else if (xmlr.getLocalName().equals("ListRecords")) {
+                    listRecordsFound = true;
+                    Map<String,String> listNamespaces = new HashMap<>(namespaces);
+                    addNamespaces(xmlr, listNamespaces);
+                    processListRecords(xmlr, listNamespaces, records);
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (xmlr.getLocalName().equals("OAI-PMH")) {
+                    break;
+                }
+            }
+        }
+
+        if (!listRecordsFound) {
+            throw new XMLStreamException("No ListRecords section found in the response");
+        }
+        return records;
+    }
+
+    private void processListRecords(XMLStreamReader xmlr, Map<String,String> namespaces, List<HarvestedRecord> records) throws XMLStreamException {
+        for (int event = xmlr.next(); event != XMLStreamConstants.END_DOCUMENT; event = xmlr.next()) {
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (xmlr.getLocalName().equals("record")) {
+                    Map<String,String> recordNamespaces = new HashMap<>(namespaces);
+                    addNamespaces(xmlr, recordNamespaces);
+                    records.add(processRecord(xmlr, recordNamespaces));
+                } else if (xmlr.getLocalName().equals("resumptionToken")) {
+                    String token = xmlr.getElementText().trim();
+                    // an empty resumption token marks the last page:
+                    resumptionToken = token.isEmpty() ? null : token;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (xmlr.getLocalName().equals("ListRecords")) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private HarvestedRecord processRecord(XMLStreamReader xmlr, Map<String,String> namespaces) throws XMLStreamException {
+        String identifier = null;
+        Date dateStamp = null;
+        boolean deleted = false;
+        String metadata = null;
+
+        for (int event = xmlr.next(); event != XMLStreamConstants.END_DOCUMENT; event = xmlr.next()) {
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (xmlr.getLocalName().equals("header")) {
+                    deleted = "deleted".equals(xmlr.getAttributeValue(null, "status"));
+                    for (event = xmlr.next(); !(event == XMLStreamConstants.END_ELEMENT && xmlr.getLocalName().equals("header")); event = xmlr.next()) {
+                        if (event == XMLStreamConstants.START_ELEMENT) {
+                            if (xmlr.getLocalName().equals("identifier")) {
+                                identifier = xmlr.getElementText().trim();
+                            } else if (xmlr.getLocalName().equals("datestamp")) {
+                                dateStamp = parseDateStamp(xmlr.getElementText().trim());
+                            }
+                        }
+                    }
+                } else if (xmlr.getLocalName().equals("metadata")) {
+                    Map<String,String> metadataNamespaces = new HashMap<>(namespaces);
+                    addNamespaces(xmlr, metadataNamespaces);
+                    // skip to the top element of the metadata record:
+                    for (event = xmlr.next(); event != XMLStreamConstants.START_ELEMENT; event = xmlr.next()) {
+                        if (event == XMLStreamConstants.END_ELEMENT) {
+                            throw new XMLStreamException("Empty metadata section in the record " + identifier, xmlr.getLocation());
+                        }
+                    }
+                    metadata = copyElement(xmlr, metadataNamespaces);
+                } else {
+                    // e.g. an "about" section; not used
+                    skipElement(xmlr);
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (xmlr.getLocalName().equals("record")) {
+                    break;
+                }
+            }
+        }
+
+        if (identifier == null) {
+            throw new XMLStreamException("A record without an identifier in the ListRecords response", xmlr.getLocation());
+        }
+        if (metadata == null && !deleted) {
+            throw new XMLStreamException("No metadata found in the record " + identifier, xmlr.getLocation());
+        }
+        return new HarvestedRecord(identifier, dateStamp, deleted, metadata);
+    }
+
+    static Date parseDateStamp(String dateStamp) throws XMLStreamException {
+        try {
+            if (dateStamp.length() == 10) {
+                // (day granularity)
+                return Date.from(LocalDate.parse(dateStamp).atStartOfDay(ZoneOffset.UTC).toInstant());
+            }
+            return Date.from(Instant.parse(dateStamp));
+        } catch (DateTimeParseException dtpe) {
+            throw new XMLStreamException("Invalid datestamp: " + dateStamp);
+        }
+    }
+
+    private static void addNamespaces(XMLStreamReader xmlr, Map<String,String> namespaces) {
+        for (int i = 0; i < xmlr.getNamespaceCount(); i++) {
+            String prefix = xmlr.getNamespacePrefix(i);
+            namespaces.put(prefix == null ? XMLConstants.DEFAULT_NS_PREFIX : prefix, xmlr.getNamespaceURI(i));
+        }
+    }
+
+    private static void skipElement(XMLStreamReader xmlr) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = xmlr.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Copies the element the parser is on, with everything in it, into a
+     * String. The namespaces in scope that are not declared on the element
+     * itself are added to it, so that the copy can be parsed on its own; as
+     * is the generic xmlns:xsi attribute, as in {@link FastGetRecord}, since
+     * it may be needed by the transform stylesheets.
+     */
+    private String copyElement(XMLStreamReader xmlr, Map<String,String> namespaces) throws XMLStreamException {
+        StringWriter out = new StringWriter();
+        XMLStreamWriter xmlw = xmlOutputFactory.createXMLStreamWriter(out);
+        int depth = 0;
+
+        do {
+            switch (xmlr.getEventType()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    String prefix = xmlr.getPrefix() == null ? XMLConstants.DEFAULT_NS_PREFIX : xmlr.getPrefix();
+                    String namespaceURI = xmlr.getNamespaceURI() == null ? XMLConstants.NULL_NS_URI : xmlr.getNamespaceURI();
+                    xmlw.writeStartElement(prefix, xmlr.getLocalName(), namespaceURI);
+
+                    Set<String> declared = new HashSet<>();
+                    for (int i = 0; i < xmlr.getNamespaceCount(); i++) {
+                        String nsPrefix = xmlr.getNamespacePrefix(i) == null ? XMLConstants.DEFAULT_NS_PREFIX : xmlr.getNamespacePrefix(i);
+                        writeNamespace(xmlw, nsPrefix, xmlr.getNamespaceURI(i));
+                        declared.add(nsPrefix);
+                    }
+                    if (depth == 0) {
+                        for (Map.Entry<String,String> namespace : namespaces.entrySet()) {
+                            if (!declared.contains(namespace.getKey())) {
+                                writeNamespace(xmlw, namespace.getKey(), namespace.getValue());
+                                declared.add(namespace.getKey());
+                            }
+                        }
+                        if (!declared.contains(XSI_PREFIX)) {
+                            writeNamespace(xmlw, XSI_PREFIX, XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI);
+                        }
+                    }
+
+                    for (int i = 0; i < xmlr.getAttributeCount(); i++) {
+                        String attributePrefix = xmlr.getAttributePrefix(i);
+                        if (attributePrefix == null || attributePrefix.isEmpty()) {
+                            xmlw.writeAttribute(xmlr.getAttributeLocalName(i), xmlr.getAttributeValue(i));
+                        } else {
+                            xmlw.writeAttribute(attributePrefix, xmlr.getAttributeNamespace(i), xmlr.getAttributeLocalName(i), xmlr.getAttributeValue(i));
+                        }
+                    }
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    xmlw.writeEndElement();
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    xmlw.writeCharacters(xmlr.getText());
+                    break;
+                case XMLStreamConstants.CDATA:
+                    xmlw.writeCData(xmlr.getText());
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    xmlw.writeComment(xmlr.getText());
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    xmlw.writeProcessingInstruction(xmlr.getPITarget(), xmlr.getPIData());
+                    break;
+                default:
+                    // (entity references are replaced by the parser)
+                    break;
+            }
+            if (depth > 0) {
+                xmlr.next();
+            }
+        } while (depth > 0);
+
+        xmlw.close();
+        return out.toString();
+    }
+
+    private static void writeNamespace(XMLStreamWriter xmlw, String prefix, String namespaceURI) throws XMLStreamException {
+        if (XMLConstants.DEFAULT_NS_PREFIX.equals(prefix)) {
+            xmlw.writeDefaultNamespace(namespaceURI);
+        } else {
+            xmlw.writeNamespace(prefix, namespaceURI);
+        }
+    }
+
+    /**
+     * A record from a ListRecords response.
+     */
+    public static class HarvestedRecord {
+        private final String identifier;
+        private final Date dateStamp;
+        private final boolean deleted;
+        private final String metadata;
+
+        HarvestedRecord(String identifier, Date dateStamp, boolean deleted, String metadata) {
+            this.identifier = identifier;
+            this.dateStamp = dateStamp;
+            this.deleted = deleted;
+            this.metadata = metadata;
+        }
+
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        public Date getDateStamp() {
+            return dateStamp;
+        }
+
+        public boolean isDeleted() {
+            return deleted;
+        }
+
+        /**
+         * @return the metadata record (the content of the metadata section
+         * of the record), or null if the record is deleted
+         */
+        public String getMetadata() {
+            return metadata;
+        }
+    }
+}
@@ -10,14 +10,23 @@ import edu.harvard.iq.dataverse.Dataset;
 import edu.harvard.iq.dataverse.DatasetServiceBean;
 import edu.harvard.iq.dataverse.Dataverse;
 import edu.harvard.iq.dataverse.DataverseServiceBean;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
 import edu.harvard.iq.dataverse.timer.DataverseTimerServiceBean;
 import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -89,6 +98,10 @@ public class HarvesterServiceBean {
     public static final String DATAVERSE_PROPRIETARY_METADATA_FORMAT="dataverse_json";
     public static final String DATAVERSE_PROPRIETARY_METADATA_API="/api/datasets/export?exporter="+DATAVERSE_PROPRIETARY_METADATA_FORMAT+"&persistentId=";
     public static final String DATAVERSE_HARVEST_STOP_FILE="../logs/stopharvest_";
+    
+    private static final int DEFAULT_FETCH_THREADS = 4;
+    // How long a stopped harvest waits for the running retrievals to end:
+    private static final long FETCH_TERMINATION_TIMEOUT_SECONDS = 60;
 
     public HarvesterServiceBean() {
 
@@ -231,6 +244,27 @@ public class HarvesterServiceBean {
         // We will use this jdk http client to make direct calls to the remote 
         // OAI (or remote Dataverse API) to obtain the metadata records 
         httpClient = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.ALWAYS).build();
+        final HttpClient recordHttpClient = httpClient;
+        
+        if (harvestingClient.isUseListRecords()) {
+            if (DATAVERSE_PROPRIETARY_METADATA_FORMAT.equals(oaiHandler.getMetadataPrefix())) {
+                // (the native json metadata is retrieved from the remote 
+                // Dataverse API, one record at a time, regardless)
+                hdLogger.info("ListRecords is not used with the " + DATAVERSE_PROPRIETARY_METADATA_FORMAT + " format; harvesting with ListIdentifiers instead.");
+            } else {
+                harvestOAIListRecords(dataverseRequest, harvestingClient, oaiHandler, httpClient, hdLogger, importCleanupLog, failedIdentifiers, deletedIdentifiers, harvestedDatasetIds);
+                logCompletedOaiHarvest(hdLogger, harvestingClient);
+                return;
+            }
+        }
+        
+        // The records are retrieved concurrently, by a few threads sharing 
+        // the http client, running ahead of the imports; which are still 
+        // done here, one record at a time and in the order of the identifiers.
+        int fetchThreads = Math.max(1, JvmSettings.HARVEST_FETCH_THREADS.lookupOptional(Integer.class).orElse(DEFAULT_FETCH_THREADS));
+        int maxPending = fetchThreads * 2;
+        ExecutorService fetchExecutor = Executors.newFixedThreadPool(fetchThreads);
+        Deque<PendingRecord> pendingRecords = new ArrayDeque<>();
         
         try {
             for (Iterator<Header> idIter = oaiHandler.runListIdentifiers(); idIter.hasNext();) {
@@ -245,64 +279,185 @@ public class HarvesterServiceBean {
                 
                 hdLogger.info("processing identifier: " + identifier + ", date: " + dateStamp);
                 
-                if (h.isDeleted()) {
-                    hdLogger.info("Deleting harvesting dataset for " + identifier + ", per ListIdentifiers.");
-
-                    deleteHarvestedDatasetIfExists(identifier, oaiHandler.getHarvestingClient().getDataverse(), dataverseRequest, deletedIdentifiers, hdLogger);
-                    continue;
-                }
-
-                MutableBoolean getRecordErrorOccurred = new MutableBoolean(false);
-
-                // Retrieve and process this record with a separate GetRecord call:
+                // (deleted records are queued too, so that all the records 
+                // are processed in order)
+                Future<FetchedRecord> fetched = h.isDeleted() ? null : fetchExecutor.submit(() -> fetchRecord(hdLogger, oaiHandler, identifier, recordHttpClient));
+                pendingRecords.add(new PendingRecord(identifier, dateStamp, fetched));
                 
-                Long datasetId = processRecord(dataverseRequest, hdLogger, importCleanupLog, oaiHandler, identifier, getRecordErrorOccurred, deletedIdentifiers, dateStamp, httpClient);
-                
-                if (datasetId != null) {
-                    harvestedDatasetIds.add(datasetId);
+                while (pendingRecords.size() >= maxPending) {
+                    processPendingRecord(dataverseRequest, hdLogger, importCleanupLog, oaiHandler, pendingRecords.poll(), failedIdentifiers, deletedIdentifiers, harvestedDatasetIds);
                 }
-                
-                if (getRecordErrorOccurred.booleanValue() == true) {
-                    failedIdentifiers.add(identifier);
-                    //can be uncommented out for testing failure handling:
-                    //throw new IOException("Exception occured, stopping harvest");
+            }
+            
+            while (!pendingRecords.isEmpty()) {
+                if (checkIfStoppingJob(harvestingClient)) {
+                    throw new StopHarvestException("Harvesting stopped by external request");
                 }
+                processPendingRecord(dataverseRequest, hdLogger, importCleanupLog, oaiHandler, pendingRecords.poll(), failedIdentifiers, deletedIdentifiers, harvestedDatasetIds);
             }
         } catch (OaiHandlerException e) {
             throw new IOException("Failed to run ListIdentifiers: " + e.getMessage());
+        } finally {
+            // The retrievals not started yet are dropped, and the running ones 
+            // interrupted; these are waited for, so that the temp files of 
+            // the records they did retrieve can be deleted below. 
+            fetchExecutor.shutdownNow();
+            try {
+                if (!fetchExecutor.awaitTermination(FETCH_TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    hdLogger.warning("Timed out waiting for the running record retrievals to stop; their temp files may be left behind.");
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            // Records retrieved, but not imported (if the harvest was stopped):
+            for (PendingRecord pendingRecord : pendingRecords) {
+                pendingRecord.discard();
+            }
         }
 
         logCompletedOaiHarvest(hdLogger, harvestingClient);
 
     }    
     
-    private Long processRecord(DataverseRequest dataverseRequest, Logger hdLogger, PrintWriter importCleanupLog, OaiHandler oaiHandler, String identifier, MutableBoolean recordErrorOccurred, List<String> deletedIdentifiers, Date dateStamp, HttpClient httpClient) {
-        String errMessage = null;
-        Dataset harvestedDataset = null;
-        logGetRecord(hdLogger, oaiHandler, identifier);
-        File tempFile = null;
+    /**
+     * Harvests with ListRecords: the metadata records come by the page, with 
+     * the headers, and are imported straight from memory, in the order listed. 
+     */
+    private void harvestOAIListRecords(DataverseRequest dataverseRequest, HarvestingClient harvestingClient, OaiHandler oaiHandler, HttpClient httpClient, Logger hdLogger, PrintWriter importCleanupLog, List<String> failedIdentifiers, List<String> deletedIdentifiers, List<Long> harvestedDatasetIds)
+            throws IOException, StopHarvestException {
+        FastListRecords listRecords;
+        try {
+            listRecords = oaiHandler.runListRecords(httpClient);
+        } catch (OaiHandlerException e) {
+            throw new IOException("Failed to run ListRecords: " + e.getMessage());
+        }
+        
+        while (listRecords.hasMoreRecords()) {
+            if (checkIfStoppingJob(harvestingClient)) {
+                throw new StopHarvestException("Harvesting stopped by external request");
+            }
+            
+            List<FastListRecords.HarvestedRecord> records = listRecords.nextPage();
+            hdLogger.info("ListRecords response " + listRecords.getRequestCount() + ": " + records.size() + " records");
+            
+            for (FastListRecords.HarvestedRecord record : records) {
+                if (checkIfStoppingJob(harvestingClient)) {
+                    throw new StopHarvestException("Harvesting stopped by external request");
+                }
+                importListedRecord(dataverseRequest, hdLogger, importCleanupLog, oaiHandler, record, failedIdentifiers, deletedIdentifiers, harvestedDatasetIds);
+            }
+        }
+    }
+    
+    private void importListedRecord(DataverseRequest dataverseRequest, Logger hdLogger, PrintWriter importCleanupLog, OaiHandler oaiHandler, FastListRecords.HarvestedRecord record, List<String> failedIdentifiers, List<String> deletedIdentifiers, List<Long> harvestedDatasetIds) {
+        String identifier = record.getIdentifier();
+        
+        hdLogger.info("processing identifier: " + identifier + ", date: " + record.getDateStamp());
+        
+        if (record.isDeleted()) {
+            hdLogger.info("Deleting harvesting dataset for " + identifier + ", per ListRecords.");
+
+            deleteHarvestedDatasetIfExists(identifier, oaiHandler.getHarvestingClient().getDataverse(), dataverseRequest, deletedIdentifiers, hdLogger);
+            return;
+        }
         
         try {
-            boolean deleted = false;
+            Dataset harvestedDataset = importService.doImportHarvestedDataset(dataverseRequest, 
+                    oaiHandler.getHarvestingClient(),
+                    identifier,
+                    oaiHandler.getMetadataPrefix(), 
+                    record.getMetadata(),
+                    record.getDateStamp(),
+                    importCleanupLog);
+            
+            hdLogger.fine("Harvest Successful for identifier " + identifier);
+            hdLogger.fine("Size of this record: " + record.getMetadata().length());
             
+            if (harvestedDataset != null) {
+                harvestedDatasetIds.add(harvestedDataset.getId());
+            }
+        } catch (Throwable e) {
+            logGetRecordException(hdLogger, oaiHandler, identifier, e);
+            failedIdentifiers.add(identifier);
+        }
+    }
+    
+    private void processPendingRecord(DataverseRequest dataverseRequest, Logger hdLogger, PrintWriter importCleanupLog, OaiHandler oaiHandler, PendingRecord pendingRecord, List<String> failedIdentifiers, List<String> deletedIdentifiers, List<Long> harvestedDatasetIds) {
+        String identifier = pendingRecord.identifier;
+        
+        if (pendingRecord.fetched == null) {
+            hdLogger.info("Deleting harvesting dataset for " + identifier + ", per ListIdentifiers.");
+
+            deleteHarvestedDatasetIfExists(identifier, oaiHandler.getHarvestingClient().getDataverse(), dataverseRequest, deletedIdentifiers, hdLogger);
+            return;
+        }
+
+        FetchedRecord fetchedRecord;
+        try {
+            fetchedRecord = pendingRecord.fetched.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            fetchedRecord = FetchedRecord.failed(ie);
+        } catch (ExecutionException ee) {
+            fetchedRecord = FetchedRecord.failed(ee.getCause());
+        }
+        
+        MutableBoolean getRecordErrorOccurred = new MutableBoolean(false);
+
+        Long datasetId = importRecord(dataverseRequest, hdLogger, importCleanupLog, oaiHandler, identifier, fetchedRecord, getRecordErrorOccurred, deletedIdentifiers, pendingRecord.dateStamp);
+
+        if (datasetId != null) {
+            harvestedDatasetIds.add(datasetId);
+        }
+
+        if (getRecordErrorOccurred.booleanValue() == true) {
+            failedIdentifiers.add(identifier);
+            //can be uncommented out for testing failure handling:
+            //throw new IOException("Exception occured, stopping harvest");
+        }
+    }
+    
+    /**
+     * Retrieves the metadata of the record into a temp file. Runs on one of 
+     * the fetch threads; any exception is returned with the result, to be 
+     * handled along with the import of the record.
+     */
+    private FetchedRecord fetchRecord(Logger hdLogger, OaiHandler oaiHandler, String identifier, HttpClient httpClient) {
+        logGetRecord(hdLogger, oaiHandler, identifier);
+        
+        try {
             if (DATAVERSE_PROPRIETARY_METADATA_FORMAT.equals(oaiHandler.getMetadataPrefix())) {
                 // Make direct call to obtain the proprietary Dataverse metadata
                 // in JSON from the remote Dataverse server:
                 String metadataApiUrl = oaiHandler.getProprietaryDataverseMetadataURL(identifier);
                 logger.fine("calling "+metadataApiUrl);
-                tempFile = retrieveProprietaryDataverseMetadata(httpClient, metadataApiUrl);
+                return new FetchedRecord(retrieveProprietaryDataverseMetadata(httpClient, metadataApiUrl), false, null, null);
                 
             } else {
                 FastGetRecord record = oaiHandler.runGetRecord(identifier, httpClient);
-                errMessage = record.getErrorMessage();
-                deleted = record.isDeleted();
-                tempFile = record.getMetadataFile();
+                return new FetchedRecord(record.getMetadataFile(), record.isDeleted(), record.getErrorMessage(), null);
             }
-
+        } catch (Throwable e) {
+            return FetchedRecord.failed(e);
+        }
+    }
+    
+    private Long importRecord(DataverseRequest dataverseRequest, Logger hdLogger, PrintWriter importCleanupLog, OaiHandler oaiHandler, String identifier, FetchedRecord fetchedRecord, MutableBoolean recordErrorOccurred, List<String> deletedIdentifiers, Date dateStamp) {
+        String errMessage = null;
+        Dataset harvestedDataset = null;
+        File tempFile = fetchedRecord.metadataFile;
+        
+        try {
+            if (fetchedRecord.exception != null) {
+                throw fetchedRecord.exception;
+            }
+            
+            errMessage = fetchedRecord.errorMessage;
+            
             if (errMessage != null) {
                 hdLogger.log(Level.SEVERE, "Error calling GetRecord - " + errMessage);
                 
-            } else if (deleted) {
+            } else if (fetchedRecord.deleted) {
                 hdLogger.info("Deleting harvesting dataset for "+identifier+", per GetRecord.");
                 
                 deleteHarvestedDatasetIfExists(identifier, oaiHandler.getHarvestingClient().getDataverse(), dataverseRequest, deletedIdentifiers, hdLogger); 
@@ -485,4 +640,61 @@ public class HarvesterServiceBean {
         logger.severe(fullMessage);
     }
         
+
+    /**
+     * A record listed by ListIdentifiers, waiting to be imported; with the 
+     * (possibly still running) retrieval of its metadata, or null if the 
+     * record is listed as deleted. 
+     */
+    private static final class PendingRecord {
+        private final String identifier;
+        private final Date dateStamp;
+        private final Future<FetchedRecord> fetched;
+        
+        PendingRecord(String identifier, Date dateStamp, Future<FetchedRecord> fetched) {
+            this.identifier = identifier;
+            this.dateStamp = dateStamp;
+            this.fetched = fetched;
+        }
+        
+        /*
+         * To be called once the fetch threads have terminated: only the 
+         * retrievals that never started can still be cancelled.
+         */
+        void discard() {
+            if (fetched == null) {
+                return;
+            }
+            if (fetched.cancel(false)) {
+                return;
+            }
+            try {
+                FetchedRecord fetchedRecord = fetched.get();
+                if (fetchedRecord.metadataFile != null) {
+                    fetchedRecord.metadataFile.delete();
+                }
+            } catch (InterruptedException | ExecutionException | CancellationException ex) {
+                // nothing to clean up
+            }
+        }
+    }
+    
+    private static final class FetchedRecord {
+        private final File metadataFile;
+        private final boolean deleted;
+        private final String errorMessage;
+        private final Throwable exception;
+        
+        FetchedRecord(File metadataFile, boolean deleted, String errorMessage, Throwable exception) {
+            this.metadataFile = metadataFile;
+            this.deleted = deleted;
+            this.errorMessage = errorMessage;
+            this.exception = exception;
+        }
+        
+        static FetchedRecord failed(Throwable exception) {
+            return new FetchedRecord(null, false, null, exception);
+        }
+    }
+        
 }
@@ -244,6 +244,21 @@ public class HarvestingClient implements Serializable {
         this.customHttpHeaders = customHttpHeaders;
     }
     
+    /**
+     * Harvest with ListRecords, receiving the metadata records by the page, 
+     * instead of running GetRecord on every identifier listed by 
+     * ListIdentifiers. 
+     */
+    private boolean useListRecords;
+    
+    public boolean isUseListRecords() {
+        return useListRecords;
+    }
+    
+    public void setUseListRecords(boolean useListRecords) {
+        this.useListRecords = useListRecords;
+    }
+    
     // TODO: do we need "orphanRemoval=true"? -- L.A. 4.4
     // TODO: should it be @OrderBy("startTime")? -- L.A. 4.4
     @OneToMany(mappedBy="harvestingClient", cascade={CascadeType.REMOVE, CascadeType.MERGE, CascadeType.PERSIST})
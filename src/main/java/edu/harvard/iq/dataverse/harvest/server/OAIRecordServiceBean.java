@@ -13,6 +13,7 @@ import io.gdcc.spi.export.ExportException;
 import edu.harvard.iq.dataverse.search.IndexServiceBean;
 import edu.harvard.iq.dataverse.settings.SettingsServiceBean;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -286,10 +287,6 @@ public class OAIRecordServiceBean implements java.io.Serializable {
         return findOaiRecordsBySetName(setName, from, until, false);
     }
     
-    public List<OAIRecord> findOaiRecordsNotInThisSet(String setName, Instant from, Instant until) {
-        return findOaiRecordsBySetName(setName, from, until, true);
-    }
-    
     public List<OAIRecord> findOaiRecordsBySetName(String setName, Instant from, Instant until, boolean excludeSet) {
                 
         if (setName == null) {
@@ -332,6 +329,98 @@ public class OAIRecordServiceBean implements java.io.Serializable {
         }
     }
     
+    /**
+     * One page of the records in the set, in the order of their global ids:
+     * the first maxResults records after the global id "afterGlobalId"
+     * (a keyset cursor, the last record of the previous page) if it's not
+     * null, or after skipping "offset" records otherwise.
+     */
+    public List<OAIRecord> findOaiRecordsBySetName(String setName, Instant from, Instant until, String afterGlobalId, int offset, int maxResults) {
+        if (setName == null) {
+            setName = "";
+        }
+
+        String queryString = "SELECT object(h) from OAIRecord h where h.setName = :setName";
+        queryString += from != null ? " and h.lastUpdateTime >= :from" : "";
+        queryString += until != null ? " and h.lastUpdateTime<=:until" : "";
+        queryString += afterGlobalId != null ? " and h.globalId > :afterGlobalId" : "";
+        queryString += " order by h.globalId";
+
+        logger.fine("Query: "+queryString);
+
+        TypedQuery<OAIRecord> query = em.createQuery(queryString, OAIRecord.class);
+        query.setParameter("setName", setName);
+        setDateRangeParameters(query, from, until);
+        if (afterGlobalId != null) {
+            query.setParameter("afterGlobalId", afterGlobalId);
+        } else if (offset > 0) {
+            query.setFirstResult(offset);
+        }
+        query.setMaxResults(maxResults);
+
+        try {
+            return query.getResultList();
+        } catch (Exception ex) {
+            logger.fine("Caught exception; returning null.");
+            return null;
+        }
+    }
+
+    public long countOaiRecordsBySetName(String setName, Instant from, Instant until) {
+        if (setName == null) {
+            setName = "";
+        }
+
+        String queryString = "SELECT count(h) from OAIRecord h where h.setName = :setName";
+        queryString += from != null ? " and h.lastUpdateTime >= :from" : "";
+        queryString += until != null ? " and h.lastUpdateTime<=:until" : "";
+
+        TypedQuery<Long> query = em.createQuery(queryString, Long.class);
+        query.setParameter("setName", setName);
+        setDateRangeParameters(query, from, until);
+        return query.getSingleResult();
+    }
+
+    /**
+     * The records, in sets other than this one, of the given global ids only
+     * (i.e., the other sets the records on a page of this set belong to).
+     */
+    public List<OAIRecord> findOaiRecordsNotInThisSet(String setName, Instant from, Instant until, Collection<String> globalIds) {
+        if (globalIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (setName == null) {
+            setName = "";
+        }
+
+        String queryString = "SELECT object(h) from OAIRecord h where h.setName is not null and h.setName != '' and h.setName != :setName";
+        queryString += " and h.globalId in :globalIds";
+        queryString += from != null ? " and h.lastUpdateTime >= :from" : "";
+        queryString += until != null ? " and h.lastUpdateTime<=:until" : "";
+        queryString += " order by h.globalId";
+
+        TypedQuery<OAIRecord> query = em.createQuery(queryString, OAIRecord.class);
+        query.setParameter("setName", setName);
+        query.setParameter("globalIds", globalIds);
+        setDateRangeParameters(query, from, until);
+
+        try {
+            return query.getResultList();
+        } catch (Exception ex) {
+            logger.fine("Caught exception; returning null.");
+            return null;
+        }
+    }
+
+    private void setDateRangeParameters(TypedQuery<?> query, Instant from, Instant until) {
+        if (from != null) {
+            query.setParameter("from", Date.from(from), TemporalType.TIMESTAMP);
+        }
+        if (until != null) {
+            query.setParameter("until", Date.from(until), TemporalType.TIMESTAMP);
+        }
+    }
+
     // This method is to only get the records NOT marked as "deleted":
     public List<OAIRecord> findActiveOaiRecordsBySetName(String setName) {
         
@@ -24,7 +24,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -41,6 +45,17 @@ public class DataverseXoaiItemRepository implements ItemRepository {
     private final OAIRecordServiceBean recordService;
     private final DatasetServiceBean datasetService;
     private final String serverUrl; 
+    
+    // Keyset cursors for the next pages of the lists served recently, keyed 
+    // by the (standard, offset-based) resumption tokens of these pages. 
+    // A token not found here (e.g. after a restart) still works, by offset. 
+    private static final int MAX_CURSORS = 1000;
+    private final Map<String, Cursor> cursors = Collections.synchronizedMap(new LinkedHashMap<String, Cursor>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Cursor> eldest) {
+            return size() > MAX_CURSORS;
+        }
+    });
 
     public DataverseXoaiItemRepository (OAIRecordServiceBean recordService, DatasetServiceBean datasetService, String serverUrl) {
         this.recordService = recordService;
@@ -133,15 +148,26 @@ public class DataverseXoaiItemRepository implements ItemRepository {
                 + ", from=" + from
                 + ", until=" + until);
 
-        List<OAIRecord> oaiRecords = recordService.findOaiRecordsBySetName(setSpec, from, until);
+        // Only the requested page is retrieved. If we served the previous
+        // page, we know the last identifier on it, and can start right after
+        // it (rather than having the database skip "offset" records):
+        Cursor cursor = offset > 0 ? cursors.get(getCursorKey(setSpec, from, until, offset)) : null;
+        long total;
+        List<OAIRecord> oaiRecords;
+        if (cursor != null) {
+            total = cursor.total;
+            oaiRecords = recordService.findOaiRecordsBySetName(setSpec, from, until, cursor.lastGlobalId, 0, maxResponseLength);
+        } else {
+            total = recordService.countOaiRecordsBySetName(setSpec, from, until);
+            oaiRecords = recordService.findOaiRecordsBySetName(setSpec, from, until, null, offset, maxResponseLength);
+        }
         
         List<DataverseXoaiItem> xoaiItems = new ArrayList<>();
 
         if (oaiRecords != null && !oaiRecords.isEmpty()) {
-            logger.fine("total " + oaiRecords.size() + " records returned");
+            logger.fine("total " + total + " records; " + oaiRecords.size() + " records returned");
             
-            for (int i = offset; i < offset + maxResponseLength && i < oaiRecords.size(); i++) {
-                OAIRecord record = oaiRecords.get(i);
+            for (OAIRecord record : oaiRecords) {
                 DataverseXoaiItem xoaiItem = new DataverseXoaiItem(record);
                 
                 if (fullItems) {
@@ -159,47 +185,61 @@ public class DataverseXoaiItemRepository implements ItemRepository {
             // formatted output in the header:
             addExtraSets(xoaiItems, setSpec, from, until);
             
-            hasMore = offset + maxResponseLength < oaiRecords.size();
+            hasMore = offset + maxResponseLength < total;
+            if (hasMore) {
+                String lastGlobalId = oaiRecords.get(oaiRecords.size() - 1).getGlobalId();
+                cursors.put(getCursorKey(setSpec, from, until, offset + maxResponseLength), new Cursor(lastGlobalId, total));
+            }
             
-            ResultsPage<DataverseXoaiItem> result = new ResultsPage(resumptionToken, hasMore, xoaiItems, oaiRecords.size());
+            ResultsPage<DataverseXoaiItem> result = new ResultsPage(resumptionToken, hasMore, xoaiItems, (int) total);
             logger.fine("returning result with " + xoaiItems.size() + " items.");
             return result;
         }
 
-        return new ResultsPage(resumptionToken, false, xoaiItems, 0);
+        return new ResultsPage(resumptionToken, false, xoaiItems, (int) total);
     }
     
-    private void addExtraSets(Object xoaiItemsList, String setSpec, Instant from, Instant until) {
+    private void addExtraSets(List<DataverseXoaiItem> xoaiItems, String setSpec, Instant from, Instant until) {
         
-        List<DataverseXoaiItem> xoaiItems = (List<DataverseXoaiItem>)xoaiItemsList;
+        Map<String, DataverseXoaiItem> itemsByIdentifier = new HashMap<>();
+        for (DataverseXoaiItem xoaiItem : xoaiItems) {
+            itemsByIdentifier.put(xoaiItem.getIdentifier(), xoaiItem);
+        }
         
-        List<OAIRecord> oaiRecords = recordService.findOaiRecordsNotInThisSet(setSpec, from, until);
+        // Only the records with the identifiers on this page are looked up:
+        List<OAIRecord> oaiRecords = recordService.findOaiRecordsNotInThisSet(setSpec, from, until, itemsByIdentifier.keySet());
         
         if (oaiRecords == null || oaiRecords.isEmpty()) {
             return;
         }
-                
-        // Make a second pass through the list of xoaiItems already found for this set, 
-        // and add any other sets in which this item occurs:
         
-        int j = 0;
-        for (int i = 0; i < xoaiItems.size(); i++) {
-            // fast-forward the second list, until we find a oaiRecord with this identifier, 
-            // or until we are past this oaiRecord (both lists are sorted alphabetically by
-            // the identifier:
-            DataverseXoaiItem xitem = xoaiItems.get(i);
-            
-            while (j < oaiRecords.size() && xitem.getIdentifier().compareTo(oaiRecords.get(j).getGlobalId()) > 0) {
-                j++;
-            }
-            
-            while (j < oaiRecords.size() && xitem.getIdentifier().equals(oaiRecords.get(j).getGlobalId())) {
-                xoaiItems.get(i).getSets().add(new Set(oaiRecords.get(j).getSetName()));
-                j++;
+        // Add any other sets in which the items on this page occur:
+        for (OAIRecord oaiRecord : oaiRecords) {
+            DataverseXoaiItem xoaiItem = itemsByIdentifier.get(oaiRecord.getGlobalId());
+            if (xoaiItem != null) {
+                xoaiItem.getSets().add(new Set(oaiRecord.getSetName()));
             }
         }
     }
     
+    private static String getCursorKey(String setSpec, Instant from, Instant until, int offset) {
+        return setSpec + "|" + from + "|" + until + "|" + offset;
+    }
+    
+    /**
+     * Where the page at a given offset starts: the last identifier on the
+     * page before it; plus the size of the list, counted on the first page.
+     */
+    private static final class Cursor {
+        private final String lastGlobalId;
+        private final long total;
+        
+        Cursor(String lastGlobalId, long total) {
+            this.lastGlobalId = lastGlobalId;
+            this.total = total;
+        }
+    }
+    
     private DataverseXoaiItem addMetadata(DataverseXoaiItem xoaiItem, MetadataFormat metadataFormat) {
         // This may be a "deleted" record - i.e., a oaiRecord kept in 
         // the OAI set for a dataset that's no longer in this Dataverse. 
@@ -0,0 +1,105 @@
+package edu.harvard.iq.dataverse.ingest;
+
+/**
+ * Frequency table of the values of a character variable.
+ *
+ * An open-addressing (linear probing) hash table of String keys and primitive
+ * int counts; the hash codes of the keys are kept alongside, so that probing
+ * only calls String.equals() on an actual hash match. Null (missing) values
+ * are not counted.
+ */
+public class CharacterFrequencyTable {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private String[] keys;
+    private int[] hashes;
+    private int[] counts;
+    private int mask;
+    private int size = 0;
+
+    public CharacterFrequencyTable() {
+        allocate(MIN_CAPACITY);
+    }
+
+    public static CharacterFrequencyTable ofStrings(String[] values) {
+        CharacterFrequencyTable table = new CharacterFrequencyTable();
+        for (String value : values) {
+            table.add(value);
+        }
+        return table;
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        hashes = new int[capacity];
+        counts = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    public void add(String value) {
+        if (value == null) {
+            return;
+        }
+        int h = spread(value.hashCode());
+        int slot = h & mask;
+        while (keys[slot] != null) {
+            if (hashes[slot] == h && keys[slot].equals(value)) {
+                counts[slot]++;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = value;
+        hashes[slot] = h;
+        counts[slot] = 1;
+        if (++size * 2 > keys.length) {
+            rehash();
+        }
+    }
+
+    public int getCount(String value) {
+        if (value == null) {
+            return 0;
+        }
+        int h = spread(value.hashCode());
+        int slot = h & mask;
+        while (keys[slot] != null) {
+            if (hashes[slot] == h && keys[slot].equals(value)) {
+                return counts[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * @return the number of distinct values counted
+     */
+    public int size() {
+        return size;
+    }
+
+    private void rehash() {
+        String[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        int[] oldCounts = counts;
+        allocate(oldKeys.length * 2);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                hashes[slot] = oldHashes[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+}
@@ -47,6 +47,7 @@ import edu.harvard.iq.dataverse.dataaccess.DataAccessOption;
 import edu.harvard.iq.dataverse.dataaccess.StorageIO;
 import edu.harvard.iq.dataverse.dataaccess.ImageThumbConverter;
 import edu.harvard.iq.dataverse.dataaccess.S3AccessIO;
+import edu.harvard.iq.dataverse.dataaccess.TabularColumnReader;
 import edu.harvard.iq.dataverse.dataaccess.TabularSubsetGenerator;
 import edu.harvard.iq.dataverse.datavariable.SummaryStatistic;
 import edu.harvard.iq.dataverse.datavariable.DataVariable;
@@ -105,8 +106,13 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.ListIterator;
 import java.util.logging.Logger;
-import java.util.Hashtable;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 import jakarta.inject.Named;
@@ -601,18 +607,226 @@ public class IngestServiceBean {
     }
 
     public void produceSummaryStatistics(DataFile dataFile, File generatedTabularFile) throws IOException {
+        produceSummaryStatistics(dataFile, generatedTabularFile, false);
+    }
+    
+    /**
+     * Calculates the summary statistics and the UNFs (and, optionally, the
+     * category frequencies) of all the variables in a single pass over the 
+     * tab file: each column is extracted once, in the physical order of the
+     * columns in the file, and handed over to a pool of worker threads that
+     * perform the actual calculations. The number of columns "in flight" is 
+     * limited to the number of workers, so that no more than that many 
+     * vectors are kept in memory at any given time.
+     * 
+     * The workers only calculate plain values; these are assigned to the
+     * DataVariable entities here, on the calling thread, once all the 
+     * calculations are done. 
+     * 
+     * The number of workers can be configured with the 
+     * dataverse.ingest.statistics-threads setting; it defaults to the number 
+     * of available processors. 
+     */
+    public void produceSummaryStatistics(DataFile dataFile, File generatedTabularFile, boolean includeFrequencies) throws IOException {
         /*
         logger.info("Skipping summary statistics and UNF.");
          */
-        produceDiscreteNumericSummaryStatistics(dataFile, generatedTabularFile); 
-        produceContinuousSummaryStatistics(dataFile, generatedTabularFile);
-        produceCharacterSummaryStatistics(dataFile, generatedTabularFile);
+        int threads = JvmSettings.INGEST_STATISTICS_THREADS.lookupOptional(Integer.class)
+                .orElse(Runtime.getRuntime().availableProcessors());
+        if (threads < 1) {
+            threads = 1;
+        }
+        
+        List<DataVariable> vars = dataFile.getDataTable().getDataVariables();
+        ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        Semaphore columnsInFlight = new Semaphore(threads);
+        List<Future<VariableStatistics>> results = new ArrayList<>();
+        
+        try (TabularColumnReader columnReader = openColumnReader(dataFile, generatedTabularFile)) {
+            for (int i = 0; i < vars.size(); i++) {
+                if (executor == null) {
+                    Callable<VariableStatistics> task = createStatisticsTask(dataFile, i, columnReader, includeFrequencies);
+                    if (task != null) {
+                        assignStatistics(dataFile, task.call());
+                    }
+                    continue;
+                }
+                
+                columnsInFlight.acquire();
+                Callable<VariableStatistics> task = createStatisticsTask(dataFile, i, columnReader, includeFrequencies);
+                if (task == null) {
+                    columnsInFlight.release();
+                    continue;
+                }
+                // (the vectors have already been extracted at this point; the 
+                // calculations proceed in parallel with the extraction of 
+                // the next columns)
+                results.add(executor.submit(() -> {
+                    try {
+                        return task.call();
+                    } finally {
+                        columnsInFlight.release();
+                    }
+                }));
+            }
+            
+            for (Future<VariableStatistics> result : results) {
+                assignStatistics(dataFile, result.get());
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while calculating summary statistics", ie);
+        } catch (ExecutionException ee) {
+            if (ee.getCause() instanceof IOException) {
+                throw (IOException) ee.getCause();
+            }
+            throw new IOException("Failed to calculate summary statistics: " + ee.getCause().getMessage(), ee.getCause());
+        } catch (IOException ioex) {
+            throw ioex; 
+        } catch (Exception ex) {
+            throw new IOException("Failed to calculate summary statistics: " + ex.getMessage(), ex);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
         
         recalculateDataFileUNF(dataFile);
         recalculateDatasetVersionUNF(dataFile.getFileMetadata().getDatasetVersion());
     }
     
+    /*
+     * The values calculated for one variable by a statistics worker, to be
+     * assigned to the DataVariable (and its categories) on the calling 
+     * thread; the entities are not touched by the workers. 
+     */
+    private static class VariableStatistics {
+        final int varnum;
+        double[] sumStats;
+        boolean unfCalculated;
+        String unf;
+        double[] categoryFrequencies;
+
+        VariableStatistics(int varnum) {
+            this.varnum = varnum;
+        }
+    }
+    
+    /*
+     * Extracts the vector(s) needed for the variable in column varnum and 
+     * returns the calculations to be performed on them; or null if there is 
+     * nothing to calculate for this variable. 
+     * Only the extraction (and reading the variable) is done here, on the 
+     * calling thread, since the column reader is not thread-safe. 
+     */
+    private Callable<VariableStatistics> createStatisticsTask(DataFile dataFile, int varnum, TabularColumnReader columnReader, boolean includeFrequencies) throws IOException {
+        DataVariable var = dataFile.getDataTable().getDataVariables().get(varnum);
+        VariableStatistics stats = new VariableStatistics(varnum);
+        List<Callable<Void>> calculations = new ArrayList<>();
+        String[] characterVector = null; 
+        
+        if (includeFrequencies && var.getCategories().size() > 0) {
+            List<String> categoryValues = getCategoryValues(var);
+            if (var.isTypeNumeric()) {
+                TabularColumnReader.FloatVector categoryVector = columnReader.readFloatVector(varnum);
+                calculations.add(() -> {
+                    stats.categoryFrequencies = calculateCategoryFrequencies(categoryValues, categoryVector);
+                    return null;
+                });
+            } else {
+                String[] categoryVector = columnReader.readStringVector(varnum);
+                calculations.add(() -> {
+                    stats.categoryFrequencies = calculateCategoryFrequencies(categoryValues, categoryVector);
+                    return null;
+                });
+                characterVector = categoryVector;
+            }
+        }
+        
+        if (var.isIntervalDiscrete() && var.isTypeNumeric()) {
+            logger.fine("subsetting discrete-numeric vector");
+            Long[] variableVector = columnReader.readLongVector(varnum).toBoxedArray();
+            calculations.add(() -> {
+                // We are discussing calculating the same summary stats for 
+                // all numerics (the same kind of sumstats that we've been calculating
+                // for numeric continuous type)  -- L.A. Jul. 2014
+                stats.sumStats = SumStatCalculator.calculateSummaryStatistics(variableVector);
+                logger.fine("Calculating UNF on a Long vector");
+                stats.unf = calculateUNF(varnum, variableVector);
+                stats.unfCalculated = true;
+                return null;
+            });
+        } else if (var.isIntervalContinuous()) {
+            logger.fine("subsetting continuous vector");
+            if ("float".equals(var.getFormat())) {
+                Float[] variableVector = columnReader.readFloatVector(varnum).toBoxedArray();
+                calculations.add(() -> {
+                    logger.fine("Calculating summary statistics and UNF on a Float vector;");
+                    stats.sumStats = SumStatCalculator.calculateSummaryStatistics(variableVector);
+                    stats.unf = calculateUNF(varnum, variableVector);
+                    stats.unfCalculated = true;
+                    return null;
+                });
+            } else {
+                Double[] variableVector = columnReader.readDoubleVector(varnum).toBoxedArray();
+                calculations.add(() -> {
+                    logger.fine("Calculating summary statistics and UNF on a Double vector;");
+                    stats.sumStats = SumStatCalculator.calculateSummaryStatistics(variableVector);
+                    stats.unf = calculateUNF(varnum, variableVector);
+                    stats.unfCalculated = true;
+                    return null;
+                });
+            }
+        } else if (var.isTypeCharacter()) {
+            logger.fine("subsetting character vector");
+            String[] variableVector = characterVector != null ? characterVector : columnReader.readStringVector(varnum);
+            String formatCategory = var.getFormatCategory();
+            String format = var.getFormat();
+            calculations.add(() -> {
+                logger.fine("Calculating UNF on a String vector");
+                stats.unf = calculateUNF(varnum, variableVector, formatCategory, format);
+                stats.unfCalculated = true;
+                return null;
+            });
+        }
+        
+        if (calculations.isEmpty()) {
+            return null;
+        }
+        return () -> {
+            for (Callable<Void> calculation : calculations) {
+                calculation.call();
+            }
+            return stats;
+        };
+    }
+    
+    private void assignStatistics(DataFile dataFile, VariableStatistics stats) throws IOException {
+        DataVariable var = dataFile.getDataTable().getDataVariables().get(stats.varnum);
+        if (stats.categoryFrequencies != null) {
+            assignCategoryFrequencies(var, stats.categoryFrequencies);
+        }
+        if (stats.sumStats != null) {
+            assignContinuousSummaryStatistics(var, stats.sumStats);
+        }
+        if (stats.unfCalculated) {
+            assignUNF(dataFile, stats.varnum, stats.unf);
+        }
+    }
+    
+    private static TabularColumnReader openColumnReader(DataFile dataFile, File generatedTabularFile) throws IOException {
+        return new TabularColumnReader(generatedTabularFile, 
+                dataFile.getDataTable().getVarQuantity().intValue(), 
+                dataFile.getDataTable().getCaseQuantity().intValue());
+    }
+    
     public void produceContinuousSummaryStatistics(DataFile dataFile, File generatedTabularFile) throws IOException {
+        try (TabularColumnReader columnReader = openColumnReader(dataFile, generatedTabularFile)) {
+            produceContinuousSummaryStatistics(dataFile, columnReader);
+        }
+    }
+    
+    private void produceContinuousSummaryStatistics(DataFile dataFile, TabularColumnReader columnReader) throws IOException {
 
         /* 
         // quick, but memory-inefficient way:
@@ -633,20 +847,20 @@ public class IngestServiceBean {
                 logger.fine("subsetting continuous vector");
 
                 if ("float".equals(dataFile.getDataTable().getDataVariables().get(i).getFormat())) {
-                    Float[] variableVector = TabularSubsetGenerator.subsetFloatVector(new FileInputStream(generatedTabularFile), i, dataFile.getDataTable().getCaseQuantity().intValue());
+                    Float[] variableVector = columnReader.readFloatVector(i).toBoxedArray();
                     logger.fine("Calculating summary statistics on a Float vector;");
                     calculateContinuousSummaryStatistics(dataFile, i, variableVector);
                     // calculate the UNF while we are at it:
                     logger.fine("Calculating UNF on a Float vector;");
-                    calculateUNF(dataFile, i, variableVector);
+                    assignUNF(dataFile, i, calculateUNF(i, variableVector));
                     variableVector = null; 
                 } else {
-                    Double[] variableVector = TabularSubsetGenerator.subsetDoubleVector(new FileInputStream(generatedTabularFile), i, dataFile.getDataTable().getCaseQuantity().intValue());
+                    Double[] variableVector = columnReader.readDoubleVector(i).toBoxedArray();
                     logger.fine("Calculating summary statistics on a Double vector;");
                     calculateContinuousSummaryStatistics(dataFile, i, variableVector);
                     // calculate the UNF while we are at it:
                     logger.fine("Calculating UNF on a Double vector;");
-                    calculateUNF(dataFile, i, variableVector);
+                    assignUNF(dataFile, i, calculateUNF(i, variableVector));
                     variableVector = null; 
                 }
                 logger.fine("Done! (continuous);");
@@ -655,6 +869,12 @@ public class IngestServiceBean {
     }
     
     public void produceDiscreteNumericSummaryStatistics(DataFile dataFile, File generatedTabularFile) throws IOException {
+        try (TabularColumnReader columnReader = openColumnReader(dataFile, generatedTabularFile)) {
+            produceDiscreteNumericSummaryStatistics(dataFile, columnReader);
+        }
+    }
+    
+    private void produceDiscreteNumericSummaryStatistics(DataFile dataFile, TabularColumnReader columnReader) throws IOException {
         
         //TabularSubsetGenerator subsetGenerator = new TabularSubsetGenerator();
         
@@ -663,14 +883,14 @@ public class IngestServiceBean {
                     && dataFile.getDataTable().getDataVariables().get(i).isTypeNumeric()) {
                 logger.fine("subsetting discrete-numeric vector");
 
-                Long[] variableVector = TabularSubsetGenerator.subsetLongVector(new FileInputStream(generatedTabularFile), i, dataFile.getDataTable().getCaseQuantity().intValue());
+                Long[] variableVector = columnReader.readLongVector(i).toBoxedArray();
                 // We are discussing calculating the same summary stats for 
                 // all numerics (the same kind of sumstats that we've been calculating
                 // for numeric continuous type)  -- L.A. Jul. 2014
                 calculateContinuousSummaryStatistics(dataFile, i, variableVector);
                 // calculate the UNF while we are at it:
                 logger.fine("Calculating UNF on a Long vector");
-                calculateUNF(dataFile, i, variableVector);
+                assignUNF(dataFile, i, calculateUNF(i, variableVector));
                 logger.fine("Done! (discrete numeric)");
                 variableVector = null; 
             }
@@ -678,6 +898,12 @@ public class IngestServiceBean {
     }
     
     public void produceCharacterSummaryStatistics(DataFile dataFile, File generatedTabularFile) throws IOException {
+        try (TabularColumnReader columnReader = openColumnReader(dataFile, generatedTabularFile)) {
+            produceCharacterSummaryStatistics(dataFile, columnReader);
+        }
+    }
+    
+    private void produceCharacterSummaryStatistics(DataFile dataFile, TabularColumnReader columnReader) throws IOException {
 
         /* 
             At this point it's still not clear what kinds of summary stats we
@@ -697,11 +923,12 @@ public class IngestServiceBean {
             if (dataFile.getDataTable().getDataVariables().get(i).isTypeCharacter()) {
 
                 logger.fine("subsetting character vector");
-                String[] variableVector = TabularSubsetGenerator.subsetStringVector(new FileInputStream(generatedTabularFile), i, dataFile.getDataTable().getCaseQuantity().intValue());
+                String[] variableVector = columnReader.readStringVector(i);
                 //calculateCharacterSummaryStatistics(dataFile, i, variableVector);
                 // calculate the UNF while we are at it:
                 logger.fine("Calculating UNF on a String vector");
-                calculateUNF(dataFile, i, variableVector);
+                DataVariable var = dataFile.getDataTable().getDataVariables().get(i);
+                assignUNF(dataFile, i, calculateUNF(i, variableVector, var.getFormatCategory(), var.getFormat()));
                 logger.fine("Done! (character)");
                 variableVector = null; 
             }
@@ -717,58 +944,69 @@ public class IngestServiceBean {
 
     public static void produceFrequencies( File generatedTabularFile, List<DataVariable> vars) throws IOException {
 
-        for (int i = 0; i < vars.size(); i++) {
+        if (vars.isEmpty()) {
+            return;
+        }
+        
+        int varQuantity = vars.get(0).getDataTable().getVarQuantity().intValue();
+        int caseQuantity = vars.get(0).getDataTable().getCaseQuantity().intValue();
+        
+        try (TabularColumnReader columnReader = new TabularColumnReader(generatedTabularFile, varQuantity, caseQuantity)) {
+            for (int i = 0; i < vars.size(); i++) {
 
-            Collection<VariableCategory> cats = vars.get(i).getCategories();
-            int caseQuantity = vars.get(i).getDataTable().getCaseQuantity().intValue();
-            boolean isNumeric = vars.get(i).isTypeNumeric();
-            Object[] variableVector = null;
-            if (cats.size() > 0) {
-                if (isNumeric) {
-                    variableVector = TabularSubsetGenerator.subsetFloatVector(new FileInputStream(generatedTabularFile), i, caseQuantity);
-                }
-                else {
-                    variableVector = TabularSubsetGenerator.subsetStringVector(new FileInputStream(generatedTabularFile), i, caseQuantity);
-                }
-                if (variableVector != null) {
-                    Hashtable<Object, Double> freq = calculateFrequency(variableVector);
-                    for (VariableCategory cat : cats) {
-                        Object catValue;
-                        if (isNumeric) {
-                            catValue = new Float(cat.getValue());
-                        } else {
-                            catValue = cat.getValue();
-                        }
-                        Double numberFreq = freq.get(catValue);
-                        if (numberFreq != null) {
-                            cat.setFrequency(numberFreq);
-                        } else {
-                            cat.setFrequency(0D);
-                        }
+                if (vars.get(i).getCategories().size() > 0) {
+                    if (vars.get(i).isTypeNumeric()) {
+                        calculateCategoryFrequencies(vars.get(i), columnReader.readFloatVector(i));
+                    } else {
+                        calculateCategoryFrequencies(vars.get(i), columnReader.readStringVector(i));
                     }
-                } else {
-                    logger.fine("variableVector is null for variable " + vars.get(i).getName());
                 }
             }
         }
     }
 
-    public static Hashtable<Object, Double> calculateFrequency( Object[] variableVector) {
-        Hashtable<Object, Double> freq = new Hashtable<Object, Double>();
+    private static void calculateCategoryFrequencies(DataVariable var, TabularColumnReader.FloatVector variableVector) {
+        assignCategoryFrequencies(var, calculateCategoryFrequencies(getCategoryValues(var), variableVector));
+    }
 
-        for (int j = 0; j < variableVector.length; j++) {
-            if (variableVector[j] != null) {
-                Double freqNum = freq.get(variableVector[j]);
-                if (freqNum != null) {
-                    freq.put(variableVector[j], freqNum + 1);
-                } else {
-                    freq.put(variableVector[j], 1D);
-                }
-            }
+    private static void calculateCategoryFrequencies(DataVariable var, String[] variableVector) {
+        assignCategoryFrequencies(var, calculateCategoryFrequencies(getCategoryValues(var), variableVector));
+    }
+
+    private static List<String> getCategoryValues(DataVariable var) {
+        List<String> categoryValues = new ArrayList<>();
+        for (VariableCategory cat : var.getCategories()) {
+            categoryValues.add(cat.getValue());
+        }
+        return categoryValues;
+    }
+
+    /*
+     * @return the frequencies of the category values, in the same order
+     */
+    private static double[] calculateCategoryFrequencies(List<String> categoryValues, TabularColumnReader.FloatVector variableVector) {
+        NumericFrequencyTable freq = NumericFrequencyTable.ofFloats(variableVector.getValues(), variableVector.getMissing());
+        double[] frequencies = new double[categoryValues.size()];
+        for (int i = 0; i < frequencies.length; i++) {
+            frequencies[i] = freq.getFloatCount(Float.parseFloat(categoryValues.get(i)));
         }
+        return frequencies;
+    }
 
-        return freq;
+    private static double[] calculateCategoryFrequencies(List<String> categoryValues, String[] variableVector) {
+        CharacterFrequencyTable freq = CharacterFrequencyTable.ofStrings(variableVector);
+        double[] frequencies = new double[categoryValues.size()];
+        for (int i = 0; i < frequencies.length; i++) {
+            frequencies[i] = freq.getCount(categoryValues.get(i));
+        }
+        return frequencies;
+    }
 
+    private static void assignCategoryFrequencies(DataVariable var, double[] frequencies) {
+        int i = 0;
+        for (VariableCategory cat : var.getCategories()) {
+            cat.setFrequency(frequencies[i++]);
+        }
     }
     
     public void recalculateDataFileUNF(DataFile dataFile) {
@@ -970,8 +1208,7 @@ public class IngestServiceBean {
                 tabDataIngest.getDataTable().setOriginalFileName(originalFileName);
                 
                 try {
-                    produceSummaryStatistics(dataFile, tabFile);
-                    produceFrequencyStatistics(dataFile, tabFile);
+                    produceSummaryStatistics(dataFile, tabFile, true);
                     postIngestTasksSuccessful = true;
                 } catch (IOException postIngestEx) {
 
@@ -1055,6 +1292,12 @@ public class IngestServiceBean {
                     // Reset the file size: 
                     dataFile.setFilesize(dataAccess.getSize());
                     
+                    // Save the columnar image of the tab file used for subsetting, 
+                    // if configured (otherwise it is created on the first subset request):
+                    if (JvmSettings.INGEST_STORE_COLUMNAR_IMAGE.lookupOptional(Boolean.class).orElse(false)) {
+                        saveRotatedImage(dataAccess, dataFile, tabFile);
+                    }
+                    
                     dataFile = fileService.save(dataFile);
                     logger.fine("saved data file after updating the size");
 
@@ -1087,6 +1330,23 @@ public class IngestServiceBean {
         return ingestSuccessful;
     }
 
+    private void saveRotatedImage(StorageIO<DataFile> dataAccess, DataFile dataFile, File tabFile) {
+        File rotatedImageFile = null;
+        try {
+            rotatedImageFile = new TabularSubsetGenerator().generateRotatedImage(tabFile,
+                    dataFile.getDataTable().getVarQuantity().intValue(),
+                    dataFile.getDataTable().getCaseQuantity().intValue());
+            dataAccess.savePathAsAux(rotatedImageFile.toPath(), TabularSubsetGenerator.ROTATED_IMAGE_AUX_TAG);
+        } catch (IOException ioex) {
+            // Not fatal; the image will be generated on the first subset request.
+            logger.warning("Failed to save the columnar image of the tabular file (datafile id " + dataFile.getId() + "): " + ioex.getMessage());
+        } finally {
+            if (rotatedImageFile != null) {
+                rotatedImageFile.delete();
+            }
+        }
+    }
+
     private BufferedInputStream openFile(DataFile dataFile) throws IOException {
         BufferedInputStream inputStream;
         StorageIO<DataFile> storageIO = dataFile.getStorageIO();
@@ -1805,7 +2065,15 @@ public class IngestServiceBean {
 
     }
     
-    private void calculateUNF(DataFile dataFile, int varnum, Double[] dataVector) {
+    private void assignUNF(DataFile dataFile, int varnum, String unf) {
+        if (unf != null) {
+            dataFile.getDataTable().getDataVariables().get(varnum).setUnf(unf);
+        } else {
+            logger.warning("failed to calculate UNF signature for variable " + varnum);
+        }
+    }
+    
+    private String calculateUNF(int varnum, Double[] dataVector) {
         String unf = null;
         try {
             unf = UNFUtil.calculateUNF(dataVector);
@@ -1815,14 +2083,10 @@ public class IngestServiceBean {
             logger.warning("UNF Exception: thrown when attempted to calculate UNF signature for (numeric, continuous) variable " + varnum);
         }
         
-        if (unf != null) {
-            dataFile.getDataTable().getDataVariables().get(varnum).setUnf(unf);
-        } else {
-            logger.warning("failed to calculate UNF signature for variable " + varnum);
-        }
+        return unf;
     }
     
-    private void calculateUNF(DataFile dataFile, int varnum, Long[] dataVector) {
+    private String calculateUNF(int varnum, Long[] dataVector) {
         String unf = null;
         try {
             unf = UNFUtil.calculateUNF(dataVector);
@@ -1832,23 +2096,19 @@ public class IngestServiceBean {
             logger.warning("UNF Exception: thrown when attempted to calculate UNF signature for (numeric, discrete) variable " + varnum);
         }
         
-        if (unf != null) {
-            dataFile.getDataTable().getDataVariables().get(varnum).setUnf(unf);
-        } else {
-            logger.warning("failed to calculate UNF signature for variable " + varnum);
-        }
+        return unf;
     }
     
-    private void calculateUNF(DataFile dataFile, int varnum, String[] dataVector) throws IOException {
+    private String calculateUNF(int varnum, String[] dataVector, String formatCategory, String savedFormat) throws IOException {
         String unf = null;
         
         String[] dateFormats = null; 
         
         // Special handling for Character strings that encode dates and times:
         
-        if ("time".equals(dataFile.getDataTable().getDataVariables().get(varnum).getFormatCategory())) {
+        if ("time".equals(formatCategory)) {
             dateFormats = new String[dataVector.length];
-            String savedDateTimeFormat = dataFile.getDataTable().getDataVariables().get(varnum).getFormat();
+            String savedDateTimeFormat = savedFormat;
             String timeFormat = null;
             if (savedDateTimeFormat != null && !savedDateTimeFormat.equals("")) {
                 timeFormat = savedDateTimeFormat;
@@ -1905,9 +2165,9 @@ public class IngestServiceBean {
                     dateFormats[i] = timeFormat;
                 }
             }
-        } else if ("date".equals(dataFile.getDataTable().getDataVariables().get(varnum).getFormatCategory())) {
+        } else if ("date".equals(formatCategory)) {
             dateFormats = new String[dataVector.length];
-            String savedDateFormat = dataFile.getDataTable().getDataVariables().get(varnum).getFormat();
+            String savedDateFormat = savedFormat;
             for (int i = 0; i < dataVector.length; i++) {
                 if (dataVector[i] != null) {
                     if (savedDateFormat != null && !savedDateFormat.equals("")) {
@@ -1932,11 +2192,7 @@ public class IngestServiceBean {
             logger.warning("UNF Exception: thrown when attempted to calculate UNF signature for (character) variable " + varnum);
         }
         
-        if (unf != null) {
-            dataFile.getDataTable().getDataVariables().get(varnum).setUnf(unf);
-        } else {
-            logger.warning("failed to calculate UNF signature for variable " + varnum);
-        }
+        return unf;
     }
     
     // Calculating UNFs from *floats*, not *doubles* - this is to test dataverse
@@ -1947,7 +2203,7 @@ public class IngestServiceBean {
     // TODO: remove this from the final production 4.0!
     // -- L.A., Jul 2014
     
-    private void calculateUNF(DataFile dataFile, int varnum, Float[] dataVector) {
+    private String calculateUNF(int varnum, Float[] dataVector) {
         String unf = null;
         try {
             unf = UNFUtil.calculateUNF(dataVector);
@@ -1957,11 +2213,7 @@ public class IngestServiceBean {
             logger.warning("UNF Exception: thrown when attempted to calculate UNF signature for numeric, \"continuous\" (float) variable" + varnum);
         }
         
-        if (unf != null) {
-            dataFile.getDataTable().getDataVariables().get(varnum).setUnf(unf);
-        } else {
-            logger.warning("failed to calculate UNF signature for variable " + varnum);
-        }
+        return unf;
     }
     
     // This method takes a list of file ids, checks the format type of the ingested 
@@ -0,0 +1,126 @@
+package edu.harvard.iq.dataverse.ingest;
+
+import java.util.BitSet;
+
+/**
+ * Frequency table of the values of a numeric variable.
+ *
+ * Backed by an open-addressing (linear probing) hash table of primitive long
+ * keys and int counts, so that counting the values of a long vector does not
+ * box every value, the way a Map&lt;Object, Double&gt; would. Floating point
+ * values are counted by their bit patterns, i.e. they are considered equal
+ * exactly when Float.equals() would consider them equal.
+ */
+public class NumericFrequencyTable {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    // A zero count marks an empty slot:
+    private int[] counts;
+    private int mask;
+    private int size = 0;
+
+    public NumericFrequencyTable() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    public NumericFrequencyTable(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        // (the table is kept at most half full)
+        while (capacity < expectedSize * 2 && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    public static NumericFrequencyTable ofFloats(float[] values, BitSet missing) {
+        NumericFrequencyTable table = new NumericFrequencyTable();
+        for (int i = 0; i < values.length; i++) {
+            if (missing == null || !missing.get(i)) {
+                table.addFloat(values[i]);
+            }
+        }
+        return table;
+    }
+
+    public static NumericFrequencyTable ofLongs(long[] values, BitSet missing) {
+        NumericFrequencyTable table = new NumericFrequencyTable();
+        for (int i = 0; i < values.length; i++) {
+            if (missing == null || !missing.get(i)) {
+                table.add(values[i]);
+            }
+        }
+        return table;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        counts = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    public void add(long key) {
+        int slot = hash(key) & mask;
+        while (counts[slot] != 0) {
+            if (keys[slot] == key) {
+                counts[slot]++;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        counts[slot] = 1;
+        if (++size * 2 > keys.length) {
+            rehash();
+        }
+    }
+
+    public void addFloat(float value) {
+        add(Float.floatToIntBits(value));
+    }
+
+    public int getCount(long key) {
+        int slot = hash(key) & mask;
+        while (counts[slot] != 0) {
+            if (keys[slot] == key) {
+                return counts[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    public int getFloatCount(float value) {
+        return getCount(Float.floatToIntBits(value));
+    }
+
+    /**
+     * @return the number of distinct values counted
+     */
+    public int size() {
+        return size;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        allocate(oldKeys.length * 2);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldCounts[i] != 0) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (counts[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+}
@@ -21,9 +21,12 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jakarta.ejb.EJB;
+import jakarta.ejb.Schedule;
 import jakarta.ejb.Stateless;
 import jakarta.json.Json;
 import jakarta.json.JsonArray;
@@ -42,8 +45,27 @@ public class MetricsServiceBean implements Serializable {
 
     private static final Logger logger = Logger.getLogger(MetricsServiceBean.class.getCanonicalName());
 
+    private static final String DOWNLOADS_ROLLUP = "downloads";
+
     private static final SimpleDateFormat yyyymmFormat = new SimpleDateFormat(MetricsUtil.YEAR_AND_MONTH_PATTERN);
 
+    /**
+     * The published subtree ids of the dataverses metrics were requested for
+     * (see getCommaSeparatedIdStringForSubtree()), by dataverse id and dtype.
+     * They are kept for as long as the cached metrics (:MetricsCacheTimeoutMinutes),
+     * so that the recursive subtree query is not run on every request.
+     */
+    private static final Map<String, CachedSubtree> subtreeCache = new ConcurrentHashMap<>();
+
+    private static class CachedSubtree {
+        final String idString;
+        final long cachedTime = System.currentTimeMillis();
+
+        CachedSubtree(String idString) {
+            this.idString = idString;
+        }
+    }
+
     @PersistenceContext(unitName = "VDCNet-ejbPU")
     private EntityManager em;
     @EJB
@@ -419,18 +441,29 @@ public class MetricsServiceBean implements Serializable {
         LocalDate earliestDate = earlyDateTimestamp.toLocalDateTime().toLocalDate().minusMonths(1);
         String earliest = earliestDate.format(DateTimeFormatter.ofPattern(YEAR_AND_MONTH_PATTERN));
 
+        String datasetIds = (d == null) ? null : getCommaSeparatedIdStringForSubtree(d, "Dataset");
+
         // Counts historic guestbook records without date as occurring in the month
         // prior to the first dated counts
         Query query = em.createNativeQuery(""
-                + "select  distinct COALESCE(to_char(responsetime, 'YYYY-MM'),'" + earliest + "') as date, count(id)\n"
-                + "from guestbookresponse\n"
-                + ((d == null) ? "" : "where dataset_id in (" + getCommaSeparatedIdStringForSubtree(d, "Dataset") + ")")
-                + ((d == null) ? "where ":" and ") + "eventtype!='" + GuestbookResponse.ACCESS_REQUEST +"'\n"
-                + " group by COALESCE(to_char(responsetime, 'YYYY-MM'),'" + earliest + "') order by  COALESCE(to_char(responsetime, 'YYYY-MM'),'" + earliest + "');");
+                + rollupEndQuery(DOWNLOADS_ROLLUP)
+                + "select date, sum(count) from (\n"
+                + "select COALESCE(month,'" + earliest + "') as date, count\n"
+                + "from metricsmonthlyrollup\n"
+                + "where name='" + DOWNLOADS_ROLLUP + "'\n"
+                + ((d == null) ? "" : "and dvobject_id in (" + datasetIds + ")\n")
+                + "union all\n"
+                + "select COALESCE(to_char(responsetime, 'YYYY-MM'),'" + earliest + "') as date, count(id)\n"
+                + "from guestbookresponse, rollupend\n"
+                + "where eventtype!='" + GuestbookResponse.ACCESS_REQUEST + "'\n"
+                + ((d == null) ? "" : "and dataset_id in (" + datasetIds + ")\n")
+                + "and " + NOT_ROLLED_UP + "\n"
+                + "group by COALESCE(to_char(responsetime, 'YYYY-MM'),'" + earliest + "')\n"
+                + ") as subq group by date order by date;");
 
         logger.log(Level.FINE, "Metric query: {0}", query);
         List<Object[]> results = query.getResultList();
-        return MetricsUtil.timeSeriesToJson(results);
+        return MetricsUtil.timeSeriesToJson(results, true);
     }
     
     /*
@@ -453,16 +486,27 @@ public class MetricsServiceBean implements Serializable {
             Date dateQueried = yyyymmFormat.parse(yyyymm);
 
             if (!dateQueried.before(earliestDate)) {
+                String datasetIds = (d == null) ? null : getCommaSeparatedIdStringForSubtree(d, "Dataset");
+
                 Query query = em.createNativeQuery(""
+                        + rollupEndQuery(DOWNLOADS_ROLLUP)
+                        + "select coalesce(sum(count),0) from (\n"
+                        + "select count\n"
+                        + "from metricsmonthlyrollup\n"
+                        + "where name='" + DOWNLOADS_ROLLUP + "'\n"
+                        + "and (month <= '" + yyyymm + "' or month is NULL)\n" // includes historic guestbook records without date
+                        + ((d == null) ? "" : "and dvobject_id in (" + datasetIds + ")\n")
+                        + "union all\n"
                         + "select count(id)\n"
-                        + "from guestbookresponse\n"
-                        + "where (date_trunc('month', responsetime) <=  to_date('" + yyyymm + "','YYYY-MM')"
-                        + "or responsetime is NULL)\n" // includes historic guestbook records without date
+                        + "from guestbookresponse, rollupend\n"
+                        + "where (date_trunc('month', responsetime) <=  to_date('" + yyyymm + "','YYYY-MM') or responsetime is NULL)\n"
+                        + "and " + NOT_ROLLED_UP + "\n"
                         + "and eventtype!='" + GuestbookResponse.ACCESS_REQUEST +"'\n"
-                    + ((d==null) ? ";": "AND dataset_id in (" + getCommaSeparatedIdStringForSubtree(d, "Dataset") + ");") 
+                        + ((d == null) ? "" : "AND dataset_id in (" + datasetIds + ")\n")
+                        + ") as subq;"
                 );
                 logger.log(Level.FINE, "Metric query: {0}", query);
-                return (long) query.getSingleResult();
+                return ((BigDecimal) query.getSingleResult()).longValue();
             } else {
                 // When we query before the earliest dated record, return 0;
                 return 0L;
@@ -474,6 +518,91 @@ public class MetricsServiceBean implements Serializable {
 
     }
 
+    /**
+     * The downloads of the months completed since the last run are rolled up
+     * nightly, on the timer server.
+     */
+    @Schedule(hour = "1", minute = "15", persistent = false)
+    public void refreshRollupsTimer() {
+        if (systemConfig.isTimerServer()) {
+            logger.info("Refreshing the metrics rollups");
+            refreshDownloadsRollup(false);
+        }
+    }
+
+    /**
+     * Rolls the downloads of the completed months up into monthly counts per
+     * dataset. Only the months from the last one rolled up on are recounted,
+     * unless {@code rebuild} is set or nothing has been rolled up yet; the
+     * downloads of the current month are always counted from the
+     * guestbookresponse table.
+     * 
+     * @return the number of rollup rows written
+     */
+    public int refreshDownloadsRollup(boolean rebuild) {
+        String lastMonth = rebuild ? null : getLastRolledUpMonth(DOWNLOADS_ROLLUP);
+
+        em.createNativeQuery(""
+                + "delete from metricsmonthlyrollup\n"
+                + "where name='" + DOWNLOADS_ROLLUP + "'\n"
+                + ((lastMonth == null) ? ";" : "and (month >= '" + lastMonth + "' or dvobject_id not in (select id from dvobject));")
+        ).executeUpdate();
+
+        Query query = em.createNativeQuery(""
+                + "insert into metricsmonthlyrollup (name, dvobject_id, month, count)\n"
+                + "select '" + DOWNLOADS_ROLLUP + "', dataset_id, to_char(responsetime, 'YYYY-MM'), count(id)\n"
+                + "from guestbookresponse\n"
+                + "where eventtype!='" + GuestbookResponse.ACCESS_REQUEST + "'\n"
+                + ((lastMonth == null)
+                        ? "and (responsetime < date_trunc('month', current_date) or responsetime is NULL)\n"
+                        : "and responsetime >= to_date('" + lastMonth + "','YYYY-MM') and responsetime < date_trunc('month', current_date)\n")
+                + "group by dataset_id, to_char(responsetime, 'YYYY-MM');");
+        logger.log(Level.FINE, "Metric rollup query: {0}", query);
+        int rows = query.executeUpdate();
+        logger.fine("Rolled up downloads from " + ((lastMonth == null) ? "the start" : lastMonth) + " into " + rows + " rows");
+        return rows;
+    }
+
+    /**
+     * Drops the rolled up downloads of a dataset being destroyed (its
+     * guestbook responses are removed along with its files), so that they
+     * are not counted until the next run.
+     */
+    public void deleteRollupsOf(Long datasetId) {
+        em.createNativeQuery("delete from metricsmonthlyrollup where dvobject_id=" + datasetId + ";").executeUpdate();
+    }
+
+    private String getLastRolledUpMonth(String rollupName) {
+        return (String) em.createNativeQuery("select max(month) from metricsmonthlyrollup where name='" + rollupName + "';").getSingleResult();
+    }
+
+    /**
+     * The downloads from the month after the last one rolled up on are counted
+     * from the guestbookresponse table, the earlier ones from the rollup.
+     * Where the rollup ends is found within the same statement as the counts,
+     * so that a refresh of the rollup committed in between can't have a month
+     * counted twice, or not at all.
+     * 
+     * @return a "rollupend" common table expression, with a single row:
+     * whether anything has been rolled up, and if so, the start of the first
+     * month not rolled up (null if no dated month has been)
+     */
+    private static String rollupEndQuery(String rollupName) {
+        return "with rollupend as (\n"
+                + "select count(*) > 0 as rolledup, to_date(max(month),'YYYY-MM') + interval '1 month' as monthstart\n"
+                + "from metricsmonthlyrollup\n"
+                + "where name='" + rollupName + "'\n"
+                + ")\n";
+    }
+
+    /**
+     * Condition on the guestbook responses not counted in the rollup, given
+     * {@link #rollupEndQuery(String)}. Once anything has been rolled up, the
+     * responses without a date are in the rollup.
+     */
+    private static final String NOT_ROLLED_UP = "(not rollupend.rolledup or (responsetime is not null "
+            + "and (rollupend.monthstart is null or responsetime >= rollupend.monthstart)))";
+
     public long downloadsPastDays(int days, Dataverse d) {
         // ToDo - published only?
         Query query = em.createNativeQuery(""
@@ -752,6 +881,22 @@ public class MetricsServiceBean implements Serializable {
      * @return - list of objects of specified type included in the subtree (includes parent dataverse if dtype is 'Dataverse')
      */
     private String getCommaSeparatedIdStringForSubtree(Dataverse d, String dtype) {
+        String cacheKey = d.getId() + ":" + dtype;
+        long maxAgeMillis = systemConfig.getMetricsCacheTimeoutMinutes() * 60L * 1000L;
+        long now = System.currentTimeMillis();
+        CachedSubtree cached = subtreeCache.get(cacheKey);
+        if (cached != null && now - cached.cachedTime < maxAgeMillis) {
+            return cached.idString;
+        }
+        String idString = findCommaSeparatedIdStringForSubtree(d, dtype);
+        subtreeCache.values().removeIf(expired -> now - expired.cachedTime >= maxAgeMillis);
+        if (maxAgeMillis > 0) {
+            subtreeCache.put(cacheKey, new CachedSubtree(idString));
+        }
+        return idString;
+    }
+
+    private String findCommaSeparatedIdStringForSubtree(Dataverse d, String dtype) {
         /* Currently limited to returning published items (non-null publicationdate)
          * To support queries of draft/other states, this method would have to be updated
          */
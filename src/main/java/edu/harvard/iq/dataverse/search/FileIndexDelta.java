@@ -0,0 +1,175 @@
+package edu.harvard.iq.dataverse.search;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
+
+/**
+ * The file documents of a dataset as currently found in the index, with the
+ * fingerprint of the content each of them was indexed with, so that a
+ * reindex of the dataset only sends the file documents whose content
+ * changed, and then deletes the ones no version produces anymore.
+ * <p>
+ * The fingerprint has two parts: one for the fields of the file itself (and
+ * its full text), and one for the {@link #PARENT_FIELDS} copied from the
+ * dataset and its collections. When only the latter changed (e.g. the
+ * dataset title), the document is updated in place with an atomic update of
+ * these fields, without extracting the full text of the file again.
+ */
+class FileIndexDelta {
+
+    enum Change {
+        /**
+         * The document in the index is up to date.
+         */
+        NONE,
+        /**
+         * Only the fields copied from the dataset changed.
+         */
+        PARENT,
+        /**
+         * The document has to be sent again as a whole.
+         */
+        FILE
+    }
+
+    /**
+     * The fields of a file document that come from its dataset (or the
+     * collections above it) rather than from the file.
+     */
+    static final Set<String> PARENT_FIELDS = Set.of(
+            SearchFields.PARENT_IDENTIFIER,
+            SearchFields.PARENT_CITATION,
+            SearchFields.PARENT_NAME,
+            SearchFields.PERSISTENT_URL,
+            SearchFields.SUBTREE,
+            SearchFields.CATEGORY_OF_DATAVERSE,
+            SearchFields.METADATA_SOURCE,
+            SearchFields.PUBLICATION_YEAR,
+            SearchFields.DATASET_PUBLICATION_DATE);
+
+    private static final char SEPARATOR = '.';
+
+    private final Map<String, String> indexedFingerprints;
+    private final Set<String> kept = new HashSet<>();
+    private int unchanged = 0;
+    private int parentUpdated = 0;
+
+    /**
+     * @param indexedFingerprints the Solr ids of the file documents of the
+     * dataset in the index, with their fingerprint (null for documents
+     * indexed without one)
+     */
+    FileIndexDelta(Map<String, String> indexedFingerprints) {
+        this.indexedFingerprints = indexedFingerprints;
+    }
+
+    /**
+     * Records that the file document is still wanted, and checks how it
+     * differs from the one in the index.
+     */
+    Change keep(String solrId, String fingerprint) {
+        kept.add(solrId);
+        String indexed = indexedFingerprints.get(solrId);
+        if (fingerprint.equals(indexed)) {
+            unchanged++;
+            return Change.NONE;
+        }
+        if (indexed != null && filePart(fingerprint).equals(filePart(indexed))) {
+            parentUpdated++;
+            return Change.PARENT;
+        }
+        return Change.FILE;
+    }
+
+    int getUnchangedCount() {
+        return unchanged;
+    }
+
+    int getParentUpdatedCount() {
+        return parentUpdated;
+    }
+
+    /**
+     * @return the file documents in the index that none of the versions
+     * indexed since has kept
+     */
+    List<String> getStaleIds() {
+        List<String> stale = new ArrayList<>();
+        for (String solrId : indexedFingerprints.keySet()) {
+            if (!kept.contains(solrId)) {
+                stale.add(solrId);
+            }
+        }
+        return stale;
+    }
+
+    /**
+     * A hash of the file fields of the document, plus anything that goes
+     * into the document after the fingerprint is taken (e.g. whether and how
+     * the full text of the file would be extracted), followed by a hash of
+     * its parent fields.
+     */
+    static String fingerprint(SolrInputDocument doc, String extra) {
+        MessageDigest fileMd = newDigest();
+        MessageDigest parentMd = newDigest();
+        StringBuilder sb = new StringBuilder();
+        for (SolrInputField field : doc) {
+            sb.setLength(0);
+            sb.append(field.getName()).append('=');
+            for (Object value : field) {
+                sb.append(value).append('\u0000');
+            }
+            sb.append('\u0001');
+            MessageDigest md = PARENT_FIELDS.contains(field.getName()) ? parentMd : fileMd;
+            md.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        fileMd.update(String.valueOf(extra).getBytes(StandardCharsets.UTF_8));
+        return toHex(fileMd.digest()) + SEPARATOR + toHex(parentMd.digest());
+    }
+
+    /**
+     * @return an atomic update setting the parent fields of the indexed
+     * document to those of the given one (removing the ones it doesn't
+     * have), along with its new fingerprint
+     */
+    static SolrInputDocument parentUpdate(SolrInputDocument doc, String fingerprint) {
+        SolrInputDocument update = new SolrInputDocument();
+        update.addField(SearchFields.ID, doc.getFieldValue(SearchFields.ID));
+        for (String name : PARENT_FIELDS) {
+            SolrInputField field = doc.getField(name);
+            update.addField(name, Collections.singletonMap("set", field == null ? null : field.getValues()));
+        }
+        update.addField(SearchFields.FILE_INDEX_FINGERPRINT, Collections.singletonMap("set", fingerprint));
+        return update;
+    }
+
+    private static String filePart(String fingerprint) {
+        int separator = fingerprint.indexOf(SEPARATOR);
+        return separator < 0 ? fingerprint : fingerprint.substring(0, separator);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String toHex(byte[] digest) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,142 @@
+package edu.harvard.iq.dataverse.search;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObjectBuilder;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of the running (or last) "index all" run, updated concurrently by
+ * the threads indexing the datasets, and reported by the index status API:
+ * how many dataverses and datasets have been indexed out of how many, how
+ * fast, and an estimate of the time left.
+ */
+public class IndexBatchProgress {
+
+    private volatile boolean running = false;
+    private volatile long startTime = 0L;
+    private volatile long endTime = 0L;
+    private volatile int threads = 0;
+
+    private final AtomicLong dataversesTotal = new AtomicLong();
+    private final AtomicLong dataversesIndexed = new AtomicLong();
+    private final AtomicLong dataversesFailed = new AtomicLong();
+    private final AtomicLong datasetsTotal = new AtomicLong();
+    private final AtomicLong datasetsIndexed = new AtomicLong();
+    private final AtomicLong datasetsFailed = new AtomicLong();
+    private volatile long datasetsStartTime = 0L;
+
+    public synchronized void start(long dataverseCount) {
+        running = true;
+        startTime = System.currentTimeMillis();
+        endTime = 0L;
+        threads = 0;
+        dataversesTotal.set(dataverseCount);
+        dataversesIndexed.set(0L);
+        dataversesFailed.set(0L);
+        datasetsTotal.set(0L);
+        datasetsIndexed.set(0L);
+        datasetsFailed.set(0L);
+        datasetsStartTime = 0L;
+    }
+
+    public synchronized void startDatasets(long datasetCount, int threadCount) {
+        datasetsTotal.set(datasetCount);
+        threads = threadCount;
+        datasetsStartTime = System.currentTimeMillis();
+    }
+
+    public synchronized void finish() {
+        running = false;
+        endTime = System.currentTimeMillis();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void dataverseIndexed() {
+        dataversesIndexed.incrementAndGet();
+    }
+
+    public void dataverseFailed() {
+        dataversesFailed.incrementAndGet();
+    }
+
+    /**
+     * @return the number of datasets processed so far, this one included
+     */
+    public long datasetIndexed() {
+        return datasetsIndexed.incrementAndGet() + datasetsFailed.get();
+    }
+
+    /**
+     * @return the number of datasets processed so far, this one included
+     */
+    public long datasetFailed() {
+        return datasetsFailed.incrementAndGet() + datasetsIndexed.get();
+    }
+
+    public long getDatasetsTotal() {
+        return datasetsTotal.get();
+    }
+
+    /**
+     * @return datasets processed per second since the datasets started being
+     * indexed, or 0 if it is too early to tell
+     */
+    public double getDatasetsPerSecond() {
+        long since = datasetsStartTime;
+        if (since == 0L) {
+            return 0.0;
+        }
+        long until = running ? System.currentTimeMillis() : endTime;
+        long elapsed = until - since;
+        if (elapsed <= 0L) {
+            return 0.0;
+        }
+        return (datasetsIndexed.get() + datasetsFailed.get()) * 1000.0 / elapsed;
+    }
+
+    /**
+     * @return the estimated number of seconds until all the datasets are
+     * processed, at the current rate, or -1 if unknown
+     */
+    public long getEstimatedSecondsLeft() {
+        if (!running) {
+            return 0L;
+        }
+        double rate = getDatasetsPerSecond();
+        if (rate <= 0.0) {
+            return -1L;
+        }
+        long left = datasetsTotal.get() - datasetsIndexed.get() - datasetsFailed.get();
+        return Math.round(Math.max(left, 0L) / rate);
+    }
+
+    public JsonObjectBuilder toJson() {
+        JsonObjectBuilder json = Json.createObjectBuilder();
+        json.add("running", running);
+        if (startTime == 0L) {
+            return json;
+        }
+        long until = running ? System.currentTimeMillis() : endTime;
+        json.add("startTime", Instant.ofEpochMilli(startTime).toString());
+        if (!running) {
+            json.add("endTime", Instant.ofEpochMilli(endTime).toString());
+        }
+        json.add("elapsedSeconds", (until - startTime) / 1000L);
+        json.add("threads", threads);
+        json.add("dataverses", Json.createObjectBuilder()
+                .add("total", dataversesTotal.get())
+                .add("indexed", dataversesIndexed.get())
+                .add("failed", dataversesFailed.get()));
+        json.add("datasets", Json.createObjectBuilder()
+                .add("total", datasetsTotal.get())
+                .add("indexed", datasetsIndexed.get())
+                .add("failed", datasetsFailed.get()));
+        json.add("datasetsPerSecond", Math.round(getDatasetsPerSecond() * 100.0) / 100.0);
+        json.add("estimatedSecondsLeft", getEstimatedSecondsLeft());
+        return json;
+    }
+}
@@ -4,17 +4,30 @@ import edu.harvard.iq.dataverse.DatasetServiceBean;
 import edu.harvard.iq.dataverse.Dataverse;
 import edu.harvard.iq.dataverse.DataverseServiceBean;
 import edu.harvard.iq.dataverse.DvObjectServiceBean;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import edu.harvard.iq.dataverse.settings.SettingsServiceBean;
 import edu.harvard.iq.dataverse.util.SystemConfig;
 import java.io.IOException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import jakarta.annotation.Resource;
 import jakarta.ejb.AsyncResult;
 import jakarta.ejb.Asynchronous;
 import jakarta.ejb.EJB;
+import jakarta.ejb.SessionContext;
 import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
 import jakarta.inject.Named;
 import jakarta.json.Json;
 import jakarta.json.JsonArrayBuilder;
@@ -30,6 +43,22 @@ public class IndexBatchServiceBean {
 
     private static final Logger logger = Logger.getLogger(IndexBatchServiceBean.class.getCanonicalName());
 
+    private static final int DEFAULT_REINDEX_THREADS = 4;
+
+    /**
+     * Start time of the last full reindex, kept in the settings table until
+     * the reindex completes, so that "continue" can tell the objects indexed
+     * by it from the ones indexed before it. Each partition of a partitioned
+     * reindex has a checkpoint of its own (see getCheckpointSetting()).
+     */
+    static final String REINDEX_CHECKPOINT_SETTING = ":IndexAllCheckpoint";
+
+    /**
+     * Progress of the running, or last, reindex of each partition (see
+     * getProgressKey()), since partitions may be reindexed concurrently.
+     */
+    private static final Map<String, IndexBatchProgress> reindexProgress = new ConcurrentHashMap<>();
+
     @PersistenceContext(unitName = "VDCNet-ejbPU")
     private EntityManager em;
 
@@ -45,6 +74,12 @@ public class IndexBatchServiceBean {
     DvObjectServiceBean dvObjectService;
     @EJB
     SystemConfig systemConfig;
+    @EJB
+    SettingsServiceBean settingsService;
+    @EJB
+    SolrClientService solrClientService;
+    @Resource
+    SessionContext sessionContext;
     
     @Asynchronous
     public Future<JsonObjectBuilder> indexStatus() {
@@ -106,7 +141,13 @@ public class IndexBatchServiceBean {
     }
 
     
+    /*
+     * Not run in a transaction, so that the checkpoint is committed as soon 
+     * as it is saved, and survives a crash in the middle of the reindex 
+     * (the indexing itself runs in transactions of its own).
+     */
     @Asynchronous
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
     public Future<JsonObjectBuilder> indexAllOrSubset(long numPartitions, long partitionId, boolean skipIndexed, boolean previewOnly) {
         JsonObjectBuilder response = Json.createObjectBuilder();
         indexAllOrSubset(numPartitions, partitionId, skipIndexed);
@@ -176,10 +217,23 @@ public class IndexBatchServiceBean {
             resultOfClearingIndexTimes = "Solr index was not cleared before indexing.";
         }
 
+        Timestamp indexedSince = null;
+        String checkpointSetting = getCheckpointSetting(numPartitions, partitionId);
+        String checkpoint = settingsService.get(checkpointSetting);
+        if (!skipIndexed) {
+            settingsService.set(checkpointSetting, Long.toString(indexAllTimeBegin));
+        } else if (checkpoint != null) {
+            indexedSince = new Timestamp(Long.parseLong(checkpoint));
+            logger.info("continuing the reindex started at " + indexedSince);
+        }
+
         // List<Dataverse> dataverses = dataverseService.findAllOrSubset(numPartitions, partitionId, skipIndexed);
         // Note: no support for "partitions" in this experimental branch. 
         // The method below returns the ids of all the unindexed dataverses.
-        List<Long> dataverseIds = dataverseIds = dataverseService.findDataverseIdsForIndexing(skipIndexed);
+        List<Long> dataverseIds = dataverseService.findDataverseIdsForIndexing(skipIndexed, indexedSince);
+        IndexBatchProgress progress = new IndexBatchProgress();
+        progress.start(dataverseIds.size());
+        reindexProgress.put(getProgressKey(numPartitions, partitionId), progress);
         
         int dataverseIndexCount = 0;
         int dataverseFailureCount = 0;
@@ -191,22 +245,56 @@ public class IndexBatchServiceBean {
                 logger.info("indexing dataverse " + dataverseIndexCount + " of " + dataverseIds.size() + " (id=" + id + ", persistentId=" + dataverse.getAlias() + ")");
                 Future<String> result = indexService.indexDataverseInNewTransaction(dataverse);
                 dataverse = null;
+                progress.dataverseIndexed();
             } catch (Exception e) {
                 //We want to keep running even after an exception so throw some more info into the log
                 dataverseFailureCount++;
+                progress.dataverseFailed();
                 logger.info("FAILURE indexing dataverse " + dataverseIndexCount + " of " + dataverseIds.size() + " (id=" + id + ") Exception info: " + e.getMessage());
             }
         }
 
-        int datasetIndexCount = 0;
+        List<Long> datasetIds = datasetService.findAllOrSubsetOrderByFilesOwned(skipIndexed, indexedSince);
+        if (numPartitions > 1) {
+            datasetIds = IndexUtil.findDvObjectIdsToProcessMod(datasetIds, numPartitions, partitionId);
+        }
+        int datasetIndexCount = datasetIds.size();
         int datasetFailureCount = 0;
-        List<Long> datasetIds = datasetService.findAllOrSubsetOrderByFilesOwned(skipIndexed);
-        for (Long id : datasetIds) {
-            datasetIndexCount++;
-            logger.info("indexing dataset " + datasetIndexCount + " of " + datasetIds.size() + " (id=" + id + ")");
-            indexService.indexDatasetInNewTransaction(id);
+        boolean datasetWorkerFailed = false;
+
+        // The datasets are ordered by size, so the threads take them from a
+        // shared queue rather than each being handed a fixed share of them.
+        int threads = Math.max(1, Math.min(datasetIds.size(), JvmSettings.SOLR_REINDEX_THREADS.lookupOptional(Integer.class).orElse(DEFAULT_REINDEX_THREADS)));
+        progress.startDatasets(datasetIds.size(), threads);
+        logger.info("indexing " + datasetIds.size() + " datasets using " + threads + " threads");
+        Queue<Long> datasetQueue = new ConcurrentLinkedQueue<>(datasetIds);
+        IndexBatchServiceBean self = sessionContext.getBusinessObject(IndexBatchServiceBean.class);
+        List<Future<Integer>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(self.indexDatasetsFromQueue(datasetQueue, progress));
+        }
+        for (Future<Integer> worker : workers) {
+            try {
+                datasetFailureCount += worker.get();
+            } catch (InterruptedException | ExecutionException ex) {
+                // (its failures were not counted)
+                datasetWorkerFailed = true;
+                logger.warning("dataset indexing thread failed: " + ex.getMessage());
+            }
         }
         logger.info("done iterating through all datasets");
+        try {
+            // (with commitWithin, the last updates may not be visible yet)
+            solrClientService.commitNow();
+        } catch (SolrServerException | IOException ex) {
+            logger.warning("failed to commit the reindex: " + ex.getMessage());
+        }
+        progress.finish();
+
+        if (datasetQueue.isEmpty() && !datasetWorkerFailed && datasetFailureCount + dataverseFailureCount == 0) {
+            // Nothing left to continue:
+            settingsService.delete(checkpointSetting);
+        }
 
         long indexAllTimeEnd = System.currentTimeMillis();
         String timeElapsed = "index all took " + (indexAllTimeEnd - indexAllTimeBegin) + " milliseconds";
@@ -219,6 +307,70 @@ public class IndexBatchServiceBean {
         logger.info(status);
         return new AsyncResult<>(status);
     }
+
+    static String getCheckpointSetting(long numPartitions, long partitionId) {
+        if (numPartitions > 1) {
+            return REINDEX_CHECKPOINT_SETTING + "." + numPartitions + "." + partitionId;
+        }
+        return REINDEX_CHECKPOINT_SETTING;
+    }
+
+    static String getProgressKey(long numPartitions, long partitionId) {
+        if (numPartitions > 1) {
+            return "partition " + partitionId + " of " + numPartitions;
+        }
+        return "all";
+    }
+
+    /**
+     * Indexes datasets, taking their ids from the queue, which is shared with
+     * the other threads of the reindex, until there are none left.
+     *
+     * @return the number of datasets that failed to index
+     */
+    @Asynchronous
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public Future<Integer> indexDatasetsFromQueue(Queue<Long> datasetIds, IndexBatchProgress progress) {
+        int failureCount = 0;
+        long total = progress.getDatasetsTotal();
+        Long id;
+        while ((id = datasetIds.poll()) != null) {
+            String failure = null;
+            try {
+                if (!indexService.indexDatasetInNewTransaction(id)) {
+                    failure = "see the indexing failure log";
+                }
+            } catch (Exception e) {
+                //We want to keep running even after an exception so throw some more info into the log
+                failure = e.getMessage();
+            }
+            if (failure == null) {
+                long processed = progress.datasetIndexed();
+                logger.info("indexed dataset " + processed + " of " + total + " (id=" + id + ")");
+            } else {
+                failureCount++;
+                long processed = progress.datasetFailed();
+                logger.info("FAILURE indexing dataset " + processed + " of " + total + " (id=" + id + ") Exception info: " + failure);
+            }
+        }
+        return new AsyncResult<>(failureCount);
+    }
+
+    /**
+     * @return the progress of the running, or last, "index all"; the
+     * progress of partitioned reindexes is listed under "partitions"
+     */
+    public JsonObjectBuilder getReindexProgress() {
+        Map<String, IndexBatchProgress> partitions = new TreeMap<>(reindexProgress);
+        IndexBatchProgress all = partitions.remove(getProgressKey(1, 0));
+        JsonObjectBuilder json = (all == null) ? new IndexBatchProgress().toJson() : all.toJson();
+        if (!partitions.isEmpty()) {
+            JsonObjectBuilder partitionsJson = Json.createObjectBuilder();
+            partitions.forEach((key, progress) -> partitionsJson.add(key, progress.toJson()));
+            json.add("partitions", partitionsJson);
+        }
+        return json;
+    }
         
     @Asynchronous
     public void indexDataverseRecursively(Dataverse dataverse) {
@@ -323,7 +323,7 @@ public class IndexServiceBean {
         String status;
         try {
             if (dataverse.getId() != null) {
-                solrClientService.getSolrClient().add(docs);
+                solrClientService.add(docs);
             } else {
                 logger.info("WARNING: indexing of a dataverse with no id attempted");
             }
@@ -333,7 +333,7 @@ public class IndexServiceBean {
             return new AsyncResult<>(status);
         }
         try {
-            solrClientService.getSolrClient().commit();
+            solrClientService.commit();
         } catch (SolrServerException | IOException ex) {
             status = ex.toString();
             logger.info(status);
@@ -347,12 +347,15 @@ public class IndexServiceBean {
 
     }
     
+    /**
+     * @return false if the indexing failed (the failure is written to the
+     * indexing failure log, as in asyncIndexDataset())
+     */
     @TransactionAttribute(REQUIRES_NEW)
-    public void indexDatasetInNewTransaction(Long datasetId) { //Dataset dataset) {
+    public boolean indexDatasetInNewTransaction(Long datasetId) { //Dataset dataset) {
         boolean doNormalSolrDocCleanUp = false;
         Dataset dataset = datasetService.findDeep(datasetId);
-        asyncIndexDataset(dataset, doNormalSolrDocCleanUp);
-        dataset = null;
+        return indexDatasetAndRequestedReindexes(dataset, doNormalSolrDocCleanUp);
     }
     
     // The following two variables are only used in the synchronized getNextToIndex method and do not need to be synchronized themselves
@@ -406,18 +409,31 @@ public class IndexServiceBean {
      */
     @Asynchronous
     public void asyncIndexDataset(Dataset dataset, boolean doNormalSolrDocCleanUp) {
+        indexDatasetAndRequestedReindexes(dataset, doNormalSolrDocCleanUp);
+    }
+
+    /**
+     * The indexing done by asyncIndexDataset(), in the calling thread.
+     * 
+     * @return false if the last indexing of the dataset done here failed
+     */
+    private boolean indexDatasetAndRequestedReindexes(Dataset dataset, boolean doNormalSolrDocCleanUp) {
+        boolean indexed = true;
         Long id = dataset.getId();
         Dataset next = getNextToIndex(id, dataset); // if there is an ongoing index job for this dataset, next is null (ongoing index job will reindex the newest version after current indexing finishes)
         while (next != null) {
             try {
                 indexDataset(next, doNormalSolrDocCleanUp);
+                indexed = true;
             } catch (Exception e) { // catch all possible exceptions; otherwise when something unexpected happes the dataset wold remain locked and impossible to reindex
+                indexed = false;
                 String failureLogText = "Indexing failed. You can kickoff a re-index of this dataset with: \r\n curl http://localhost:8080/api/admin/index/datasets/" + dataset.getId().toString();
                 failureLogText += "\r\n" + e.getLocalizedMessage();
                 LoggingUtil.writeOnSuccessFailureLog(null, failureLogText, dataset);
             }
             next = getNextToIndex(id, null); // if dataset was not changed during the indexing (and no new job was requested), next is null and loop can be stopped
         }
+        return indexed;
     }
 
     public void asyncIndexDatasetList(List<Dataset> datasets, boolean doNormalSolrDocCleanUp) {
@@ -457,6 +473,20 @@ public class IndexServiceBean {
         int numPublishedVersions = 0;
         List<DatasetVersion> versions = dataset.getVersions();
         List<String> solrIdsOfFilesToDelete = new ArrayList<>();
+        /**
+         * Instead of preemptively deleting all the file documents and
+         * indexing them again, only send the ones whose content changed, and
+         * delete the ones left over afterwards. A full "index all" (no normal
+         * clean up) always rebuilds everything.
+         */
+        FileIndexDelta fileIndexDelta = null;
+        if (doNormalSolrDocCleanUp && JvmSettings.SOLR_DELTA_FILE_INDEXING.lookupOptional(Boolean.class).orElse(false)) {
+            try {
+                fileIndexDelta = new FileIndexDelta(findFileFingerprintsOfParentDataset(dataset.getId()));
+            } catch (SearchException ex) {
+                logger.fine("could not find the indexed files of dataset " + dataset.getId() + ", reindexing all of them: " + ex);
+            }
+        }
         for (DatasetVersion datasetVersion : versions) {
             Long versionDatabaseId = datasetVersion.getId();
             String versionTitle = datasetVersion.getTitle();
@@ -486,31 +516,33 @@ public class IndexServiceBean {
                 solrIdsOfFilesToDelete.add(solrIdOfPublishedFile);
                 fileInfo.add(fileMetadata.getDataFile().getId() + ":" + fileMetadata.getLabel());
             }
-            try {
-                /**
-                 * Preemptively delete *all* Solr documents for files associated
-                 * with the dataset based on a Solr query.
-                 *
-                 * We must query Solr for this information because the file has
-                 * been deleted from the database ( perhaps when Solr was down,
-                 * as reported in https://github.com/IQSS/dataverse/issues/2086
-                 * ) so the database doesn't even know about the file. It's an
-                 * orphan.
-                 *
-                 * @todo This Solr query should make the iteration above based
-                 * on the database unnecessary because it the Solr query should
-                 * find all files for the dataset. We can probably remove the
-                 * iteration above after an "index all" has been performed.
-                 * Without an "index all" we won't be able to find files based
-                 * on parentId because that field wasn't searchable in 4.0.
-                 *
-                 * @todo We should also delete the corresponding Solr
-                 * "permission" documents for the files.
-                 */
-                List<String> allFilesForDataset = findFilesOfParentDataset(dataset.getId());
-                solrIdsOfFilesToDelete.addAll(allFilesForDataset);
-            } catch (SearchException | NullPointerException ex) {
-                logger.fine("could not run search of files to delete: " + ex);
+            if (fileIndexDelta == null) {
+                try {
+                    /**
+                     * Preemptively delete *all* Solr documents for files associated
+                     * with the dataset based on a Solr query.
+                     *
+                     * We must query Solr for this information because the file has
+                     * been deleted from the database ( perhaps when Solr was down,
+                     * as reported in https://github.com/IQSS/dataverse/issues/2086
+                     * ) so the database doesn't even know about the file. It's an
+                     * orphan.
+                     *
+                     * @todo This Solr query should make the iteration above based
+                     * on the database unnecessary because it the Solr query should
+                     * find all files for the dataset. We can probably remove the
+                     * iteration above after an "index all" has been performed.
+                     * Without an "index all" we won't be able to find files based
+                     * on parentId because that field wasn't searchable in 4.0.
+                     *
+                     * @todo We should also delete the corresponding Solr
+                     * "permission" documents for the files.
+                     */
+                    List<String> allFilesForDataset = findFilesOfParentDataset(dataset.getId());
+                    solrIdsOfFilesToDelete.addAll(allFilesForDataset);
+                } catch (SearchException | NullPointerException ex) {
+                    logger.fine("could not run search of files to delete: " + ex);
+                }
             }
             int numFiles = 0;
             if (fileMetadatas != null) {
@@ -519,7 +551,7 @@ public class IndexServiceBean {
             debug.append("- files: " + numFiles + " " + fileInfo.toString() + "\n");
         }
         debug.append("numPublishedVersions: " + numPublishedVersions + "\n");
-        if (doNormalSolrDocCleanUp) {
+        if (doNormalSolrDocCleanUp && fileIndexDelta == null) {
             IndexResponse resultOfAttemptToPremptivelyDeletePublishedFiles = solrIndexService.deleteMultipleSolrIds(solrIdsOfFilesToDelete);
             debug.append("result of attempt to premptively deleted published files before reindexing: " + resultOfAttemptToPremptivelyDeletePublishedFiles + "\n");
         }
@@ -548,7 +580,7 @@ public class IndexServiceBean {
 
                 desiredCards.put(DatasetVersion.VersionState.DRAFT, true);
                 IndexableDataset indexableDraftVersion = new IndexableDataset(latestVersion);
-                String indexDraftResult = addOrUpdateDataset(indexableDraftVersion);
+                String indexDraftResult = addOrUpdateDataset(indexableDraftVersion, fileIndexDelta);
                 results.append("The latest version is a working copy (latestVersionState: ")
                         .append(latestVersionStateString).append(") and indexing was attempted for ")
                         .append(solrIdDraftDataset).append(" (limited discoverability). Result: ")
@@ -602,7 +634,7 @@ public class IndexServiceBean {
 
                 desiredCards.put(DatasetVersion.VersionState.DEACCESSIONED, true);
                 IndexableDataset indexableDeaccessionedVersion = new IndexableDataset(latestVersion);
-                String indexDeaccessionedVersionResult = addOrUpdateDataset(indexableDeaccessionedVersion);
+                String indexDeaccessionedVersionResult = addOrUpdateDataset(indexableDeaccessionedVersion, fileIndexDelta);
                 results.append("No draft version. Attempting to index as deaccessioned. Result: ").append(indexDeaccessionedVersionResult).append("\n");
 
                 desiredCards.put(DatasetVersion.VersionState.RELEASED, false);
@@ -656,7 +688,7 @@ public class IndexServiceBean {
 
                 desiredCards.put(DatasetVersion.VersionState.RELEASED, true);
                 IndexableDataset indexableReleasedVersion = new IndexableDataset(releasedVersion);
-                String indexReleasedVersionResult = addOrUpdateDataset(indexableReleasedVersion);
+                String indexReleasedVersionResult = addOrUpdateDataset(indexableReleasedVersion, fileIndexDelta);
                 results.append("Attempted to index " + solrIdPublished).append(". Result: ").append(indexReleasedVersionResult).append("\n");
 
                 desiredCards.put(DatasetVersion.VersionState.DRAFT, false);
@@ -711,10 +743,10 @@ public class IndexServiceBean {
 
                 desiredCards.put(DatasetVersion.VersionState.RELEASED, true);
                 IndexableDataset indexableReleasedVersion = new IndexableDataset(releasedVersion);
-                String indexReleasedVersionResult = addOrUpdateDataset(indexableReleasedVersion, datafilesInDraftVersion);
+                String indexReleasedVersionResult = addOrUpdateDataset(indexableReleasedVersion, datafilesInDraftVersion, fileIndexDelta);
                 results.append("There is a published version we will attempt to index. Result: ").append(indexReleasedVersionResult).append("\n");
 
-                String indexDraftResult = addOrUpdateDataset(indexableDraftVersion);
+                String indexDraftResult = addOrUpdateDataset(indexableDraftVersion, fileIndexDelta);
                 results.append("The latest version is a working copy (latestVersionState: ")
                         .append(latestVersionStateString).append(") and will be indexed as ")
                         .append(solrIdDraftDataset).append(" (limited visibility). Result: ").append(indexDraftResult).append("\n");
@@ -760,6 +792,13 @@ public class IndexServiceBean {
             String result = "No-op. Unexpected condition reached: Has a version been published or not?";
             logger.fine(result);
         }
+        if (fileIndexDelta != null) {
+            List<String> solrIdsOfStaleFiles = fileIndexDelta.getStaleIds();
+            if (!solrIdsOfStaleFiles.isEmpty()) {
+                IndexResponse resultOfDeletingStaleFiles = solrIndexService.deleteMultipleSolrIds(solrIdsOfStaleFiles);
+                logger.fine("result of attempt to delete the files no longer in dataset " + dataset.getId() + ": " + resultOfDeletingStaleFiles);
+            }
+        }
     }
     
     private String deleteDraftFiles(List<String> solrDocIdsForDraftFilesToDelete) {
@@ -783,12 +822,20 @@ public class IndexServiceBean {
         return indexResponse;
     }
 
-    private String addOrUpdateDataset(IndexableDataset indexableDataset) throws  SolrServerException, IOException {
-        String result = addOrUpdateDataset(indexableDataset, null);
+    private String addOrUpdateDataset(IndexableDataset indexableDataset, FileIndexDelta fileIndexDelta) throws  SolrServerException, IOException {
+        String result = addOrUpdateDataset(indexableDataset, null, fileIndexDelta);
         return result;
     }
 
     public SolrInputDocuments toSolrDocs(IndexableDataset indexableDataset, Set<Long> datafilesInDraftVersion) throws  SolrServerException, IOException {
+        return toSolrDocs(indexableDataset, datafilesInDraftVersion, null);
+    }
+
+    /**
+     * @param fileIndexDelta if not null, the file documents already in the
+     * index with the same content are left out (and recorded as kept)
+     */
+    private SolrInputDocuments toSolrDocs(IndexableDataset indexableDataset, Set<Long> datafilesInDraftVersion, FileIndexDelta fileIndexDelta) throws  SolrServerException, IOException {
         IndexableDataset.DatasetState state = indexableDataset.getDatasetState();
         Dataset dataset = indexableDataset.getDatasetVersion().getDataset();
         logger.fine("adding or updating Solr document for dataset id " + dataset.getId());
@@ -1175,58 +1222,6 @@ public class IndexServiceBean {
                         datafileSolrInputDocument.addField(SearchFields.EMBARGO_END_DATE, end.toEpochDay()); 
                     }
                     
-                    /* Full-text indexing using Apache Tika */
-                    if (doFullTextIndexing) {
-                        if (!dataset.isHarvested() && !fileMetadata.getDataFile().isRestricted() && !fileMetadata.getDataFile().isFilePackage()) {
-                            StorageIO<DataFile> accessObject = null;
-                            InputStream instream = null;
-                            ContentHandler textHandler = null;
-                            try {
-                                accessObject = DataAccess.getStorageIO(fileMetadata.getDataFile(),
-                                        new DataAccessRequest());
-                                if (accessObject != null) {
-                                    accessObject.open();
-                                    // If the size is >max, we don't use the stream. However, for S3, the stream is
-                                    // currently opened in the call above (see
-                                    // https://github.com/IQSS/dataverse/issues/5165), so we want to get a handle so
-                                    // we can close it below.
-                                    instream = accessObject.getInputStream();
-                                    if (accessObject.getSize() <= maxSize) {
-                                        AutoDetectParser autoParser = new AutoDetectParser();
-                                        textHandler = new BodyContentHandler(-1);
-                                        Metadata metadata = new Metadata();
-                                        ParseContext context = new ParseContext();
-                                        /*
-                                         * Try parsing the file. Note that, other than by limiting size, there's been no
-                                         * check see whether this file is a good candidate for text extraction (e.g.
-                                         * based on type).
-                                         */
-                                        autoParser.parse(instream, textHandler, metadata, context);
-                                        datafileSolrInputDocument.addField(SearchFields.FULL_TEXT,
-                                                textHandler.toString());
-                                    }
-                                }
-                            } catch (Exception e) {
-                                // Needs better logging of what went wrong in order to
-                                // track down "bad" documents.
-                                logger.warning(String.format("Full-text indexing for %s failed",
-                                        fileMetadata.getDataFile().getDisplayName()));
-                                e.printStackTrace();
-                            } catch (OutOfMemoryError e) {
-                                textHandler = null;
-                                logger.warning(String.format("Full-text indexing for %s failed due to OutOfMemoryError",
-                                        fileMetadata.getDataFile().getDisplayName()));
-                            } catch(Error e) {
-                                //Catch everything - full-text indexing is complex enough (and using enough 3rd party components) that it can fail
-                                // and we don't want problems here to break other Dataverse functionality (e.g. edits)
-                                logger.severe(String.format("Full-text indexing for %s failed due to Error: %s : %s",
-                                        fileMetadata.getDataFile().getDisplayName(),e.getClass().getCanonicalName(), e.getLocalizedMessage()));
-                            } finally {
-                                IOUtils.closeQuietly(instream);
-                            }
-                        }
-                    }
-
                     String filenameCompleteFinal = "";
                     if (fileMetadata != null) {
                         String filenameComplete = fileMetadata.getLabel();
@@ -1444,6 +1439,31 @@ public class IndexServiceBean {
                     }
 
                     if (indexableDataset.isFilesShouldBeIndexed()) {
+                        boolean extractFullText = doFullTextIndexing && !dataset.isHarvested()
+                                && !fileMetadata.getDataFile().isRestricted() && !fileMetadata.getDataFile().isFilePackage();
+                        if (fileIndexDelta != null) {
+                            String fingerprint = FileIndexDelta.fingerprint(datafileSolrInputDocument,
+                                    extractFullText ? "fullText:" + maxSize : "");
+                            FileIndexDelta.Change change = fileIndexDelta.keep(fileSolrDocId, fingerprint);
+                            if (change == FileIndexDelta.Change.NONE) {
+                                // already in the index, as is
+                                continue;
+                            }
+                            if (change == FileIndexDelta.Change.PARENT) {
+                                // only the dataset fields changed; the full text already in the index is kept
+                                docs.add(FileIndexDelta.parentUpdate(datafileSolrInputDocument, fingerprint));
+                                continue;
+                            }
+                            datafileSolrInputDocument.addField(SearchFields.FILE_INDEX_FINGERPRINT, fingerprint);
+                        }
+                        if (extractFullText) {
+                            /*
+                             * With delta indexing, the text is also stored, so that the
+                             * atomic updates above don't drop it from the document.
+                             */
+                            addFullText(datafileSolrInputDocument, fileMetadata, maxSize,
+                                    fileIndexDelta != null ? SearchFields.FILE_FULL_TEXT : SearchFields.FULL_TEXT);
+                        }
                         filesIndexed.add(fileSolrDocId);
                         docs.add(datafileSolrInputDocument);
                     }
@@ -1454,16 +1474,73 @@ public class IndexServiceBean {
             }
         }
         Long datasetId = dataset.getId();
-        final String msg = "indexed dataset " + datasetId + " as " + datasetSolrDocId + ". filesIndexed: " + filesIndexed;
+        String msg = "indexed dataset " + datasetId + " as " + datasetSolrDocId + ". filesIndexed: " + filesIndexed;
+        if (fileIndexDelta != null) {
+            msg += " filesUnchanged: " + fileIndexDelta.getUnchangedCount()
+                    + " filesWithDatasetFieldsUpdated: " + fileIndexDelta.getParentUpdatedCount();
+        }
         return new SolrInputDocuments(docs, msg, datasetId);
     }
     
-    private String addOrUpdateDataset(IndexableDataset indexableDataset, Set<Long> datafilesInDraftVersion) throws  SolrServerException, IOException {   
-        final SolrInputDocuments docs = toSolrDocs(indexableDataset, datafilesInDraftVersion);
+    /**
+     * Full-text indexing using Apache Tika
+     *
+     * @param fieldName the field the extracted text goes into
+     */
+    private void addFullText(SolrInputDocument datafileSolrInputDocument, FileMetadata fileMetadata, long maxSize, String fieldName) {
+        StorageIO<DataFile> accessObject = null;
+        InputStream instream = null;
+        ContentHandler textHandler = null;
+        try {
+            accessObject = DataAccess.getStorageIO(fileMetadata.getDataFile(),
+                    new DataAccessRequest());
+            if (accessObject != null) {
+                accessObject.open();
+                // If the size is >max, we don't use the stream. However, for S3, the stream is
+                // currently opened in the call above (see
+                // https://github.com/IQSS/dataverse/issues/5165), so we want to get a handle so
+                // we can close it below.
+                instream = accessObject.getInputStream();
+                if (accessObject.getSize() <= maxSize) {
+                    AutoDetectParser autoParser = new AutoDetectParser();
+                    textHandler = new BodyContentHandler(-1);
+                    Metadata metadata = new Metadata();
+                    ParseContext context = new ParseContext();
+                    /*
+                     * Try parsing the file. Note that, other than by limiting size, there's been no
+                     * check see whether this file is a good candidate for text extraction (e.g.
+                     * based on type).
+                     */
+                    autoParser.parse(instream, textHandler, metadata, context);
+                    datafileSolrInputDocument.addField(fieldName, textHandler.toString());
+                }
+            }
+        } catch (Exception e) {
+            // Needs better logging of what went wrong in order to
+            // track down "bad" documents.
+            logger.warning(String.format("Full-text indexing for %s failed",
+                    fileMetadata.getDataFile().getDisplayName()));
+            e.printStackTrace();
+        } catch (OutOfMemoryError e) {
+            textHandler = null;
+            logger.warning(String.format("Full-text indexing for %s failed due to OutOfMemoryError",
+                    fileMetadata.getDataFile().getDisplayName()));
+        } catch(Error e) {
+            //Catch everything - full-text indexing is complex enough (and using enough 3rd party components) that it can fail
+            // and we don't want problems here to break other Dataverse functionality (e.g. edits)
+            logger.severe(String.format("Full-text indexing for %s failed due to Error: %s : %s",
+                    fileMetadata.getDataFile().getDisplayName(),e.getClass().getCanonicalName(), e.getLocalizedMessage()));
+        } finally {
+            IOUtils.closeQuietly(instream);
+        }
+    }
+
+    private String addOrUpdateDataset(IndexableDataset indexableDataset, Set<Long> datafilesInDraftVersion, FileIndexDelta fileIndexDelta) throws  SolrServerException, IOException {   
+        final SolrInputDocuments docs = toSolrDocs(indexableDataset, datafilesInDraftVersion, fileIndexDelta);
 
         try {
-            solrClientService.getSolrClient().add(docs.getDocuments());
-            solrClientService.getSolrClient().commit();
+            solrClientService.add(docs.getDocuments());
+            solrClientService.commit();
         } catch (SolrServerException | IOException ex) {
             if (ex.getCause() instanceof SolrServerException) {
                 throw new SolrServerException(ex);
@@ -1704,8 +1781,7 @@ public class IndexServiceBean {
 
             sid.removeField(SearchFields.SUBTREE);
             sid.addField(SearchFields.SUBTREE, paths);
-            UpdateResponse addResponse = solrClientService.getSolrClient().add(sid);
-            UpdateResponse commitResponse = solrClientService.getSolrClient().commit();
+            solrClientService.add(sid);
             if (object.isInstanceofDataset()) {
                 for (DataFile df : dataset.getFiles()) {
                     solrQuery.setQuery(SearchUtil.constructQuery(SearchFields.ENTITY_ID, df.getId().toString()));
@@ -1718,11 +1794,12 @@ public class IndexServiceBean {
                         }
                         sid.removeField(SearchFields.SUBTREE);
                         sid.addField(SearchFields.SUBTREE, paths);
-                        addResponse = solrClientService.getSolrClient().add(sid);
-                        commitResponse = solrClientService.getSolrClient().commit();
+                        solrClientService.add(sid);
                     }
                 }
             }
+            // (one commit for the dataset and all its files)
+            solrClientService.commit();
         }            
     }
     
@@ -1761,12 +1838,12 @@ public class IndexServiceBean {
         logger.fine("deleting Solr document for dataverse " + doomed.getId());
         UpdateResponse updateResponse;
         try {
-            updateResponse = solrClientService.getSolrClient().deleteById(solrDocIdentifierDataverse + doomed.getId());
+            updateResponse = solrClientService.deleteById(solrDocIdentifierDataverse + doomed.getId());
         } catch (SolrServerException | IOException ex) {
             return ex.toString();
         }
         try {
-            solrClientService.getSolrClient().commit();
+            solrClientService.commit();
         } catch (SolrServerException | IOException ex) {
             return ex.toString();
         }
@@ -1786,12 +1863,12 @@ public class IndexServiceBean {
         logger.fine("deleting Solr document: " + doomed);
         UpdateResponse updateResponse;
         try {
-            updateResponse = solrClientService.getSolrClient().deleteById(doomed);
+            updateResponse = solrClientService.deleteById(doomed);
         } catch (SolrServerException | IOException ex) {
             return ex.toString();
         }
         try {
-            solrClientService.getSolrClient().commit();
+            solrClientService.commit();
         } catch (SolrServerException | IOException ex) {
             return ex.toString();
         }
@@ -2074,6 +2151,43 @@ public class IndexServiceBean {
         return dvObjectInSolrOnly;
     }
 
+    /**
+     * @return the Solr ids of all the file documents of the dataset in the
+     * index, with the fingerprint they were indexed with (or null)
+     */
+    private Map<String, String> findFileFingerprintsOfParentDataset(long parentDatasetId) throws SearchException {
+        SolrQuery solrQuery = new SolrQuery();
+        solrQuery.setQuery("*").setRows(1000).setSort(SortClause.asc(SearchFields.ID));
+        solrQuery.addFilterQuery(SearchFields.PARENT_ID + ":" + parentDatasetId);
+        solrQuery.addFilterQuery(SearchFields.TYPE + ":" + "files");
+        solrQuery.setFields(SearchFields.ID, SearchFields.FILE_INDEX_FINGERPRINT);
+        Map<String, String> fingerprints = new HashMap<>();
+
+        String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+        boolean done = false;
+        while (!done) {
+            solrQuery.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+            QueryResponse queryResponse = null;
+            try {
+                queryResponse = solrClientService.getSolrClient().query(solrQuery);
+            } catch (SolrServerException | IOException ex) {
+                throw new SearchException("Error searching Solr for dataset parent id " + parentDatasetId, ex);
+            }
+            for (SolrDocument solrDocument : queryResponse.getResults()) {
+                Object idObject = solrDocument.getFieldValue(SearchFields.ID);
+                if (idObject != null) {
+                    fingerprints.put((String) idObject, (String) solrDocument.getFirstValue(SearchFields.FILE_INDEX_FINGERPRINT));
+                }
+            }
+            String nextCursorMark = queryResponse.getNextCursorMark();
+            if (cursorMark.equals(nextCursorMark)) {
+                done = true;
+            }
+            cursorMark = nextCursorMark;
+        }
+        return fingerprints;
+    }
+
     // This is a convenience method for deleting all the SOLR documents
     // (Datasets and DataFiles) harvested by a specific HarvestingClient.
     // The delete logic is a bit simpler, than when deleting "real", local
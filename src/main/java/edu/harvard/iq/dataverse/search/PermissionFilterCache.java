@@ -0,0 +1,125 @@
+package edu.harvard.iq.dataverse.search;
+
+import edu.harvard.iq.dataverse.PermissionCache;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import jakarta.json.Json;
+import jakarta.json.JsonObjectBuilder;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches the group part of the permission filter queries of
+ * {@link SearchServiceBean}, so that the groups of a user are not resolved on
+ * every search, and keeps the timings of the permission filtering.
+ *
+ * The entries are keyed by user and source address, since IP groups depend on
+ * the latter. They are versioned by the generation of the
+ * {@link PermissionCache}, so any change to roles or groups invalidates them,
+ * and they expire after {@code dataverse.permissions.search-filter-ttl}
+ * seconds (0, i.e. not cached, by default), for the memberships that depend
+ * on the user's account (e.g. mail domain groups) or were changed on another
+ * server.
+ */
+public class PermissionFilterCache {
+
+    /**
+     * The cache is cleared when it grows past this many entries.
+     */
+    private static final int MAX_ENTRIES = 10000;
+
+    /**
+     * Not cached unless enabled: on a cluster, changes to groups made on
+     * another server only apply once the entries have expired.
+     */
+    private static final long DEFAULT_TTL_SECONDS = 0;
+
+    private static final Map<String, Entry> filters = new ConcurrentHashMap<>();
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong searches = new AtomicLong();
+    private static final AtomicLong filterNanos = new AtomicLong();
+    private static final AtomicLong searchNanos = new AtomicLong();
+    private static final AtomicLong solrQTimeMillis = new AtomicLong();
+
+    private static class Entry {
+
+        final long generation;
+        final long expires;
+        final String filter;
+
+        Entry(long generation, long expires, String filter) {
+            this.generation = generation;
+            this.expires = expires;
+            this.filter = filter;
+        }
+    }
+
+    private PermissionFilterCache() {
+    }
+
+    /**
+     * @param key identifies the user and the source address of the request
+     * @param builder builds the filter, if it is not cached
+     * @return the cached or the newly built filter
+     */
+    static String get(String key, Supplier<String> builder) {
+        long ttl = getTtlSeconds();
+        long now = System.currentTimeMillis();
+        long generation = PermissionCache.getGeneration();
+        if (ttl > 0) {
+            Entry entry = filters.get(key);
+            if (entry != null && entry.generation == generation && entry.expires > now) {
+                hits.incrementAndGet();
+                return entry.filter;
+            }
+        }
+        misses.incrementAndGet();
+        String filter = builder.get();
+        if (ttl > 0) {
+            if (filters.size() >= MAX_ENTRIES) {
+                filters.clear();
+            }
+            filters.put(key, new Entry(generation, now + ttl * 1000L, filter));
+        }
+        return filter;
+    }
+
+    /**
+     * Records the timings of a search.
+     *
+     * @param filterTime nanoseconds spent building the permission filters
+     * @param searchTime nanoseconds spent in the whole search
+     * @param solrQTime milliseconds Solr reported for the query, including the
+     * evaluation of the permission joins
+     */
+    static void recordSearch(long filterTime, long searchTime, int solrQTime) {
+        searches.incrementAndGet();
+        filterNanos.addAndGet(filterTime);
+        searchNanos.addAndGet(searchTime);
+        solrQTimeMillis.addAndGet(solrQTime);
+    }
+
+    public static JsonObjectBuilder getStats() {
+        long lookups = hits.get() + misses.get();
+        long searchCount = searches.get();
+        long totalSearchNanos = searchNanos.get();
+        return Json.createObjectBuilder()
+                .add("ttlSeconds", getTtlSeconds())
+                .add("entries", filters.size())
+                .add("hits", hits.get())
+                .add("misses", misses.get())
+                .add("hitRate", lookups == 0 ? 0.0 : Math.round(hits.get() * 1000.0 / lookups) / 1000.0)
+                .add("searches", searchCount)
+                .add("averageSearchMillis", searchCount == 0 ? 0.0 : Math.round(totalSearchNanos / 1000.0 / searchCount) / 1000.0)
+                .add("averageFilterMillis", searchCount == 0 ? 0.0 : Math.round(filterNanos.get() / 1000.0 / searchCount) / 1000.0)
+                .add("averageSolrQTimeMillis", searchCount == 0 ? 0.0 : Math.round(solrQTimeMillis.get() * 1000.0 / searchCount) / 1000.0)
+                .add("filterShareOfSearchTime", totalSearchNanos == 0 ? 0.0 : Math.round(filterNanos.get() * 1000.0 / totalSearchNanos) / 1000.0);
+    }
+
+    private static long getTtlSeconds() {
+        return JvmSettings.PERMISSIONS_SEARCH_FILTER_TTL.lookupOptional(Long.class).orElse(DEFAULT_TTL_SECONDS);
+    }
+}
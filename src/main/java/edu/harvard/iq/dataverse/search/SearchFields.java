@@ -183,6 +183,17 @@ public class SearchFields {
      * Internal boolean indicating that the file has been deleted in the draft version.
      */
     public static final String FILE_DELETED = "fileDeleted";
+    /**
+     * Internal hash of the content a file document was indexed with, used to
+     * skip the files that haven't changed when reindexing a dataset.
+     */
+    public static final String FILE_INDEX_FINGERPRINT = "fileIndexFingerprint";
+    /**
+     * Internal copy of the full text of a file, stored (and copied into
+     * {@link #FULL_TEXT} for searching) when files are indexed with
+     * fingerprints, so that atomic updates of their documents keep it.
+     */
+    public static final String FILE_FULL_TEXT = "fileFullText";
     /*
      * (tabular) Data Tags are indexed as a string, since we are only planning to
      * use these in facet-like, exact searches:
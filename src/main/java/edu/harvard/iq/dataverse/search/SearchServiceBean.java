@@ -32,6 +32,7 @@ import java.util.ListIterator;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.MissingResourceException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -146,6 +147,8 @@ public class SearchServiceBean {
             throw new IllegalArgumentException("numResultsPerPage must be 1 or greater");
         }
 
+        long searchStart = System.nanoTime();
+        long filterTime = 0;
         SolrQuery solrQuery = new SolrQuery();
         query = SearchUtil.sanitizeQuery(query);
         solrQuery.setQuery(query);
@@ -257,7 +260,9 @@ public class SearchServiceBean {
                 // -----------------------------------
                 // PERMISSION FILTER QUERY
                 // -----------------------------------
+                long filterStart = System.nanoTime();
                 String permissionFilterQuery = this.getPermissionFilterQuery(dataverseRequest, solrQuery, dataverse, onlyDatatRelatedToMe);
+                filterTime += System.nanoTime() - filterStart;
                 if (permissionFilterQuery != null) {
                     solrQuery.addFilterQuery(permissionFilterQuery);
                 }
@@ -271,7 +276,9 @@ public class SearchServiceBean {
                 }
             }
         } else {
+            long filterStart = System.nanoTime();
             String permissionFilterQuery = this.getPermissionFilterQuery(dataverseRequest, solrQuery, null, onlyDatatRelatedToMe);
+            filterTime += System.nanoTime() - filterStart;
             if (permissionFilterQuery != null) {
                 solrQuery.addFilterQuery(permissionFilterQuery);
             }
@@ -826,6 +833,11 @@ public class SearchServiceBean {
         solrQueryResponse.setDvObjectCounts(queryResponse.getFacetField("dvObjectType"));
         solrQueryResponse.setPublicationStatusCounts(queryResponse.getFacetField("publicationStatus"));
 
+        long searchTime = System.nanoTime() - searchStart;
+        PermissionFilterCache.recordSearch(filterTime, searchTime, queryResponse.getQTime());
+        logger.fine("search took " + searchTime / 1000000 + " ms, permission filters " + filterTime / 1000000
+                + " ms, Solr QTime " + queryResponse.getQTime() + " ms");
+
         return solrQueryResponse;
     }
 
@@ -893,19 +905,8 @@ public class SearchServiceBean {
         // Yes, see if GuestUser is part of any groups such as IP Groups.
         // ----------------------------------------------------
         if (user instanceof GuestUser) {
-            String groupsFromProviders = "";
-            Set<Group> groups = groupService.collectAncestors(groupService.groupsFor(dataverseRequest));
-            StringBuilder sb = new StringBuilder();
-            for (Group group : groups) {
-                logger.fine("found group " + group.getIdentifier() + " with alias " + group.getAlias());
-                String groupAlias = group.getAlias();
-                if (groupAlias != null && !groupAlias.isEmpty()) {
-                    sb.append(" OR ");
-                    // i.e. group_builtIn/all-users, ip/ipGroup3
-                    sb.append(IndexServiceBean.getGroupPrefix()).append(groupAlias);
-                }
-            }
-            groupsFromProviders = sb.toString();
+            // i.e. group_builtIn/all-users, ip/ipGroup3
+            String groupsFromProviders = getGroupsFromProviders(dataverseRequest);
             logger.fine("groupsFromProviders:" + groupsFromProviders);
             String guestWithGroups = "{!join from=" + SearchFields.DEFINITION_POINT + " to=id}" + SearchFields.DISCOVERABLE_BY + ":(" + IndexServiceBean.getPublicGroupString() + groupsFromProviders + ")";
             logger.fine(guestWithGroups);
@@ -984,19 +985,8 @@ public class SearchServiceBean {
          * A JOIN on "permission documents" will determine if the user can find
          * a given "content document" (dataset version, etc) in Solr.
          */
-        String groupsFromProviders = "";
-        Set<Group> groups = groupService.collectAncestors(groupService.groupsFor(dataverseRequest));
-        StringBuilder sb = new StringBuilder();
-        for (Group group : groups) {
-            logger.fine("found group " + group.getIdentifier() + " with alias " + group.getAlias());
-            String groupAlias = group.getAlias();
-            if (groupAlias != null && !groupAlias.isEmpty()) {
-                sb.append(" OR ");
-                // i.e. group_builtIn/all-users, group_builtIn/authenticated-users, group_1-explictGroup1, group_shib/2
-                sb.append(IndexServiceBean.getGroupPrefix() + groupAlias);
-            }
-        }
-        groupsFromProviders = sb.toString();
+        // i.e. group_builtIn/all-users, group_builtIn/authenticated-users, group_1-explictGroup1, group_shib/2
+        String groupsFromProviders = getGroupsFromProviders(dataverseRequest);
 
         logger.fine(groupsFromProviders);
         if (true) {
@@ -1014,5 +1004,33 @@ public class SearchServiceBean {
 
     }
 
+    /**
+     * The groups part of the permission filter query: an " OR " clause for
+     * each group the request is part of, in alias order. Keeping the order
+     * stable means the same groups always give the same filter query, which
+     * Solr can then answer from its filter cache.
+     *
+     * The result is cached per user and source address, see
+     * {@link PermissionFilterCache}.
+     */
+    private String getGroupsFromProviders(DataverseRequest dataverseRequest) {
+        String key = dataverseRequest.getUser().getIdentifier() + "@" + dataverseRequest.getSourceAddress();
+        return PermissionFilterCache.get(key, () -> {
+            Set<String> groupAliases = new TreeSet<>();
+            for (Group group : groupService.collectAncestors(groupService.groupsFor(dataverseRequest))) {
+                logger.fine("found group " + group.getIdentifier() + " with alias " + group.getAlias());
+                String groupAlias = group.getAlias();
+                if (groupAlias != null && !groupAlias.isEmpty()) {
+                    groupAliases.add(groupAlias);
+                }
+            }
+            StringBuilder sb = new StringBuilder();
+            for (String groupAlias : groupAliases) {
+                sb.append(" OR ").append(IndexServiceBean.getGroupPrefix()).append(groupAlias);
+            }
+            return sb.toString();
+        });
+    }
+
 }
 
@@ -8,14 +8,24 @@ package edu.harvard.iq.dataverse.search;
 import edu.harvard.iq.dataverse.settings.JvmSettings;
 import edu.harvard.iq.dataverse.util.SystemConfig;
 import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.apache.solr.common.SolrInputDocument;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.ejb.EJB;
+import jakarta.ejb.Lock;
+import static jakarta.ejb.LockType.READ;
 import jakarta.ejb.Singleton;
 import jakarta.inject.Named;
+import jakarta.json.Json;
+import jakarta.json.JsonObjectBuilder;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 /**
@@ -27,6 +37,16 @@ import java.util.logging.Logger;
  * classes that need it. 
  * This ensures that we are using one client only - as recommended by the 
  * documentation. 
+ * 
+ * It also applies the commit policy to the updates sent through it: by 
+ * default, every update is followed by an explicit (hard) commit, as it 
+ * always has been. With dataverse.solr.commit-within set, the updates are 
+ * sent with "commitWithin" instead, and Solr coalesces the commits of all 
+ * the updates made within that time; the explicit commits are then only 
+ * issued where the changes need to be visible right away (see 
+ * {@link #commitNow()}). With dataverse.solr.soft-commit, the explicit 
+ * commits are soft commits, leaving durability to the autoCommit 
+ * configured in Solr. 
  */
 @Named
 @Singleton
@@ -38,8 +58,17 @@ public class SolrClientService {
     
     private SolrClient solrClient;
     
+    private int commitWithinMs = 0;
+    private boolean softCommit = false;
+    
+    private final AtomicLong commitsIssued = new AtomicLong();
+    private final AtomicLong commitsDeferred = new AtomicLong();
+    
     @PostConstruct
     public void init() {
+        commitWithinMs = Math.max(0, JvmSettings.SOLR_COMMIT_WITHIN.lookupOptional(Integer.class).orElse(0));
+        softCommit = JvmSettings.SOLR_SOFT_COMMIT.lookupOptional(Boolean.class).orElse(false);
+        
         // Get from MPCONFIG. Might be configured by a sysadmin or simply return the default shipped with
         // resources/META-INF/microprofile-config.properties.
         String protocol = JvmSettings.SOLR_PROT.lookup();
@@ -78,4 +107,69 @@ public class SolrClientService {
         close(); 
         init();
     }
+    
+    @Lock(READ)
+    public UpdateResponse add(Collection<SolrInputDocument> docs) throws SolrServerException, IOException {
+        if (commitWithinMs > 0) {
+            return getSolrClient().add(docs, commitWithinMs);
+        }
+        return getSolrClient().add(docs);
+    }
+    
+    @Lock(READ)
+    public UpdateResponse add(SolrInputDocument doc) throws SolrServerException, IOException {
+        if (commitWithinMs > 0) {
+            return getSolrClient().add(doc, commitWithinMs);
+        }
+        return getSolrClient().add(doc);
+    }
+    
+    @Lock(READ)
+    public UpdateResponse deleteById(String id) throws SolrServerException, IOException {
+        if (commitWithinMs > 0) {
+            return getSolrClient().deleteById(id, commitWithinMs);
+        }
+        return getSolrClient().deleteById(id);
+    }
+    
+    @Lock(READ)
+    public UpdateResponse deleteById(List<String> ids) throws SolrServerException, IOException {
+        if (commitWithinMs > 0) {
+            return getSolrClient().deleteById(ids, commitWithinMs);
+        }
+        return getSolrClient().deleteById(ids);
+    }
+    
+    /**
+     * Commits the updates made so far, according to the commit policy: 
+     * nothing to do if the updates were sent with commitWithin. 
+     */
+    @Lock(READ)
+    public void commit() throws SolrServerException, IOException {
+        if (commitWithinMs > 0) {
+            commitsDeferred.incrementAndGet();
+            return;
+        }
+        commitNow();
+    }
+    
+    /**
+     * Commits the updates made so far, regardless of the commit policy; for 
+     * where they need to be visible in the search results right away. 
+     */
+    @Lock(READ)
+    public void commitNow() throws SolrServerException, IOException {
+        // (waitFlush, waitSearcher, softCommit)
+        getSolrClient().commit(true, true, softCommit);
+        commitsIssued.incrementAndGet();
+    }
+    
+    @Lock(READ)
+    public JsonObjectBuilder getCommitStats() {
+        return Json.createObjectBuilder()
+                .add("commitWithinMs", commitWithinMs)
+                .add("softCommit", softCommit)
+                .add("commitsIssued", commitsIssued.get())
+                .add("commitsDeferred", commitsDeferred.get());
+    }
 }
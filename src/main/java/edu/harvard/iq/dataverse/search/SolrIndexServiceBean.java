@@ -356,8 +356,8 @@ public class SolrIndexServiceBean {
         /**
          * @todo Do something with these responses from Solr.
          */
-        UpdateResponse addResponse = solrClientService.getSolrClient().add(docs);
-        UpdateResponse commitResponse = solrClientService.getSolrClient().commit();
+        UpdateResponse addResponse = solrClientService.add(docs);
+        solrClientService.commit();
     }
 
     public IndexResponse indexPermissionsOnSelfAndChildren(long definitionPointId) {
@@ -493,11 +493,20 @@ public class SolrIndexServiceBean {
     }
 
     public IndexResponse deleteMultipleSolrIds(List<String> solrIdsToDelete) {
+        return deleteMultipleSolrIds(solrIdsToDelete, false);
+    }
+
+    /**
+     * @param visibleNow if true, the deletion is committed right away,
+     * regardless of the commit policy; for when the documents must be gone
+     * from the search results by the time the user gets back to them
+     */
+    public IndexResponse deleteMultipleSolrIds(List<String> solrIdsToDelete, boolean visibleNow) {
         if (solrIdsToDelete.isEmpty()) {
             return new IndexResponse("nothing to delete");
         }
         try {
-            solrClientService.getSolrClient().deleteById(solrIdsToDelete);
+            solrClientService.deleteById(solrIdsToDelete);
         } catch (SolrServerException | IOException ex) {
             /**
              * @todo mark these for re-deletion
@@ -505,7 +514,11 @@ public class SolrIndexServiceBean {
             return new IndexResponse("problem deleting the following documents from Solr: " + solrIdsToDelete);
         }
         try {
-            solrClientService.getSolrClient().commit();
+            if (visibleNow) {
+                solrClientService.commitNow();
+            } else {
+                solrClientService.commit();
+            }
         } catch (SolrServerException | IOException ex) {
             return new IndexResponse("problem committing deletion of the following documents from Solr: " + solrIdsToDelete);
         }
@@ -516,7 +529,7 @@ public class SolrIndexServiceBean {
         JsonObjectBuilder response = Json.createObjectBuilder();
         logger.info("attempting to delete all Solr documents before a complete re-index");
         solrClientService.getSolrClient().deleteByQuery("*:*");
-        solrClientService.getSolrClient().commit();
+        solrClientService.commitNow();
         int numRowsAffected = dvObjectService.clearAllIndexTimes();
         response.add(numRowsClearedByClearAllIndexTimes, numRowsAffected);
         response.add(messageString, "Solr index and database index timestamps cleared.");
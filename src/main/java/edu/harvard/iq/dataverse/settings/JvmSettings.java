@@ -50,6 +50,8 @@ public enum JvmSettings {
     UPLOADS_DIRECTORY(SCOPE_FILES, "uploads"),
     DOCROOT_DIRECTORY(SCOPE_FILES, "docroot"),
     GUESTBOOK_AT_REQUEST(SCOPE_FILES, "guestbook-at-request"),
+    FILES_ZIP_DOWNLOAD_THREADS(SCOPE_FILES, "zip-download-threads"),
+    FILES_ZIP_DOWNLOAD_BUFFER_SIZE(SCOPE_FILES, "zip-download-buffer-size"),
     
     // SOLR INDEX SETTINGS
     SCOPE_SOLR(PREFIX, "solr"),
@@ -58,6 +60,10 @@ public enum JvmSettings {
     SOLR_PROT(SCOPE_SOLR, "protocol"),
     SOLR_CORE(SCOPE_SOLR, "core"),
     SOLR_PATH(SCOPE_SOLR, "path"),
+    SOLR_REINDEX_THREADS(SCOPE_SOLR, "reindex-threads"),
+    SOLR_COMMIT_WITHIN(SCOPE_SOLR, "commit-within"),
+    SOLR_SOFT_COMMIT(SCOPE_SOLR, "soft-commit"),
+    SOLR_DELTA_FILE_INDEXING(SCOPE_SOLR, "delta-file-indexing"),
 
     // RSERVE CONNECTION
     SCOPE_RSERVE(PREFIX, "rserve"),
@@ -67,11 +73,22 @@ public enum JvmSettings {
     RSERVE_PASSWORD(SCOPE_RSERVE, "password"),
     RSERVE_TEMPDIR(SCOPE_RSERVE, "tempdir"),
     
+    // INGEST SETTINGS
+    SCOPE_INGEST(PREFIX, "ingest"),
+    INGEST_STATISTICS_THREADS(SCOPE_INGEST, "statistics-threads"),
+    INGEST_STORE_COLUMNAR_IMAGE(SCOPE_INGEST, "store-columnar-image"),
+    INGEST_COLUMNAR_IMAGE_CACHE_SIZE(SCOPE_INGEST, "columnar-image-cache-size"),
+    
     // API SETTINGS
     SCOPE_API(PREFIX, "api"),
     API_SIGNING_SECRET(SCOPE_API, "signing-secret"),
     API_ALLOW_INCOMPLETE_METADATA(SCOPE_API, "allow-incomplete-metadata"),
 
+    // PERMISSIONS SETTINGS
+    SCOPE_PERMISSIONS(PREFIX, "permissions"),
+    PERMISSIONS_CACHE_TTL(SCOPE_PERMISSIONS, "cache-ttl"),
+    PERMISSIONS_SEARCH_FILTER_TTL(SCOPE_PERMISSIONS, "search-filter-ttl"),
+
     // SIGNPOSTING SETTINGS
     SCOPE_SIGNPOSTING(PREFIX, "signposting"),
     SIGNPOSTING_LEVEL1_AUTHOR_LIMIT(SCOPE_SIGNPOSTING, "level1-author-limit"),
@@ -120,6 +137,16 @@ public enum JvmSettings {
     SCOPE_EXPORTERS(SCOPE_SPI, "exporters"),
     EXPORTERS_DIRECTORY(SCOPE_EXPORTERS, "directory"),
     
+    // EXPORT SETTINGS
+    SCOPE_EXPORT(PREFIX, "export"),
+    SCOPE_EXPORT_CACHE(SCOPE_EXPORT, "cache"),
+    EXPORT_CACHE_SIZE(SCOPE_EXPORT_CACHE, "size"),
+    EXPORT_CACHE_TTL(SCOPE_EXPORT_CACHE, "ttl"),
+    
+    // HARVESTING SETTINGS
+    SCOPE_HARVEST(PREFIX, "harvest"),
+    HARVEST_FETCH_THREADS(SCOPE_HARVEST, "fetch-threads"),
+    
     // MAIL SETTINGS
     SCOPE_MAIL(PREFIX, "mail"),
     SUPPORT_EMAIL(SCOPE_MAIL, "support-email"),
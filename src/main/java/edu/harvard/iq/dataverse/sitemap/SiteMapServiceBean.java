@@ -1,17 +1,95 @@
 package edu.harvard.iq.dataverse.sitemap;
 
-import edu.harvard.iq.dataverse.Dataset;
-import edu.harvard.iq.dataverse.Dataverse;
+import edu.harvard.iq.dataverse.DatasetVersion;
+import edu.harvard.iq.dataverse.pidproviders.PidUtil;
+import java.io.IOException;
+import java.util.Date;
 import java.util.List;
+import java.util.logging.Logger;
 import jakarta.ejb.Asynchronous;
 import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import javax.xml.stream.XMLStreamException;
 
 @Stateless
 public class SiteMapServiceBean {
 
+    private static final Logger logger = Logger.getLogger(SiteMapServiceBean.class.getCanonicalName());
+
+    /**
+     * Number of rows fetched from the database at a time.
+     */
+    private static final int PAGE_SIZE = 1000;
+
+    @PersistenceContext(unitName = "VDCNet-ejbPU")
+    private EntityManager em;
+
+    /**
+     * Updates the sitemap without loading the dataverses and datasets as
+     * entities: only the ids, aliases/PIDs and modification times are
+     * queried, one page at a time, and streamed into the sitemap files.
+     */
     @Asynchronous
-    public void updateSiteMap(List<Dataverse> dataverses, List<Dataset> datasets) {
-        SiteMapUtil.updateSiteMap(dataverses, datasets);
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void updateSiteMap() {
+        SiteMapUtil.updateSiteMap(writer -> {
+            addDataverseUrls(writer);
+            addDatasetUrls(writer);
+        });
+    }
+
+    private void addDataverseUrls(SiteMapWriter writer) throws IOException, XMLStreamException {
+        long lastId = 0L;
+        List<Object[]> page;
+        do {
+            page = em.createQuery("SELECT d.id, d.alias, d.modificationTime FROM Dataverse d"
+                    + " WHERE d.publicationDate IS NOT NULL AND d.id > :lastId ORDER BY d.id", Object[].class)
+                    .setParameter("lastId", lastId)
+                    .setMaxResults(PAGE_SIZE)
+                    .getResultList();
+            for (Object[] row : page) {
+                lastId = (Long) row[0];
+                writer.addUrl(SiteMapUtil.getDataverseUrl((String) row[1]), (Date) row[2]);
+            }
+            em.clear();
+        } while (page.size() == PAGE_SIZE);
+    }
+
+    /**
+     * Same selection as in {@link SiteMapUtil#updateSiteMap(List, List)}:
+     * released, local datasets, skipping the ones whose only published
+     * versions have been deaccessioned.
+     */
+    private void addDatasetUrls(SiteMapWriter writer) throws IOException, XMLStreamException {
+        long lastId = 0L;
+        List<Object[]> page;
+        do {
+            page = em.createQuery("SELECT o.id, o.protocol, o.authority, o.identifier, o.modificationTime FROM Dataset o"
+                    + " WHERE o.publicationDate IS NOT NULL AND o.harvestedFrom IS NULL"
+                    + " AND (EXISTS (SELECT v FROM DatasetVersion v WHERE v.dataset = o AND v.versionState IN :activeStates)"
+                    + " OR NOT EXISTS (SELECT v FROM DatasetVersion v WHERE v.dataset = o AND v.versionState = :deaccessioned))"
+                    + " AND o.id > :lastId ORDER BY o.id", Object[].class)
+                    .setParameter("activeStates", List.of(DatasetVersion.VersionState.RELEASED, DatasetVersion.VersionState.DRAFT))
+                    .setParameter("deaccessioned", DatasetVersion.VersionState.DEACCESSIONED)
+                    .setParameter("lastId", lastId)
+                    .setMaxResults(PAGE_SIZE)
+                    .getResultList();
+            for (Object[] row : page) {
+                lastId = (Long) row[0];
+                String persistentId;
+                try {
+                    persistentId = PidUtil.parseAsGlobalID((String) row[1], (String) row[2], (String) row[3]).asString();
+                } catch (IllegalArgumentException iae) {
+                    logger.warning("Skipping dataset " + row[0] + " in the sitemap; unable to parse its persistent id: " + iae.getMessage());
+                    continue;
+                }
+                writer.addUrl(SiteMapUtil.getDatasetUrl(persistentId), (Date) row[4]);
+            }
+            em.clear();
+        } while (page.size() == PAGE_SIZE);
     }
 
 }
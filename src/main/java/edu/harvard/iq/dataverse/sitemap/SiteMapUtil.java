@@ -2,7 +2,6 @@ package edu.harvard.iq.dataverse.sitemap;
 
 import edu.harvard.iq.dataverse.Dataset;
 import edu.harvard.iq.dataverse.Dataverse;
-import edu.harvard.iq.dataverse.DvObjectContainer;
 import edu.harvard.iq.dataverse.settings.ConfigCheckService;
 import edu.harvard.iq.dataverse.settings.JvmSettings;
 import edu.harvard.iq.dataverse.util.SystemConfig;
@@ -11,25 +10,18 @@ import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Logger;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import javax.xml.stream.XMLStreamException;
 import org.xml.sax.SAXException;
 
 public class SiteMapUtil {
@@ -39,23 +31,60 @@ public class SiteMapUtil {
     static final String SITEMAP_FILENAME_FINAL = "sitemap.xml";
     static final String SITEMAP_FILENAME_STAGED = "sitemap.xml.staged";
 
+    private static final String SITEMAP_SCHEMA_URL = "https://www.sitemaps.org/schemas/sitemap/0.9/sitemap.xsd";
+    private static final String SITEMAP_INDEX_SCHEMA_URL = "https://www.sitemaps.org/schemas/sitemap/0.9/siteindex.xsd";
+
     /**
-     * TODO: Handle more than 50,000 entries in the sitemap.
-     *
-     * (As of this writing Harvard Dataverse only has ~3000 dataverses and
-     * ~30,000 datasets.)
+     * Supplies the urls of the sitemap, one at a time, to the writer.
+     */
+    @FunctionalInterface
+    public interface UrlSource {
+
+        void addUrls(SiteMapWriter writer) throws IOException, XMLStreamException;
+    }
+
+    public static void updateSiteMap(List<Dataverse> dataverses, List<Dataset> datasets) {
+        updateSiteMap(writer -> {
+            for (Dataverse dataverse : dataverses) {
+                if (!dataverse.isReleased()) {
+                    continue;
+                }
+                writer.addUrl(getDataverseUrl(dataverse.getAlias()), dataverse.getModificationTime());
+            }
+
+            for (Dataset dataset : datasets) {
+                if (!dataset.isReleased()) {
+                    continue;
+                }
+                if (dataset.isHarvested()) {
+                    continue;
+                }
+                // The deaccessioned check is last because it has to iterate through dataset versions.
+                if (dataset.isDeaccessioned()) {
+                    continue;
+                }
+                writer.addUrl(getDatasetUrl(dataset.getGlobalId().asString()), dataset.getModificationTime());
+            }
+        });
+    }
+
+    /**
+     * Writes the sitemap, streaming the urls into the files as they come from
+     * the source, so that the whole sitemap is never held in memory.
      *
-     * "each Sitemap file that you provide must have no more than 50,000 URLs"
+     * "Each Sitemap file that you provide must have no more than 50,000 URLs"
      * https://www.sitemaps.org/protocol.html
      *
-     * Consider using a third party library: "One sitemap can contain a maximum
-     * of 50,000 URLs. (Some sitemaps, like Google News sitemaps, can contain
-     * only 1,000 URLs.) If you need to put more URLs than that in a sitemap,
-     * you'll have to use a sitemap index file. Fortunately, WebSitemapGenerator
-     * can manage the whole thing for you."
-     * https://github.com/dfabulich/sitemapgen4j
+     * If there are more urls than that, they are split over several files,
+     * sitemap1.xml, sitemap2.xml, etc., and sitemap.xml becomes a sitemap
+     * index pointing to them. Otherwise sitemap.xml is a single sitemap, as
+     * before.
      */
-    public static void updateSiteMap(List<Dataverse> dataverses, List<Dataset> datasets) {
+    public static void updateSiteMap(UrlSource urlSource) {
+        updateSiteMap(urlSource, SiteMapWriter.MAX_URLS_PER_FILE);
+    }
+
+    static void updateSiteMap(UrlSource urlSource, int maxUrlsPerFile) {
 
         logger.info("BEGIN updateSiteMap");
 
@@ -63,143 +92,141 @@ public class SiteMapUtil {
         String stagedSitemapPathAndFileString = sitemapPathString + File.separator + SITEMAP_FILENAME_STAGED;
         String finalSitemapPathAndFileString = sitemapPathString + File.separator + SITEMAP_FILENAME_FINAL;
 
+        Path sitemapPath = Paths.get(sitemapPathString);
         Path stagedPath = Paths.get(stagedSitemapPathAndFileString);
-        if (Files.exists(stagedPath)) {
+        try {
+            Files.createDirectories(sitemapPath);
+            // The staged file doubles as a lock against concurrent runs:
+            Files.createFile(stagedPath);
+        } catch (FileAlreadyExistsException ex) {
             logger.warning("Unable to update sitemap! The staged file from a previous run already existed. Delete " + stagedSitemapPathAndFileString + " and try again.");
             return;
-        }
-
-        DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder documentBuilder = null;
-        try {
-            documentBuilder = documentBuilderFactory.newDocumentBuilder();
-        } catch (ParserConfigurationException ex) {
-            logger.warning("Unable to update sitemap! ParserConfigurationException: " + ex.getLocalizedMessage());
+        } catch (IOException ex) {
+            logger.warning("Unable to update sitemap! Unable to create staged sitemap " + stagedSitemapPathAndFileString + ". IOException: " + ex.getLocalizedMessage());
             return;
         }
-        Document document = documentBuilder.newDocument();
-
-        Element urlSet = document.createElement("urlset");
-        urlSet.setAttribute("xmlns", "http://www.sitemaps.org/schemas/sitemap/0.9");
-        urlSet.setAttribute("xmlns:xhtml", "http://www.w3.org/1999/xhtml");
-        document.appendChild(urlSet);
 
-        for (Dataverse dataverse : dataverses) {
-            if (!dataverse.isReleased()) {
-                continue;
+        List<Path> stagedParts = null;
+        try {
+            SiteMapWriter writer = new SiteMapWriter(sitemapPath, maxUrlsPerFile);
+            logger.info("Writing staged sitemap(s) to " + sitemapPathString);
+            try {
+                urlSource.addUrls(writer);
+                stagedParts = writer.finish();
+            } catch (IOException | XMLStreamException | RuntimeException ex) {
+                writer.abort();
+                logger.warning("Unable to update sitemap! Unable to write staged sitemap to " + sitemapPathString + ". Exception: " + ex.getLocalizedMessage());
+                return;
             }
-            Element url = document.createElement("url");
-            urlSet.appendChild(url);
+            logger.info("Wrote " + writer.getUrlCount() + " urls into " + stagedParts.size() + " staged sitemap file(s)");
 
-            Element loc = document.createElement("loc");
-            String dataverseAlias = dataverse.getAlias();
-            loc.appendChild(document.createTextNode(SystemConfig.getDataverseSiteUrlStatic() + "/dataverse/" + dataverseAlias));
-            url.appendChild(loc);
-
-            Element lastmod = document.createElement("lastmod");
-            lastmod.appendChild(document.createTextNode(getLastModDate(dataverse)));
-            url.appendChild(lastmod);
-        }
-
-        for (Dataset dataset : datasets) {
-            if (!dataset.isReleased()) {
-                continue;
-            }
-            if (dataset.isHarvested()) {
-                continue;
+            for (Path stagedPart : stagedParts) {
+                if (!isValid(stagedPart.toString(), SITEMAP_SCHEMA_URL)) {
+                    return;
+                }
             }
-            // The deaccessioned check is last because it has to iterate through dataset versions.
-            if (dataset.isDeaccessioned()) {
-                continue;
-            }
-            Element url = document.createElement("url");
-            urlSet.appendChild(url);
-
-            Element loc = document.createElement("loc");
-            String datasetPid = dataset.getGlobalId().asString();
-            loc.appendChild(document.createTextNode(SystemConfig.getDataverseSiteUrlStatic() + "/dataset.xhtml?persistentId=" + datasetPid));
-            url.appendChild(loc);
 
-            Element lastmod = document.createElement("lastmod");
-            lastmod.appendChild(document.createTextNode(getLastModDate(dataset)));
-            url.appendChild(lastmod);
-        }
+            List<String> finalNames = new ArrayList<>();
+            if (stagedParts.size() == 1) {
+                Files.move(stagedParts.get(0), stagedPath, StandardCopyOption.REPLACE_EXISTING);
+                stagedParts.clear();
+            } else {
+                List<String> sitemapUrls = new ArrayList<>();
+                for (int i = 1; i <= stagedParts.size(); i++) {
+                    finalNames.add(getPartFileName(i));
+                    sitemapUrls.add(SystemConfig.getDataverseSiteUrlStatic() + "/sitemap/" + getPartFileName(i));
+                }
+                writer.writeIndex(stagedPath, sitemapUrls);
+                if (!isValid(stagedSitemapPathAndFileString, SITEMAP_INDEX_SCHEMA_URL)) {
+                    return;
+                }
+            }
 
-        TransformerFactory transformerFactory = TransformerFactory.newInstance();
-        Transformer transformer = null;
-        try {
-            transformer = transformerFactory.newTransformer();
-        } catch (TransformerConfigurationException ex) {
-            logger.warning("Unable to update sitemap! TransformerConfigurationException: " + ex.getLocalizedMessage());
+            // The parts go first, so that the index never points to missing files:
+            for (int i = 0; i < stagedParts.size(); i++) {
+                Files.move(stagedParts.get(i), sitemapPath.resolve(finalNames.get(i)), StandardCopyOption.REPLACE_EXISTING);
+            }
+            logger.info("Copying staged sitemap from " + stagedSitemapPathAndFileString + " to " + finalSitemapPathAndFileString);
+            Files.move(stagedPath, Paths.get(finalSitemapPathAndFileString), StandardCopyOption.REPLACE_EXISTING);
+            deleteStaleParts(sitemapPath, finalNames);
+        } catch (IOException | XMLStreamException ex) {
+            logger.warning("Unable to update sitemap! Unable to copy staged sitemap from " + stagedSitemapPathAndFileString + " to " + finalSitemapPathAndFileString + ". Exception: " + ex.getLocalizedMessage());
             return;
-        }
-        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-        DOMSource source = new DOMSource(document);
-        File directory = new File(sitemapPathString);
-        if (!directory.exists()) {
-            directory.mkdir();
+        } finally {
+            cleanUpStagedFiles(stagedPath, stagedParts);
         }
 
-        boolean debug = false;
-        if (debug) {
-            logger.info("Writing sitemap to console/logs");
-            StreamResult consoleResult = new StreamResult(System.out);
-            try {
-                transformer.transform(source, consoleResult);
-            } catch (TransformerException ex) {
-                logger.warning("Unable to print sitemap to the console: " + ex.getLocalizedMessage());
-            }
-        }
+        logger.info("END updateSiteMap");
+    }
 
-        logger.info("Writing staged sitemap to " + stagedSitemapPathAndFileString);
-        StreamResult result = new StreamResult(new File(stagedSitemapPathAndFileString));
-        try {
-            transformer.transform(source, result);
-        } catch (TransformerException ex) {
-            logger.warning("Unable to update sitemap! Unable to write staged sitemap to " + stagedSitemapPathAndFileString + ". TransformerException: " + ex.getLocalizedMessage());
-            return;
-        }
+    static String getDataverseUrl(String alias) {
+        return SystemConfig.getDataverseSiteUrlStatic() + "/dataverse/" + alias;
+    }
+
+    static String getDatasetUrl(String persistentId) {
+        return SystemConfig.getDataverseSiteUrlStatic() + "/dataset.xhtml?persistentId=" + persistentId;
+    }
+
+    static String getPartFileName(int fileNumber) {
+        return "sitemap" + fileNumber + ".xml";
+    }
 
-        logger.info("Checking staged sitemap for well-formedness. The staged file is " + stagedSitemapPathAndFileString);
+    private static boolean isValid(String stagedFile, String schema) {
+        logger.info("Checking staged sitemap for well-formedness. The staged file is " + stagedFile);
         try {
-            XmlValidator.validateXmlWellFormed(stagedSitemapPathAndFileString);
+            XmlValidator.validateXmlWellFormed(stagedFile);
         } catch (Exception ex) {
-            logger.warning("Unable to update sitemap! Staged sitemap file is not well-formed XML! The exception for " + stagedSitemapPathAndFileString + " is " + ex.getLocalizedMessage());
-            return;
+            logger.warning("Unable to update sitemap! Staged sitemap file is not well-formed XML! The exception for " + stagedFile + " is " + ex.getLocalizedMessage());
+            return false;
         }
 
-        logger.info("Checking staged sitemap against XML schema. The staged file is " + stagedSitemapPathAndFileString);
+        logger.info("Checking staged sitemap against XML schema. The staged file is " + stagedFile);
         URL schemaUrl = null;
         try {
-            schemaUrl = new URL("https://www.sitemaps.org/schemas/sitemap/0.9/sitemap.xsd");
+            schemaUrl = new URL(schema);
         } catch (MalformedURLException ex) {
             // This URL is hard coded and it's fine. We should never get MalformedURLException so we just swallow the exception and carry on.
         }
         try {
-            XmlValidator.validateXmlSchema(stagedSitemapPathAndFileString, schemaUrl);
+            XmlValidator.validateXmlSchema(stagedFile, schemaUrl);
         } catch (SAXException | IOException ex) {
-            logger.warning("Unable to update sitemap! Exception caught while checking XML staged file (" + stagedSitemapPathAndFileString + " ) against XML schema: " + ex.getLocalizedMessage());
-            return;
+            logger.warning("Unable to update sitemap! Exception caught while checking XML staged file (" + stagedFile + " ) against XML schema: " + ex.getLocalizedMessage());
+            return false;
         }
+        return true;
+    }
 
-        Path finalPath = Paths.get(finalSitemapPathAndFileString);
-        logger.info("Copying staged sitemap from " + stagedSitemapPathAndFileString + " to " + finalSitemapPathAndFileString);
-        try {
-            Files.move(stagedPath, finalPath, StandardCopyOption.REPLACE_EXISTING);
+    /**
+     * Deletes the sitemap files left over from a previous, larger, sitemap.
+     */
+    private static void deleteStaleParts(Path sitemapPath, List<String> currentNames) {
+        Set<String> current = new HashSet<>(currentNames);
+        try (DirectoryStream<Path> parts = Files.newDirectoryStream(sitemapPath, "sitemap[0-9]*.xml")) {
+            for (Path part : parts) {
+                if (!current.contains(part.getFileName().toString())) {
+                    Files.deleteIfExists(part);
+                }
+            }
         } catch (IOException ex) {
-            logger.warning("Unable to update sitemap! Unable to copy staged sitemap from " + stagedSitemapPathAndFileString + " to " + finalSitemapPathAndFileString + ". IOException: " + ex.getLocalizedMessage());
-            return;
+            logger.warning("Unable to delete stale sitemap files in " + sitemapPath + ": " + ex.getLocalizedMessage());
         }
-
-        logger.info("END updateSiteMap");
     }
 
-    private static String getLastModDate(DvObjectContainer dvObjectContainer) {
-        // TODO: Decide if YYYY-MM-DD is enough. https://www.sitemaps.org/protocol.html
-        // says "The date of last modification of the file. This date should be in W3C Datetime format.
-        // This format allows you to omit the time portion, if desired, and use YYYY-MM-DD."
-        return new SimpleDateFormat("yyyy-MM-dd").format(dvObjectContainer.getModificationTime());
+    /**
+     * Deletes whatever is left of the staged files, including the staged
+     * sitemap.xml, so that a failed run does not prevent the next one.
+     */
+    private static void cleanUpStagedFiles(Path stagedPath, List<Path> stagedParts) {
+        try {
+            if (stagedParts != null) {
+                for (Path stagedPart : stagedParts) {
+                    Files.deleteIfExists(stagedPart);
+                }
+            }
+            Files.deleteIfExists(stagedPath);
+        } catch (IOException ex) {
+            logger.warning("Unable to delete staged sitemap file(s): " + ex.getLocalizedMessage());
+        }
     }
 
     public static boolean stageFileExists() {
@@ -0,0 +1,169 @@
+package edu.harvard.iq.dataverse.sitemap;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes sitemap urls as they come, with StAX, into as many (staged) sitemap
+ * files as necessary, starting a new file every time the current one reaches
+ * the limit of urls per file. Nothing but the current file is kept open, so
+ * the memory used does not depend on the number of urls.
+ */
+public class SiteMapWriter {
+
+    static final String SITEMAP_NAMESPACE = "http://www.sitemaps.org/schemas/sitemap/0.9";
+    static final String XHTML_NAMESPACE = "http://www.w3.org/1999/xhtml";
+
+    /**
+     * "Each Sitemap file that you provide must have no more than 50,000 URLs"
+     * https://www.sitemaps.org/protocol.html
+     */
+    static final int MAX_URLS_PER_FILE = 50000;
+
+    private final Path directory;
+    private final int maxUrlsPerFile;
+    private final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newInstance();
+
+    private final List<Path> stagedFiles = new ArrayList<>();
+    private OutputStream outputStream = null;
+    private XMLStreamWriter xmlWriter = null;
+    private int urlsInFile = 0;
+    private long urlCount = 0;
+
+    SiteMapWriter(Path directory, int maxUrlsPerFile) {
+        this.directory = directory;
+        this.maxUrlsPerFile = maxUrlsPerFile;
+    }
+
+    /**
+     * @param loc the url
+     * @param lastModified the time the page was last modified, or null
+     */
+    public void addUrl(String loc, Date lastModified) throws IOException, XMLStreamException {
+        if (xmlWriter == null || urlsInFile >= maxUrlsPerFile) {
+            startFile();
+        }
+        xmlWriter.writeCharacters("\n  ");
+        xmlWriter.writeStartElement("url");
+        xmlWriter.writeStartElement("loc");
+        xmlWriter.writeCharacters(loc);
+        xmlWriter.writeEndElement();
+        if (lastModified != null) {
+            xmlWriter.writeStartElement("lastmod");
+            xmlWriter.writeCharacters(formatDate(lastModified));
+            xmlWriter.writeEndElement();
+        }
+        xmlWriter.writeEndElement();
+        urlsInFile++;
+        urlCount++;
+    }
+
+    public long getUrlCount() {
+        return urlCount;
+    }
+
+    /**
+     * Closes the current file.
+     *
+     * @return the staged sitemap files written, in order
+     */
+    List<Path> finish() throws IOException, XMLStreamException {
+        if (xmlWriter == null) {
+            // (an empty sitemap)
+            startFile();
+        }
+        finishFile();
+        return stagedFiles;
+    }
+
+    /**
+     * Aborts writing, closing the current file, if any.
+     */
+    void abort() {
+        if (outputStream != null) {
+            try {
+                outputStream.close();
+            } catch (IOException ioex) {
+                // don't care
+            }
+            outputStream = null;
+            xmlWriter = null;
+        }
+    }
+
+    /**
+     * Writes a sitemap index of the sitemap files at the urls listed.
+     */
+    void writeIndex(Path indexFile, List<String> sitemapUrls) throws IOException, XMLStreamException {
+        String lastModified = formatDate(new Date());
+        try (OutputStream indexStream = new BufferedOutputStream(Files.newOutputStream(indexFile))) {
+            XMLStreamWriter indexWriter = xmlOutputFactory.createXMLStreamWriter(indexStream, "UTF-8");
+            indexWriter.writeStartDocument("UTF-8", "1.0");
+            indexWriter.writeCharacters("\n");
+            indexWriter.writeStartElement("sitemapindex");
+            indexWriter.writeDefaultNamespace(SITEMAP_NAMESPACE);
+            for (String sitemapUrl : sitemapUrls) {
+                indexWriter.writeCharacters("\n  ");
+                indexWriter.writeStartElement("sitemap");
+                indexWriter.writeStartElement("loc");
+                indexWriter.writeCharacters(sitemapUrl);
+                indexWriter.writeEndElement();
+                indexWriter.writeStartElement("lastmod");
+                indexWriter.writeCharacters(lastModified);
+                indexWriter.writeEndElement();
+                indexWriter.writeEndElement();
+            }
+            indexWriter.writeCharacters("\n");
+            indexWriter.writeEndElement();
+            indexWriter.writeEndDocument();
+            indexWriter.close();
+        }
+    }
+
+    static String getStagedFileName(int fileNumber) {
+        return "sitemap" + fileNumber + ".xml.staged";
+    }
+
+    private void startFile() throws IOException, XMLStreamException {
+        if (xmlWriter != null) {
+            finishFile();
+        }
+        Path stagedFile = directory.resolve(getStagedFileName(stagedFiles.size() + 1));
+        stagedFiles.add(stagedFile);
+        outputStream = new BufferedOutputStream(Files.newOutputStream(stagedFile));
+        xmlWriter = xmlOutputFactory.createXMLStreamWriter(outputStream, "UTF-8");
+        xmlWriter.writeStartDocument("UTF-8", "1.0");
+        xmlWriter.writeCharacters("\n");
+        xmlWriter.writeStartElement("urlset");
+        xmlWriter.writeDefaultNamespace(SITEMAP_NAMESPACE);
+        xmlWriter.writeNamespace("xhtml", XHTML_NAMESPACE);
+        urlsInFile = 0;
+    }
+
+    private void finishFile() throws IOException, XMLStreamException {
+        xmlWriter.writeCharacters("\n");
+        xmlWriter.writeEndElement();
+        xmlWriter.writeEndDocument();
+        xmlWriter.close();
+        outputStream.close();
+        xmlWriter = null;
+        outputStream = null;
+    }
+
+    private static String formatDate(Date date) {
+        // TODO: Decide if YYYY-MM-DD is enough. https://www.sitemaps.org/protocol.html
+        // says "The date of last modification of the file. This date should be in W3C Datetime format.
+        // This format allows you to omit the time portion, if desired, and use YYYY-MM-DD."
+        return new SimpleDateFormat("yyyy-MM-dd").format(date);
+    }
+}
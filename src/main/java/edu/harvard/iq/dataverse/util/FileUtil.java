@@ -1449,7 +1449,7 @@ public class FileUtil implements java.io.Serializable  {
     	return s3io;
     }
     
-    private static InputStream getOriginalFileInputStream(StorageIO<DataFile> storage, boolean isTabularData) throws IOException {
+    public static InputStream getOriginalFileInputStream(StorageIO<DataFile> storage, boolean isTabularData) throws IOException {
         storage.open(DataAccessOption.READ_ACCESS);
         if (!isTabularData) {
             return storage.getInputStream();
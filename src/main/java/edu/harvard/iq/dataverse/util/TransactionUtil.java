@@ -0,0 +1,44 @@
+package edu.harvard.iq.dataverse.util;
+
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import java.util.logging.Logger;
+
+public class TransactionUtil {
+
+    private static final Logger logger = Logger.getLogger(TransactionUtil.class.getCanonicalName());
+
+    /**
+     * Runs {@code action} once the current transaction has completed, either
+     * committed or rolled back, or right away if there is no transaction
+     * (or it can't take new synchronizations anymore). Meant for clearing
+     * in-memory caches of data the transaction changes: clearing them
+     * before the commit lets other threads cache the old data again.
+     *
+     * @param registry the registry of the container, may be null outside of
+     * it (e.g. in tests)
+     * @param action must not throw; it runs after the transaction, where
+     * exceptions are only logged
+     */
+    public static void afterCompletion(TransactionSynchronizationRegistry registry, Runnable action) {
+        if (registry == null || registry.getTransactionKey() == null) {
+            action.run();
+            return;
+        }
+        try {
+            registry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        } catch (IllegalStateException ise) {
+            logger.fine("Could not wait for the transaction to complete, running right away: " + ise.getMessage());
+            action.run();
+        }
+    }
+}
@@ -13,11 +13,14 @@ import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.security.KeyManagementException;
+import java.security.DigestInputStream;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
@@ -27,6 +30,7 @@ import java.util.LinkedHashMap;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -36,6 +40,8 @@ import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
 
 import edu.harvard.iq.dataverse.util.BundleUtil;
+import edu.harvard.iq.dataverse.util.FileUtil;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.compress.archivers.zip.ParallelScatterZipCreator;
 import org.apache.commons.compress.archivers.zip.ScatterZipOutputStream;
@@ -73,6 +79,8 @@ import com.google.gson.JsonSyntaxException;
 
 import edu.harvard.iq.dataverse.DataFile;
 import edu.harvard.iq.dataverse.DataFile.ChecksumType;
+import edu.harvard.iq.dataverse.DatasetVersion;
+import edu.harvard.iq.dataverse.FileMetadata;
 import edu.harvard.iq.dataverse.pidproviders.PidUtil;
 import edu.harvard.iq.dataverse.util.json.JsonLDTerm;
 
@@ -85,9 +93,15 @@ public class BagGenerator {
 
     private JsonArray aggregates = null;
     private ArrayList<String> resourceIndex = null;
+    // The positions of each resource id in the resourceIndex, not used yet
+    private HashMap<String, ArrayDeque<Integer>> unusedResourceIndexes = null;
     private Boolean[] resourceUsed = null;
     private HashMap<String, String> pidMap = new LinkedHashMap<String, String>();
     private HashMap<String, String> checksumMap = new LinkedHashMap<String, String>();
+    // Hashes being computed while the data files are zipped, by path
+    private HashMap<String, CompletableFuture<String>> computedHashes = new HashMap<String, CompletableFuture<String>>();
+    // The DataFiles of the version, by storage identifier, to read them directly from storage
+    private HashMap<String, DataFile> dataFiles = new HashMap<String, DataFile>();
 
     private int timeout = 60;
     private RequestConfig config = RequestConfig.custom().setConnectTimeout(timeout * 1000)
@@ -132,7 +146,10 @@ public class BagGenerator {
      * submitted OAI-ORE Map file, using the metadata therein to create required
      * BagIt metadata, and using the schema.org/sameAs entries for
      * AggregatedResources as a way to retrieve these files and store them in the
-     * /data directory within the BagIt structure. The Bag is zipped. File retrieval
+     * /data directory within the BagIt structure. The data files of the
+     * DatasetVersion are read directly from storage, falling back to their URLs.
+     * Hashes missing from the map are computed while the files are zipped, so
+     * that each file is only read once. The Bag is zipped. File retrieval
      * and zipping are done in parallel, using a connection pool. The required space
      * on disk is ~ n+1/n of the final bag size, e.g. 125% of the bag size for a
      * 4-way parallel zip operation.
@@ -232,6 +249,7 @@ public class BagGenerator {
             // Setup global index of the aggregation and all aggregated
             // resources by Identifier
             resourceIndex = indexResources(aggregation.get("@id").getAsString(), aggregates);
+            indexDataFiles();
             // Setup global list of succeed(true), fail(false), notused
             // (null) flags
             resourceUsed = new Boolean[aggregates.size() + 1];
@@ -256,18 +274,9 @@ public class BagGenerator {
         createDir("metadata/");
         createFileFromString("metadata/pid-mapping.txt", pidStringBuffer.toString());
         // Hash manifest - a hash manifest is required
-        // by Bagit spec
-        StringBuffer sha1StringBuffer = new StringBuffer();
-        first = true;
-        for (Entry<String, String> sha1Entry : checksumMap.entrySet()) {
-            if (!first) {
-                sha1StringBuffer.append("\r\n");
-            } else {
-                first = false;
-            }
-            String path = sha1Entry.getKey();
-            sha1StringBuffer.append(sha1Entry.getValue() + " " + path);
-        }
+        // by Bagit spec. The hashes computed while zipping are only known once
+        // the data files have been read, so the manifest is generated when it
+        // is zipped, after them.
         if (!(hashtype == null)) {
             String manifestName = "manifest-";
             if (hashtype.equals(DataFile.ChecksumType.SHA1)) {
@@ -281,7 +290,11 @@ public class BagGenerator {
             } else {
                 logger.warning("Unsupported Hash type: " + hashtype);
             }
-            createFileFromString(manifestName, sha1StringBuffer.toString());
+            createFileFromSupplier(manifestName, new InputStreamSupplier() {
+                public InputStream get() {
+                    return new ByteArrayInputStream(generateManifest().getBytes(StandardCharsets.UTF_8));
+                }
+            });
         } else {
             logger.warning("No Hash values (no files?) sending empty manifest to nominally comply with BagIT specification requirement");
             createFileFromString("manifest-md5.txt", "");
@@ -570,43 +583,17 @@ public class BagGenerator {
                     hashtype = DataFile.ChecksumType.SHA512;
                 }
                 try {
+                    InputStreamSupplier supplier = getDataFileInputStreamSupplier(child, dataUrl);
                     if ((childHash == null) | ignorehashes) {
-                        // Generate missing hashInputStream inputStream = null;
-                        InputStream inputStream = null;
-                        try {
-                            inputStream = getInputStreamSupplier(dataUrl).get();
-
-                            if (hashtype != null) {
-                                if (hashtype.equals(DataFile.ChecksumType.SHA1)) {
-                                    childHash = DigestUtils.sha1Hex(inputStream);
-                                } else if (hashtype.equals(DataFile.ChecksumType.SHA256)) {
-                                    childHash = DigestUtils.sha256Hex(inputStream);
-                                } else if (hashtype.equals(DataFile.ChecksumType.SHA512)) {
-                                    childHash = DigestUtils.sha512Hex(inputStream);
-                                } else if (hashtype.equals(DataFile.ChecksumType.MD5)) {
-                                    childHash = DigestUtils.md5Hex(inputStream);
-                                }
-                            }
-
-                        } catch (IOException e) {
-                            logger.severe("Failed to read " + childPath);
-                            throw e;
-                        } finally {
-                            IOUtils.closeQuietly(inputStream);
-                        }
-                        if (childHash != null) {
-                            JsonObject childHashObject = new JsonObject();
-                            childHashObject.addProperty("@type", hashtype.toString());
-                            childHashObject.addProperty("@value", childHash);
-                            child.add(JsonLDTerm.checksum.getLabel(), (JsonElement) childHashObject);
-
-                            checksumMap.put(childPath, childHash);
-                        } else {
-                            logger.warning("Unable to calculate a " + hashtype + " for " + dataUrl);
-                        }
+                        // Generate the missing hash while the file is zipped
+                        CompletableFuture<String> computedHash = new CompletableFuture<String>();
+                        supplier = getHashingInputStreamSupplier(supplier, hashtype, computedHash);
+                        computedHashes.put(childPath, computedHash);
+                        // Keeps the manifest in order
+                        checksumMap.put(childPath, null);
                     }
                     logger.fine("Requesting: " + childPath + " from " + dataUrl);
-                    createFileFromURL(childPath, dataUrl);
+                    createFileFromSupplier(childPath, supplier);
                     dataCount++;
                     if (dataCount % 1000 == 0) {
                         logger.info("Retrieval in progress: " + dataCount + " files retrieved");
@@ -636,20 +623,22 @@ public class BagGenerator {
     }
 
     private int getUnusedIndexOf(String childId) {
-        int index = resourceIndex.indexOf(childId);
-        if (resourceUsed[index] != null) {
-            System.out.println("Warning: reusing resource " + index);
+        ArrayDeque<Integer> indexes = unusedResourceIndexes.get(childId);
+        if (indexes == null) {
+            logger.severe("ID: " + childId + " not found in resource list");
+            return -1;
         }
-
-        while (resourceUsed[index] != null) {
-            int offset = index;
-            index = offset + 1 + resourceIndex.subList(offset + 1, resourceIndex.size()).indexOf(childId);
+        // Drop the positions used since
+        while (!indexes.isEmpty() && resourceUsed[indexes.peek()] != null) {
+            logger.fine("Warning: reusing resource " + childId);
+            indexes.poll();
         }
-        System.out.println("Using index: " + index);
-        if (index == -1) {
+        if (indexes.isEmpty()) {
             logger.severe("Reused ID: " + childId + " not found enough times in resource list");
+            return -1;
         }
-        return index;
+        logger.fine("Using index: " + indexes.peek());
+        return indexes.peek();
     }
 
     private ArrayList<String> indexResources(String aggId, JsonArray aggregates) {
@@ -660,10 +649,148 @@ public class BagGenerator {
             logger.fine("Indexing : " + i + " " + aggregates.get(i).getAsJsonObject().get("@id").getAsString());
             l.add(aggregates.get(i).getAsJsonObject().get("@id").getAsString());
         }
+        unusedResourceIndexes = new HashMap<String, ArrayDeque<Integer>>();
+        for (int i = 0; i < l.size(); i++) {
+            unusedResourceIndexes.computeIfAbsent(l.get(i), id -> new ArrayDeque<Integer>()).add(i);
+        }
         logger.fine("Index created for " + aggregates.size() + " entries");
         return l;
     }
 
+    private void indexDataFiles() {
+        DatasetVersion version = oremap.getDatasetVersion();
+        if (version == null) {
+            return;
+        }
+        for (FileMetadata fmd : version.getFileMetadatas()) {
+            DataFile dataFile = fmd.getDataFile();
+            if (dataFile.getStorageIdentifier() != null) {
+                dataFiles.put(dataFile.getStorageIdentifier(), dataFile);
+            }
+        }
+    }
+
+    /*
+     * Reads the data file directly from storage - the original, for ingested
+     * files, as the URL in the map does - rather than requesting it from this
+     * server. Falls back to the URL if the file is not in the version or can't
+     * be read from storage.
+     */
+    private InputStreamSupplier getDataFileInputStreamSupplier(JsonObject child, String dataUrl) {
+        InputStreamSupplier urlSupplier = getInputStreamSupplier(dataUrl);
+        JsonElement storageIdentifier = child.get(JsonLDTerm.storageIdentifier.getLabel());
+        final DataFile dataFile = (storageIdentifier == null) ? null : dataFiles.get(storageIdentifier.getAsString());
+        if (dataFile == null) {
+            return urlSupplier;
+        }
+        final boolean isTabularData = dataFile.isTabularData();
+        return new InputStreamSupplier() {
+            public InputStream get() {
+                try {
+                    InputStream inputStream = FileUtil.getOriginalFileInputStream(dataFile.getStorageIO(), isTabularData);
+                    if (inputStream != null) {
+                        return inputStream;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    logger.warning("Unable to read " + dataUrl + " from storage: " + e.getMessage());
+                }
+                logger.fine("Retrieving " + dataUrl);
+                return urlSupplier.get();
+            }
+        };
+    }
+
+    /*
+     * Computes the hash of the supplied stream as it is read, and completes
+     * the hash with it when the stream is closed - or with null if the stream
+     * couldn't be opened or wasn't read to the end.
+     */
+    static InputStreamSupplier getHashingInputStreamSupplier(final InputStreamSupplier supplier,
+            final ChecksumType type, final CompletableFuture<String> hash) {
+        return new InputStreamSupplier() {
+            public InputStream get() {
+                InputStream inputStream = null;
+                try {
+                    inputStream = supplier.get();
+                } finally {
+                    if (inputStream == null) {
+                        hash.complete(null);
+                    }
+                }
+                if (inputStream == null) {
+                    return null;
+                }
+                return new DigestInputStream(inputStream, DigestUtils.getDigest(type.toString())) {
+                    private boolean complete = false;
+
+                    @Override
+                    public int read() throws IOException {
+                        int b = super.read();
+                        if (b == -1) {
+                            complete = true;
+                        }
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        int n = super.read(b, off, len);
+                        if (n == -1) {
+                            complete = true;
+                        }
+                        return n;
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            hash.complete(complete ? Hex.encodeHexString(getMessageDigest().digest()) : null);
+                        }
+                    }
+                };
+            }
+        };
+    }
+
+    /*
+     * Waits for the hashes computed while zipping, then lists all the hashes.
+     * Only called once all the data files have been queued for zipping.
+     */
+    private synchronized String generateManifest() {
+        for (Entry<String, CompletableFuture<String>> computedHash : computedHashes.entrySet()) {
+            String hash = null;
+            try {
+                hash = computedHash.getValue().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                logger.warning(e.getMessage());
+            }
+            if (hash != null) {
+                checksumMap.put(computedHash.getKey(), hash);
+            } else {
+                logger.warning("Unable to calculate a " + hashtype + " for " + computedHash.getKey());
+                checksumMap.remove(computedHash.getKey());
+            }
+        }
+        computedHashes.clear();
+
+        StringBuffer sha1StringBuffer = new StringBuffer();
+        boolean first = true;
+        for (Entry<String, String> sha1Entry : checksumMap.entrySet()) {
+            if (!first) {
+                sha1StringBuffer.append("\r\n");
+            } else {
+                first = false;
+            }
+            String path = sha1Entry.getKey();
+            sha1StringBuffer.append(sha1Entry.getValue() + " " + path);
+        }
+        return sha1StringBuffer.toString();
+    }
+
     private void createDir(final String name) throws IOException, ExecutionException, InterruptedException {
 
         ZipArchiveEntry archiveEntry = new ZipArchiveEntry(bagName + "/" + name);
@@ -680,8 +807,6 @@ public class BagGenerator {
     private void createFileFromString(final String relPath, final String content)
             throws IOException, ExecutionException, InterruptedException {
 
-        ZipArchiveEntry archiveEntry = new ZipArchiveEntry(bagName + "/" + relPath);
-        archiveEntry.setMethod(ZipEntry.DEFLATED);
         InputStreamSupplier supp = new InputStreamSupplier() {
             public InputStream get() {
                 try {
@@ -693,15 +818,14 @@ public class BagGenerator {
             }
         };
 
-        addEntry(archiveEntry, supp);
+        createFileFromSupplier(relPath, supp);
     }
 
-    private void createFileFromURL(final String relPath, final String uri)
+    private void createFileFromSupplier(final String relPath, final InputStreamSupplier supp)
             throws IOException, ExecutionException, InterruptedException {
 
         ZipArchiveEntry archiveEntry = new ZipArchiveEntry(bagName + "/" + relPath);
         archiveEntry.setMethod(ZipEntry.DEFLATED);
-        InputStreamSupplier supp = getInputStreamSupplier(uri);
         addEntry(archiveEntry, supp);
     }
 
@@ -87,6 +87,10 @@ public class OREMap {
     public JsonObject getOREMap() {
         return getOREMap(false);
     }
+
+    public DatasetVersion getDatasetVersion() {
+        return version;
+    }
     
     public JsonObject getOREMap(boolean aggregationOnly) {
         return getOREMapBuilder(aggregationOnly).build();
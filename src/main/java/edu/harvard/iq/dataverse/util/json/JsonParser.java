@@ -1001,6 +1001,7 @@ public class JsonParser {
         harvestingClient.setMetadataPrefix(obj.getString("metadataFormat",null));
         harvestingClient.setHarvestingSet(obj.getString("set",null));
         harvestingClient.setCustomHttpHeaders(obj.getString("customHeaders", null));
+        harvestingClient.setUseListRecords(obj.getBoolean("useListRecords", false));
 
         return dataverseAlias;
     }
@@ -0,0 +1,4 @@
+-- Optional ListRecords-based harvesting, instead of ListIdentifiers followed
+-- by a GetRecord call per record:
+ALTER TABLE harvestingclient ADD COLUMN IF NOT EXISTS uselistrecords BOOLEAN DEFAULT FALSE;
+UPDATE harvestingclient SET uselistrecords = FALSE WHERE uselistrecords IS NULL;
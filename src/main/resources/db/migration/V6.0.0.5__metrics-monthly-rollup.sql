@@ -0,0 +1,17 @@
+-- Monthly download counts per dataset, rolled up nightly by the
+-- MetricsServiceBean timer, so that the download metrics don't have to
+-- aggregate the whole guestbookresponse table. The month is null for the
+-- historic guestbook responses recorded without a date.
+CREATE TABLE IF NOT EXISTS metricsmonthlyrollup (
+    id SERIAL NOT NULL,
+    name VARCHAR(255) NOT NULL,
+    dvobject_id BIGINT,
+    month VARCHAR(7),
+    count BIGINT NOT NULL,
+    PRIMARY KEY (id)
+);
+CREATE INDEX IF NOT EXISTS index_metricsmonthlyrollup_name_month ON metricsmonthlyrollup (name, month);
+
+-- The downloads of the months not rolled up yet are still counted from the
+-- guestbookresponse table:
+CREATE INDEX IF NOT EXISTS index_guestbookresponse_responsetime ON guestbookresponse (responsetime);
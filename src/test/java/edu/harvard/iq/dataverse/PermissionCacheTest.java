@@ -0,0 +1,129 @@
+package edu.harvard.iq.dataverse;
+
+import edu.harvard.iq.dataverse.authorization.Permission;
+import edu.harvard.iq.dataverse.authorization.RoleAssignee;
+import edu.harvard.iq.dataverse.authorization.users.GuestUser;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import edu.harvard.iq.dataverse.util.testing.JvmSetting;
+import edu.harvard.iq.dataverse.util.testing.LocalJvmSettings;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@LocalJvmSettings
+public class PermissionCacheTest {
+
+    private final Set<RoleAssignee> ras = Set.of(GuestUser.get());
+
+    private static Dataverse dataverse(long id) {
+        Dataverse dataverse = new Dataverse();
+        dataverse.setId(id);
+        return dataverse;
+    }
+
+    @Test
+    public void testRequestCache() {
+        PermissionCache cache = new PermissionCache();
+        AtomicInteger loads = new AtomicInteger();
+        Dataverse dataverse = dataverse(1L);
+
+        for (int i = 0; i < 3; i++) {
+            Set<Permission> permissions = cache.getAssignedPermissions(ras, dataverse, () -> {
+                loads.incrementAndGet();
+                return EnumSet.of(Permission.ViewUnpublishedDataverse);
+            });
+            assertEquals(EnumSet.of(Permission.ViewUnpublishedDataverse), permissions);
+        }
+        assertEquals(1, loads.get());
+
+        cache.getAssignedPermissions(ras, dataverse(2L), () -> {
+            loads.incrementAndGet();
+            return EnumSet.noneOf(Permission.class);
+        });
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        PermissionCache cache = new PermissionCache();
+        AtomicInteger loads = new AtomicInteger();
+        Dataverse dataverse = dataverse(1L);
+
+        cache.getAssignedPermissions(ras, dataverse, () -> {
+            loads.incrementAndGet();
+            return EnumSet.noneOf(Permission.class);
+        });
+        PermissionCache.invalidateAll();
+        Set<Permission> permissions = cache.getAssignedPermissions(ras, dataverse, () -> {
+            loads.incrementAndGet();
+            return EnumSet.of(Permission.AddDataset);
+        });
+        assertEquals(2, loads.get());
+        assertEquals(EnumSet.of(Permission.AddDataset), permissions);
+    }
+
+    @Test
+    public void testInvalidateAllAfterCompletion() {
+        TransactionSynchronizationRegistry registry = mock(TransactionSynchronizationRegistry.class);
+        when(registry.getTransactionKey()).thenReturn("transaction");
+        long generation = PermissionCache.getGeneration();
+
+        PermissionCache.invalidateAll(registry);
+        assertEquals(generation + 1, PermissionCache.getGeneration());
+
+        ArgumentCaptor<Synchronization> synchronization = ArgumentCaptor.forClass(Synchronization.class);
+        verify(registry).registerInterposedSynchronization(synchronization.capture());
+        synchronization.getValue().afterCompletion(Status.STATUS_COMMITTED);
+        assertEquals(generation + 2, PermissionCache.getGeneration());
+
+        PermissionCache.invalidateAll(null);
+        assertEquals(generation + 3, PermissionCache.getGeneration());
+    }
+
+    @Test
+    @JvmSetting(key = JvmSettings.PERMISSIONS_CACHE_TTL, value = "60")
+    public void testSharedCache() {
+        AtomicInteger loads = new AtomicInteger();
+        Dataverse dataverse = dataverse(3L);
+
+        new PermissionCache().getAssignedPermissions(ras, dataverse, () -> {
+            loads.incrementAndGet();
+            return EnumSet.of(Permission.AddDataset);
+        });
+        Set<Permission> permissions = new PermissionCache().getAssignedPermissions(ras, dataverse, () -> {
+            loads.incrementAndGet();
+            return EnumSet.noneOf(Permission.class);
+        });
+        assertEquals(1, loads.get());
+        assertEquals(EnumSet.of(Permission.AddDataset), permissions);
+        PermissionCache.invalidateAll();
+    }
+
+    @Test
+    public void testIsInReleasedVersion() {
+        DatasetVersion releasedVersion = new DatasetVersion();
+        releasedVersion.setId(10L);
+        List<FileMetadata> fileMetadatas = new ArrayList<>();
+        DataFile released = new DataFile();
+        released.setId(11L);
+        FileMetadata fileMetadata = new FileMetadata();
+        fileMetadata.setDataFile(released);
+        fileMetadatas.add(fileMetadata);
+        releasedVersion.setFileMetadatas(fileMetadatas);
+        DataFile added = new DataFile();
+        added.setId(12L);
+
+        PermissionCache cache = new PermissionCache();
+        assertTrue(cache.isInReleasedVersion(released, releasedVersion));
+        assertFalse(cache.isInReleasedVersion(added, releasedVersion));
+    }
+}
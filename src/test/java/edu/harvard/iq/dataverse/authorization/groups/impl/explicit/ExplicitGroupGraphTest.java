@@ -0,0 +1,62 @@
+package edu.harvard.iq.dataverse.authorization.groups.impl.explicit;
+
+import edu.harvard.iq.dataverse.authorization.groups.impl.builtin.AuthenticatedUsers;
+import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
+import edu.harvard.iq.dataverse.authorization.users.GuestUser;
+import edu.harvard.iq.dataverse.mocks.MocksFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExplicitGroupGraphTest {
+
+    private static ExplicitGroup group(long id) {
+        ExplicitGroup group = new ExplicitGroup();
+        group.setId(id);
+        return group;
+    }
+
+    @Test
+    public void testNestedMemberships() {
+        AuthenticatedUser user = MocksFactory.makeAuthenticatedUser("Jane", "Doe");
+        AuthenticatedUser outsider = MocksFactory.makeAuthenticatedUser("John", "Doe");
+
+        // 1 is in 2 and 3, 2 and 3 are in 4, 4 is in 5; 6 is on its own
+        Map<Long, Set<Long>> parents = new HashMap<>();
+        parents.put(1L, Set.of(2L, 3L));
+        parents.put(2L, Set.of(4L));
+        parents.put(3L, Set.of(4L));
+        parents.put(4L, Set.of(5L));
+        Map<Long, Set<Long>> userGroups = new HashMap<>();
+        userGroups.put(user.getId(), Set.of(1L));
+        Map<String, Set<Long>> assigneeGroups = new HashMap<>();
+        assigneeGroups.put(AuthenticatedUsers.get().getIdentifier(), Set.of(3L, 6L));
+        ExplicitGroupGraph sut = new ExplicitGroupGraph(parents, userGroups, assigneeGroups);
+
+        assertEquals(Set.of(1L), sut.findDirectGroupIds(user));
+        assertEquals(Set.of(2L, 3L), sut.findDirectGroupIds(group(1L)));
+        assertEquals(Set.of(1L, 2L, 3L, 4L, 5L), sut.findGroupIds(List.of(user)));
+        assertEquals(Set.of(3L, 4L, 5L, 6L), sut.findGroupIds(List.of(AuthenticatedUsers.get())));
+        assertEquals(Set.of(4L, 5L), sut.findGroupIds(List.of(group(3L))));
+        assertEquals(Set.of(1L, 2L, 3L, 4L, 5L, 6L), sut.findGroupIds(List.of(user, AuthenticatedUsers.get())));
+        assertTrue(sut.findGroupIds(List.of(outsider, GuestUser.get())).isEmpty());
+
+        assertEquals(Set.of(2L, 4L, 5L), sut.findClosure(Set.of(2L)));
+        assertEquals(Set.of(5L, 6L), sut.findClosure(Set.of(5L, 6L)));
+        assertTrue(sut.findClosure(Set.of()).isEmpty());
+    }
+
+    @Test
+    public void testCycle() {
+        Map<Long, Set<Long>> parents = new HashMap<>();
+        parents.put(1L, Set.of(2L));
+        parents.put(2L, Set.of(1L));
+        ExplicitGroupGraph sut = new ExplicitGroupGraph(parents, Map.of(), Map.of());
+
+        assertEquals(Set.of(1L, 2L), sut.findClosure(Set.of(1L)));
+        assertEquals(Set.of(1L, 2L), sut.findClosure(Set.of(2L)));
+    }
+}
@@ -0,0 +1,69 @@
+package edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress;
+
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IpAddress;
+import edu.harvard.iq.dataverse.authorization.groups.impl.ipaddress.ip.IpAddressRange;
+import edu.harvard.iq.dataverse.mocks.MocksFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IpRangeIndexTest {
+
+    private static IpGroup group(String alias, String... bottomsAndTops) {
+        IpGroup group = new IpGroup();
+        group.setId(MocksFactory.nextId());
+        group.setPersistedGroupAlias(alias);
+        group.setDisplayName(alias);
+        for (int i = 0; i < bottomsAndTops.length; i += 2) {
+            group.add(IpAddressRange.make(IpAddress.valueOf(bottomsAndTops[i]), IpAddress.valueOf(bottomsAndTops[i + 1])));
+        }
+        return group;
+    }
+
+    @Test
+    public void testFindGroupsContaining() {
+        IpGroup campus = group("campus", "10.0.0.0", "10.255.255.255", "fd00::", "fd00::ffff");
+        IpGroup lab = group("lab", "10.1.2.0", "10.1.2.255");
+        IpGroup library = group("library", "192.168.0.1", "192.168.0.1", "200.0.0.0", "200.0.0.10");
+        IpRangeIndex sut = new IpRangeIndex(List.of(campus, lab, library));
+
+        assertEquals(Set.of(campus.getId()), sut.findGroupIdsContaining(IpAddress.valueOf("10.0.0.1")));
+        assertEquals(Set.of(campus.getId(), lab.getId()), sut.findGroupIdsContaining(IpAddress.valueOf("10.1.2.3")));
+        assertEquals(Set.of(library.getId()), sut.findGroupIdsContaining(IpAddress.valueOf("192.168.0.1")));
+        assertEquals(Set.of(library.getId()), sut.findGroupIdsContaining(IpAddress.valueOf("200.0.0.10")));
+        assertEquals(Collections.emptySet(), sut.findGroupIdsContaining(IpAddress.valueOf("200.0.0.11")));
+        assertEquals(Collections.emptySet(), sut.findGroupIdsContaining(IpAddress.valueOf("9.255.255.255")));
+        assertEquals(Set.of(campus.getId()), sut.findGroupIdsContaining(IpAddress.valueOf("fd00::1234")));
+        assertEquals(Collections.emptySet(), sut.findGroupIdsContaining(IpAddress.valueOf("fd00::1:0")));
+    }
+
+    @Test
+    public void testAllAddresses() {
+        IpGroup all = group("all", "0.0.0.0", "255.255.255.255",
+                "0:0:0:0:0:0:0:0", "ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff");
+        IpRangeIndex sut = new IpRangeIndex(List.of(all));
+
+        assertEquals(Set.of(all.getId()), sut.findGroupIdsContaining(IpAddress.valueOf("1.2.3.4")));
+        assertEquals(Set.of(all.getId()), sut.findGroupIdsContaining(IpAddress.valueOf("255.255.255.255")));
+        assertEquals(Set.of(all.getId()), sut.findGroupIdsContaining(IpAddress.valueOf("ffff::1")));
+    }
+
+    @Test
+    public void testUnpersistedGroupsLeftOut() {
+        IpGroup unpersisted = group("new", "10.0.0.0", "10.255.255.255");
+        unpersisted.setId(null);
+        IpRangeIndex sut = new IpRangeIndex(List.of(unpersisted));
+        assertEquals(0, sut.size());
+        assertTrue(sut.findGroupIdsContaining(IpAddress.valueOf("10.0.0.1")).isEmpty());
+    }
+
+    @Test
+    public void testEmpty() {
+        IpRangeIndex sut = new IpRangeIndex(List.of());
+        assertTrue(sut.findGroupIdsContaining(IpAddress.valueOf("1.2.3.4")).isEmpty());
+        assertTrue(sut.findGroupIdsContaining(IpAddress.valueOf("::1")).isEmpty());
+    }
+}
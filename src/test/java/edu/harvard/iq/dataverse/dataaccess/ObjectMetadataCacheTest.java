@@ -0,0 +1,75 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ObjectMetadataCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private ObjectMetadataCache.ObjectInfo load(long size) {
+        loads.incrementAndGet();
+        return size < 0 ? ObjectMetadataCache.ObjectInfo.missing() : ObjectMetadataCache.ObjectInfo.of(size);
+    }
+
+    @Test
+    public void testCachedUntilInvalidated() throws IOException {
+        ObjectMetadataCache sut = new ObjectMetadataCache(60000);
+
+        assertEquals(10, sut.getObjectInfo("bucket/a", () -> load(10)).getSize());
+        assertEquals(10, sut.getObjectInfo("bucket/a", () -> load(20)).getSize());
+        assertFalse(sut.getObjectInfo("bucket/a.thumb48", () -> load(-1)).exists());
+        assertFalse(sut.getObjectInfo("bucket/a.thumb48", () -> load(5)).exists());
+        assertEquals(2, loads.get());
+
+        sut.invalidate("bucket/a.thumb48");
+        assertTrue(sut.getObjectInfo("bucket/a.thumb48", () -> load(5)).exists());
+        assertEquals(10, sut.getObjectInfo("bucket/a", () -> load(20)).getSize());
+        assertEquals(3, loads.get());
+
+        sut.invalidatePrefix("bucket/a.");
+        assertEquals(6, sut.getObjectInfo("bucket/a.thumb48", () -> load(6)).getSize());
+        assertEquals(10, sut.getObjectInfo("bucket/a", () -> load(20)).getSize());
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void testListingInvalidatedByWrites() throws IOException {
+        ObjectMetadataCache sut = new ObjectMetadataCache(60000);
+
+        assertEquals(List.of("thumb48"), sut.getListing("bucket/a.", () -> List.of("thumb48")));
+        assertEquals(List.of("thumb48"), sut.getListing("bucket/a.", () -> List.of("thumb48", "orig")));
+
+        sut.invalidate("bucket/a.orig");
+        assertEquals(List.of("thumb48", "orig"), sut.getListing("bucket/a.", () -> List.of("thumb48", "orig")));
+
+        sut.invalidate("bucket/b.orig");
+        assertEquals(List.of("thumb48", "orig"), sut.getListing("bucket/a.", () -> List.of()));
+
+        sut.invalidatePrefix("bucket/a.");
+        assertTrue(sut.getListing("bucket/a.", () -> List.of()).isEmpty());
+    }
+
+    @Test
+    public void testDisabled() throws IOException {
+        ObjectMetadataCache sut = new ObjectMetadataCache(0);
+
+        sut.getObjectInfo("bucket/a", () -> load(10));
+        assertEquals(20, sut.getObjectInfo("bucket/a", () -> load(20)).getSize());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testNotCachedWhenInvalidatedWhileLoading() throws IOException {
+        ObjectMetadataCache sut = new ObjectMetadataCache(60000);
+
+        sut.getObjectInfo("bucket/a", () -> {
+            sut.invalidate("bucket/a");
+            return load(10);
+        });
+        assertEquals(20, sut.getObjectInfo("bucket/a", () -> load(20)).getSize());
+    }
+}
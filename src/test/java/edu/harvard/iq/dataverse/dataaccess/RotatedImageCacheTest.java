@@ -0,0 +1,66 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RotatedImageCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private File image(String name, int size) throws IOException {
+        Path image = tempDir.resolve(name);
+        Files.write(image, new byte[size]);
+        return image.toFile();
+    }
+
+    @Test
+    public void testPutAndGet() throws IOException {
+        Path cacheDir = tempDir.resolve("rotated-images");
+        RotatedImageCache sut = new RotatedImageCache(cacheDir, 1000);
+
+        assertNull(sut.get("1-s3___bucket_abc-100.90d"));
+        File temp = image("tempRotatedImage.90d", 100);
+        assertFalse(sut.contains(temp));
+
+        File cached = sut.put("1-s3___bucket_abc-100.90d", temp);
+        assertFalse(temp.exists());
+        assertTrue(sut.contains(cached));
+        assertEquals(100, cached.length());
+        assertEquals(cached, sut.get("1-s3___bucket_abc-100.90d"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws IOException {
+        Path cacheDir = tempDir.resolve("rotated-images");
+        RotatedImageCache sut = new RotatedImageCache(cacheDir, 250);
+
+        File first = sut.put("1.90d", image("a", 100));
+        File second = sut.put("2.90d", image("b", 100));
+        long longAgo = System.currentTimeMillis() - RotatedImageCache.IN_USE_MS * 10;
+        first.setLastModified(longAgo);
+        second.setLastModified(longAgo + 1000);
+        sut.get("1.90d");
+
+        sut.put("3.90d", image("c", 100));
+        assertNotNull(sut.get("1.90d"));
+        assertNull(sut.get("2.90d"));
+        assertNotNull(sut.get("3.90d"));
+    }
+
+    @Test
+    public void testImagesInUseNotEvicted() throws IOException {
+        Path cacheDir = tempDir.resolve("rotated-images");
+        RotatedImageCache sut = new RotatedImageCache(cacheDir, 150);
+
+        sut.put("1.90d", image("a", 100));
+        sut.put("2.90d", image("b", 100));
+        assertNotNull(sut.get("1.90d"));
+        assertNotNull(sut.get("2.90d"));
+    }
+}
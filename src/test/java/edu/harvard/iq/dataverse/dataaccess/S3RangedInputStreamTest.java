@@ -0,0 +1,115 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class S3RangedInputStreamTest {
+
+    private static final int PART_SIZE = 16;
+
+    private final S3RangedInputStream.RangePool pool = new S3RangedInputStream.RangePool("test-ranged-get", 2, 8);
+
+    @Mock
+    private AmazonS3 s3client;
+
+    private static byte[] bytes(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    private void stubRangedGets(byte[] content) {
+        when(s3client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> {
+            GetObjectRequest request = invocation.getArgument(0);
+            long[] range = request.getRange();
+            S3Object object = new S3Object();
+            object.setObjectContent(new ByteArrayInputStream(Arrays.copyOfRange(content, (int) range[0], (int) range[1] + 1)));
+            return object;
+        });
+    }
+
+    @Test
+    public void testReadsInOrder() throws IOException {
+        byte[] content = bytes(PART_SIZE * 5 + 3);
+        stubRangedGets(content);
+
+        try (InputStream in = new S3RangedInputStream(s3client, "bucket", "key", content.length, PART_SIZE, 3, pool)) {
+            assertArrayEquals(content, in.readAllBytes());
+            assertEquals(-1, in.read());
+        }
+        verify(s3client, times(6)).getObject(any(GetObjectRequest.class));
+        assertEquals(8, pool.getAvailable());
+    }
+
+    @Test
+    public void testSharedBuffers() throws IOException {
+        byte[] content = bytes(PART_SIZE * 4);
+        stubRangedGets(content);
+        S3RangedInputStream.RangePool smallPool = new S3RangedInputStream.RangePool("test-ranged-get", 1, 3);
+
+        InputStream first = new S3RangedInputStream(s3client, "bucket", "key", content.length, PART_SIZE, 2, smallPool);
+        InputStream second = new S3RangedInputStream(s3client, "bucket", "key", content.length, PART_SIZE, 2, smallPool);
+        assertEquals(0, smallPool.getAvailable());
+        // the second stream got a single buffer, and reads through it
+        assertArrayEquals(content, second.readAllBytes());
+        second.close();
+        assertEquals(1, smallPool.getAvailable());
+
+        assertEquals(0, first.read());
+        first.close();
+        assertEquals(3, smallPool.getAvailable());
+    }
+
+    @Test
+    public void testSkip() throws IOException {
+        byte[] content = bytes(PART_SIZE * 8);
+        stubRangedGets(content);
+
+        try (InputStream in = new S3RangedInputStream(s3client, "bucket", "key", content.length, PART_SIZE, 2, pool)) {
+            assertEquals(0, in.read());
+            assertEquals(4, in.skip(4));
+            assertEquals(5, in.read());
+            assertEquals(PART_SIZE * 5, in.skip(PART_SIZE * 5));
+            assertArrayEquals(Arrays.copyOfRange(content, PART_SIZE * 5 + 6, content.length), in.readAllBytes());
+        }
+    }
+
+    @Test
+    public void testRetriesFailedRange() throws IOException {
+        byte[] content = bytes(PART_SIZE * 2);
+        S3Object object = new S3Object();
+        object.setObjectContent(new ByteArrayInputStream(content));
+        when(s3client.getObject(any(GetObjectRequest.class)))
+                .thenThrow(new SdkClientException("connection reset"))
+                .thenReturn(object);
+
+        try (InputStream in = new S3RangedInputStream(s3client, "bucket", "key", content.length, content.length, 1, pool)) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+        verify(s3client, times(2)).getObject(any(GetObjectRequest.class));
+    }
+
+    @Test
+    public void testFailedRange() {
+        when(s3client.getObject(any(GetObjectRequest.class))).thenThrow(new SdkClientException("no such key"));
+
+        InputStream in = new S3RangedInputStream(s3client, "bucket", "key", PART_SIZE, PART_SIZE, 1, pool);
+        assertThrows(IOException.class, in::read);
+    }
+}
@@ -0,0 +1,130 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class S3StreamingUploaderTest {
+
+    private static final int PART_SIZE = 16;
+
+    @Mock
+    private AmazonS3 s3client;
+
+    private final S3StreamingUploader.BufferPool pool = new S3StreamingUploader.BufferPool(PART_SIZE, 2);
+    private final Map<Integer, byte[]> uploadedParts = new ConcurrentHashMap<>();
+
+    private static byte[] bytes(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    private void stubMultipartUpload() {
+        InitiateMultipartUploadResult initiated = new InitiateMultipartUploadResult();
+        initiated.setUploadId("upload-1");
+        when(s3client.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class))).thenReturn(initiated);
+        when(s3client.uploadPart(any(UploadPartRequest.class))).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            assertEquals("upload-1", request.getUploadId());
+            uploadedParts.put(request.getPartNumber(), request.getInputStream().readAllBytes());
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag("etag-" + request.getPartNumber());
+            return result;
+        });
+    }
+
+    @Test
+    public void testSinglePart() throws IOException {
+        byte[] content = bytes(10);
+        ByteArrayOutputStream uploaded = new ByteArrayOutputStream();
+        when(s3client.putObject(eq("bucket"), eq("key"), any(InputStream.class), any(ObjectMetadata.class))).thenAnswer(invocation -> {
+            ObjectMetadata metadata = invocation.getArgument(3);
+            assertEquals(10, metadata.getContentLength());
+            uploaded.write(((InputStream) invocation.getArgument(2)).readAllBytes());
+            return null;
+        });
+
+        long size = new S3StreamingUploader(s3client, "bucket", pool).upload("key", new ByteArrayInputStream(content));
+
+        assertEquals(10, size);
+        assertArrayEquals(content, uploaded.toByteArray());
+        verify(s3client, never()).initiateMultipartUpload(any());
+        assertEquals(2, pool.getAvailable());
+    }
+
+    @Test
+    public void testMultipart() throws IOException {
+        stubMultipartUpload();
+        byte[] content = bytes(PART_SIZE * 4 + 5);
+
+        long size = new S3StreamingUploader(s3client, "bucket", pool).upload("key", new ByteArrayInputStream(content));
+
+        assertEquals(content.length, size);
+        ArgumentCaptor<CompleteMultipartUploadRequest> completed = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3client).completeMultipartUpload(completed.capture());
+        assertEquals(5, completed.getValue().getPartETags().size());
+        int partNumber = 1;
+        ByteArrayOutputStream uploaded = new ByteArrayOutputStream();
+        for (PartETag etag : completed.getValue().getPartETags()) {
+            assertEquals(partNumber, etag.getPartNumber());
+            uploaded.write(uploadedParts.get(partNumber++));
+        }
+        assertArrayEquals(content, uploaded.toByteArray());
+        assertEquals(2, pool.getAvailable());
+    }
+
+    @Test
+    public void testExactMultipleOfPartSize() throws IOException {
+        stubMultipartUpload();
+        byte[] content = bytes(PART_SIZE * 2);
+
+        long size = new S3StreamingUploader(s3client, "bucket", pool).upload("key", new ByteArrayInputStream(content));
+
+        assertEquals(content.length, size);
+        ArgumentCaptor<CompleteMultipartUploadRequest> completed = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3client).completeMultipartUpload(completed.capture());
+        assertEquals(2, completed.getValue().getPartETags().size());
+        assertEquals(2, pool.getAvailable());
+    }
+
+    @Test
+    public void testFailedPartAbortsUpload() {
+        InitiateMultipartUploadResult initiated = new InitiateMultipartUploadResult();
+        initiated.setUploadId("upload-2");
+        when(s3client.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class))).thenReturn(initiated);
+        when(s3client.uploadPart(any(UploadPartRequest.class))).thenThrow(new SdkClientException("part failed"));
+
+        S3StreamingUploader sut = new S3StreamingUploader(s3client, "bucket", pool);
+        assertThrows(IOException.class, () -> sut.upload("key", new ByteArrayInputStream(bytes(PART_SIZE * 3))));
+
+        verify(s3client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3client, never()).completeMultipartUpload(any());
+        assertEquals(2, pool.getAvailable());
+    }
+}
@@ -0,0 +1,74 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TabularColumnReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private File tabFile;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        tabFile = tempDir.resolve("test.tab").toFile();
+        Files.write(tabFile.toPath(), ("1\t2.5\t\"a\\tb\"\n"
+                + "-3\tinf\t\n"
+                + "\t-inf\t\"\"\n"
+                + "x\t0.1\t\"café\"\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testReadLongVector() throws IOException {
+        try (TabularColumnReader reader = new TabularColumnReader(tabFile, 3, 4)) {
+            TabularColumnReader.LongVector vector = reader.readLongVector(0);
+            assertArrayEquals(new Long[]{1L, -3L, null, null}, vector.toBoxedArray());
+            assertTrue(vector.isMissing(2));
+            assertEquals(2, vector.getMissing().cardinality());
+        }
+    }
+
+    @Test
+    public void testReadDoubleAndFloatVectors() throws IOException {
+        try (TabularColumnReader reader = new TabularColumnReader(tabFile, 3, 4)) {
+            assertArrayEquals(new Double[]{2.5, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0.1},
+                    reader.readDoubleVector(1).toBoxedArray());
+            assertArrayEquals(new Float[]{1f, -3f, null, null}, reader.readFloatVector(0).toBoxedArray());
+        }
+    }
+
+    @Test
+    public void testReadStringVector() throws IOException {
+        try (TabularColumnReader reader = new TabularColumnReader(tabFile, 3, 4)) {
+            assertArrayEquals(new String[]{"a\tb", null, "", "café"}, reader.readStringVector(2));
+            // going back to an earlier column:
+            assertArrayEquals(new String[]{"2.5", "inf", "-inf", "0.1"}, reader.readStringVector(1));
+        }
+    }
+
+    @Test
+    public void testWrongCaseCount() {
+        assertThrows(IOException.class, () -> new TabularColumnReader(tabFile, 3, 5));
+        assertThrows(IOException.class, () -> new TabularColumnReader(tabFile, 3, 3));
+    }
+
+    @Test
+    public void testColumnOutOfBounds() throws IOException {
+        try (TabularColumnReader reader = new TabularColumnReader(tabFile, 3, 4)) {
+            assertThrows(IOException.class, () -> reader.readDoubleVector(3));
+        }
+    }
+}
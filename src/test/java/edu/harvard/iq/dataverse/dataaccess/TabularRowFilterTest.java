@@ -0,0 +1,112 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import edu.harvard.iq.dataverse.datavariable.DataVariable;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TabularRowFilterTest {
+
+    private static List<DataVariable> variables() {
+        DataVariable year = new DataVariable();
+        year.setId(10L);
+        year.setName("year");
+        year.setFileOrder(0);
+        year.setTypeNumeric();
+        DataVariable country = new DataVariable();
+        country.setId(11L);
+        country.setName("country");
+        country.setFileOrder(1);
+        country.setTypeCharacter();
+        return Arrays.asList(year, country);
+    }
+
+    @Test
+    public void testParseRowRanges() {
+        TabularRowFilter filter = TabularRowFilter.parse("1000-1100", null, variables());
+        assertEquals(1000, filter.getFirstRow());
+        assertEquals(1100, filter.getLastRow());
+
+        filter = TabularRowFilter.parse("5-", null, variables());
+        assertEquals(5, filter.getFirstRow());
+        assertEquals(Integer.MAX_VALUE, filter.getLastRow());
+
+        filter = TabularRowFilter.parse("7", null, variables());
+        assertEquals(7, filter.getFirstRow());
+        assertEquals(7, filter.getLastRow());
+    }
+
+    @Test
+    public void testParseInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> TabularRowFilter.parse("0-10", null, variables()));
+        assertThrows(IllegalArgumentException.class, () -> TabularRowFilter.parse("10-5", null, variables()));
+        assertThrows(IllegalArgumentException.class, () -> TabularRowFilter.parse("a-b", null, variables()));
+        assertThrows(IllegalArgumentException.class, () -> TabularRowFilter.parse(null, "year=2020", variables()));
+        assertThrows(IllegalArgumentException.class, () -> TabularRowFilter.parse(null, "month:eq:1", variables()));
+        assertThrows(IllegalArgumentException.class, () -> TabularRowFilter.parse(null, "year:like:2020", variables()));
+        assertThrows(IllegalArgumentException.class, () -> TabularRowFilter.parse(null, "year:eq:recent", variables()));
+    }
+
+    @Test
+    public void testNumericPredicate() {
+        TabularRowFilter filter = TabularRowFilter.parse(null, "year:eq:2020", variables());
+        assertTrue(filter.matches(new String[]{"2020", "\"NO\""}));
+        assertTrue(filter.matches(new String[]{"2020.0", "\"NO\""}));
+        assertFalse(filter.matches(new String[]{"2019", "\"NO\""}));
+        // missing values never match:
+        assertFalse(filter.matches(new String[]{"", "\"NO\""}));
+
+        filter = TabularRowFilter.parse(null, "v10:ge:2000", variables());
+        assertTrue(filter.matches(new String[]{"2020", ""}));
+        assertTrue(filter.matches(new String[]{"inf", ""}));
+        assertFalse(filter.matches(new String[]{"1999", ""}));
+    }
+
+    @Test
+    public void testCharacterPredicate() {
+        TabularRowFilter filter = TabularRowFilter.parse(null, "country:eq:NO", variables());
+        assertTrue(filter.matches(new String[]{"2020", "\"NO\""}));
+        assertFalse(filter.matches(new String[]{"2020", "\"SE\""}));
+
+        filter = TabularRowFilter.parse(null, "country:ne:NO", variables());
+        assertTrue(filter.matches(new String[]{"2020", "\"SE\""}));
+        assertFalse(filter.matches(new String[]{"2020", ""}));
+    }
+
+    @Test
+    public void testNoPredicate() {
+        assertTrue(TabularRowFilter.parse("1-2", null, variables()).matches(new String[]{"", ""}));
+    }
+
+    @Test
+    public void testSkipToDoesNotReadSkippedBytes() throws IOException {
+        int[] bytesRead = {0};
+        ByteArrayInputStream in = new ByteArrayInputStream("0123456789".getBytes()) {
+            @Override
+            public synchronized long skip(long n) {
+                // short skips, as streams are allowed to do
+                return super.skip(Math.min(n, 3));
+            }
+
+            @Override
+            public synchronized int read() {
+                bytesRead[0]++;
+                return super.read();
+            }
+        };
+        TabularRowFilter.skipTo(in, 7);
+        assertEquals(0, bytesRead[0]);
+        assertEquals('7', in.read());
+
+        assertThrows(EOFException.class, () -> TabularRowFilter.skipTo(in, 5));
+    }
+}
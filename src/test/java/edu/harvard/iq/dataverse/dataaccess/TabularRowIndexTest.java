@@ -0,0 +1,44 @@
+package edu.harvard.iq.dataverse.dataaccess;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TabularRowIndexTest {
+
+    private static final byte[] TAB_FILE = "1\ta\n22\tbb\n333\tccc\n4444\tdddd\n55555\teeeee\n".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testBuild() throws IOException {
+        TabularRowIndex index = TabularRowIndex.build(new ByteArrayInputStream(TAB_FILE), 5, 2);
+        assertEquals(0, index.getIndexedRow(1));
+        assertEquals(0L, index.getOffset(1));
+        assertEquals(2, index.getIndexedRow(3));
+        assertEquals(10L, index.getOffset(3));
+        assertEquals(4, index.getIndexedRow(4));
+        assertEquals(28L, index.getOffset(4));
+        assertThrows(IndexOutOfBoundsException.class, () -> index.getOffset(6));
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        TabularRowIndex index = TabularRowIndex.build(new ByteArrayInputStream(TAB_FILE), 5, 2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.write(out);
+        TabularRowIndex copy = TabularRowIndex.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(2, copy.getInterval());
+        assertEquals(index.getOffset(3), copy.getOffset(3));
+        assertEquals(index.getOffset(4), copy.getOffset(4));
+    }
+
+    @Test
+    public void testTooFewRows() {
+        assertThrows(IOException.class, () -> TabularRowIndex.build(new ByteArrayInputStream(TAB_FILE), 7, 2));
+    }
+}
@@ -7,6 +7,7 @@ import edu.harvard.iq.dataverse.DataverseLinkingServiceBean;
 import edu.harvard.iq.dataverse.DataverseServiceBean;
 import edu.harvard.iq.dataverse.Guestbook;
 import edu.harvard.iq.dataverse.MetadataBlock;
+import edu.harvard.iq.dataverse.PermissionServiceBean;
 import edu.harvard.iq.dataverse.Template;
 import edu.harvard.iq.dataverse.authorization.users.AuthenticatedUser;
 import edu.harvard.iq.dataverse.engine.DataverseEngine;
@@ -229,12 +230,17 @@ public class MoveDataverseCommandTest {
                     }
 
                     @Override
-                    public void indexDatasetInNewTransaction(Long id){
+                    public boolean indexDatasetInNewTransaction(Long id){
+                        return true;
                     }                    
                 };
 
             }
             @Override
+            public PermissionServiceBean permissions() {
+                return new PermissionServiceBean();
+            }
+            @Override
             public IndexBatchServiceBean indexBatch(){
                 return new IndexBatchServiceBean(){
                     @Override
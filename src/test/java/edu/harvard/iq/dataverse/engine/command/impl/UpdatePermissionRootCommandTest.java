@@ -2,6 +2,7 @@ package edu.harvard.iq.dataverse.engine.command.impl;
 
 import edu.harvard.iq.dataverse.Dataverse;
 import edu.harvard.iq.dataverse.DataverseServiceBean;
+import edu.harvard.iq.dataverse.PermissionServiceBean;
 import edu.harvard.iq.dataverse.engine.DataverseEngine;
 import edu.harvard.iq.dataverse.mocks.MocksFactory;
 import edu.harvard.iq.dataverse.engine.TestCommandContext;
@@ -22,6 +23,7 @@ public class UpdatePermissionRootCommandTest {
     private DataverseServiceBean mockBean;
     TestCommandContext testCommandContext;
     boolean serviceBeanCalled;
+    boolean permissionCacheInvalidated;
     
     @BeforeEach
     public void setUp() {
@@ -42,8 +44,18 @@ public class UpdatePermissionRootCommandTest {
             public DataverseServiceBean dataverses() {
                 return mockBean;
             }
+            @Override
+            public PermissionServiceBean permissions() {
+                return new PermissionServiceBean() {
+                    @Override
+                    public void invalidatePermissionCache() {
+                        permissionCacheInvalidated = true;
+                    }
+                };
+            }
         };
         serviceBeanCalled = false;
+        permissionCacheInvalidated = false;
     }
     
     @Test
@@ -65,6 +77,7 @@ public class UpdatePermissionRootCommandTest {
         
         assertTrue( result.isPermissionRoot() );
         assertFalse( serviceBeanCalled );
+        assertFalse( permissionCacheInvalidated );
     }
     
     @Test
@@ -78,6 +91,7 @@ public class UpdatePermissionRootCommandTest {
         
         assertTrue(result.isPermissionRoot() );
         assertTrue(serviceBeanCalled );
+        assertTrue(permissionCacheInvalidated );
         
         dv.setPermissionRoot( true );
         
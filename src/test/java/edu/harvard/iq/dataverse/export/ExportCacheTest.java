@@ -0,0 +1,85 @@
+package edu.harvard.iq.dataverse.export;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ExportCacheTest {
+
+    @Test
+    public void testHitsAndMisses() {
+        ExportCache cache = new ExportCache(1000, 60);
+        byte[] export = "<oai_dc/>".getBytes();
+
+        assertNull(cache.get(1L, "oai_dc", "100"));
+        cache.put(1L, "oai_dc", "100", export);
+        assertArrayEquals(export, cache.get(1L, "oai_dc", "100"));
+        // a different version (i.e. the dataset was re-exported) is a miss:
+        assertNull(cache.get(1L, "oai_dc", "200"));
+        assertNull(cache.get(1L, "dataverse_json", "100"));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(export.length, cache.getSize());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        ExportCache cache = new ExportCache(1000, 60);
+        cache.put(1L, "oai_dc", "1", new byte[200]);
+        cache.put(2L, "oai_dc", "1", new byte[200]);
+        cache.put(3L, "oai_dc", "1", new byte[200]);
+        cache.put(4L, "oai_dc", "1", new byte[200]);
+        cache.get(1L, "oai_dc", "1");
+        cache.put(5L, "oai_dc", "1", new byte[250]);
+
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get(2L, "oai_dc", "1"));
+        assertEquals(200, cache.get(1L, "oai_dc", "1").length);
+        assertEquals(850, cache.getSize());
+    }
+
+    @Test
+    public void testTooLargeNotCached() {
+        ExportCache cache = new ExportCache(1000, 60);
+        cache.put(1L, "ddi", "1", new byte[251]);
+        assertNull(cache.get(1L, "ddi", "1"));
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    public void testInvalidate() {
+        ExportCache cache = new ExportCache(1000, 60);
+        cache.put(1L, "oai_dc", "1", new byte[10]);
+        cache.put(1L, "ddi", "1", new byte[10]);
+        cache.put(2L, "ddi", "1", new byte[10]);
+
+        cache.invalidate(1L, "ddi");
+        assertNull(cache.get(1L, "ddi", "1"));
+        assertEquals(2, cache.getEntryCount());
+
+        cache.invalidate(1L);
+        assertNull(cache.get(1L, "oai_dc", "1"));
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(10, cache.getSize());
+    }
+
+    @Test
+    public void testExpiry() {
+        ExportCache cache = new ExportCache(1000, -1);
+        cache.put(1L, "oai_dc", "1", new byte[10]);
+        assertNull(cache.get(1L, "oai_dc", "1"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testDisabled() {
+        ExportCache cache = new ExportCache(0, 60);
+        assertFalse(cache.isEnabled());
+        cache.put(1L, "oai_dc", "1", new byte[0]);
+        assertEquals(0, cache.getEntryCount());
+    }
+}
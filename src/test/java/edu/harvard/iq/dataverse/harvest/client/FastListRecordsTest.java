@@ -0,0 +1,133 @@
+package edu.harvard.iq.dataverse.harvest.client;
+
+import edu.harvard.iq.dataverse.harvest.client.FastListRecords.HarvestedRecord;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FastListRecordsTest {
+
+    private static final String BASE_URL = "https://demo.example.edu/oai";
+    private static final String OAI_NS = "http://www.openarchives.org/OAI/2.0/";
+    private static final String OAI_DC_NS = "http://www.openarchives.org/OAI/2.0/oai_dc/";
+    private static final String DC_NS = "http://purl.org/dc/elements/1.1/";
+
+    private final FastListRecords sut = new FastListRecords(BASE_URL, "oai_dc", "trees", null, null, null);
+
+    private static InputStream response(String verbContent) {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<OAI-PMH xmlns=\"" + OAI_NS + "\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n"
+                + "<responseDate>2023-11-01T12:00:00Z</responseDate>\n"
+                + "<request verb=\"ListRecords\">" + BASE_URL + "</request>\n"
+                + verbContent
+                + "</OAI-PMH>";
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final String RECORD = ""
+            + "<record>\n"
+            + "<header><identifier>doi:10.5072/FK2/AAAAAA</identifier><datestamp>2023-10-30T08:15:00Z</datestamp><setSpec>trees</setSpec></header>\n"
+            + "<metadata>\n"
+            + "<oai_dc:dc>\n"
+            + "<dc:title>Pine &amp; Oak</dc:title>\n"
+            + "<dc:creator>Doe, Jane</dc:creator>\n"
+            + "<dc:subject xsi:type=\"keyword\">Forestry</dc:subject>\n"
+            + "</oai_dc:dc>\n"
+            + "</metadata>\n"
+            + "</record>\n";
+
+    private static final String DELETED_RECORD = ""
+            + "<record>\n"
+            + "<header status=\"deleted\"><identifier>doi:10.5072/FK2/BBBBBB</identifier><datestamp>2023-10-31</datestamp></header>\n"
+            + "</record>\n";
+
+    @Test
+    public void testMetadataCopiedWithNamespaces() throws Exception {
+        List<HarvestedRecord> records = sut.readPage(response(""
+                + "<ListRecords xmlns:oai_dc=\"" + OAI_DC_NS + "\" xmlns:dc=\"" + DC_NS + "\">\n"
+                + RECORD
+                + "</ListRecords>\n"), BASE_URL);
+
+        assertEquals(1, records.size());
+        HarvestedRecord record = records.get(0);
+        assertEquals("doi:10.5072/FK2/AAAAAA", record.getIdentifier());
+        assertEquals(Instant.parse("2023-10-30T08:15:00Z"), record.getDateStamp().toInstant());
+        assertFalse(record.isDeleted());
+
+        // The copy is a document of its own, with the namespaces declared on
+        // the enclosing elements re-declared on it:
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Element dc = factory.newDocumentBuilder().parse(new InputSource(new StringReader(record.getMetadata()))).getDocumentElement();
+        assertEquals(OAI_DC_NS, dc.getNamespaceURI());
+        assertEquals("dc", dc.getLocalName());
+        assertEquals("Pine & Oak", dc.getElementsByTagNameNS(DC_NS, "title").item(0).getTextContent());
+        assertEquals("Doe, Jane", dc.getElementsByTagNameNS(DC_NS, "creator").item(0).getTextContent());
+        Element subject = (Element) dc.getElementsByTagNameNS(DC_NS, "subject").item(0);
+        assertEquals("keyword", subject.getAttributeNS("http://www.w3.org/2001/XMLSchema-instance", "type"));
+    }
+
+    @Test
+    public void testDeletedRecord() throws IOException {
+        List<HarvestedRecord> records = sut.readPage(response(""
+                + "<ListRecords xmlns:oai_dc=\"" + OAI_DC_NS + "\" xmlns:dc=\"" + DC_NS + "\">\n"
+                + DELETED_RECORD
+                + RECORD
+                + "</ListRecords>\n"), BASE_URL);
+
+        assertEquals(2, records.size());
+        HarvestedRecord deleted = records.get(0);
+        assertEquals("doi:10.5072/FK2/BBBBBB", deleted.getIdentifier());
+        assertEquals(Instant.parse("2023-10-31T00:00:00Z"), deleted.getDateStamp().toInstant());
+        assertTrue(deleted.isDeleted());
+        assertNull(deleted.getMetadata());
+        assertFalse(records.get(1).isDeleted());
+    }
+
+    @Test
+    public void testResumptionToken() throws IOException {
+        assertTrue(sut.hasMoreRecords());
+        assertEquals(BASE_URL + "?verb=ListRecords&metadataPrefix=oai_dc&set=trees", sut.getRequestURL());
+
+        sut.readPage(response(""
+                + "<ListRecords xmlns:oai_dc=\"" + OAI_DC_NS + "\" xmlns:dc=\"" + DC_NS + "\">\n"
+                + RECORD
+                + "<resumptionToken completeListSize=\"2\" cursor=\"0\">trees/1 2</resumptionToken>\n"
+                + "</ListRecords>\n"), BASE_URL);
+        assertTrue(sut.hasMoreRecords());
+        assertEquals(BASE_URL + "?verb=ListRecords&resumptionToken=trees%2F1+2", sut.getRequestURL());
+
+        sut.readPage(response(""
+                + "<ListRecords xmlns:oai_dc=\"" + OAI_DC_NS + "\" xmlns:dc=\"" + DC_NS + "\">\n"
+                + DELETED_RECORD
+                + "<resumptionToken completeListSize=\"2\" cursor=\"1\"/>\n"
+                + "</ListRecords>\n"), BASE_URL);
+        assertFalse(sut.hasMoreRecords());
+    }
+
+    @Test
+    public void testNoRecordsMatch() throws IOException {
+        List<HarvestedRecord> records = sut.readPage(response(
+                "<error code=\"noRecordsMatch\">No records match the request</error>\n"), BASE_URL);
+
+        assertTrue(records.isEmpty());
+        assertFalse(sut.hasMoreRecords());
+    }
+
+    @Test
+    public void testOtherErrors() {
+        IOException ioex = assertThrows(IOException.class, () -> sut.readPage(response(
+                "<error code=\"badResumptionToken\">Expired token</error>\n"), BASE_URL));
+        assertTrue(ioex.getMessage().contains("badResumptionToken"));
+        assertFalse(sut.hasMoreRecords());
+    }
+}
@@ -0,0 +1,35 @@
+package edu.harvard.iq.dataverse.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CharacterFrequencyTableTest {
+
+    @Test
+    public void testFrequencies() {
+        String[] values = {"Male", "Female", null, "Male", "", "Male", "Aa", "BB"};
+
+        CharacterFrequencyTable table = CharacterFrequencyTable.ofStrings(values);
+
+        assertEquals(3, table.getCount("Male"));
+        assertEquals(1, table.getCount("Female"));
+        assertEquals(1, table.getCount(""));
+        // "Aa" and "BB" have the same hash code:
+        assertEquals(1, table.getCount("Aa"));
+        assertEquals(1, table.getCount("BB"));
+        assertEquals(0, table.getCount(null));
+        assertEquals(0, table.getCount("Other"));
+        assertEquals(5, table.size());
+    }
+
+    @Test
+    public void testManyDistinctValues() {
+        CharacterFrequencyTable table = new CharacterFrequencyTable();
+        for (int i = 0; i < 50000; i++) {
+            table.add("value" + (i % 10000));
+        }
+        assertEquals(10000, table.size());
+        assertEquals(5, table.getCount("value9999"));
+    }
+}
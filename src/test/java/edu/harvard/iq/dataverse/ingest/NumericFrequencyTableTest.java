@@ -0,0 +1,44 @@
+package edu.harvard.iq.dataverse.ingest;
+
+import java.util.BitSet;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class NumericFrequencyTableTest {
+
+    @Test
+    public void testFloatFrequencies() {
+        float[] values = {1f, 2f, 2f, Float.NaN, 0f, -0f, 1f, 1f};
+        BitSet missing = new BitSet();
+        missing.set(7);
+
+        NumericFrequencyTable table = NumericFrequencyTable.ofFloats(values, missing);
+
+        assertEquals(2, table.getFloatCount(1f));
+        assertEquals(2, table.getFloatCount(2f));
+        assertEquals(1, table.getFloatCount(Float.NaN));
+        // (same as Float.equals(), 0.0 and -0.0 are counted separately)
+        assertEquals(1, table.getFloatCount(0f));
+        assertEquals(1, table.getFloatCount(-0f));
+        assertEquals(0, table.getFloatCount(3f));
+        assertEquals(5, table.size());
+    }
+
+    @Test
+    public void testManyDistinctValues() {
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (i % 25000) * 31L - 100000;
+        }
+
+        NumericFrequencyTable table = NumericFrequencyTable.ofLongs(values, null);
+
+        assertEquals(25000, table.size());
+        for (int i = 0; i < 25000; i++) {
+            assertEquals(4, table.getCount(i * 31L - 100000));
+        }
+        assertEquals(0, table.getCount(1));
+    }
+}
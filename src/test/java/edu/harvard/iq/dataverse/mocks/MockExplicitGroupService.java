@@ -3,7 +3,9 @@ package edu.harvard.iq.dataverse.mocks;
 import edu.harvard.iq.dataverse.authorization.RoleAssignee;
 import edu.harvard.iq.dataverse.authorization.groups.impl.explicit.ExplicitGroup;
 import edu.harvard.iq.dataverse.authorization.groups.impl.explicit.ExplicitGroupServiceBean;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import static java.util.stream.Collectors.toSet;
@@ -27,6 +29,22 @@ public class MockExplicitGroupService extends ExplicitGroupServiceBean {
                 .filter( g -> g.getDirectMembers().contains(ra) )
                 .collect(toSet());
     }
+
+    @Override
+    public Set<ExplicitGroup> findGroups(Collection<? extends RoleAssignee> ras) {
+        Set<ExplicitGroup> retVal = new HashSet<>();
+        Set<RoleAssignee> perimeter = new HashSet<>(ras);
+        while ( ! perimeter.isEmpty() ) {
+            RoleAssignee next = perimeter.iterator().next();
+            perimeter.remove(next);
+            findDirectlyContainingGroups(next).forEach( g -> {
+                if ( retVal.add(g) ) {
+                    perimeter.add(g);
+                }
+            });
+        }
+        return retVal;
+    }
     
     
 }
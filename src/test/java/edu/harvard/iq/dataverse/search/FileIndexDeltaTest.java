@@ -0,0 +1,62 @@
+package edu.harvard.iq.dataverse.search;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileIndexDeltaTest {
+
+    private static SolrInputDocument fileDoc(String id, String name, String parentCitation) {
+        SolrInputDocument doc = new SolrInputDocument();
+        doc.addField(SearchFields.ID, id);
+        doc.addField(SearchFields.NAME, name);
+        doc.addField(SearchFields.PARENT_CITATION, parentCitation);
+        return doc;
+    }
+
+    @Test
+    public void testFingerprint() {
+        String fingerprint = FileIndexDelta.fingerprint(fileDoc("datafile_1", "data.csv", "Citation"), "");
+        assertEquals(fingerprint, FileIndexDelta.fingerprint(fileDoc("datafile_1", "data.csv", "Citation"), ""));
+        assertNotEquals(fingerprint, FileIndexDelta.fingerprint(fileDoc("datafile_1", "data2.csv", "Citation"), ""));
+        assertNotEquals(fingerprint, FileIndexDelta.fingerprint(fileDoc("datafile_1", "data.csv", "Citation"), "fullText:100"));
+        assertNotEquals(fingerprint, FileIndexDelta.fingerprint(fileDoc("datafile_1", "data.csv", "New citation"), ""));
+    }
+
+    @Test
+    public void testKeepAndStale() {
+        String fingerprint = FileIndexDelta.fingerprint(fileDoc("datafile_1", "data.csv", "Citation"), "");
+        String parentChanged = FileIndexDelta.fingerprint(fileDoc("datafile_1", "data.csv", "New citation"), "");
+        String fileChanged = FileIndexDelta.fingerprint(fileDoc("datafile_1", "data2.csv", "Citation"), "");
+        Map<String, String> indexed = new HashMap<>();
+        indexed.put("datafile_1", fingerprint);
+        indexed.put("datafile_1_draft", fingerprint);
+        indexed.put("datafile_2", null);
+        indexed.put("datafile_3_draft", "outdated");
+        FileIndexDelta delta = new FileIndexDelta(indexed);
+
+        assertEquals(FileIndexDelta.Change.NONE, delta.keep("datafile_1", fingerprint));
+        assertEquals(FileIndexDelta.Change.PARENT, delta.keep("datafile_1_draft", parentChanged));
+        assertEquals(FileIndexDelta.Change.FILE, delta.keep("datafile_2", fileChanged));
+        assertEquals(FileIndexDelta.Change.FILE, delta.keep("datafile_4", fingerprint));
+        assertEquals(1, delta.getUnchangedCount());
+        assertEquals(1, delta.getParentUpdatedCount());
+        assertEquals(List.of("datafile_3_draft"), delta.getStaleIds());
+    }
+
+    @Test
+    public void testParentUpdate() {
+        SolrInputDocument doc = fileDoc("datafile_1_draft", "data.csv", "New citation");
+        String fingerprint = FileIndexDelta.fingerprint(doc, "");
+        SolrInputDocument update = FileIndexDelta.parentUpdate(doc, fingerprint);
+
+        assertEquals("datafile_1_draft", update.getFieldValue(SearchFields.ID));
+        assertNull(update.getField(SearchFields.NAME));
+        assertEquals(Map.of("set", List.of("New citation")), update.getFieldValue(SearchFields.PARENT_CITATION));
+        assertNull(((Map<?, ?>) update.getFieldValue(SearchFields.PARENT_NAME)).get("set"));
+        assertEquals(Map.of("set", fingerprint), update.getFieldValue(SearchFields.FILE_INDEX_FINGERPRINT));
+    }
+}
@@ -0,0 +1,57 @@
+package edu.harvard.iq.dataverse.search;
+
+import jakarta.json.JsonObject;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexBatchProgressTest {
+
+    @Test
+    public void testNotStarted() {
+        JsonObject json = new IndexBatchProgress().toJson().build();
+        assertFalse(json.getBoolean("running"));
+        assertFalse(json.containsKey("datasets"));
+    }
+
+    @Test
+    public void testCounts() {
+        IndexBatchProgress progress = new IndexBatchProgress();
+        progress.start(2);
+        progress.dataverseIndexed();
+        progress.dataverseFailed();
+        progress.startDatasets(10, 4);
+        assertEquals(1, progress.datasetIndexed());
+        assertEquals(2, progress.datasetIndexed());
+        assertEquals(3, progress.datasetFailed());
+        assertTrue(progress.isRunning());
+
+        JsonObject json = progress.toJson().build();
+        assertTrue(json.getBoolean("running"));
+        assertEquals(4, json.getInt("threads"));
+        assertEquals(1, json.getJsonObject("dataverses").getInt("indexed"));
+        assertEquals(1, json.getJsonObject("dataverses").getInt("failed"));
+        assertEquals(10, json.getJsonObject("datasets").getInt("total"));
+        assertEquals(2, json.getJsonObject("datasets").getInt("indexed"));
+        assertEquals(1, json.getJsonObject("datasets").getInt("failed"));
+
+        progress.finish();
+        assertFalse(progress.isRunning());
+        assertEquals(0, progress.getEstimatedSecondsLeft());
+        assertTrue(progress.toJson().build().containsKey("endTime"));
+    }
+
+    @Test
+    public void testRestartResetsCounts() {
+        IndexBatchProgress progress = new IndexBatchProgress();
+        progress.start(1);
+        progress.startDatasets(5, 1);
+        progress.datasetIndexed();
+        progress.finish();
+
+        progress.start(0);
+        assertTrue(progress.isRunning());
+        assertEquals(0, progress.getDatasetsTotal());
+        assertEquals(0.0, progress.getDatasetsPerSecond());
+        assertEquals(-1, progress.getEstimatedSecondsLeft());
+    }
+}
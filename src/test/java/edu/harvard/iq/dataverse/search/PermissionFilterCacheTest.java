@@ -0,0 +1,54 @@
+package edu.harvard.iq.dataverse.search;
+
+import edu.harvard.iq.dataverse.PermissionCache;
+import edu.harvard.iq.dataverse.settings.JvmSettings;
+import edu.harvard.iq.dataverse.util.testing.JvmSetting;
+import edu.harvard.iq.dataverse.util.testing.LocalJvmSettings;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+@LocalJvmSettings
+public class PermissionFilterCacheTest {
+
+    @Test
+    @JvmSetting(key = JvmSettings.PERMISSIONS_SEARCH_FILTER_TTL, value = "60")
+    public void testCachedUntilInvalidated() {
+        AtomicInteger builds = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            String filter = PermissionFilterCache.get("@cached@127.0.0.1", () -> {
+                builds.incrementAndGet();
+                return " OR group_builtIn/authenticated-users";
+            });
+            assertEquals(" OR group_builtIn/authenticated-users", filter);
+        }
+        assertEquals(1, builds.get());
+
+        PermissionFilterCache.get("@cached@10.0.0.1", () -> {
+            builds.incrementAndGet();
+            return "";
+        });
+        assertEquals(2, builds.get());
+
+        PermissionCache.invalidateAll();
+        String filter = PermissionFilterCache.get("@cached@127.0.0.1", () -> {
+            builds.incrementAndGet();
+            return " OR group_1-explicitGroup";
+        });
+        assertEquals(3, builds.get());
+        assertEquals(" OR group_1-explicitGroup", filter);
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        AtomicInteger builds = new AtomicInteger();
+        PermissionFilterCache.get("@disabled@127.0.0.1", () -> "" + builds.incrementAndGet());
+        assertEquals("2", PermissionFilterCache.get("@disabled@127.0.0.1", () -> "" + builds.incrementAndGet()));
+    }
+
+    @Test
+    public void testStats() {
+        PermissionFilterCache.recordSearch(2000000L, 10000000L, 5);
+        assertTrue(PermissionFilterCache.getStats().build().getJsonNumber("searches").longValue() > 0);
+    }
+}
@@ -5,7 +5,9 @@ import edu.harvard.iq.dataverse.settings.SettingsServiceBean;
 import edu.harvard.iq.dataverse.util.SystemConfig;
 import edu.harvard.iq.dataverse.util.testing.JvmSetting;
 import edu.harvard.iq.dataverse.util.testing.LocalJvmSettings;
+import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.common.SolrInputDocument;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,7 +15,13 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 @LocalJvmSettings
 @ExtendWith(MockitoExtension.class)
@@ -58,4 +66,52 @@ class SolrClientServiceTest {
         HttpSolrClient client = (HttpSolrClient) clientService.getSolrClient();
         assertEquals(url, client.getBaseURL());
     }
-}
\ No newline at end of file
+    
+    @Test
+    void testCommitByDefault() throws Exception {
+        // given
+        clientService.init();
+        SolrClient solrClient = mock(SolrClient.class);
+        clientService.setSolrClient(solrClient);
+        List<SolrInputDocument> docs = List.of(new SolrInputDocument());
+        
+        // when
+        clientService.add(docs);
+        clientService.commit();
+        
+        // then
+        verify(solrClient).add(docs);
+        verify(solrClient).commit(true, true, false);
+        assertEquals(1, clientService.getCommitStats().build().getInt("commitsIssued"));
+        assertEquals(0, clientService.getCommitStats().build().getInt("commitsDeferred"));
+    }
+    
+    @Test
+    @JvmSetting(key = JvmSettings.SOLR_COMMIT_WITHIN, value = "2000")
+    @JvmSetting(key = JvmSettings.SOLR_SOFT_COMMIT, value = "true")
+    void testCommitWithin() throws Exception {
+        // given
+        clientService.init();
+        SolrClient solrClient = mock(SolrClient.class);
+        clientService.setSolrClient(solrClient);
+        List<SolrInputDocument> docs = List.of(new SolrInputDocument());
+        
+        // when
+        clientService.add(docs);
+        clientService.deleteById(List.of("dataset_1"));
+        clientService.commit();
+        
+        // then
+        verify(solrClient).add(docs, 2000);
+        verify(solrClient).deleteById(List.of("dataset_1"), 2000);
+        verify(solrClient, never()).commit(anyBoolean(), anyBoolean(), anyBoolean());
+        assertEquals(1, clientService.getCommitStats().build().getInt("commitsDeferred"));
+        
+        // when
+        clientService.commitNow();
+        
+        // then
+        verify(solrClient).commit(true, true, true);
+        assertEquals(1, clientService.getCommitStats().build().getInt("commitsIssued"));
+    }
+}
@@ -119,4 +119,36 @@ class SiteMapUtilTest {
 
     }
 
+    @Test
+    void testUpdateSiteMapWithIndex() throws IOException, SAXException {
+        // given
+        Path sitemapDir = tempDocroot.resolve("sitemap");
+        Files.createDirectories(sitemapDir);
+        // left over from an earlier, larger sitemap:
+        Files.writeString(sitemapDir.resolve("sitemap9.xml"), "stale");
+
+        // when
+        SiteMapUtil.updateSiteMap(writer -> {
+            for (int i = 1; i <= 5; i++) {
+                writer.addUrl(SiteMapUtil.getDataverseUrl("dv" + i), new Date());
+            }
+        }, 2);
+
+        // then
+        String pathToIndex = sitemapDir.resolve("sitemap.xml").toString();
+        assertTrue(XmlValidator.validateXmlSchema(pathToIndex, new URL("https://www.sitemaps.org/schemas/sitemap/0.9/siteindex.xsd")));
+        String indexString = Files.readString(Paths.get(pathToIndex));
+        assertTrue(indexString.contains("/sitemap/sitemap1.xml"));
+        assertTrue(indexString.contains("/sitemap/sitemap3.xml"));
+        assertFalse(indexString.contains("/sitemap/sitemap4.xml"));
+
+        for (int part = 1; part <= 3; part++) {
+            String pathToPart = sitemapDir.resolve("sitemap" + part + ".xml").toString();
+            assertTrue(XmlValidator.validateXmlSchema(pathToPart, new URL("https://www.sitemaps.org/schemas/sitemap/0.9/sitemap.xsd")));
+        }
+        assertTrue(Files.readString(sitemapDir.resolve("sitemap3.xml")).contains("/dataverse/dv5"));
+        assertFalse(Files.exists(sitemapDir.resolve("sitemap9.xml")));
+        assertFalse(Files.exists(sitemapDir.resolve(SiteMapUtil.SITEMAP_FILENAME_STAGED)));
+    }
+
 }
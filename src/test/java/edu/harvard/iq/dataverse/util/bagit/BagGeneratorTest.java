@@ -0,0 +1,53 @@
+package edu.harvard.iq.dataverse.util.bagit;
+
+import edu.harvard.iq.dataverse.DataFile.ChecksumType;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.compress.parallel.InputStreamSupplier;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BagGeneratorTest {
+
+    private static final byte[] CONTENT = "Some data file content".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testHashComputedWhileRead() throws IOException {
+        CompletableFuture<String> hash = new CompletableFuture<>();
+        InputStreamSupplier supplier = BagGenerator.getHashingInputStreamSupplier(
+                () -> new ByteArrayInputStream(CONTENT), ChecksumType.SHA256, hash);
+
+        try (InputStream in = supplier.get()) {
+            assertArrayEquals(CONTENT, in.readAllBytes());
+            assertFalse(hash.isDone());
+        }
+        assertEquals(DigestUtils.sha256Hex(CONTENT), hash.getNow(null));
+    }
+
+    @Test
+    public void testNoHashForPartialRead() throws IOException {
+        CompletableFuture<String> hash = new CompletableFuture<>();
+        InputStreamSupplier supplier = BagGenerator.getHashingInputStreamSupplier(
+                () -> new ByteArrayInputStream(CONTENT), ChecksumType.MD5, hash);
+
+        try (InputStream in = supplier.get()) {
+            in.read(new byte[4]);
+        }
+        assertTrue(hash.isDone());
+        assertNull(hash.getNow("not completed"));
+    }
+
+    @Test
+    public void testNoHashForMissingStream() {
+        CompletableFuture<String> hash = new CompletableFuture<>();
+        InputStreamSupplier supplier = BagGenerator.getHashingInputStreamSupplier(() -> null, ChecksumType.SHA1, hash);
+
+        assertNull(supplier.get());
+        assertTrue(hash.isDone());
+        assertNull(hash.getNow("not completed"));
+    }
+}